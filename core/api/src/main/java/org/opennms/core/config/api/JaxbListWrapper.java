@@ -71,6 +71,7 @@ public class JaxbListWrapper<T> implements Serializable, Iterable<T> {
 
     private List<T> m_objects = new ArrayList<>();
     private Integer m_totalCount;
+    private boolean m_totalCountUnknown = false;
     private Integer m_offset = 0;
 
     public List<T> getObjects() {
@@ -116,10 +117,22 @@ public class JaxbListWrapper<T> implements Serializable, Iterable<T> {
     
     @XmlAttribute(name="totalCount")
     public Integer getTotalCount() {
+        if (m_totalCountUnknown) {
+            return null;
+        }
         return m_totalCount == null? getCount() : m_totalCount;
     }
     public void setTotalCount(final Integer totalCount) {
         m_totalCount = totalCount;
+        m_totalCountUnknown = false;
+    }
+
+    /**
+     * Omit the total count, rather than defaulting it to the count, when it was not calculated.
+     */
+    public void setTotalCountUnknown() {
+        m_totalCount = null;
+        m_totalCountUnknown = true;
     }
 
     @XmlAttribute(name="offset")
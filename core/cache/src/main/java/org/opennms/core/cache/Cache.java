@@ -28,8 +28,14 @@
 
 package org.opennms.core.cache;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,9 +44,18 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class Cache<K, V> {
 
+    private static final int REFRESH_THREADS = 4;
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+
+    // Shared by all caches which refresh their entries asynchronously and do not provide their own executor.
+    // If all threads are busy and the queue is full, the refresh is run by the calling thread, which bounds the
+    // number of threads even if the loader is slow.
+    private static final Executor REFRESH_EXECUTOR = createRefreshExecutor();
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final CacheConfig config;
@@ -55,7 +70,11 @@ public class Cache<K, V> {
         logger.debug("Cache cache.{} is {}", config.getName(), config.isEnabled());
 
         if (config.isEnabled()) {
-            this.delegate = config.createBuilder().build(cacheLoader);
+            // Stale entries are served while being reloaded in the background
+            final CacheLoader<K, V> delegateLoader = config.isRefreshEnabled()
+                    ? CacheLoader.asyncReloading(cacheLoader, config.getRefreshExecutor() != null ? config.getRefreshExecutor() : REFRESH_EXECUTOR)
+                    : cacheLoader;
+            this.delegate = config.createBuilder().build(delegateLoader);
         }
 
         // Expose cache statistics
@@ -66,6 +85,10 @@ public class Cache<K, V> {
                 registry.register(MetricRegistry.name("cache." + config.getName() + ".evictionCount"), (Gauge) () -> delegate.stats().evictionCount());
                 registry.register(MetricRegistry.name("cache." + config.getName() + ".hitRate"), (Gauge) () -> delegate.stats().hitRate());
                 registry.register(MetricRegistry.name("cache." + config.getName() + ".loadExceptionCount"), (Gauge) () -> delegate.stats().loadExceptionCount());
+                registry.register(MetricRegistry.name("cache." + config.getName() + ".hitCount"), (Gauge) () -> delegate.stats().hitCount());
+                registry.register(MetricRegistry.name("cache." + config.getName() + ".missCount"), (Gauge) () -> delegate.stats().missCount());
+                registry.register(MetricRegistry.name("cache." + config.getName() + ".loadCount"), (Gauge) () -> delegate.stats().loadCount());
+                registry.register(MetricRegistry.name("cache." + config.getName() + ".averageLoadPenalty"), (Gauge) () -> delegate.stats().averageLoadPenalty());
             } else {
                 logger.debug("Recording of \"{}\" cache statistics is disabled.", config.getName());
             }
@@ -84,6 +107,37 @@ public class Cache<K, V> {
         }
     }
 
+    /**
+     * Retrieves the values for all given keys at once.
+     * Keys which are not cached yet are loaded in bulk using {@link CacheLoader#loadAll(Iterable)}
+     * if the loader supports it, otherwise they are loaded one by one.
+     */
+    public Map<K, V> getAll(Iterable<? extends K> keys) throws ExecutionException {
+        Objects.requireNonNull(keys);
+        if (config.isEnabled()) {
+            return delegate.getAll(keys);
+        }
+        try {
+            return loadAll(keys);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    private Map<K, V> loadAll(Iterable<? extends K> keys) throws Exception {
+        try {
+            return cacheLoader.loadAll(keys);
+        } catch (UnsupportedOperationException e) {
+            final Map<K, V> result = new LinkedHashMap<>();
+            for (K key : keys) {
+                result.put(key, cacheLoader.load(key));
+            }
+            return result;
+        }
+    }
+
     public V getIfCached(K key)  {
         Objects.requireNonNull(key);
         if (!config.isEnabled()) {
@@ -111,4 +165,17 @@ public class Cache<K, V> {
         }
     }
 
+    private static Executor createRefreshExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(REFRESH_QUEUE_SIZE),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("cache-refresh-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
 }
@@ -29,6 +29,7 @@
 package org.opennms.core.cache;
 
 import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import com.codahale.metrics.MetricRegistry;
@@ -53,6 +54,10 @@ public class CacheConfig {
 
     private Long expireAfterRead; // Seconds
 
+    private Long refreshAfterWrite; // Seconds
+
+    private Executor refreshExecutor;
+
     private boolean recordStats;
 
     private MetricRegistry metricRegistry;
@@ -97,6 +102,30 @@ public class CacheConfig {
         this.expireAfterRead = expireAfterRead;
     }
 
+    public Long getRefreshAfterWrite() {
+        return refreshAfterWrite;
+    }
+
+    public void setRefreshAfterWrite(Long refreshAfterWrite) {
+        this.refreshAfterWrite = refreshAfterWrite;
+    }
+
+    /**
+     * The executor used to refresh entries in the background.
+     * If not set, a bounded executor shared by all caches is used.
+     */
+    public Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public boolean isRefreshEnabled() {
+        return refreshAfterWrite != null && refreshAfterWrite > 0;
+    }
+
     public String getName() {
         return name;
     }
@@ -132,6 +161,9 @@ public class CacheConfig {
         if (getExpireAfterRead() != null && getExpireAfterRead() > 0) {
             cacheBuilder.expireAfterAccess(getExpireAfterRead(), TimeUnit.SECONDS);
         }
+        if (isRefreshEnabled()) {
+            cacheBuilder.refreshAfterWrite(getRefreshAfterWrite(), TimeUnit.SECONDS);
+        }
         if (isRecordStats()) {
             cacheBuilder.recordStats();
         }
@@ -145,6 +177,7 @@ public class CacheConfig {
                 .add("maximumSize", maximumSize)
                 .add("expireAfterWrite", expireAfterWrite != null ? expireAfterWrite + " sec" : null)
                 .add("expireAfterRead", expireAfterRead != null ? expireAfterRead + " sec" : null)
+                .add("refreshAfterWrite", refreshAfterWrite != null ? refreshAfterWrite + " sec" : null)
                 .add("recordStats", recordStats)
                 .toString();
     }
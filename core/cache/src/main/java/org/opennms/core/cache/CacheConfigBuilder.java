@@ -28,6 +28,8 @@
 
 package org.opennms.core.cache;
 
+import java.util.concurrent.Executor;
+
 public class CacheConfigBuilder {
     private final CacheConfig cacheConfig = new CacheConfig();
 
@@ -51,6 +53,16 @@ public class CacheConfigBuilder {
         return this;
     }
 
+    public CacheConfigBuilder withRefreshAfterWrite(long seconds) {
+        cacheConfig.setRefreshAfterWrite(seconds);
+        return this;
+    }
+
+    public CacheConfigBuilder withRefreshExecutor(Executor executor) {
+        cacheConfig.setRefreshExecutor(executor);
+        return this;
+    }
+
     public CacheConfig build() {
         cacheConfig.validate();
         return cacheConfig;
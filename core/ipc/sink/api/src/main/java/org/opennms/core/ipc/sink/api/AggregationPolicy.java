@@ -38,8 +38,8 @@ package org.opennms.core.ipc.sink.api;
  * The aggregation function {@link #aggregate(Object, Object)} is called to
  * create accumulators and add messages to existing accumulators.
  *
- * The completion size and completion interval options determine the conditions
- * under which the buckets will be dispatched.
+ * The completion size, completion size in bytes and completion interval options
+ * determine the conditions under which the buckets will be dispatched.
  *
  * @author jwhite
  *
@@ -73,6 +73,50 @@ public interface AggregationPolicy<S, T, U> {
      */
     int getCompletionIntervalMs();
 
+    /**
+     * Maximum number of bytes to be added to a bucket before dispatching.
+     *
+     * The size of every message is determined using {@link #getMessageSizeInBytes(Object)}.
+     * This allows modules with messages of varying sizes to produce aggregates which
+     * stay below the maximum message size supported by the underlying transport.
+     *
+     * Values <= 0 will disable size based completion.
+     *
+     * @return maximum number of bytes per bucket
+     */
+    default int getCompletionSizeInBytes() {
+        return 0;
+    }
+
+    /**
+     * Minimum number of milliseconds for which buckets should
+     * continue accumulating messages after creation.
+     *
+     * When this value is smaller than {@link #getCompletionIntervalMs()}, the
+     * interval used to flush the buckets is adapted to the current load:
+     * buckets are flushed quickly when few messages are received and are kept
+     * for up to {@link #getCompletionIntervalMs()} when the load is high enough
+     * to fill the buckets.
+     *
+     * @return minimum number of milliseconds to keep a bucket before dispatching
+     */
+    default int getMinCompletionIntervalMs() {
+        return getCompletionIntervalMs();
+    }
+
+    /**
+     * Estimate the size of the given message in bytes.
+     *
+     * Only used when {@link #getCompletionSizeInBytes()} is > 0, or to
+     * report the size of the dispatched aggregates.
+     *
+     * @param message the message
+     * @return the size of the message in bytes, or 0 if unknown
+     */
+    default int getMessageSizeInBytes(S message) {
+        return 0;
+    }
+
     /**
      * Calculate a key for the given message.
      *
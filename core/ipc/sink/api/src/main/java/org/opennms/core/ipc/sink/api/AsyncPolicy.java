@@ -28,6 +28,8 @@
 
 package org.opennms.core.ipc.sink.api;
 
+import java.util.Locale;
+
 /**
  * Defines the behavior of asynchronous dispatching.
  *
@@ -66,4 +68,47 @@ public interface AsyncPolicy {
      * should block when the queue is full
      */
     boolean isBlockWhenFull();
+
+    /**
+     * The type of in-memory queue used to hold messages awaiting dispatch
+     * when no {@link DispatchQueueFactory} is available.
+     *
+     * @return the queue type
+     */
+    default QueueType getQueueType() {
+        return QueueType.BLOCKING;
+    }
+
+    /**
+     * Maximum number of messages a dispatching thread takes from
+     * the queue at once.
+     *
+     * @return the dequeue batch size
+     */
+    default int getDequeueBatchSize() {
+        return 1;
+    }
+
+    enum QueueType {
+        /**
+         * A bounded blocking queue guarded by a lock.
+         */
+        BLOCKING,
+
+        /**
+         * A bounded lock-free ring buffer supporting multiple producers
+         * and consumers. The capacity is rounded up to the next power of two.
+         */
+        RING_BUFFER;
+
+        /**
+         * Parses the name of a queue type as used in configuration files,
+         * i.e. <code>blocking</code> or <code>ring-buffer</code>.
+         *
+         * @throws IllegalArgumentException if the name does not denote a queue type
+         */
+        public static QueueType parse(String name) {
+            return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
 }
@@ -28,6 +28,8 @@
 
 package org.opennms.core.ipc.sink.api;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public interface DispatchQueue<T> {
@@ -44,6 +46,24 @@ public interface DispatchQueue<T> {
      */
     Map.Entry<String, T> dequeue() throws InterruptedException;
 
+    /**
+     * Retrieves and removes up to the given number of entries from the head of this queue, waiting if necessary until
+     * at least one element becomes available.
+     *
+     * @param maxEntries the maximum number of entries to return
+     * @throws InterruptedException if interrupted while waiting
+     */
+    default List<Map.Entry<String, T>> dequeueBatch(int maxEntries) throws InterruptedException {
+        return Collections.singletonList(dequeue());
+    }
+
+    /**
+     * Signals that the given entry, previously returned by {@link #dequeue()}, has been dispatched. Queues which
+     * persist entries can use this to release the storage held by the entry.
+     */
+    default void acknowledge(Map.Entry<String, T> entry) {
+    }
+
     /**
      * @return true if the queue has no more capacity, false otherwise
      */
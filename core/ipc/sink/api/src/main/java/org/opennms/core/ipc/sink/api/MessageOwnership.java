@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.core.ipc.sink.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the ownership of the messages consumed by this instance when the broker partitions them between the
+ * members of a consumer group.
+ *
+ * The epoch is bumped every time partitions are revoked from, or assigned to, one of the local consumers. Consumers
+ * of the messages that keep local state can compare the epoch to the one they last saw to know whether messages they
+ * did not see may have been consumed elsewhere in the meantime.
+ */
+public final class MessageOwnership {
+
+    // 0 until a partitioned consumer was assigned partitions
+    private static final AtomicLong epoch = new AtomicLong(0);
+
+    private MessageOwnership() {
+    }
+
+    /**
+     * @return the current epoch, or 0 if ownership is not tracked by any of the consumers
+     */
+    public static long getEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * Called by the consumers when the partitions that they own change.
+     */
+    public static void ownershipChanged() {
+        epoch.incrementAndGet();
+    }
+}
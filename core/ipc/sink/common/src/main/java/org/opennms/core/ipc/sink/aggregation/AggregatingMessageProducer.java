@@ -32,6 +32,8 @@ import org.opennms.core.ipc.sink.api.AggregationPolicy;
 import org.opennms.core.ipc.sink.api.MessageDispatcher;
 import org.opennms.core.ipc.sink.api.SinkModule;
 
+import com.codahale.metrics.MetricRegistry;
+
 /**
  * A {@link MessageDispatcher} that applies the {@link SinkModule}'s {@link AggregationPolicy}
  * using the {@link Aggregator}.
@@ -46,6 +48,10 @@ public abstract class AggregatingMessageProducer<S, T> implements MessageDispatc
         aggregator = new Aggregator<S,T>(id, policy, this);
     }
 
+    public AggregatingMessageProducer(String id, AggregationPolicy<S,T,?> policy, MetricRegistry metrics) {
+        aggregator = new Aggregator<S,T>(id, policy, this, metrics);
+    }
+
     @Override
     public void send(S message) {
         final T log = aggregator.aggregate(message);
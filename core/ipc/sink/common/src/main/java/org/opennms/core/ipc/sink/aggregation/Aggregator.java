@@ -36,6 +36,7 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 
 import org.opennms.core.ipc.sink.api.AggregationPolicy;
@@ -43,6 +44,9 @@ import org.opennms.core.sysprops.SystemProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.Striped;
 
 /**
@@ -51,6 +55,13 @@ import com.google.common.util.concurrent.Striped;
  * This class is designed to delegate dispatching to the calling threads as much
  * as possible (those which make calls to {@link #aggregate(Message).}
  *
+ * Buckets are completed once they reach the completion size, either in number
+ * of messages or in bytes, or once they have been kept for longer than the
+ * completion interval. When the policy defines a minimum completion interval,
+ * the interval is adapted to the observed load: buckets are flushed after the
+ * minimum interval when the load is low and kept for up to the maximum interval
+ * when the load is high enough to fill them.
+ *
  * @author jwhite
  *
  * @param <S> individual message
@@ -75,28 +86,77 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
      */
     private static final int NUM_STRIPE_LOCKS = SystemProperties.getInteger(NUM_STRIPE_LOCKS_SYS_PROP, DEFAULT_NUM_STRIPE_LOCKS);
 
+    /**
+     * Weight given to the most recent sample when computing the moving average of the load.
+     */
+    private static final double LOAD_SMOOTHING_FACTOR = 0.3;
+
     private final AggregationPolicy<S,T,Object> aggregationPolicy;
 
     private final AggregatingMessageProducer<S,T> messageProducer;
 
     private final int completionSize;
 
+    private final int completionSizeInBytes;
+
     private final long completionIntervalMs;
 
+    private final long minCompletionIntervalMs;
+
+    private final boolean adaptive;
+
+    /**
+     * The interval currently used to flush the buckets, between
+     * {@link #minCompletionIntervalMs} and {@link #completionIntervalMs}.
+     */
+    private volatile long effectiveCompletionIntervalMs;
+
+    private final LongAdder messagesSinceLastFlush = new LongAdder();
+
+    private final LongAdder bytesSinceLastFlush = new LongAdder();
+
+    private long lastFlushMillis = System.currentTimeMillis();
+
+    private double averageLoad = 0;
+
     private final Timer flushTimer;
 
+    private final Histogram batchSizeInMessages;
+
+    private final Histogram batchSizeInBytes;
+
     private final ConcurrentHashMap<Object, Bucket> buckets = new ConcurrentHashMap<>();
 
     private final Striped<Lock> lockStripes = Striped.lock(NUM_STRIPE_LOCKS);
 
     public Aggregator(String id, AggregationPolicy<S,T,?> policy, AggregatingMessageProducer<S,T> messageProducer) {
+        this(id, policy, messageProducer, null);
+    }
+
+    public Aggregator(String id, AggregationPolicy<S,T,?> policy, AggregatingMessageProducer<S,T> messageProducer, MetricRegistry metrics) {
         aggregationPolicy = (AggregationPolicy<S,T,Object>)Objects.requireNonNull(policy);
         this.messageProducer = Objects.requireNonNull(messageProducer);
         completionSize = aggregationPolicy.getCompletionSize();
+        completionSizeInBytes = aggregationPolicy.getCompletionSizeInBytes();
         completionIntervalMs = aggregationPolicy.getCompletionIntervalMs();
+        minCompletionIntervalMs = Math.min(aggregationPolicy.getMinCompletionIntervalMs(), completionIntervalMs);
+        adaptive = minCompletionIntervalMs > 0 && minCompletionIntervalMs < completionIntervalMs;
+        effectiveCompletionIntervalMs = adaptive ? minCompletionIntervalMs : completionIntervalMs;
+
+        if (metrics != null) {
+            batchSizeInMessages = metrics.histogram(MetricRegistry.name(id, "batch-size-messages"));
+            batchSizeInBytes = metrics.histogram(MetricRegistry.name(id, "batch-size-bytes"));
+            final String intervalGaugeName = MetricRegistry.name(id, "completion-interval-ms");
+            metrics.remove(intervalGaugeName);
+            metrics.register(intervalGaugeName, (Gauge<Long>) () -> effectiveCompletionIntervalMs);
+        } else {
+            batchSizeInMessages = null;
+            batchSizeInBytes = null;
+        }
 
         if (completionIntervalMs > 0) {
-            // Periodically verify the buckets, and flush those that are older than completionIntervalMs
+            // Periodically verify the buckets, and flush those that are older than the effective completion interval
+            final long flushPeriodMs = adaptive ? minCompletionIntervalMs : completionIntervalMs;
             flushTimer = new Timer(String.format("AggregatorFlush-%s", id));
             flushTimer.scheduleAtFixedRate(new TimerTask() {
                 @Override
@@ -109,7 +169,7 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
                         LOG.error("An error occurred while flushing one or more aggregates in module '{}'.", id, t);
                     }
                 }
-            }, completionIntervalMs, completionIntervalMs);
+            }, flushPeriodMs, flushPeriodMs);
         } else {
             flushTimer = null;
         }
@@ -119,6 +179,12 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
      * Aggregates the given messages into a bucket and returns
      * the bucket if it is ready to be dispatched.
      *
+     * If adding the message would cause the bucket to exceed the completion
+     * size in bytes, the current bucket is returned and the message is
+     * added to a new bucket. Should the new bucket be complete with this single
+     * message, the current bucket is dispatched directly and the new bucket
+     * is returned.
+     *
      * @param message the message to aggregated
      * @return the bucket if it is ready to be dispatched, or <code>null</code>
      * if nothing is ready to be dispatched
@@ -126,8 +192,15 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
     public T aggregate(S message) {
         // Compute the key
         final Object key = aggregationPolicy.key(message);
+        final int messageSizeInBytes = aggregationPolicy.getMessageSizeInBytes(message);
+        if (adaptive) {
+            messagesSinceLastFlush.increment();
+            bytesSinceLastFlush.add(messageSizeInBytes);
+        }
         // Lock the bucket
         final Lock lock = lockStripes.get(key);
+        Bucket overflowedBucket = null;
+        Bucket completedBucket = null;
         try {
             lock.lock();
             // Obtain the bucket, creating a new one if it doesn't already exist
@@ -135,26 +208,41 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
             if (bucket == null) {
                 bucket = new Bucket();
                 buckets.put(key, bucket);
+            } else if (bucket.wouldOverflow(messageSizeInBytes)) {
+                // Dispatch what we have so far, and start a new bucket with the message
+                overflowedBucket = bucket;
+                bucket = new Bucket();
+                buckets.put(key, bucket);
             }
 
             // Accumulate into the bucket
-            T accumulator = bucket.accumulate(message);
-            if (accumulator != null) {
+            if (bucket.accumulate(message, messageSizeInBytes)) {
                 // The bucket is ready to be dispatched
                 buckets.remove(key);
-                return accumulator;
-            } else {
-                // The bucket is NOT ready to be dispatched
-                return null;
+                completedBucket = bucket;
             }
         } finally {
             lock.unlock();
         }
+
+        if (overflowedBucket == null) {
+            return completedBucket != null ? complete(completedBucket) : null;
+        } else if (completedBucket == null) {
+            return complete(overflowedBucket);
+        }
+        // The message filled a bucket on its own, dispatch the previous
+        // bucket first so that the ordering of the messages is preserved
+        messageProducer.dispatch(complete(overflowedBucket));
+        return complete(completedBucket);
     }
 
     @Override
     public void run() {
-        final List<T> messagesReadyForDispatch = new LinkedList<>();
+        if (adaptive) {
+            updateEffectiveCompletionInterval();
+        }
+
+        final List<Bucket> bucketsReadyForDispatch = new LinkedList<>();
         // Grab a copy of all the current bucket keys
         final Set<Object> keys = new HashSet<>(buckets.keySet());
         // NMS-9114: As we iterate over the keys to add them to set above,
@@ -170,14 +258,14 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
             locks.forEach(Lock::lock);
             // Determine which buckets are ready to be dispatched
             // and remove these from the map
-            final long cutOff = System.currentTimeMillis() - completionIntervalMs;
+            final long cutOff = System.currentTimeMillis() - effectiveCompletionIntervalMs;
             for (final Object key : keys) {
                 final Bucket bucket = buckets.get(key);
                 // The bucket may have been removed between the time we retrieved
                 // the keys, and the time we obtained the lock, so we make sure
                 // it's non-null before accessing it's properties
                 if (bucket != null && bucket.getFirstTimeMillis() != null && bucket.getFirstTimeMillis() <= cutOff) {
-                    messagesReadyForDispatch.add(bucket.getValue());
+                    bucketsReadyForDispatch.add(bucket);
                     buckets.remove(key);
                 }
             }
@@ -186,9 +274,53 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
         }
 
         // Dispatch!
-        for (T message : messagesReadyForDispatch) {
-            messageProducer.dispatch(message);
+        for (Bucket bucket : bucketsReadyForDispatch) {
+            messageProducer.dispatch(complete(bucket));
+        }
+    }
+
+    public long getEffectiveCompletionIntervalMs() {
+        return effectiveCompletionIntervalMs;
+    }
+
+    /**
+     * Adapts the completion interval to the load observed since the last flush.
+     *
+     * The load is the fraction of a bucket that we expect to fill during the maximum
+     * completion interval given the current rate of messages per bucket. A load of 1
+     * or more means the buckets fill up on their own, so we can afford to wait for the
+     * maximum interval, while a load close to 0 means the buckets would mostly be
+     * dispatched by the timer, so we might as well do so quickly.
+     */
+    private void updateEffectiveCompletionInterval() {
+        final long now = System.currentTimeMillis();
+        final long elapsedMs = Math.max(1, now - lastFlushMillis);
+        lastFlushMillis = now;
+
+        final double numBuckets = Math.max(1, buckets.size());
+        final double messagesPerBucket = messagesSinceLastFlush.sumThenReset() / numBuckets;
+        final double bytesPerBucket = bytesSinceLastFlush.sumThenReset() / numBuckets;
+        final double scale = (double)completionIntervalMs / elapsedMs;
+
+        double load = 0;
+        if (completionSize > 0) {
+            load = Math.max(load, messagesPerBucket * scale / completionSize);
+        }
+        if (completionSizeInBytes > 0) {
+            load = Math.max(load, bytesPerBucket * scale / completionSizeInBytes);
+        }
+        averageLoad = LOAD_SMOOTHING_FACTOR * Math.min(1.0, load) + (1 - LOAD_SMOOTHING_FACTOR) * averageLoad;
+
+        effectiveCompletionIntervalMs = minCompletionIntervalMs
+                + Math.round((completionIntervalMs - minCompletionIntervalMs) * averageLoad);
+    }
+
+    private T complete(Bucket bucket) {
+        if (batchSizeInMessages != null) {
+            batchSizeInMessages.update(bucket.getCount());
+            batchSizeInBytes.update(bucket.getSizeInBytes());
         }
+        return bucket.getValue();
     }
 
     @Override
@@ -201,31 +333,55 @@ public class Aggregator<S, T> implements AutoCloseable, Runnable {
     protected class Bucket {
         private Object accumulator;
         private int count = 0;
+        private long sizeInBytes = 0;
         private Long firstTimeMillis;
 
-        public T accumulate(S message) {
+        /**
+         * Adds the message to the bucket.
+         *
+         * @return <code>true</code> if the bucket is ready to be dispatched
+         */
+        public boolean accumulate(S message, int messageSizeInBytes) {
             accumulator = aggregationPolicy.aggregate(accumulator, message);
             count++;
-            if (count >= completionSize) {
-                // We're ready!
-                return aggregationPolicy.build(accumulator);
-            } else if (completionIntervalMs > 0) {
+            sizeInBytes += messageSizeInBytes;
+            boolean expired = false;
+            if (completionIntervalMs > 0) {
+                // Track the creation time, so that the timer can flush the bucket
                 final long now = System.currentTimeMillis();
                 if (firstTimeMillis == null) {
                     firstTimeMillis = now;
-                } else if (now - firstTimeMillis >= completionIntervalMs) {
-                    // We're ready!
-                    return aggregationPolicy.build(accumulator);
+                } else {
+                    expired = now - firstTimeMillis >= effectiveCompletionIntervalMs;
                 }
             }
-            // We're NOT ready yet...
-            return null;
+            if (count >= completionSize) {
+                // We're ready!
+                return true;
+            } else if (completionSizeInBytes > 0 && sizeInBytes >= completionSizeInBytes) {
+                // We're ready!
+                return true;
+            }
+            // We're ready if the bucket expired, NOT ready otherwise
+            return expired;
+        }
+
+        public boolean wouldOverflow(int messageSizeInBytes) {
+            return completionSizeInBytes > 0 && count > 0 && sizeInBytes + messageSizeInBytes > completionSizeInBytes;
         }
 
         public T getValue() {
             return aggregationPolicy.build(accumulator);
         }
 
+        public int getCount() {
+            return count;
+        }
+
+        public long getSizeInBytes() {
+            return sizeInBytes;
+        }
+
         public Long getFirstTimeMillis() {
             return firstTimeMillis;
         }
@@ -29,6 +29,8 @@
 package org.opennms.core.ipc.sink.common;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -95,6 +97,10 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
             LOG.debug("Using queue from factory");
             dispatchQueue = factory.get().getQueue(asyncPolicy, sinkModule.getId(),
                     sinkModule::marshalSingleMessage, sinkModule::unmarshalSingleMessage);
+        } else if (asyncPolicy.getQueueType() == AsyncPolicy.QueueType.RING_BUFFER) {
+            int size = asyncPolicy.getQueueSize();
+            LOG.debug("Using ring buffer in memory queue of size {}", size);
+            dispatchQueue = new RingBufferDispatchQueue<>(size);
         } else {
             int size = asyncPolicy.getQueueSize();
             LOG.debug("Using default in memory queue of size {}", size);
@@ -113,31 +119,14 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
     }
 
     private void dispatchFromQueue() {
+        final int batchSize = Math.max(1, asyncPolicy.getDequeueBatchSize());
         while (true) {
             try {
-                LOG.trace("Asking dispatch queue for the next entry...");
-                Map.Entry<String, S> messageEntry = dispatchQueue.dequeue();
-                LOG.trace("Received message entry from dispatch queue {}", messageEntry);
-                activeDispatchers.incrementAndGet();
-                LOG.trace("Sending message {} via sync dispatcher", messageEntry);
-                syncDispatcher.send(messageEntry.getValue());
-                LOG.trace("Successfully sent message {}", messageEntry);
-
-                if (messageEntry.getKey() != null) {
-                    LOG.trace("Attempting to complete future for message {}", messageEntry);
-                    CompletableFuture<DispatchStatus> messageFuture = futureMap.remove(messageEntry.getKey());
-
-                    if (messageFuture != null) {
-                        messageFuture.complete(DispatchStatus.DISPATCHED);
-                        LOG.trace("Completed future for message {}", messageEntry);
-                    } else {
-                        RATE_LIMITED_LOGGER.warn("No future found for message {}", messageEntry);
-                    }
-                } else {
-                    LOG.trace("Dequeued an entry with a null key");
+                LOG.trace("Asking dispatch queue for the next entries...");
+                final List<Map.Entry<String, S>> messageEntries = dispatchQueue.dequeueBatch(batchSize);
+                for (Map.Entry<String, S> messageEntry : messageEntries) {
+                    dispatch(messageEntry);
                 }
-
-                activeDispatchers.decrementAndGet();
             } catch (InterruptedException e) {
                 break;
             } catch (Exception e) {
@@ -146,6 +135,52 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
         }
     }
 
+    private void dispatch(Map.Entry<String, S> messageEntry) {
+        LOG.trace("Received message entry from dispatch queue {}", messageEntry);
+        activeDispatchers.incrementAndGet();
+        try {
+            LOG.trace("Sending message {} via sync dispatcher", messageEntry);
+            syncDispatcher.send(messageEntry.getValue());
+            LOG.trace("Successfully sent message {}", messageEntry);
+            complete(messageEntry, null);
+        } catch (Exception e) {
+            // The message is dropped, the sync dispatcher is responsible for retrying
+            RATE_LIMITED_LOGGER.warn("Encountered exception while dispatching message {}", messageEntry, e);
+            droppedCounter.inc();
+            complete(messageEntry, e);
+        } finally {
+            activeDispatchers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases the entry from the queue and completes the future of the message, if it is tracked.
+     */
+    private void complete(Map.Entry<String, S> messageEntry, Exception failure) {
+        try {
+            dispatchQueue.acknowledge(messageEntry);
+        } catch (Exception e) {
+            RATE_LIMITED_LOGGER.warn("Encountered exception while acknowledging message {}", messageEntry, e);
+        }
+
+        if (messageEntry.getKey() != null) {
+            LOG.trace("Attempting to complete future for message {}", messageEntry);
+            CompletableFuture<DispatchStatus> messageFuture = futureMap.remove(messageEntry.getKey());
+
+            if (messageFuture == null) {
+                RATE_LIMITED_LOGGER.warn("No future found for message {}", messageEntry);
+            } else if (failure != null) {
+                messageFuture.completeExceptionally(failure);
+                LOG.trace("Failed future for message {}", messageEntry);
+            } else {
+                messageFuture.complete(DispatchStatus.DISPATCHED);
+                LOG.trace("Completed future for message {}", messageEntry);
+            }
+        } else {
+            LOG.trace("Dequeued an entry with a null key");
+        }
+    }
+
     private void startDrainingQueue() {
         for (int i = 0; i < asyncPolicy.getNumThreads(); i++) {
             executor.execute(this::dispatchFromQueue);
@@ -195,7 +230,7 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
      * This class is intended to be used only when a suitable implementation could not be found at runtime. This should
      * only occur in testing.
      */
-    private static class DefaultQueue<T> implements DispatchQueue<T> {
+    static class DefaultQueue<T> implements DispatchQueue<T> {
         private final BlockingQueue<Map.Entry<String, T>> queue;
         private final Lock enqueueFairMutex = new ReentrantLock(true);
 
@@ -222,6 +257,16 @@ public class AsyncDispatcherImpl<W, S extends Message, T extends Message> implem
             return queue.take();
         }
 
+        @Override
+        public List<Map.Entry<String, T>> dequeueBatch(int maxEntries) throws InterruptedException {
+            final List<Map.Entry<String, T>> batch = new ArrayList<>(Math.min(Math.max(maxEntries, 1), queue.size() + 1));
+            batch.add(queue.take());
+            if (maxEntries > 1) {
+                queue.drainTo(batch, maxEntries - 1);
+            }
+            return batch;
+        }
+
         @Override
         public boolean isFull() {
             return queue.remainingCapacity() <= 0;
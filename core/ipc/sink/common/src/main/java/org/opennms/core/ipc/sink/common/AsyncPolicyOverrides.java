@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.core.ipc.sink.common;
+
+import java.util.Objects;
+
+import org.opennms.core.ipc.sink.api.AsyncPolicy;
+import org.opennms.core.sysprops.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Allows the queue type and dequeue batch size of the {@link AsyncPolicy} of any sink module to be changed using
+ * system properties, i.e. in <code>etc/system.properties</code> or <code>etc/custom.system.properties</code> on
+ * OpenNMS, Minion and Sentinel.
+ * <p>
+ * The module specific properties, i.e. <code>org.opennms.ipc.sink.Syslog.queue.type</code>, take precedence over
+ * the global properties, i.e. <code>org.opennms.ipc.sink.queue.type</code>, which take precedence over the values
+ * of the module.
+ */
+public class AsyncPolicyOverrides implements AsyncPolicy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncPolicyOverrides.class);
+
+    public static final String SYS_PROP_PREFIX = "org.opennms.ipc.sink.";
+    public static final String QUEUE_TYPE_SYS_PROP = "queue.type";
+    public static final String DEQUEUE_BATCH_SIZE_SYS_PROP = "dequeue.batch.size";
+
+    private final AsyncPolicy delegate;
+    private final QueueType queueType;
+    private final int dequeueBatchSize;
+
+    public AsyncPolicyOverrides(String moduleId, AsyncPolicy delegate) {
+        Objects.requireNonNull(moduleId);
+        this.delegate = Objects.requireNonNull(delegate);
+        this.queueType = getQueueType(moduleId, delegate.getQueueType());
+        this.dequeueBatchSize = SystemProperties.getInteger(SYS_PROP_PREFIX + moduleId + "." + DEQUEUE_BATCH_SIZE_SYS_PROP,
+                SystemProperties.getInteger(SYS_PROP_PREFIX + DEQUEUE_BATCH_SIZE_SYS_PROP, delegate.getDequeueBatchSize()));
+    }
+
+    private static QueueType getQueueType(String moduleId, QueueType defaultQueueType) {
+        String name = System.getProperty(SYS_PROP_PREFIX + moduleId + "." + QUEUE_TYPE_SYS_PROP);
+        if (name == null) {
+            name = System.getProperty(SYS_PROP_PREFIX + QUEUE_TYPE_SYS_PROP);
+        }
+        if (name == null) {
+            return defaultQueueType;
+        }
+        try {
+            return QueueType.parse(name);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid queue type '{}' for module {}. Using {} instead.", name, moduleId, defaultQueueType);
+            return defaultQueueType;
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        return delegate.getQueueSize();
+    }
+
+    @Override
+    public int getNumThreads() {
+        return delegate.getNumThreads();
+    }
+
+    @Override
+    public boolean isBlockWhenFull() {
+        return delegate.isBlockWhenFull();
+    }
+
+    @Override
+    public QueueType getQueueType() {
+        return queueType;
+    }
+
+    @Override
+    public int getDequeueBatchSize() {
+        return dequeueBatchSize;
+    }
+}
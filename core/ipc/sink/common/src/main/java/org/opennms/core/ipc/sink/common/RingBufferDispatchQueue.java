@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.common;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.opennms.core.ipc.sink.api.DispatchQueue;
+import org.opennms.core.ipc.sink.api.WriteFailedException;
+
+/**
+ * A bounded, lock-free multi-producer multi-consumer {@link DispatchQueue} backed by a ring buffer.
+ * <p>
+ * Every slot of the ring carries a sequence number which tells producers and consumers whether the slot is free to
+ * be written or ready to be read, so claiming a slot only requires a CAS on the head or tail counter. Consumers that
+ * find the queue empty spin briefly and then park until a producer wakes them up. Producers only wake up a consumer
+ * if one is actually parked and {@link #dequeueBatch(int)} lets a consumer take many entries per wakeup.
+ *
+ * @param <T> the type being queued
+ */
+public class RingBufferDispatchQueue<T> implements DispatchQueue<T> {
+
+    private static final int SPIN_TRIES = 100;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<Map.Entry<String, T>> entries;
+    private final AtomicLongArray sequences;
+
+    // Next position to be written by a producer
+    private final AtomicLong tail = new AtomicLong(0);
+    // Next position to be read by a consumer
+    private final AtomicLong head = new AtomicLong(0);
+
+    private final ConcurrentLinkedQueue<Thread> parkedConsumers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> parkedProducers = new ConcurrentLinkedQueue<>();
+
+    public RingBufferDispatchQueue(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Queue size must be greater than 0");
+        }
+        if (size > (1 << 30)) {
+            throw new IllegalArgumentException("Queue size must not exceed " + (1 << 30));
+        }
+
+        capacity = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+        mask = capacity - 1;
+        entries = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public EnqueueResult enqueue(T message, String key) throws WriteFailedException {
+        final Map.Entry<String, T> entry = new AbstractMap.SimpleImmutableEntry<>(key, message);
+        int tries = 0;
+        while (!offer(entry)) {
+            if (tries++ < SPIN_TRIES) {
+                Thread.yield();
+                continue;
+            }
+            // The queue is full, wait for a consumer to make room
+            parkedProducers.add(Thread.currentThread());
+            if (isFull()) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            parkedProducers.remove(Thread.currentThread());
+            if (Thread.interrupted()) {
+                throw new WriteFailedException(new InterruptedException());
+            }
+        }
+        wakeUp(parkedConsumers);
+        return EnqueueResult.IMMEDIATE;
+    }
+
+    @Override
+    public Map.Entry<String, T> dequeue() throws InterruptedException {
+        return dequeueBatch(1).get(0);
+    }
+
+    @Override
+    public List<Map.Entry<String, T>> dequeueBatch(int maxEntries) throws InterruptedException {
+        final List<Map.Entry<String, T>> batch = new ArrayList<>(Math.min(Math.max(maxEntries, 1), capacity));
+        Map.Entry<String, T> entry = take();
+        while (entry != null) {
+            batch.add(entry);
+            if (batch.size() >= maxEntries) {
+                break;
+            }
+            entry = poll();
+        }
+        wakeUp(parkedProducers);
+        return batch;
+    }
+
+    @Override
+    public boolean isFull() {
+        return getSize() >= capacity;
+    }
+
+    @Override
+    public int getSize() {
+        // Read the head first so that the difference never becomes negative
+        final long currentHead = head.get();
+        final long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(capacity, currentTail - currentHead));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private boolean offer(Map.Entry<String, T> entry) {
+        while (true) {
+            final long position = tail.get();
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    entries.set(index, entry);
+                    // Publish the slot to consumers
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // The slot was not consumed yet, so the queue is full
+                return false;
+            }
+        }
+    }
+
+    private Map.Entry<String, T> poll() {
+        while (true) {
+            final long position = head.get();
+            final int index = (int) (position & mask);
+            final long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final Map.Entry<String, T> entry = entries.get(index);
+                    entries.set(index, null);
+                    // Release the slot for the producer of the next lap
+                    sequences.set(index, position + capacity);
+                    return entry;
+                }
+            } else if (difference < 0) {
+                // The slot was not written yet, so the queue is empty
+                return null;
+            }
+        }
+    }
+
+    private Map.Entry<String, T> take() throws InterruptedException {
+        int tries = 0;
+        while (true) {
+            final Map.Entry<String, T> entry = poll();
+            if (entry != null) {
+                return entry;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (tries++ < SPIN_TRIES) {
+                Thread.yield();
+                continue;
+            }
+            // Register before checking again so that a producer enqueueing in between is guaranteed to see us
+            parkedConsumers.add(Thread.currentThread());
+            if (getSize() == 0) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            parkedConsumers.remove(Thread.currentThread());
+        }
+    }
+
+    private static void wakeUp(ConcurrentLinkedQueue<Thread> parkedThreads) {
+        if (!parkedThreads.isEmpty()) {
+            final Thread thread = parkedThreads.poll();
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}
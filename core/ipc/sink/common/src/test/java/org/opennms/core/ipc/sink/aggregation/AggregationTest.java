@@ -31,8 +31,10 @@ package org.opennms.core.ipc.sink.aggregation;
 import static com.jayway.awaitility.Awaitility.await;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
@@ -56,6 +58,8 @@ import org.opennms.core.ipc.sink.common.AbstractMessageDispatcherFactory;
 import org.opennms.core.test.MockLogAppender;
 import org.osgi.framework.BundleContext;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.RateLimiter;
 
 import io.opentracing.Tracer;
@@ -161,6 +165,85 @@ public class AggregationTest {
         }
     }
 
+    @Test
+    public void aggregateBySizeInBytes() throws Exception {
+        SinkModuleWithAggregateBySizeInBytes aggregatingSinkModule = new SinkModuleWithAggregateBySizeInBytes();
+        try(SyncDispatcher<UDPPacket> dispatcher = capturingMessageDispatcherFactory.createSyncDispatcher(aggregatingSinkModule)) {
+            // Each packet is 4 bytes, so only two packets fit in a bucket of 10 bytes
+            for (byte i = 0; i < 10; i++) {
+                UDPPacket packet = new UDPPacket(localhost, ByteBuffer.wrap(new byte[]{i, i, i, i}));
+                dispatcher.send(packet);
+            }
+            // The buckets are dispatched when the next packet would overflow them
+            assertEquals(4, dispatchedMessages.size());
+            for (Object message : dispatchedMessages) {
+                assertEquals(2, ((UDPPacketLog)message).getPackets().size());
+            }
+        }
+    }
+
+    @Test
+    public void dispatchesOversizedMessagesImmediately() throws Exception {
+        SinkModuleWithAggregateBySizeInBytes aggregatingSinkModule = new SinkModuleWithAggregateBySizeInBytes();
+        try(SyncDispatcher<UDPPacket> dispatcher = capturingMessageDispatcherFactory.createSyncDispatcher(aggregatingSinkModule)) {
+            dispatcher.send(new UDPPacket(localhost, ByteBuffer.wrap(new byte[]{1, 1, 1, 1})));
+            assertEquals(0, dispatchedMessages.size());
+
+            // This packet fills a bucket on its own, and there is no timer to flush it
+            dispatcher.send(new UDPPacket(localhost, ByteBuffer.wrap(new byte[12])));
+            assertEquals(2, dispatchedMessages.size());
+            assertEquals(1, ((UDPPacketLog)dispatchedMessages.get(0)).getPackets().size());
+            assertEquals(4, ((UDPPacketLog)dispatchedMessages.get(0)).getPackets().get(0).getBytes().remaining());
+            assertEquals(1, ((UDPPacketLog)dispatchedMessages.get(1)).getPackets().size());
+            assertEquals(12, ((UDPPacketLog)dispatchedMessages.get(1)).getPackets().get(0).getBytes().remaining());
+
+            // Subsequent packets start with an empty bucket
+            dispatcher.send(new UDPPacket(localhost, ByteBuffer.wrap(new byte[]{2, 2, 2, 2})));
+            assertEquals(2, dispatchedMessages.size());
+        }
+    }
+
+    @Test
+    public void adaptsCompletionIntervalToLoad() throws Exception {
+        final MetricRegistry metrics = new MetricRegistry();
+        final AggregationPolicy<UDPPacket, UDPPacketLog, UDPPacketLog> policy = new UDPPacketLogAggregationPolicy() {
+            @Override
+            public int getCompletionSize() {
+                return 1000;
+            }
+
+            @Override
+            public int getCompletionIntervalMs() {
+                return 60000;
+            }
+
+            @Override
+            public int getMinCompletionIntervalMs() {
+                return 50;
+            }
+        };
+
+        try (AggregatingMessageProducer<UDPPacket, UDPPacketLog> producer = new AggregatingMessageProducer<UDPPacket, UDPPacketLog>("adaptive", policy, metrics) {
+            @Override
+            public void dispatch(UDPPacketLog message) {
+                synchronized (dispatchedMessages) {
+                    dispatchedMessages.add(message);
+                }
+            }
+        }) {
+            // Under low load, the bucket should be flushed well before the maximum interval
+            producer.send(new UDPPacket(localhost, ByteBuffer.wrap(new byte[]{(byte)42})));
+            await().atMost(5, SECONDS)
+                .pollDelay(10, MILLISECONDS)
+                .until(() -> dispatchedMessages, hasSize(1));
+            assertThat((Long)metrics.getGauges().get("adaptive.completion-interval-ms").getValue(), lessThan(60000L));
+
+            final Histogram batchSizeInMessages = metrics.histogram("adaptive.batch-size-messages");
+            assertThat(batchSizeInMessages.getCount(), equalTo(1L));
+            assertThat(batchSizeInMessages.getSnapshot().getMax(), equalTo(1L));
+        }
+    }
+
     /**
      * NMS-9114: Test concurrency with the timer thread.
      */
@@ -403,6 +486,56 @@ public class AggregationTest {
         }
     }
 
+    private static class SinkModuleWithAggregateBySizeInBytes extends AbstractSinkModule<UDPPacket, UDPPacketLog> {
+        @Override
+        public AggregationPolicy<UDPPacket, UDPPacketLog, UDPPacketLog> getAggregationPolicy() {
+            return new UDPPacketLogAggregationPolicy() {
+                @Override
+                public int getCompletionSize() {
+                    return 100;
+                }
+
+                @Override
+                public int getCompletionIntervalMs() {
+                    return 0;
+                }
+
+                @Override
+                public int getCompletionSizeInBytes() {
+                    return 10;
+                }
+            };
+        }
+    }
+
+    private static abstract class UDPPacketLogAggregationPolicy implements AggregationPolicy<UDPPacket, UDPPacketLog, UDPPacketLog> {
+        @Override
+        public int getMessageSizeInBytes(UDPPacket message) {
+            return message.getBytes().remaining();
+        }
+
+        @Override
+        public Object key(UDPPacket message) {
+            // Key by the source address
+            return message.getSource();
+        }
+
+        @Override
+        public UDPPacketLog aggregate(UDPPacketLog oldPacketLog, UDPPacket newPacket) {
+            if (oldPacketLog == null) {
+                return new UDPPacketLog(newPacket);
+            } else {
+                oldPacketLog.getPackets().add(newPacket);
+                return oldPacketLog;
+            }
+        }
+
+        @Override
+        public UDPPacketLog build(UDPPacketLog accumulator) {
+            return accumulator;
+        }
+    }
+
     private static abstract class AbstractSinkModule<S extends Message, T extends Message> implements SinkModule<S, T> {
 
         @Override
@@ -63,6 +63,8 @@ import org.opennms.core.ipc.sink.api.SinkModule;
 import org.opennms.core.ipc.sink.offheap.DispatchQueueServiceLoader;
 import org.opennms.core.ipc.sink.offheap.QueueFileOffHeapDispatchQueueFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.jayway.awaitility.core.ConditionTimeoutException;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -337,5 +339,65 @@ public class AsyncDispatcherTest {
         
         asyncDispatcher.close();
     }
+
+    @Test(timeout=3*60*1000)
+    public void testFailedDispatchReleasesEntries() throws Exception {
+        // Set up a segmented dispatch queue that overflows after a few messages
+        final MetricRegistry metrics = new MetricRegistry();
+        QueueFileOffHeapDispatchQueueFactory dispatchQueueFactory = new QueueFileOffHeapDispatchQueueFactory(NUM_THREADS, NUM_THREADS, "100KB",
+                folder.newFolder().toPath().toString());
+        dispatchQueueFactory.setSegmented(true);
+        dispatchQueueFactory.setSegmentSize("1KB");
+        dispatchQueueFactory.setMetricRegistry(metrics);
+        DispatchQueueServiceLoader.setDispatchQueue(dispatchQueueFactory);
+
+        when(module.getAsyncPolicy()).thenReturn(new AsyncPolicy() {
+            @Override
+            public int getQueueSize() {
+                return QUEUE_SIZE;
+            }
+
+            @Override
+            public int getNumThreads() {
+                return NUM_THREADS;
+            }
+
+            @Override
+            public boolean isBlockWhenFull() {
+                return true;
+            }
+        });
+
+        final AsyncDispatcher<MyMessage> asyncDispatcher = blockableDispatcherFactory.createAsyncDispatcher(module);
+        BlockableSyncDispatcher<MyMessage> blockableSyncDispatcher = blockableDispatcherFactory.getBlockableSyncDispatcher();
+        final List<CompletableFuture<AsyncDispatcher.DispatchStatus>> futures = new ArrayList<>();
+
+        // Every dispatch fails, some of the messages are queued off-heap
+        blockableSyncDispatcher.block();
+        blockableSyncDispatcher.setFailing(true);
+        final int totalToSend = NUM_THREADS * 4;
+        for (int i = 0; i < totalToSend; i++) {
+            futures.add(asyncDispatcher.send(new MyMessage(Integer.toString(i))));
+        }
+        blockableSyncDispatcher.unblock();
+
+        // All messages are released from the queue, including the off-heap segments
+        @SuppressWarnings("unchecked")
+        final Gauge<Long> backlogBytes = (Gauge<Long>) metrics.getGauges().get("myModule.offheap.backlog-bytes");
+        await().atMost(1, MINUTES).until(() -> asyncDispatcher.getQueueSize() == 0 && backlogBytes.getValue() == 0);
+        assertThat(blockableSyncDispatcher.getNumMessageDispatched(), equalTo(0));
+
+        // The futures of the messages which were tracked failed instead of hanging
+        for (CompletableFuture<AsyncDispatcher.DispatchStatus> future : futures) {
+            await().atMost(1, MINUTES).until(future::isDone);
+            if (future.isCompletedExceptionally()) {
+                continue;
+            }
+            assertThat(future.get(), equalTo(AsyncDispatcher.DispatchStatus.QUEUED));
+        }
+        assertTrue(futures.stream().anyMatch(CompletableFuture::isCompletedExceptionally));
+
+        asyncDispatcher.close();
+    }
     
 }
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.core.ipc.sink.common;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.core.ipc.sink.api.AsyncPolicy;
+
+public class AsyncPolicyOverridesTest {
+
+    private static final AsyncPolicy MODULE_POLICY = new AsyncPolicy() {
+        @Override
+        public int getQueueSize() {
+            return 100;
+        }
+
+        @Override
+        public int getNumThreads() {
+            return 4;
+        }
+
+        @Override
+        public boolean isBlockWhenFull() {
+            return true;
+        }
+
+        @Override
+        public int getDequeueBatchSize() {
+            return 10;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        System.clearProperty("org.opennms.ipc.sink.queue.type");
+        System.clearProperty("org.opennms.ipc.sink.Syslog.queue.type");
+        System.clearProperty("org.opennms.ipc.sink.dequeue.batch.size");
+        System.clearProperty("org.opennms.ipc.sink.Syslog.dequeue.batch.size");
+    }
+
+    @Test
+    public void usesModulePolicyByDefault() {
+        final AsyncPolicy policy = new AsyncPolicyOverrides("Syslog", MODULE_POLICY);
+        assertThat(policy.getQueueSize(), equalTo(100));
+        assertThat(policy.getNumThreads(), equalTo(4));
+        assertThat(policy.getQueueType(), equalTo(AsyncPolicy.QueueType.BLOCKING));
+        assertThat(policy.getDequeueBatchSize(), equalTo(10));
+    }
+
+    @Test
+    public void canOverrideForAllModules() {
+        System.setProperty("org.opennms.ipc.sink.queue.type", "ring-buffer");
+        System.setProperty("org.opennms.ipc.sink.dequeue.batch.size", "100");
+
+        final AsyncPolicy policy = new AsyncPolicyOverrides("Syslog", MODULE_POLICY);
+        assertThat(policy.getQueueType(), equalTo(AsyncPolicy.QueueType.RING_BUFFER));
+        assertThat(policy.getDequeueBatchSize(), equalTo(100));
+    }
+
+    @Test
+    public void moduleOverridesTakePrecedence() {
+        System.setProperty("org.opennms.ipc.sink.queue.type", "ring-buffer");
+        System.setProperty("org.opennms.ipc.sink.Syslog.queue.type", "BLOCKING");
+        System.setProperty("org.opennms.ipc.sink.dequeue.batch.size", "100");
+        System.setProperty("org.opennms.ipc.sink.Syslog.dequeue.batch.size", "50");
+
+        AsyncPolicy policy = new AsyncPolicyOverrides("Syslog", MODULE_POLICY);
+        assertThat(policy.getQueueType(), equalTo(AsyncPolicy.QueueType.BLOCKING));
+        assertThat(policy.getDequeueBatchSize(), equalTo(50));
+
+        policy = new AsyncPolicyOverrides("Traps", MODULE_POLICY);
+        assertThat(policy.getQueueType(), equalTo(AsyncPolicy.QueueType.RING_BUFFER));
+        assertThat(policy.getDequeueBatchSize(), equalTo(100));
+    }
+
+    @Test
+    public void ignoresInvalidQueueType() {
+        System.setProperty("org.opennms.ipc.sink.queue.type", "linked");
+
+        final AsyncPolicy policy = new AsyncPolicyOverrides("Syslog", MODULE_POLICY);
+        assertThat(policy.getQueueType(), equalTo(AsyncPolicy.QueueType.BLOCKING));
+    }
+}
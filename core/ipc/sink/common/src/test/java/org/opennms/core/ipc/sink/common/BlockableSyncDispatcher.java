@@ -42,11 +42,16 @@ public class BlockableSyncDispatcher<S extends Message> implements SyncDispatche
     private final AtomicInteger blockedThreads = new AtomicInteger(0);
     private final AtomicInteger numDispatched = new AtomicInteger(0);
     private final List<S> dispatchedMessages = new CopyOnWriteArrayList<>();
+    private volatile boolean failing = false;
 
     @Override
     public void send(S message) {
         blockedThreads.incrementAndGet();
         dispatchThreadLatch.await();
+        if (failing) {
+            blockedThreads.decrementAndGet();
+            throw new RuntimeException("Failed to dispatch " + message);
+        }
         numDispatched.incrementAndGet();
         dispatchedMessages.add(message);
         blockedThreads.decrementAndGet();
@@ -65,6 +70,10 @@ public class BlockableSyncDispatcher<S extends Message> implements SyncDispatche
         dispatchThreadLatch.unlock();
     }
 
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
     public int getBlockedThreadCount() {
         return blockedThreads.get();
     }
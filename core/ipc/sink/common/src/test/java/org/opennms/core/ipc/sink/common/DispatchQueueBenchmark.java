@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.core.ipc.sink.common;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opennms.core.ipc.sink.api.AggregationPolicy;
+import org.opennms.core.ipc.sink.api.AsyncDispatcher;
+import org.opennms.core.ipc.sink.api.AsyncPolicy;
+import org.opennms.core.ipc.sink.api.Message;
+import org.opennms.core.ipc.sink.api.SinkModule;
+import org.opennms.core.ipc.sink.offheap.DispatchQueueServiceLoader;
+import org.osgi.framework.BundleContext;
+
+import io.opentracing.Tracer;
+import io.opentracing.util.GlobalTracer;
+
+/**
+ * Compares the end-to-end throughput and latency of dispatching messages with the {@link AsyncDispatcherImpl} using
+ * the different in-memory dispatch queues: from the producer sending the message until the dispatching thread handed it
+ * to the dispatcher factory.
+ * <p>
+ * {@link #send()} measures the throughput of producers which do not wait for their messages to be dispatched, which is
+ * bound by the dispatching threads since producers block when the queue is full. {@link #sendAndWait()} measures the
+ * time until a message was dispatched.
+ * <p>
+ * Run the {@link #main(String[])} method to execute the benchmark with 1 to 64 producer threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DispatchQueueBenchmark {
+
+    private static final int QUEUE_SIZE = 10_000;
+
+    @Param({"BLOCKING", "RING_BUFFER"})
+    public AsyncPolicy.QueueType queueType;
+
+    @Param({"4"})
+    public int numConsumers;
+
+    @Param({"1", "100"})
+    public int dequeueBatchSize;
+
+    private final BenchmarkDispatcherFactory dispatcherFactory = new BenchmarkDispatcherFactory();
+    private AsyncDispatcher<BenchmarkMessage> asyncDispatcher;
+    private final BenchmarkMessage message = new BenchmarkMessage();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Use the in-memory queues
+        DispatchQueueServiceLoader.setDispatchQueue(null);
+        asyncDispatcher = dispatcherFactory.createAsyncDispatcher(new BenchmarkSinkModule(new AsyncPolicy() {
+            @Override
+            public int getQueueSize() {
+                return QUEUE_SIZE;
+            }
+
+            @Override
+            public int getNumThreads() {
+                return numConsumers;
+            }
+
+            @Override
+            public boolean isBlockWhenFull() {
+                return true;
+            }
+
+            @Override
+            public QueueType getQueueType() {
+                return queueType;
+            }
+
+            @Override
+            public int getDequeueBatchSize() {
+                return dequeueBatchSize;
+            }
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        asyncDispatcher.close();
+    }
+
+    @Benchmark
+    public CompletableFuture<AsyncDispatcher.DispatchStatus> send() {
+        return asyncDispatcher.send(message);
+    }
+
+    @Benchmark
+    public AsyncDispatcher.DispatchStatus sendAndWait() {
+        return asyncDispatcher.send(message).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int producers : new int[]{1, 2, 4, 8, 16, 32, 64}) {
+            final Options options = new OptionsBuilder()
+                    .include(DispatchQueueBenchmark.class.getSimpleName())
+                    .threads(producers)
+                    .result("dispatch-queue-benchmark-" + producers + "-producers.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    private static class BenchmarkMessage implements Message {
+    }
+
+    private static class BenchmarkSinkModule implements SinkModule<BenchmarkMessage, BenchmarkMessage> {
+        private final AsyncPolicy asyncPolicy;
+
+        private BenchmarkSinkModule(AsyncPolicy asyncPolicy) {
+            this.asyncPolicy = asyncPolicy;
+        }
+
+        @Override
+        public String getId() {
+            return "benchmark";
+        }
+
+        @Override
+        public int getNumConsumerThreads() {
+            return 1;
+        }
+
+        @Override
+        public byte[] marshal(BenchmarkMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BenchmarkMessage unmarshal(byte[] message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] marshalSingleMessage(BenchmarkMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BenchmarkMessage unmarshalSingleMessage(byte[] message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AggregationPolicy<BenchmarkMessage, BenchmarkMessage, ?> getAggregationPolicy() {
+            // Dispatch every message on its own
+            return null;
+        }
+
+        @Override
+        public AsyncPolicy getAsyncPolicy() {
+            return asyncPolicy;
+        }
+    }
+
+    /**
+     * Counts the dispatched messages instead of handing them to a broker.
+     */
+    private static class BenchmarkDispatcherFactory extends AbstractMessageDispatcherFactory<Void> {
+        private final LongAdder dispatched = new LongAdder();
+
+        @Override
+        public <S extends Message, T extends Message> void dispatch(SinkModule<S, T> module, Void metadata, T message) {
+            dispatched.increment();
+        }
+
+        @Override
+        public String getMetricDomain() {
+            return DispatchQueueBenchmark.class.getPackage().getName();
+        }
+
+        @Override
+        public BundleContext getBundleContext() {
+            return null;
+        }
+
+        @Override
+        public Tracer getTracer() {
+            return GlobalTracer.get();
+        }
+    }
+}
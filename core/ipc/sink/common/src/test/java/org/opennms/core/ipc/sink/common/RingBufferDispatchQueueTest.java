@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.core.ipc.sink.common;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.opennms.core.ipc.sink.api.DispatchQueue;
+import org.opennms.core.ipc.sink.api.WriteFailedException;
+
+import com.jayway.awaitility.core.ConditionTimeoutException;
+
+public class RingBufferDispatchQueueTest {
+
+    @Test
+    public void roundsCapacityToPowerOfTwo() {
+        assertThat(new RingBufferDispatchQueue<String>(1).getCapacity(), equalTo(1));
+        assertThat(new RingBufferDispatchQueue<String>(100).getCapacity(), equalTo(128));
+        assertThat(new RingBufferDispatchQueue<String>(128).getCapacity(), equalTo(128));
+    }
+
+    @Test
+    public void dequeuesInOrder() throws WriteFailedException, InterruptedException {
+        DispatchQueue<String> queue = new RingBufferDispatchQueue<>(64);
+
+        for (int i = 0; i < 64; i++) {
+            queue.enqueue(Integer.toString(i), "key" + i);
+        }
+        assertThat(queue.getSize(), equalTo(64));
+        assertThat(queue.isFull(), equalTo(true));
+
+        List<String> dequeued = new ArrayList<>();
+        dequeued.add(queue.dequeue().getValue());
+        queue.dequeueBatch(10).forEach(e -> dequeued.add(e.getValue()));
+        while (queue.getSize() > 0) {
+            queue.dequeueBatch(100).forEach(e -> dequeued.add(e.getValue()));
+        }
+
+        assertThat(dequeued, equalTo(IntStream.range(0, 64).mapToObj(Integer::toString).collect(Collectors.toList())));
+    }
+
+    @Test
+    public void dequeueBatchReturnsAvailableEntries() throws WriteFailedException, InterruptedException {
+        DispatchQueue<String> queue = new RingBufferDispatchQueue<>(16);
+        queue.enqueue("a", "key1");
+        queue.enqueue("b", "key2");
+
+        List<Map.Entry<String, String>> batch = queue.dequeueBatch(10);
+        assertThat(batch.size(), equalTo(2));
+        assertThat(batch.get(0).getKey(), equalTo("key1"));
+        assertThat(batch.get(1).getKey(), equalTo("key2"));
+    }
+
+    @Test
+    public void blocksWhenFull() throws WriteFailedException, InterruptedException {
+        DispatchQueue<String> queue = new RingBufferDispatchQueue<>(1);
+        queue.enqueue("a", "key1");
+
+        AtomicBoolean didQueue = new AtomicBoolean(false);
+        CompletableFuture.runAsync(() -> {
+            try {
+                queue.enqueue("b", "key2");
+                didQueue.set(true);
+            } catch (WriteFailedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try {
+            await().pollDelay(10, TimeUnit.MILLISECONDS)
+                    .atMost(100, TimeUnit.MILLISECONDS)
+                    .until(didQueue::get);
+            fail("Enqueue happened but we should have been blocking");
+        } catch (ConditionTimeoutException expected) {
+        }
+
+        assertThat(queue.dequeue().getValue(), equalTo("a"));
+        await().atMost(1, TimeUnit.SECONDS).until(didQueue::get);
+        assertThat(queue.dequeue().getValue(), equalTo("b"));
+    }
+
+    @Test(timeout = 60000)
+    public void canQueueAndDequeueWithManyProducersAndConsumers() throws InterruptedException {
+        DispatchQueue<Integer> queue = new RingBufferDispatchQueue<>(128);
+        int numProducers = 8;
+        int numConsumers = 4;
+        int entriesPerProducer = 10_000;
+
+        Map<Integer, Boolean> received = new ConcurrentHashMap<>();
+        for (int c = 0; c < numConsumers; c++) {
+            Thread consumer = new Thread(() -> {
+                try {
+                    while (true) {
+                        queue.dequeueBatch(32).forEach(e -> received.put(e.getValue(), Boolean.TRUE));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+
+        for (int p = 0; p < numProducers; p++) {
+            final int offset = p * entriesPerProducer;
+            CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < entriesPerProducer; i++) {
+                    try {
+                        queue.enqueue(offset + i, null);
+                    } catch (WriteFailedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+
+        await().atMost(1, TimeUnit.MINUTES).until(received::size, equalTo(numProducers * entriesPerProducer));
+    }
+}
@@ -34,6 +34,7 @@ import static org.opennms.core.ipc.sink.api.Message.SINK_METRIC_CONSUMER_DOMAIN;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,9 +46,11 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -58,6 +61,7 @@ import org.opennms.core.ipc.common.kafka.OnmsKafkaConfigProvider;
 import org.opennms.core.ipc.common.kafka.Utils;
 import org.opennms.core.ipc.sink.api.Message;
 import org.opennms.core.ipc.sink.api.MessageConsumerManager;
+import org.opennms.core.ipc.sink.api.MessageOwnership;
 import org.opennms.core.ipc.sink.api.SinkModule;
 import org.opennms.core.ipc.sink.common.AbstractMessageConsumerManager;
 import org.opennms.core.ipc.sink.model.SinkMessageProtos;
@@ -157,7 +161,21 @@ public class KafkaMessageConsumerManager extends AbstractMessageConsumerManager
         public void run() {
             Logging.putPrefix(MessageConsumerManager.LOG_PREFIX);
             try {
-                consumer.subscribe(Arrays.asList(topic));
+                // Messages are keyed by the module's routing key so every partition, and all of the messages routed to
+                // it, is owned by a single consumer until the membership of the group changes
+                consumer.subscribe(Arrays.asList(topic), new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                        LOG.info("Handing off partitions {} of topic {}", partitions, topic);
+                        MessageOwnership.ownershipChanged();
+                    }
+
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                        LOG.info("Taking ownership of partitions {} of topic {}", partitions, topic);
+                        MessageOwnership.ownershipChanged();
+                    }
+                });
                 while (!closed.get()) {
                     ConsumerRecords<String, byte[]> records = consumer.poll(100);
                     for (ConsumerRecord<String, byte[]> record : records) {
@@ -270,7 +288,7 @@ public class KafkaMessageConsumerManager extends AbstractMessageConsumerManager
             for (int i = 0; i < numConsumerThreads; i++) {
                 final KafkaConsumerRunner consumerRunner = new KafkaConsumerRunner(module);
                 executor.execute(consumerRunner);
-                consumerRunners.add(new KafkaConsumerRunner(module));
+                consumerRunners.add(consumerRunner);
             }
 
             consumerRunnersByModule.put(module, consumerRunners);
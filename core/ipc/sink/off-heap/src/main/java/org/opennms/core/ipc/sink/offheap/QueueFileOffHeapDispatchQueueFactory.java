@@ -41,6 +41,8 @@ import org.opennms.core.ipc.sink.api.DispatchQueueFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+
 public class QueueFileOffHeapDispatchQueueFactory implements DispatchQueueFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(QueueFileOffHeapDispatchQueueFactory.class);
@@ -50,6 +52,11 @@ public class QueueFileOffHeapDispatchQueueFactory implements DispatchQueueFactor
     private final int batchSize;
     private final Path baseFilePath;
 
+    private boolean segmented = false;
+    private int segmentSize = (int) convertToBytes("32MB");
+    private int drainThreads = 1;
+    private MetricRegistry metrics = new MetricRegistry();
+
     private final Map<String, DispatchQueue<?>> queues = new ConcurrentHashMap<>();
 
     public QueueFileOffHeapDispatchQueueFactory(int inMemoryEntrySize, int batchSize, String offHeapSize,
@@ -79,6 +86,10 @@ public class QueueFileOffHeapDispatchQueueFactory implements DispatchQueueFactor
 
         return (DispatchQueue<T>) queues.computeIfAbsent(moduleName, (k) -> {
             try {
+                if (segmented) {
+                    return new SegmentedOffHeapDispatchQueue<>(serializer, deserializer, k, baseFilePath,
+                            inMemoryEntrySize, offHeapSize, segmentSize, drainThreads, metrics);
+                }
                 return new QueueFileOffHeapDispatchQueue<>(serializer, deserializer, k, baseFilePath,
                         inMemoryEntrySize, batchSize,
                         offHeapSize);
@@ -88,6 +99,30 @@ public class QueueFileOffHeapDispatchQueueFactory implements DispatchQueueFactor
         });
     }
 
+    /**
+     * Use the segmented, memory-mapped {@link SegmentedOffHeapDispatchQueue} instead of the tape based
+     * {@link QueueFileOffHeapDispatchQueue}.
+     */
+    public void setSegmented(boolean segmented) {
+        this.segmented = segmented;
+    }
+
+    public void setSegmentSize(String segmentSize) {
+        final long bytes = convertToBytes(segmentSize);
+        if (bytes <= 0 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+        }
+        this.segmentSize = (int) bytes;
+    }
+
+    public void setDrainThreads(int drainThreads) {
+        this.drainThreads = drainThreads;
+    }
+
+    public void setMetricRegistry(MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
     private static long convertToBytes(String sizeWithSuffix) {
         if (sizeWithSuffix == null || sizeWithSuffix.length() == 0) {
             return 0;
@@ -0,0 +1,720 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.offheap;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.joda.time.Duration;
+import org.opennms.core.ipc.sink.api.DispatchQueue;
+import org.opennms.core.ipc.sink.api.WriteFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+
+/**
+ * A {@link DispatchQueue} that first attempts to queue items in memory and upon overflowing the allocated in-memory
+ * queue appends items to a log of memory-mapped segment files.
+ * <p>
+ * Producers append to the active segment without taking a lock by atomically reserving a region of the segment and
+ * writing their frame into it. Once a segment is full it is sealed and handed to one of the drain threads which moves
+ * its messages to the in-memory queue. While no sealed segment is waiting, the drain threads read the frames which were
+ * completely written to the active segment, so messages don't sit in a partially filled segment. Once the active
+ * segment was read completely it is retired and the next segment is only created when messages overflow again. A
+ * segment file is only deleted and unmapped after all of its messages have been acknowledged via
+ * {@link #acknowledge(Map.Entry)}, so messages which were read from disk but not dispatched before a crash are replayed
+ * on the next start.
+ * <p>
+ * Each message is stored in a frame consisting of the frame length (4 bytes), the time the message was enqueued
+ * (8 bytes) and the serialized payload. The length is written last and acts as the commit marker of the frame.
+ * <p>
+ * Messages within a segment are dispatched in order. When more than one drain thread is configured, segments are
+ * drained concurrently and ordering across segments is not preserved.
+ *
+ * @param <T> the type being queued
+ */
+public class SegmentedOffHeapDispatchQueue<T> implements DispatchQueue<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentedOffHeapDispatchQueue.class);
+    private final RateLimitedLog RATE_LIMITED_LOGGER = RateLimitedLog
+            .withRateLimit(LOG)
+            .maxRate(5)
+            .every(Duration.standardSeconds(30))
+            .build();
+
+    private static final int FRAME_HEADER_SIZE_IN_BYTES = Integer.BYTES + Long.BYTES;
+    private static final String FILE_EXTENSION = ".segment";
+    private static final long DRAIN_POLL_INTERVAL_MS = 100;
+    private static final Consumer<MappedByteBuffer> UNMAPPER = createUnmapper();
+
+    private final Function<T, byte[]> serializer;
+    private final Function<byte[], T> deserializer;
+    private final String moduleName;
+    private final BlockingQueue<Map.Entry<String, T>> inMemoryQueue;
+
+    private final Path segmentDirectory;
+    private final long maxFileSizeInBytes;
+    private final int segmentSizeInBytes;
+
+    // The segment producers are currently appending to, null until messages overflow
+    private final AtomicReference<Segment> activeSegment = new AtomicReference<>();
+    // Sealed segments waiting for a drain thread
+    private final BlockingQueue<Segment> sealedSegments = new LinkedBlockingQueue<>();
+    // All segments which have not been deleted yet, ordered by sequence
+    private final ConcurrentSkipListMap<Long, Segment> liveSegments = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextSequence = new AtomicLong(0);
+    // Only guards rolling over to a new segment, appending does not require it
+    private final Object rollLock = new Object();
+
+    private final AtomicLong backlogBytes = new AtomicLong(0);
+    // Messages written to segments which were not moved to the in-memory queue yet
+    private final AtomicInteger messagesOffHeap = new AtomicInteger(0);
+    private final Object capacityMonitor = new Object();
+    private volatile boolean isFull = false;
+
+    private final Meter drainMeter;
+
+    public SegmentedOffHeapDispatchQueue(Function<T, byte[]> serializer, Function<byte[], T> deserializer,
+                                         String moduleName, Path filePath, int inMemoryQueueSize,
+                                         long maxFileSizeInBytes, int segmentSizeInBytes, int numDrainThreads,
+                                         MetricRegistry metrics) throws IOException {
+        Objects.requireNonNull(serializer);
+        Objects.requireNonNull(deserializer);
+        Objects.requireNonNull(moduleName);
+        Objects.requireNonNull(metrics);
+
+        if (inMemoryQueueSize < 1) {
+            throw new IllegalArgumentException("In memory queue size must be greater than 0");
+        }
+
+        if (maxFileSizeInBytes < 0) {
+            throw new IllegalArgumentException("Max file size must be either 0 or a positive integer");
+        }
+
+        if (segmentSizeInBytes <= FRAME_HEADER_SIZE_IN_BYTES) {
+            throw new IllegalArgumentException("Segment size must be greater than " + FRAME_HEADER_SIZE_IN_BYTES);
+        }
+
+        if (numDrainThreads < 1) {
+            throw new IllegalArgumentException("Number of drain threads must be greater than 0");
+        }
+
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.moduleName = moduleName;
+        this.maxFileSizeInBytes = maxFileSizeInBytes;
+        this.segmentSizeInBytes = segmentSizeInBytes;
+
+        inMemoryQueue = new ArrayBlockingQueue<>(inMemoryQueueSize);
+
+        metrics.register(MetricRegistry.name(moduleName, "offheap", "backlog-bytes"),
+                (Gauge<Long>) backlogBytes::get);
+        metrics.register(MetricRegistry.name(moduleName, "offheap", "oldest-message-age"),
+                (Gauge<Long>) this::getOldestMessageAgeMs);
+        drainMeter = metrics.meter(MetricRegistry.name(moduleName, "offheap", "drained"));
+
+        // Setting the max file size to 0 or less will disable the off-heap portion of this queue
+        if (maxFileSizeInBytes > 0) {
+            Objects.requireNonNull(filePath);
+            segmentDirectory = filePath.resolve(moduleName + "-segments");
+            Files.createDirectories(segmentDirectory);
+
+            recoverSegments();
+
+            for (int i = 0; i < numDrainThreads; i++) {
+                final Thread drainThread = new Thread(this::drain, "SegmentedOffHeapDispatchQueue-" + moduleName + "-drain-" + i);
+                drainThread.setDaemon(true);
+                drainThread.start();
+            }
+        } else {
+            segmentDirectory = null;
+        }
+    }
+
+    /**
+     * When enqueueing we prefer the in-memory queue unless there are messages off-heap waiting to be read. If that fails
+     * (because it is full) we append the message to the active segment provided the configured off-heap size is not
+     * exceeded. If off-heap queueing is not configured we block and wait for capacity in-memory.
+     */
+    @Override
+    public EnqueueResult enqueue(T message, String key) throws WriteFailedException {
+        final Map.Entry<String, T> msgEntry = new AbstractMap.SimpleImmutableEntry<>(key, message);
+
+        if (segmentDirectory == null) {
+            LOG.trace("Enqueueing {} with key {} in-memory since there is no off-heap queue configured", message, key);
+            try {
+                inMemoryQueue.put(msgEntry);
+            } catch (InterruptedException e) {
+                throw new WriteFailedException(e);
+            }
+            return EnqueueResult.IMMEDIATE;
+        }
+
+        if (messagesOffHeap.get() == 0 && inMemoryQueue.offer(msgEntry)) {
+            LOG.trace("Enqueueing {} with key {} in-memory", message, key);
+            return EnqueueResult.IMMEDIATE;
+        }
+
+        final byte[] payload;
+        try {
+            payload = serializer.apply(message);
+        } catch (Exception e) {
+            RATE_LIMITED_LOGGER.warn("Failed to serialize message for module {}", moduleName, e);
+            throw new WriteFailedException(e);
+        }
+
+        LOG.trace("Appending message {} with key {} to off-heap segment", message, key);
+        append(payload);
+        return EnqueueResult.DEFERRED;
+    }
+
+    private void append(byte[] payload) throws WriteFailedException {
+        final int frameSize = FRAME_HEADER_SIZE_IN_BYTES + payload.length;
+        try {
+            reserveCapacity(frameSize);
+        } catch (InterruptedException e) {
+            throw new WriteFailedException(e);
+        }
+
+        while (true) {
+            final Segment segment = activeSegment.get();
+            if (segment != null) {
+                // Register as writer before checking if the segment was sealed, the drain thread waits for all
+                // registered writers to finish before reading the segment
+                segment.pendingWriters.incrementAndGet();
+                try {
+                    if (!segment.sealed) {
+                        final int offset = segment.reserve(frameSize);
+                        if (offset >= 0) {
+                            segment.write(offset, payload);
+                            messagesOffHeap.incrementAndGet();
+                            return;
+                        }
+                    }
+                } finally {
+                    segment.pendingWriters.decrementAndGet();
+                }
+            }
+
+            try {
+                roll(segment, frameSize);
+            } catch (IOException e) {
+                backlogBytes.addAndGet(-frameSize);
+                RATE_LIMITED_LOGGER.warn("Failed to create new segment for module {}", moduleName, e);
+                throw new WriteFailedException(e);
+            }
+        }
+    }
+
+    private void reserveCapacity(int frameSize) throws InterruptedException {
+        while (true) {
+            final long current = backlogBytes.get();
+            // Always allow a single frame to be written, even if it exceeds the configured size on its own
+            if (current == 0 || current + frameSize <= maxFileSizeInBytes) {
+                if (backlogBytes.compareAndSet(current, current + frameSize)) {
+                    markNotFull();
+                    return;
+                }
+                continue;
+            }
+
+            synchronized (capacityMonitor) {
+                if (backlogBytes.get() + frameSize > maxFileSizeInBytes) {
+                    markFull();
+                    LOG.trace("Waiting for capacity... Need {} bytes but backlog is at {} of {} bytes", frameSize,
+                            backlogBytes.get(), maxFileSizeInBytes);
+                    capacityMonitor.wait(TimeUnit.SECONDS.toMillis(1));
+                }
+            }
+        }
+    }
+
+    private void markFull() {
+        if (!isFull) {
+            RATE_LIMITED_LOGGER.info("Off heap segments for module {} are now full", moduleName);
+            isFull = true;
+        }
+    }
+
+    private void markNotFull() {
+        if (isFull) {
+            RATE_LIMITED_LOGGER.info("Off heap segments for module {} are no longer full", moduleName);
+            isFull = false;
+        }
+    }
+
+    /**
+     * Replaces the given segment, if any, with a new active segment and hands it over to the drain threads. Does
+     * nothing if another thread already rolled over the given segment.
+     */
+    private void roll(Segment expected, int minimumSize) throws IOException {
+        synchronized (rollLock) {
+            if (activeSegment.get() != expected) {
+                return;
+            }
+            // Seal before publishing the new segment, so a drain thread which sees the new segment also sees the
+            // sealed one and reads it first
+            if (expected != null) {
+                seal(expected);
+            }
+            activeSegment.set(createSegment(Math.max(segmentSizeInBytes, minimumSize)));
+        }
+    }
+
+    /**
+     * Hands the given segment over to the drain threads without creating a new active segment. Does nothing if
+     * another thread already rolled over the given segment.
+     */
+    private void retire(Segment expected) {
+        synchronized (rollLock) {
+            if (activeSegment.get() != expected) {
+                return;
+            }
+            activeSegment.set(null);
+            seal(expected);
+        }
+    }
+
+    private void seal(Segment segment) {
+        // Might already be sealed if creating the next segment failed before
+        if (!segment.sealed) {
+            segment.sealed = true;
+            sealedSegments.add(segment);
+        }
+    }
+
+    private Segment createSegment(int size) throws IOException {
+        final long sequence = nextSequence.getAndIncrement();
+        final Path path = segmentDirectory.resolve(String.format("%020d%s", sequence, FILE_EXTENSION));
+        final Segment segment = new Segment(sequence, path, size);
+        liveSegments.put(sequence, segment);
+        return segment;
+    }
+
+    /**
+     * Loads the segments left behind by a previous run. All frames which have been fully written are queued again.
+     */
+    private void recoverSegments() throws IOException {
+        final List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(segmentDirectory, "*" + FILE_EXTENSION)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(null);
+
+        for (Path path : paths) {
+            final String fileName = path.getFileName().toString();
+            try {
+                final long sequence = Long.parseLong(fileName.substring(0, fileName.length() - FILE_EXTENSION.length()));
+                final Segment segment = new Segment(sequence, path, (int) Files.size(path));
+                final int messageCount = segment.recover();
+                if (messageCount == 0) {
+                    delete(segment);
+                    continue;
+                }
+                segment.sealed = true;
+                liveSegments.put(sequence, segment);
+                sealedSegments.add(segment);
+                backlogBytes.addAndGet(segment.position.get());
+                messagesOffHeap.addAndGet(messageCount);
+                nextSequence.set(Math.max(nextSequence.get(), sequence + 1));
+                LOG.debug("Recovered {} messages from segment {} for module {}", messageCount, path, moduleName);
+            } catch (Exception e) {
+                LOG.warn("Could not recover segment {} for module {}. Deleting it.", path, moduleName, e);
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                final Segment segment = sealedSegments.poll(DRAIN_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (segment != null) {
+                    drain(segment);
+                } else if (inMemoryQueue.remainingCapacity() > 0) {
+                    // Nothing sealed yet, don't let messages sit in a partially filled segment while we are idle
+                    drainActive();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                RATE_LIMITED_LOGGER.warn("Exception while draining off-heap segments for module {}", moduleName, e);
+            }
+        }
+    }
+
+    private void drain(Segment segment) throws InterruptedException {
+        synchronized (segment) {
+            // Wait for writers which reserved space before the segment was sealed
+            while (segment.pendingWriters.get() > 0) {
+                Thread.yield();
+            }
+            read(segment, segment.position.get());
+            segment.fullyRead = true;
+        }
+        maybeDelete(segment);
+    }
+
+    /**
+     * Reads the frames which were completely written to the active segment and retires the segment once it was read
+     * completely, so that producers go back to the in-memory queue.
+     */
+    private void drainActive() throws InterruptedException {
+        final Segment segment = activeSegment.get();
+        if (segment == null || !sealedSegments.isEmpty()) {
+            // Older segments must be read first
+            return;
+        }
+        synchronized (segment) {
+            if (segment.sealed) {
+                // Already handed over to the drain threads
+                return;
+            }
+            // All writers which reserved space below the limit registered before reserving it, so if there are no
+            // registered writers after reading the limit, all frames below it are complete
+            final int limit = segment.position.get();
+            if (segment.pendingWriters.get() > 0) {
+                return;
+            }
+            read(segment, limit);
+            if (segment.readOffset >= limit) {
+                retire(segment);
+            }
+        }
+    }
+
+    /**
+     * Moves the frames between the read offset of the segment and the given limit to the in-memory queue.
+     */
+    private void read(Segment segment, int limit) throws InterruptedException {
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = segment.readOffset;
+        while (offset + FRAME_HEADER_SIZE_IN_BYTES <= limit) {
+            final int frameSize = buffer.getInt(offset);
+            if (frameSize < FRAME_HEADER_SIZE_IN_BYTES || offset + frameSize > limit) {
+                break;
+            }
+            final byte[] payload = new byte[frameSize - FRAME_HEADER_SIZE_IN_BYTES];
+            buffer.position(offset + FRAME_HEADER_SIZE_IN_BYTES);
+            buffer.get(payload);
+            offset += frameSize;
+
+            final T message;
+            try {
+                message = deserializer.apply(payload);
+            } catch (Exception e) {
+                RATE_LIMITED_LOGGER.warn("Failed to deserialize message from segment {} for module {}. Skipping it.",
+                        segment.path, moduleName, e);
+                segment.readOffset = offset;
+                messagesOffHeap.decrementAndGet();
+                continue;
+            }
+
+            segment.unacknowledged.incrementAndGet();
+            try {
+                inMemoryQueue.put(new SegmentEntry<>(message, segment));
+            } catch (InterruptedException e) {
+                segment.unacknowledged.decrementAndGet();
+                throw e;
+            }
+            segment.readOffset = offset;
+            // Only count the message as read once it is queued, so producers can't overtake it
+            messagesOffHeap.decrementAndGet();
+            drainMeter.mark();
+        }
+    }
+
+    private void maybeDelete(Segment segment) {
+        if (!segment.fullyRead || segment.unacknowledged.get() > 0 || !segment.deleted.compareAndSet(false, true)) {
+            return;
+        }
+
+        liveSegments.remove(segment.sequence);
+        delete(segment);
+
+        synchronized (capacityMonitor) {
+            backlogBytes.addAndGet(-segment.position.get());
+            capacityMonitor.notifyAll();
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            RATE_LIMITED_LOGGER.warn("Failed to delete segment {} for module {}", segment.path, moduleName, e);
+        }
+    }
+
+    /**
+     * Messages are always taken from the head of the in-memory queue. The drain threads move messages from the
+     * off-heap segments to the in-memory queue as space becomes available.
+     */
+    @Override
+    public Map.Entry<String, T> dequeue() throws InterruptedException {
+        LOG.trace("Waiting for an entry from in-memory queue...");
+        return inMemoryQueue.take();
+    }
+
+    @Override
+    public List<Map.Entry<String, T>> dequeueBatch(int maxEntries) throws InterruptedException {
+        final List<Map.Entry<String, T>> batch = new ArrayList<>(Math.min(Math.max(maxEntries, 1), inMemoryQueue.size() + 1));
+        batch.add(inMemoryQueue.take());
+        if (maxEntries > 1) {
+            inMemoryQueue.drainTo(batch, maxEntries - 1);
+        }
+        return batch;
+    }
+
+    /**
+     * Marks a message which was read from an off-heap segment as dispatched. The segment is deleted once all of its
+     * messages were acknowledged.
+     */
+    @Override
+    public void acknowledge(Map.Entry<String, T> entry) {
+        if (entry instanceof SegmentEntry) {
+            final Segment segment = ((SegmentEntry<T>) entry).segment;
+            if (segment.unacknowledged.decrementAndGet() <= 0) {
+                maybeDelete(segment);
+            }
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        if (segmentDirectory == null) {
+            return inMemoryQueue.remainingCapacity() <= 0;
+        }
+        return isFull;
+    }
+
+    @Override
+    public int getSize() {
+        return inMemoryQueue.size() + messagesOffHeap.get();
+    }
+
+    /**
+     * @return the number of bytes of all segments which have not been deleted yet
+     */
+    public long getBacklogBytes() {
+        return backlogBytes.get();
+    }
+
+    /**
+     * @return the age in milliseconds of the oldest message which is still kept in a segment, or 0 if there is none
+     */
+    public long getOldestMessageAgeMs() {
+        for (Segment segment : liveSegments.values()) {
+            final long firstTimestamp = segment.firstTimestamp.get();
+            if (firstTimestamp > 0) {
+                return Math.max(0, System.currentTimeMillis() - firstTimestamp);
+            }
+        }
+        return 0;
+    }
+
+    @VisibleForTesting
+    int getSegmentCount() {
+        return liveSegments.size();
+    }
+
+    /**
+     * Mapped buffers are only unmapped once they are garbage collected, which can take long for buffers that survived
+     * a few collections. Since there is no public API to unmap them, we use the cleaner of the buffer: via
+     * Unsafe#invokeCleaner on Java 9 and later or the Cleaner of the DirectByteBuffer on Java 8. If neither is
+     * available the buffer is left to the garbage collector.
+     */
+    private static Consumer<MappedByteBuffer> createUnmapper() {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe = theUnsafe.get(null);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (Exception e) {
+                    LOG.debug("Failed to unmap buffer", e);
+                }
+            };
+        } catch (Exception e) {
+            LOG.trace("Unsafe#invokeCleaner is not available", e);
+        }
+
+        try {
+            final Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                try {
+                    final Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleanMethod.invoke(cleaner);
+                    }
+                } catch (Exception e) {
+                    LOG.debug("Failed to unmap buffer", e);
+                }
+            };
+        } catch (Exception e) {
+            LOG.warn("Mapped buffers can not be unmapped explicitly. Segments will be unmapped when garbage collected.", e);
+            return buffer -> {};
+        }
+    }
+
+    /**
+     * An entry which was read from an off-heap segment and must be acknowledged before the segment can be deleted.
+     */
+    private static final class SegmentEntry<T> extends AbstractMap.SimpleImmutableEntry<String, T> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Segment segment;
+
+        private SegmentEntry(T message, Segment segment) {
+            super(null, message);
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * A single memory-mapped file of the append log.
+     */
+    private static final class Segment {
+        private final long sequence;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+
+        private final AtomicInteger position = new AtomicInteger(0);
+        private final AtomicInteger pendingWriters = new AtomicInteger(0);
+        private final AtomicInteger unacknowledged = new AtomicInteger(0);
+        private final AtomicLong firstTimestamp = new AtomicLong(0);
+        private final AtomicBoolean deleted = new AtomicBoolean(false);
+        private volatile boolean sealed = false;
+        private volatile boolean fullyRead = false;
+        // Only accessed by the drain thread holding the lock on this segment
+        private int readOffset = 0;
+
+        private Segment(long sequence, Path path, int capacity) throws IOException {
+            this.sequence = sequence;
+            this.path = path;
+            this.capacity = capacity;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        /**
+         * @return the offset of the reserved region or -1 if the frame does not fit into this segment
+         */
+        private int reserve(int frameSize) {
+            while (true) {
+                final int current = position.get();
+                if (current + frameSize > capacity) {
+                    return -1;
+                }
+                if (position.compareAndSet(current, current + frameSize)) {
+                    return current;
+                }
+            }
+        }
+
+        private void write(int offset, byte[] payload) {
+            final long now = System.currentTimeMillis();
+            firstTimestamp.compareAndSet(0, now);
+
+            final ByteBuffer target = buffer.duplicate();
+            target.putLong(offset + Integer.BYTES, now);
+            target.position(offset + FRAME_HEADER_SIZE_IN_BYTES);
+            target.put(payload);
+            // The length marks the frame as complete
+            target.putInt(offset, FRAME_HEADER_SIZE_IN_BYTES + payload.length);
+        }
+
+        /**
+         * Scans the frames written by a previous run and restores the position after the last complete frame.
+         *
+         * @return the number of complete frames
+         */
+        private int recover() {
+            int offset = 0;
+            int count = 0;
+            while (offset + FRAME_HEADER_SIZE_IN_BYTES <= capacity) {
+                final int frameSize = buffer.getInt(offset);
+                if (frameSize < FRAME_HEADER_SIZE_IN_BYTES || offset + frameSize > capacity) {
+                    break;
+                }
+                if (count == 0) {
+                    firstTimestamp.set(buffer.getLong(offset + Integer.BYTES));
+                }
+                offset += frameSize;
+                count++;
+            }
+            position.set(offset);
+            return count;
+        }
+
+        private void delete() throws IOException {
+            channel.close();
+            // The segment is no longer read or written, release the mapping right away instead of waiting for the
+            // buffer to be garbage collected
+            UNMAPPER.accept(buffer);
+            Files.deleteIfExists(path);
+        }
+    }
+}
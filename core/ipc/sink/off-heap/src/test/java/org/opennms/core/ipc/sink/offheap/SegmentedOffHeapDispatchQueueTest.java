@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.offheap;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.core.ipc.sink.api.DispatchQueue;
+import org.opennms.core.ipc.sink.api.WriteFailedException;
+
+import com.codahale.metrics.MetricRegistry;
+import com.jayway.awaitility.core.ConditionTimeoutException;
+
+public class SegmentedOffHeapDispatchQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void canQueueAndDequeue() throws IOException, WriteFailedException, InterruptedException {
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "canQueueAndDequeue", Paths.get(folder.newFolder().toURI()), 1, 10000, 1024, 1,
+                new MetricRegistry());
+
+        // Since size is 1, the first entry should be in-memory and the second entry should be on disk
+        assertThat(queue.enqueue("msg1", "key1"), equalTo(DispatchQueue.EnqueueResult.IMMEDIATE));
+        assertThat(queue.enqueue("msg2", "key2"), equalTo(DispatchQueue.EnqueueResult.DEFERRED));
+
+        assertThat(queue.getSize(), equalTo(2));
+
+        assertThat(dequeueAndAcknowledge(queue), equalTo("msg1"));
+        assertThat(dequeueAndAcknowledge(queue), equalTo("msg2"));
+    }
+
+    @Test
+    public void dequeuesSegmentsInOrderWithSingleDrainThread() throws IOException, WriteFailedException, InterruptedException {
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "dequeuesInOrder", Paths.get(folder.newFolder().toURI()), 100, 10_000_000, 4096, 1,
+                new MetricRegistry());
+
+        int numEntries = 10020;
+        List<String> toQueue = IntStream.range(0, numEntries)
+                .boxed()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+
+        for (String s : toQueue) {
+            queue.enqueue(s, "key" + s);
+        }
+
+        List<String> dequeued = new ArrayList<>();
+        while (dequeued.size() < numEntries) {
+            dequeued.add(dequeueAndAcknowledge(queue));
+        }
+
+        assertThat(dequeued, equalTo(toQueue));
+    }
+
+    @Test
+    public void canDrainWithMultipleThreads() throws IOException, WriteFailedException, InterruptedException {
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "canDrainWithMultipleThreads", Paths.get(folder.newFolder().toURI()), 10, 10_000_000, 1024, 4,
+                new MetricRegistry());
+
+        int numEntries = 5000;
+        List<String> toQueue = IntStream.range(0, numEntries)
+                .boxed()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+
+        for (String s : toQueue) {
+            queue.enqueue(s, "key" + s);
+        }
+
+        List<String> dequeued = new ArrayList<>();
+        while (dequeued.size() < numEntries) {
+            dequeued.add(dequeueAndAcknowledge(queue));
+        }
+
+        // Ordering across segments is not guaranteed with multiple drain threads
+        dequeued.sort(null);
+        List<String> expected = new ArrayList<>(toQueue);
+        expected.sort(null);
+        assertThat(dequeued, equalTo(expected));
+    }
+
+    @Test
+    public void deletesSegmentsAfterAcknowledgement() throws IOException, WriteFailedException, InterruptedException {
+        SegmentedOffHeapDispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "deletesSegments", Paths.get(folder.newFolder().toURI()), 1, 10000, 1024, 1,
+                new MetricRegistry());
+
+        queue.enqueue("msg1", "key1");
+        queue.enqueue("msg2", "key2");
+        await().atMost(1, TimeUnit.SECONDS).until(() -> queue.getBacklogBytes() > 0);
+
+        // The first entry is kept in-memory, the second one is read from a segment
+        assertThat(queue.dequeue().getValue(), equalTo("msg1"));
+        Map.Entry<String, String> entry = queue.dequeue();
+        assertThat(entry.getValue(), equalTo("msg2"));
+
+        // The segment is kept until the entry is acknowledged
+        assertThat(queue.getBacklogBytes() > 0, equalTo(true));
+        queue.acknowledge(entry);
+        await().atMost(1, TimeUnit.SECONDS).until(() -> queue.getBacklogBytes(), equalTo(0L));
+    }
+
+    @Test
+    public void returnsToInMemoryQueueOnceSegmentsAreRead() throws IOException, WriteFailedException, InterruptedException {
+        SegmentedOffHeapDispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "returnsToInMemory", Paths.get(folder.newFolder().toURI()), 2, 10000, 1024, 1,
+                new MetricRegistry());
+
+        assertThat(queue.enqueue("msg1", "key1"), equalTo(DispatchQueue.EnqueueResult.IMMEDIATE));
+        assertThat(queue.enqueue("msg2", "key2"), equalTo(DispatchQueue.EnqueueResult.IMMEDIATE));
+        assertThat(queue.enqueue("msg3", "key3"), equalTo(DispatchQueue.EnqueueResult.DEFERRED));
+        assertThat(queue.getSegmentCount(), equalTo(1));
+
+        // The partially filled segment is read while the drain thread is idle
+        assertThat(dequeueAndAcknowledge(queue), equalTo("msg1"));
+        assertThat(dequeueAndAcknowledge(queue), equalTo("msg2"));
+        Map.Entry<String, String> entry = queue.dequeue();
+        assertThat(entry.getValue(), equalTo("msg3"));
+
+        // Nothing is left to read off-heap, so new messages are queued in-memory again even though the segment
+        // was not acknowledged yet, and no new segment is created
+        await().atMost(1, TimeUnit.SECONDS).until(queue::getSize, equalTo(0));
+        assertThat(queue.enqueue("msg4", "key4"), equalTo(DispatchQueue.EnqueueResult.IMMEDIATE));
+        assertThat(queue.getSegmentCount(), equalTo(1));
+
+        queue.acknowledge(entry);
+        await().atMost(1, TimeUnit.SECONDS).until(queue::getSegmentCount, equalTo(0));
+        assertThat(queue.getBacklogBytes(), equalTo(0L));
+        assertThat(dequeueAndAcknowledge(queue), equalTo("msg4"));
+    }
+
+    @Test
+    public void blocksWhenFull() throws WriteFailedException, IOException, InterruptedException {
+        SegmentedOffHeapDispatchQueue<byte[]> queue = new SegmentedOffHeapDispatchQueue<>(b -> b, b -> b,
+                "blocksWhenFull", Paths.get(folder.newFolder().toURI()), 1, 100, 1024, 1,
+                new MetricRegistry());
+
+        // Fill the in-memory queue and the segments
+        queue.enqueue(new byte[0], "key1");
+        queue.enqueue(new byte[80], "key2");
+
+        AtomicBoolean didQueue = new AtomicBoolean(false);
+        CompletableFuture.runAsync(() -> {
+            // Now try to queue again and verify that we block
+            try {
+                queue.enqueue(new byte[10], "key3");
+                didQueue.set(true);
+            } catch (WriteFailedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try {
+            await().pollDelay(10, TimeUnit.MILLISECONDS)
+                    .atMost(100, TimeUnit.MILLISECONDS)
+                    .until(didQueue::get);
+            fail("Enqueue happened but we should have been blocking");
+        } catch (ConditionTimeoutException expected) {
+        }
+        assertThat(queue.isFull(), equalTo(true));
+
+        // Dispatching the entries frees up space
+        dequeueAndAcknowledge(queue);
+        dequeueAndAcknowledge(queue);
+
+        await().atMost(2, TimeUnit.SECONDS).until(didQueue::get);
+    }
+
+    @Test
+    public void canDequeueOffHeapAfterRestart() throws IOException, WriteFailedException, InterruptedException {
+        Path path = Paths.get(folder.newFolder().toURI());
+        String moduleName = "canQueueAfterRestart";
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                moduleName, path, 1, 10000, 1024, 1, new MetricRegistry());
+
+        assertThat(queue.enqueue("msg1", "key1"), equalTo(DispatchQueue.EnqueueResult.IMMEDIATE));
+        assertThat(queue.enqueue("msg2", "key2"), equalTo(DispatchQueue.EnqueueResult.DEFERRED));
+
+        // Reinitialize to simulate coming back up after restart
+        queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                moduleName, path, 1, 10000, 1024, 1, new MetricRegistry());
+
+        // We will have lost the in-memory portion of the queue
+        assertThat(dequeueAndAcknowledge(queue), equalTo("msg2"));
+    }
+
+    private static <T> T dequeueAndAcknowledge(DispatchQueue<T> queue) throws InterruptedException {
+        Map.Entry<String, T> entry = queue.dequeue();
+        queue.acknowledge(entry);
+        return entry.getValue();
+    }
+}
@@ -70,6 +70,25 @@ public class SystemProperties {
         return getProperty(propertyName, defaultValue, resolver);
     }
 
+    public static Boolean getBoolean(String propertyName) {
+        return getBoolean(propertyName, null);
+    }
+
+    public static Boolean getBoolean(String propertyName, boolean defaultValue) {
+        Boolean result = getBoolean(propertyName, null);
+        return (result == null) ? Boolean.valueOf(defaultValue) : result;
+    }
+
+    public static Boolean getBoolean(String propertyName, Boolean defaultValue) {
+        Function<String, Boolean> resolver = (propertyValue) -> {
+            if ("true".equalsIgnoreCase(propertyValue) || "false".equalsIgnoreCase(propertyValue)) {
+                return Boolean.valueOf(propertyValue);
+            }
+            throw new IllegalArgumentException("not a boolean: " + propertyValue);
+        };
+        return getProperty(propertyName, defaultValue, resolver);
+    }
+
     private static <T> T getProperty(String propertyName, T defaultValue, Function<String, T> transformer) {
         String valueAsString = System.getProperty(propertyName);
         if (valueAsString == null) {
@@ -77,7 +96,7 @@ public class SystemProperties {
         }
         try {
             return transformer.apply(valueAsString);
-        } catch (NumberFormatException e) {
+        } catch (IllegalArgumentException e) {
             String message = String.format("cannot parse system property: %s with value=%s, using default=%s instead."
                     , propertyName
                     , valueAsString
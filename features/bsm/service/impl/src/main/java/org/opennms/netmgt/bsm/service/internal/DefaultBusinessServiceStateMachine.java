@@ -36,15 +36,20 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
@@ -83,6 +88,18 @@ import edu.uci.ics.jung.algorithms.layout.KKLayout;
 import edu.uci.ics.jung.algorithms.layout.Layout;
 import edu.uci.ics.jung.visualization.VisualizationImageServer;
 
+/**
+ * Maintains the operational status of the business services.
+ *
+ * Alarm updates are coalesced: updates are queued by reduction key, and the thread
+ * holding the write lock applies all of the pending updates in a single batch.
+ * Batches are propagated incrementally, only along the paths of the graph affected
+ * by the updated reduction keys, and level by level starting with the deepest one so
+ * that every affected vertex is reduced once per batch.
+ *
+ * The operational statuses are read from an immutable snapshot that is replaced
+ * after every batch, so readers never wait for alarms to be processed.
+ */
 public class DefaultBusinessServiceStateMachine implements BusinessServiceStateMachine {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultBusinessServiceStateMachine.class);
     public static final Status MIN_SEVERITY = Status.NORMAL;
@@ -93,21 +110,27 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     private final List<BusinessServiceStateChangeHandler> m_handlers = Lists.newArrayList();
     private final ReadWriteLock m_rwLock = new ReentrantReadWriteLock();
     private BusinessServiceGraph m_g = new BusinessServiceGraphImpl(Collections.emptyList());
+    private volatile StatusSnapshot m_snapshot = StatusSnapshot.of(0, m_g);
+    private final Map<String, Status> m_pendingAlarms = new ConcurrentHashMap<>();
 
     @Override
     public void setBusinessServices(List<BusinessService> businessServices) {
         m_rwLock.writeLock().lock();
         try {
+            // Apply any pending updates to the current graph first, so that they are carried over
+            applyPendingAlarms();
+
             // Create a new graph
             BusinessServiceGraph g = new BusinessServiceGraphImpl(businessServices);
 
             // Prime the graph with the state from the previous graph and
             // keep track of the new reductions keys
+            Map<GraphVertex, Status> statuses = new HashMap<>();
             Set<String> reductionsKeysToLookup = Sets.newHashSet();
             for (String reductionKey : g.getReductionKeys()) {
                 GraphVertex reductionKeyVertex = m_g.getVertexByReductionKey(reductionKey);
                 if (reductionKeyVertex != null) {
-                    updateAndPropagateVertex(g, g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
+                    statuses.put(g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
                 } else {
                     reductionsKeysToLookup.add(reductionKey);
                 }
@@ -122,11 +145,16 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
                 if (reductionsKeysToLookup.size() > 0) {
                     final Map<String, AlarmWrapper> lookup = m_alarmProvider.lookup(reductionsKeysToLookup);
                     for (Entry<String, AlarmWrapper> eachEntry : lookup.entrySet()) {
-                        updateAndPropagateVertex(g, g.getVertexByReductionKey(eachEntry.getKey()), eachEntry.getValue().getStatus());
+                        final GraphVertex vertex = g.getVertexByReductionKey(eachEntry.getKey());
+                        if (vertex != null) {
+                            statuses.put(vertex, eachEntry.getValue().getStatus());
+                        }
                     }
                 }
             }
+            updateAndPropagateVertices(g, statuses);
             m_g = g;
+            m_snapshot = StatusSnapshot.of(m_snapshot.getVersion() + 1, g);
         } finally {
             m_rwLock.writeLock().unlock();
         }
@@ -134,10 +162,18 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public void handleNewOrUpdatedAlarm(AlarmWrapper alarm) {
+        if (alarm.getReductionKey() == null) {
+            // Nothing to do here
+            return;
+        }
+
+        // Queue the update, replacing any previous update for the same reduction key that was not applied yet
+        m_pendingAlarms.put(alarm.getReductionKey(), alarm.getStatus());
+
+        // Whoever holds the lock next applies all of the pending updates, which may already include ours
         m_rwLock.writeLock().lock();
         try {
-            // Recursively propagate the status
-            updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+            applyPendingAlarms();
         } finally {
             m_rwLock.writeLock().unlock();
         }
@@ -148,9 +184,15 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
         final Set<String> reductionKeysFromGivenAlarms = new HashSet<>(alarms.size());
         m_rwLock.writeLock().lock();
         try {
+            // Updates that were queued before are superseded by the given alarms
+            applyPendingAlarms();
+
+            final Map<GraphVertex, Status> statuses = new HashMap<>();
             for (AlarmWrapper alarm : alarms) {
-                // Recursively propagate the status for all of the given alarms
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+                final GraphVertex vertex = m_g.getVertexByReductionKey(alarm.getReductionKey());
+                if (vertex != null) {
+                    statuses.put(vertex, alarm.getStatus());
+                }
                 // Keep track of the reduction keys that have been processed
                 reductionKeysFromGivenAlarms.add(alarm.getReductionKey());
             }
@@ -158,14 +200,76 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
             for (String missingReductionKey : Sets.difference(m_g.getReductionKeys(), reductionKeysFromGivenAlarms)) {
                 // There is a vertex on the graph that corresponds to this reduction key
                 // but no alarm with this reduction key exists
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
+                statuses.put(m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
             }
+
+            publish(updateAndPropagateVertices(m_g, statuses));
         } finally {
             m_rwLock.writeLock().unlock();
         }
     }
 
-    private void updateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex, Status newStatus) {
+    /**
+     * Applies all of the queued alarm updates to the current graph as a single batch.
+     * Must be called while holding the write lock.
+     */
+    private void applyPendingAlarms() {
+        if (m_pendingAlarms.isEmpty()) {
+            return;
+        }
+
+        final Map<GraphVertex, Status> statuses = new HashMap<>();
+        for (String reductionKey : m_pendingAlarms.keySet()) {
+            final Status status = m_pendingAlarms.remove(reductionKey);
+            final GraphVertex vertex = m_g.getVertexByReductionKey(reductionKey);
+            if (status != null && vertex != null) {
+                statuses.put(vertex, status);
+            }
+        }
+        publish(updateAndPropagateVertices(m_g, statuses));
+    }
+
+    private void publish(Collection<GraphVertex> updatedVertices) {
+        if (!updatedVertices.isEmpty()) {
+            m_snapshot = m_snapshot.update(m_snapshot.getVersion() + 1, updatedVertices);
+        }
+    }
+
+    /**
+     * Updates the given vertices and propagates the changes to the affected vertices.
+     *
+     * Vertices are always at a deeper level than their parents, so reducing the affected
+     * vertices level by level, starting with the deepest one, reduces every vertex once
+     * after all of its children have been updated.
+     *
+     * @return the vertices whose status was updated
+     */
+    private Collection<GraphVertex> updateAndPropagateVertices(BusinessServiceGraph graph, Map<GraphVertex, Status> newStatuses) {
+        // Keep track of the status of the updated vertices before this batch
+        final Map<GraphVertex, Status> previousStatuses = new LinkedHashMap<>();
+        // Vertices that need to be reduced again, by level, deepest first
+        final NavigableMap<Integer, Set<GraphVertex>> verticesToReduce = new TreeMap<>(Comparator.reverseOrder());
+
+        for (Entry<GraphVertex, Status> entry : newStatuses.entrySet()) {
+            updateVertex(graph, entry.getKey(), entry.getValue(), previousStatuses, verticesToReduce);
+        }
+
+        while (!verticesToReduce.isEmpty()) {
+            for (GraphVertex vertex : verticesToReduce.pollFirstEntry().getValue()) {
+                updateVertex(graph, vertex, reduce(graph, vertex), previousStatuses, verticesToReduce);
+            }
+        }
+
+        // Notify the listeners once all of the vertices have settled
+        for (Entry<GraphVertex, Status> entry : previousStatuses.entrySet()) {
+            if (!entry.getKey().getStatus().equals(entry.getValue())) {
+                onStatusUpdated(graph, entry.getKey(), entry.getValue());
+            }
+        }
+        return previousStatuses.keySet();
+    }
+
+    private static void updateVertex(BusinessServiceGraph graph, GraphVertex vertex, Status newStatus, Map<GraphVertex, Status> previousStatuses, NavigableMap<Integer, Set<GraphVertex>> verticesToReduce) {
         if (vertex == null) {
             // Nothing to do here
             return;
@@ -181,12 +285,9 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
             return;
         }
         vertex.setStatus(newStatus);
-
-        // Notify the listeners
-        onStatusUpdated(graph, vertex, previousStatus);
+        previousStatuses.putIfAbsent(vertex, previousStatus);
 
         // Update the edges with the mapped status
-        List<GraphEdge> updatedEges = Lists.newArrayList();
         for (GraphEdge edge : graph.getInEdges(vertex)) {
             Status mappedStatus = newStatus;
             if (newStatus.isGreaterThan(MIN_SEVERITY)) {
@@ -201,38 +302,27 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
                 continue;
             }
 
-            // Update the status and add it to the list of edges to propagate
+            // Update the status and reduce the parent once all of its children have been updated
             edge.setStatus(mappedStatus);
-            updatedEges.add(edge);
-        }
-
-        // Propagate once all of the edges have been updated
-        for (GraphEdge edge : updatedEges) {
-            reduceUpdateAndPropagateVertex(graph, graph.getOpposite(vertex, edge));
+            final GraphVertex parent = graph.getOpposite(vertex, edge);
+            if (parent != null) {
+                verticesToReduce.computeIfAbsent(parent.getLevel(), level -> new LinkedHashSet<>()).add(parent);
+            }
         }
     }
 
-    private void reduceUpdateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex) {
-        if (vertex == null) {
-            // Nothing to do here
-            return;
-        }
-
+    private static Status reduce(BusinessServiceGraph graph, GraphVertex vertex) {
         // Calculate the weighed statuses from the child edges
         List<StatusWithIndex> statuses = weighEdges(graph.getOutEdges(vertex));
 
         // Reduce
         Optional<StatusWithIndices> reducedStatus = vertex.getReductionFunction().reduce(statuses);
 
-        Status newStatus;
         if (reducedStatus.isPresent()) {
-            newStatus = reducedStatus.get().getStatus();
+            return reducedStatus.get().getStatus();
         } else {
-            newStatus = MIN_SEVERITY;
+            return MIN_SEVERITY;
         }
-
-        // Update and propagate
-        updateAndPropagateVertex(graph, vertex, newStatus);
     }
 
     public static List<StatusWithIndex> weighEdges(Collection<GraphEdge> edges) {
@@ -297,58 +387,26 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     @Override
     public Status getOperationalStatus(BusinessService businessService) {
         Objects.requireNonNull(businessService);
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByBusinessServiceId(businessService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.getGraph().getVertexByBusinessServiceId(businessService.getId()));
     }
 
     @Override
     public Status getOperationalStatus(IpService ipService) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByIpServiceId(ipService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.getGraph().getVertexByIpServiceId(ipService.getId()));
     }
 
     @Override
     public Status getOperationalStatus(String reductionKey) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByReductionKey(reductionKey);
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.getGraph().getVertexByReductionKey(reductionKey));
     }
 
     @Override
     public Status getOperationalStatus(Edge edge) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByEdgeId(edge.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.getGraph().getVertexByEdgeId(edge.getId()));
     }
 
     public void setAlarmProvider(AlarmProvider alarmProvider) {
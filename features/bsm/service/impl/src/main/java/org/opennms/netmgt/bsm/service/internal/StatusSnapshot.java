@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.bsm.service.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.opennms.netmgt.bsm.service.model.Status;
+import org.opennms.netmgt.bsm.service.model.graph.BusinessServiceGraph;
+import org.opennms.netmgt.bsm.service.model.graph.GraphVertex;
+
+/**
+ * An immutable, versioned view of the statuses of the vertices in a {@link BusinessServiceGraph}.
+ *
+ * The statuses are stored in fixed size chunks that are shared between versions, so
+ * that deriving a new version only copies the chunks that contain updated vertices.
+ */
+final class StatusSnapshot {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final long m_version;
+    private final BusinessServiceGraph m_graph;
+    // Shared by all versions for the same graph
+    private final Map<GraphVertex, Integer> m_indices;
+    private final Status[][] m_chunks;
+
+    private StatusSnapshot(long version, BusinessServiceGraph graph, Map<GraphVertex, Integer> indices, Status[][] chunks) {
+        m_version = version;
+        m_graph = graph;
+        m_indices = indices;
+        m_chunks = chunks;
+    }
+
+    /**
+     * Creates a snapshot with the current statuses of all the vertices in the graph.
+     */
+    static StatusSnapshot of(long version, BusinessServiceGraph graph) {
+        final Collection<GraphVertex> vertices = graph.getVertices();
+        final Map<GraphVertex, Integer> indices = new HashMap<>(vertices.size() * 2);
+        final Status[][] chunks = new Status[(vertices.size() + CHUNK_SIZE - 1) >> CHUNK_BITS][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Status[CHUNK_SIZE];
+        }
+
+        int index = 0;
+        for (GraphVertex vertex : vertices) {
+            indices.put(vertex, index);
+            chunks[index >> CHUNK_BITS][index & CHUNK_MASK] = vertex.getStatus();
+            index++;
+        }
+        return new StatusSnapshot(version, graph, indices, chunks);
+    }
+
+    /**
+     * Creates a new version of this snapshot with the current statuses of the given vertices.
+     */
+    StatusSnapshot update(long version, Collection<GraphVertex> updatedVertices) {
+        final Status[][] chunks = Arrays.copyOf(m_chunks, m_chunks.length);
+        final boolean[] copied = new boolean[chunks.length];
+        for (GraphVertex vertex : updatedVertices) {
+            final Integer index = m_indices.get(vertex);
+            if (index == null) {
+                continue;
+            }
+            final int chunk = index >> CHUNK_BITS;
+            if (!copied[chunk]) {
+                chunks[chunk] = Arrays.copyOf(chunks[chunk], CHUNK_SIZE);
+                copied[chunk] = true;
+            }
+            chunks[chunk][index & CHUNK_MASK] = vertex.getStatus();
+        }
+        return new StatusSnapshot(version, m_graph, m_indices, chunks);
+    }
+
+    long getVersion() {
+        return m_version;
+    }
+
+    BusinessServiceGraph getGraph() {
+        return m_graph;
+    }
+
+    /**
+     * Returns the status of the vertex at the time the snapshot was taken,
+     * or null if the vertex is null or not part of the graph.
+     */
+    Status getStatus(GraphVertex vertex) {
+        if (vertex == null) {
+            return null;
+        }
+        final Integer index = m_indices.get(vertex);
+        if (index == null) {
+            return null;
+        }
+        return m_chunks[index >> CHUNK_BITS][index & CHUNK_MASK];
+    }
+}
@@ -33,6 +33,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -156,6 +157,55 @@ public class DefaultBusinessServiceStateMachineTest {
         assertEquals(1, stateChangeHandler.getStateChanges().size());
     }
 
+    @Test
+    public void canPropagateBatchesOfAlarms() {
+        // Create a hierarchy where both children share the same parent
+        MockBusinessServiceHierarchy h = MockBusinessServiceHierarchy.builder()
+                .withBusinessService(1)
+                    .withName("b1")
+                    .withBusinessService(2)
+                        .withName("b2")
+                        .withReductionKey(21, "a1")
+                    .commit()
+                    .withBusinessService(3)
+                        .withName("b3")
+                        .withReductionKey(32, "a2")
+                    .commit()
+                .commit()
+                .build();
+        BusinessService b1 = h.getBusinessServiceById(1);
+
+        // Setup the state machine
+        DefaultBusinessServiceStateMachine stateMachine = new DefaultBusinessServiceStateMachine();
+        LoggingStateChangeHandler stateChangeHandler = new LoggingStateChangeHandler();
+        stateMachine.addHandler(stateChangeHandler, Maps.newHashMap());
+        stateMachine.setBusinessServices(h.getBusinessServices());
+
+        // Update both children at once
+        stateMachine.handleAllAlarms(Arrays.asList(
+                new MockAlarmWrapper("a1", Status.MINOR),
+                new MockAlarmWrapper("a2", Status.MAJOR)));
+
+        // The parent should only be reduced, and reported, once
+        assertEquals(Status.MINOR, stateMachine.getOperationalStatus(h.getBusinessServiceById(2)));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus(h.getBusinessServiceById(3)));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus(b1));
+        List<LoggingStateChangeHandler.StateChange> stateChanges = stateChangeHandler.getStateChanges();
+        assertEquals(3, stateChanges.size());
+        assertEquals(b1, stateChanges.get(2).getBusinessService());
+        assertEquals(Status.NORMAL, stateChanges.get(2).getPrevSeverity());
+        assertEquals(Status.MAJOR, stateChanges.get(2).getNewSeverity());
+
+        // Swap the severities, the parent keeps its status and should not be reported
+        stateMachine.handleAllAlarms(Arrays.asList(
+                new MockAlarmWrapper("a1", Status.MAJOR),
+                new MockAlarmWrapper("a2", Status.MINOR)));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus(h.getBusinessServiceById(2)));
+        assertEquals(Status.MINOR, stateMachine.getOperationalStatus(h.getBusinessServiceById(3)));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus(b1));
+        assertEquals(5, stateChangeHandler.getStateChanges().size());
+    }
+
     @Test
     public void canPerformRootCauseAndImpactAnalysis() {
         // Create a hierarchy using all of the available reduction functions
@@ -41,6 +41,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.joda.time.Duration;
 import org.nustaq.serialization.FSTConfiguration;
+import org.opennms.core.ipc.sink.api.MessageOwnership;
 import org.opennms.core.sysprops.SystemProperties;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.features.distributed.kvstore.api.BlobStore;
@@ -93,6 +94,11 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
 
     private final SerializingBlobStore<T> kvStore;
 
+    // Created on first use when not distributed, see getWriteBehind()
+    private ThresholdStateWriteBehind writeBehind;
+
+    private final Class<T> stateType;
+
     protected T state;
     
     protected final ThresholdingSession thresholdingSession;
@@ -104,6 +110,15 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
     private Long sequenceNumber;
 
     private boolean firstEvaluation = true;
+
+    /**
+     * Whether the in-memory state is trusted while the messages for it are still owned by this instance when
+     * distributed. See {@link #ownsState()}.
+     */
+    private final boolean trustOwnedState;
+
+    // The message ownership epoch at the time of the last evaluation
+    private long ownershipEpoch;
     
     private String instance;
 
@@ -111,6 +126,18 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
             SerializingBlobStore<? extends AbstractThresholdEvaluatorState.AbstractState>> serdesMap
             = new ConcurrentHashMap<>();
 
+    /**
+     * How often the states buffered for a blob store are written to it. Setting this to 0 or less writes every state
+     * synchronously from the evaluating thread instead.
+     */
+    private static final long STATE_FLUSH_INTERVAL_MS = SystemProperties.getLong(
+            "org.opennms.netmgt.threshd.state_flush_interval_ms", 1000L);
+
+    private static final int STATE_FLUSH_BATCH_SIZE = SystemProperties.getInteger(
+            "org.opennms.netmgt.threshd.state_flush_batch_size", 1000);
+
+    private static final Map<BlobStore, ThresholdStateWriteBehind> writeBehindMap = new ConcurrentHashMap<>();
+
     /**
      * A last updated cache to track when the last time we know we persisted a given key was. This is for performance
      * reasons so that on fetch we can see if we already were the last ones to update and avoid a full fetch if so.
@@ -150,6 +177,7 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
         Objects.requireNonNull(thresholdingSession.getBlobStore());
 
         this.thresholdingSession = thresholdingSession;
+        this.stateType = stateType;
         kvStore = getKvStoreForType(stateType, thresholdingSession.getBlobStore());
         key = String.format("%d-%s-%s-%s-%s-%s", thresholdingSession.getKey().getNodeId(),
                 thresholdingSession.getKey().getLocation(), threshold.getDsType(),
@@ -157,6 +185,7 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
 
         stateTTL = SystemProperties.getInteger("org.opennms.netmgt.threshd.state_ttl",
                 (int) TimeUnit.SECONDS.convert(24, TimeUnit.HOURS));
+        trustOwnedState = SystemProperties.getBoolean("org.opennms.netmgt.threshd.trust_owned_state", false);
         initializeState();
     }
 
@@ -171,6 +200,70 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
                 c -> SerializingBlobStore.ofType(blobStore, fst::asByteArray, bytes -> c.cast(fst.asObject(bytes))));
     }
 
+    /**
+     * States are only written behind when not distributed. When distributed the state is fetched before every
+     * evaluation by whichever Sentinel evaluates it next so it has to be written right away.
+     *
+     * @return the write-behind for the blob store of this evaluator or null if states are written right away
+     */
+    private ThresholdStateWriteBehind getWriteBehind() {
+        if (isDistributed()) {
+            return null;
+        }
+        if (writeBehind == null) {
+            writeBehind = getWriteBehind(thresholdingSession.getBlobStore());
+        }
+        return writeBehind;
+    }
+
+    private static ThresholdStateWriteBehind getWriteBehind(BlobStore blobStore) {
+        if (STATE_FLUSH_INTERVAL_MS <= 0) {
+            return null;
+        }
+        return writeBehindMap.computeIfAbsent(blobStore, b -> new ThresholdStateWriteBehind(b,
+                THRESHOLDING_KV_CONTEXT, STATE_FLUSH_INTERVAL_MS, STATE_FLUSH_BATCH_SIZE, lastUpdatedCache::put));
+    }
+
+    /**
+     * Writes the states waiting to be written to the given blob store and stops writing behind to it.
+     */
+    static void closeWriteBehind(BlobStore blobStore) {
+        ThresholdStateWriteBehind stateWriteBehind = writeBehindMap.remove(blobStore);
+        if (stateWriteBehind != null) {
+            stateWriteBehind.close();
+        }
+    }
+
+    /**
+     * Drops the states waiting to be written to the given blob store and stops writing behind to it.
+     */
+    static void discardWriteBehind(BlobStore blobStore) {
+        ThresholdStateWriteBehind stateWriteBehind = writeBehindMap.remove(blobStore);
+        if (stateWriteBehind != null) {
+            stateWriteBehind.discardAndClose();
+        }
+    }
+
+    /**
+     * Drops the state waiting to be written to the given blob store for the given key.
+     */
+    static void discardPendingState(BlobStore blobStore, String key) {
+        ThresholdStateWriteBehind stateWriteBehind = writeBehindMap.get(blobStore);
+        if (stateWriteBehind != null) {
+            stateWriteBehind.discard(key);
+        }
+    }
+
+    /**
+     * Drops all of the states waiting to be written to the given blob store.
+     */
+    static void discardPendingStates(BlobStore blobStore) {
+        ThresholdStateWriteBehind stateWriteBehind = writeBehindMap.get(blobStore);
+        if (stateWriteBehind != null) {
+            stateWriteBehind.discardAll();
+        }
+    }
+
     protected abstract void initializeState();
 
     private boolean shouldPersist() {
@@ -180,8 +273,19 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
     private void persistStateIfNeeded() {
         if (shouldPersist()) {
             try {
-                long newTimestamp = kvStore.put(key, state, THRESHOLDING_KV_CONTEXT, stateTTL);
-                lastUpdatedCache.put(key, newTimestamp);
+                // The state is serialized now since we keep on mutating it after this point. It is written right away
+                // if the write-behind was closed.
+                final ThresholdStateWriteBehind stateWriteBehind = getWriteBehind();
+                final boolean queued = stateWriteBehind != null
+                        && stateWriteBehind.enqueue(key, fst.asByteArray(state), stateTTL);
+                if (!queued) {
+                    if (stateWriteBehind != null) {
+                        // Make sure an older state that is still pending can't overwrite this one
+                        stateWriteBehind.discard(key);
+                    }
+                    long newTimestamp = kvStore.put(key, state, THRESHOLDING_KV_CONTEXT, stateTTL);
+                    lastUpdatedCache.put(key, newTimestamp);
+                }
 
                 // If we successfully stored the state we will mark that the persisted state is up to date and no longer
                 // dirty
@@ -205,6 +309,14 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
             }
 
             try {
+                // A state that was not written yet is more recent than the persisted one
+                final ThresholdStateWriteBehind stateWriteBehind = getWriteBehind();
+                byte[] pendingState = stateWriteBehind != null ? stateWriteBehind.getPending(key) : null;
+                if (pendingState != null) {
+                    state = stateType.cast(fst.asObject(pendingState));
+                    return;
+                }
+
                 Long lastKnownUpdate = lastUpdatedCache.get(key);
 
                 // If we don't have a record of when this was last updated locally, get it from the store
@@ -222,6 +334,21 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
         });
     }
 
+    /**
+     * When distributed, the telemetry sink routes all of the messages for a given exporter to the same partition, which
+     * is consumed by a single Sentinel until the partitions are reassigned, so that Sentinel is the only writer of the
+     * state. As long as the partitions were not reassigned since this evaluator last evaluated its state it can trust
+     * the in-memory copy rather than fetching it before every evaluation.
+     * <p>
+     * Every reassignment bumps the {@link MessageOwnership} epoch, so the state is fetched again after the exporter may
+     * have been handed off, whether this Sentinel gained or lost partitions. The epoch is only tracked by partitioned
+     * sinks, so the state is always fetched when the messages are not partitioned.
+     */
+    private boolean ownsState(long currentOwnershipEpoch) {
+        return isDistributed() && trustOwnedState && !firstEvaluation
+                && currentOwnershipEpoch > 0 && currentOwnershipEpoch == ownershipEpoch;
+    }
+
     /**
      * Marks the state for this evaluator as dirty. When a state is dirty it will be persisted the next time
      * {@link #persistStateIfNeeded()} is called.
@@ -235,6 +362,8 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
 
     @Override
     public synchronized Status evaluate(double dsValue, Long sequenceNumber) {
+        // Read before fetching so that a reassignment during the evaluation causes the next one to fetch
+        final long currentOwnershipEpoch = MessageOwnership.getEpoch();
         if (sequenceNumber != null) {
             // If a sequence number was provided, only fetch the state if this is the first sequence number we have seen
             // or if this was not the next sequence number (indicating someone else processed the last one)
@@ -242,12 +371,14 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
                 fetchState();
             }
             this.sequenceNumber = sequenceNumber;
-        } else {
-            // Always fetch the state to make sure we have the latest if we don't know the sequence number
+        } else if (!ownsState(currentOwnershipEpoch)) {
+            // Always fetch the state to make sure we have the latest if we don't know the sequence number, unless we
+            // are still the owner of the state
             fetchState();
         }
 
         Status status = evaluateAfterFetch(dsValue);
+        ownershipEpoch = currentOwnershipEpoch;
         if (firstEvaluation) {
             firstEvaluation = false;
             // We don't bother advertising ourselves until the first time we perform an evaluation since we will have
@@ -432,4 +563,9 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
     static void clearSerdesMap() {
         serdesMap.clear();
     }
+
+    @VisibleForTesting
+    static void flushPendingStates() {
+        writeBehindMap.values().forEach(ThresholdStateWriteBehind::flush);
+    }
 }
@@ -111,10 +111,12 @@ public class BlobStoreAwareMonitor implements ThresholdStateMonitor {
     }
 
     private void clearSingleStateFromPersistence(String stateKey) {
+        AbstractThresholdEvaluatorState.discardPendingState(blobStore, stateKey);
         blobStore.delete(stateKey, AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT);
     }
 
     private void clearAllStatesFromPersistence() {
+        AbstractThresholdEvaluatorState.discardPendingStates(blobStore);
         blobStore.truncateContext(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT);
     }
 }
@@ -34,11 +34,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 import org.apache.commons.jexl2.ExpressionImpl;
+import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
-import org.apache.commons.jexl2.MapContext;
 import org.opennms.core.rpc.utils.mate.EmptyScope;
 import org.opennms.core.rpc.utils.mate.Interpolator;
 import org.opennms.core.rpc.utils.mate.Scope;
@@ -55,9 +56,18 @@ import org.slf4j.LoggerFactory;
 public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
     private static final Logger LOG = LoggerFactory.getLogger(ExpressionConfigWrapper.class);
 
+    // Upper bound for the compiled expressions kept per threshold, each distinct interpolation of the mate data
+    // yields its own expression
+    private static final int MAX_COMPILED_EXPRESSIONS = 256;
+
+    // The engine is thread safe and shared by all of the expression thresholds
+    private static final JexlEngine JEXL_ENGINE = new JexlEngine();
+
+    private static final MathBinding MATH = new MathBinding();
+
     private final Expression m_expression;
     private final Collection<String> m_datasources;    
-    private final JexlEngine jexlEngine = new JexlEngine();
+    private final Map<String, org.apache.commons.jexl2.Expression> m_compiledExpressions = new ConcurrentHashMap<>();
     
     public ExpressionConfigWrapper(Expression expression) throws ThresholdExpressionException {
         super(expression);
@@ -67,8 +77,12 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
         try {
             // We need to remove any mate data that are part of the expression before we try to find the datasources so
             // we will interpolate with an empty scope and rely on default values to keep the expression valid
-            ExpressionImpl e = (ExpressionImpl) jexlEngine
-                    .createExpression(interpolateExpression(m_expression.getExpression(), EmptyScope.EMPTY));
+            String expressionWithDefaults = interpolateExpression(m_expression.getExpression(), EmptyScope.EMPTY);
+            ExpressionImpl e = (ExpressionImpl) JEXL_ENGINE.createExpression(expressionWithDefaults);
+            if (expressionWithDefaults.equals(m_expression.getExpression())) {
+                // Without mate data this is the only expression we will ever evaluate
+                m_compiledExpressions.put(expressionWithDefaults, e);
+            }
             LOG.trace("List of Variables on the Expression: {}", e.getVariables());
             for (List<String> list : e.getVariables()) { // Requires JEXL 2.1.x
                 if (list.get(0).equalsIgnoreCase("math")) {
@@ -153,15 +167,14 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
      * Evaluate given an already interpolated expression that contains no mate data.
      */
     public double evaluate(String expression, Map<String, Double> values) throws ThresholdExpressionException {
-        // Add all of the variable values to the script context
-        Map<String, Object> context = new HashMap<>(values);
-        context.put("datasources", new HashMap<>(values)); // To workaround NMS-5019
-        context.put("math", new MathBinding());
         double result;
         try {
-            // Fetch an instance of the JEXL script engine to evaluate the script expression
-            Object resultObject = jexlEngine.createExpression(expression).evaluate(new MapContext(context));
-            result = Double.parseDouble(resultObject.toString());
+            Object resultObject = getCompiledExpression(expression).evaluate(new DatasourceContext(values));
+            if (resultObject instanceof Number) {
+                result = ((Number) resultObject).doubleValue();
+            } else {
+                result = Double.parseDouble(resultObject.toString());
+            }
         } catch (Throwable e) {
             throw new ThresholdExpressionException("Error while evaluating expression " + m_expression.getExpression() + ": " + e.getMessage(), e);
         }
@@ -178,6 +191,18 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
         return new ExpressionValue(interpolatedExpression, evaluate(interpolatedExpression, values));
     }
 
+    private org.apache.commons.jexl2.Expression getCompiledExpression(String expression) {
+        org.apache.commons.jexl2.Expression compiled = m_compiledExpressions.get(expression);
+        if (compiled == null) {
+            compiled = JEXL_ENGINE.createExpression(expression);
+            if (m_compiledExpressions.size() >= MAX_COMPILED_EXPRESSIONS) {
+                m_compiledExpressions.clear();
+            }
+            m_compiledExpressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
     @Override
     public void accept(ThresholdDefVisitor thresholdDefVisitor) {
         thresholdDefVisitor.visit(this);
@@ -194,6 +219,48 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
         return expression;
     }
     
+    /**
+     * Exposes the datasource values to an expression without copying them. The values are available both as plain
+     * variables and through the <code>datasources</code> map (See NMS-5019), and <code>math</code> is bound to
+     * {@link MathBinding}. Variables assigned by the expression are kept apart so the values are never modified.
+     */
+    private static class DatasourceContext implements JexlContext {
+        private final Map<String, Double> values;
+        private Map<String, Object> assigned;
+
+        private DatasourceContext(Map<String, Double> values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object get(String name) {
+            if ("math".equals(name)) {
+                return MATH;
+            }
+            if ("datasources".equals(name)) {
+                return values;
+            }
+            if (assigned != null && assigned.containsKey(name)) {
+                return assigned.get(name);
+            }
+            return values.get(name);
+        }
+
+        @Override
+        public void set(String name, Object value) {
+            if (assigned == null) {
+                assigned = new HashMap<>();
+            }
+            assigned.put(name, value);
+        }
+
+        @Override
+        public boolean has(String name) {
+            return "math".equals(name) || "datasources".equals(name)
+                    || (assigned != null && assigned.containsKey(name)) || values.containsKey(name);
+        }
+    }
+
     public static class ExpressionValue {
         public final String expression;
         public final double value;
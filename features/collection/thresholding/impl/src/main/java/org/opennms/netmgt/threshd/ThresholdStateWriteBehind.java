@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.threshd;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.joda.time.Duration;
+import org.opennms.features.distributed.kvstore.api.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+
+/**
+ * Buffers the serialized states of threshold evaluators and writes them to the {@link BlobStore} in batches from a
+ * background thread instead of from the collection thread.
+ * <p>
+ * Only the most recent state is kept for a given key while it waits to be written, so a threshold evaluated several
+ * times between two flushes is only written once. States that could not be written are retried on the next flush
+ * unless a newer state was queued for the same key in the meantime.
+ * <p>
+ * Once closed, states are no longer queued and have to be written by the caller.
+ */
+public class ThresholdStateWriteBehind implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ThresholdStateWriteBehind.class);
+    private static final RateLimitedLog RATE_LIMITED_LOGGER = RateLimitedLog
+            .withRateLimit(LOG)
+            .maxRate(5).every(Duration.standardSeconds(30))
+            .build();
+
+    private static final String JMX_DOMAIN = "org.opennms.netmgt.threshd.state";
+
+    // Used to give the metrics of every instance their own JMX domain
+    private static final AtomicInteger INSTANCE_COUNTER = new AtomicInteger(0);
+
+    private final BlobStore blobStore;
+    private final String context;
+    private final int batchSize;
+    private final BiConsumer<String, Long> persistedCallback;
+
+    private final Map<String, PendingState> pendingStates = new ConcurrentHashMap<>();
+    // Held while writing so that discarded states can not be written once the discard returns
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Histogram flushSize;
+    private final Timer flushLatency;
+    private final Meter flushFailures;
+    private final JmxReporter reporter;
+
+    private static final class PendingState {
+        private final byte[] state;
+        private final Integer ttlInSeconds;
+
+        private PendingState(byte[] state, Integer ttlInSeconds) {
+            this.state = state;
+            this.ttlInSeconds = ttlInSeconds;
+        }
+    }
+
+    /**
+     * @param persistedCallback called with the key and timestamp of every state that was written
+     */
+    public ThresholdStateWriteBehind(BlobStore blobStore, String context, long flushIntervalMs, int batchSize,
+                                     BiConsumer<String, Long> persistedCallback) {
+        this.blobStore = Objects.requireNonNull(blobStore);
+        this.context = Objects.requireNonNull(context);
+        this.batchSize = Math.max(1, batchSize);
+        this.persistedCallback = Objects.requireNonNull(persistedCallback);
+
+        metrics.register("pending-states", (Gauge<Integer>) pendingStates::size);
+        flushSize = metrics.histogram("flush-size");
+        flushLatency = metrics.timer("flush-latency");
+        flushFailures = metrics.meter("flush-failures");
+        reporter = JmxReporter.forRegistry(metrics)
+                .inDomain(JMX_DOMAIN + ".writer-" + INSTANCE_COUNTER.incrementAndGet())
+                .build();
+        try {
+            reporter.start();
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Failed to register the threshold state write-behind metrics with JMX.", e);
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("threshold-state-writer-%d")
+                .setDaemon(true)
+                .build());
+        if (flushIntervalMs > 0) {
+            executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Queues the state to be written, replacing any state for the same key that was not written yet.
+     *
+     * @return false if the state was not queued because this write-behind is closed
+     */
+    public boolean enqueue(String key, byte[] state, Integer ttlInSeconds) {
+        final PendingState pendingState = new PendingState(state, ttlInSeconds);
+        pendingStates.put(key, pendingState);
+        if (closed.get()) {
+            // The state may have been queued after the last flush
+            pendingStates.remove(key, pendingState);
+            return false;
+        }
+        if (pendingStates.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            // Don't wait for the next interval when there already is a full batch
+            try {
+                executor.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // We are being closed, the pending states are flushed by close()
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the state waiting to be written for the given key or null if there is none
+     */
+    public byte[] getPending(String key) {
+        PendingState pendingState = pendingStates.get(key);
+        return pendingState != null ? pendingState.state : null;
+    }
+
+    /**
+     * Drops the state waiting to be written for the given key. Once this returns the state will not be written.
+     */
+    public void discard(String key) {
+        synchronized (flushLock) {
+            pendingStates.remove(key);
+        }
+    }
+
+    /**
+     * Drops all of the states waiting to be written. Once this returns none of them will be written.
+     */
+    public void discardAll() {
+        synchronized (flushLock) {
+            pendingStates.clear();
+        }
+    }
+
+    public int getPendingCount() {
+        return pendingStates.size();
+    }
+
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes all of the pending states in batches. If a batch fails to be written the remaining states are left for
+     * the next flush.
+     */
+    public void flush() {
+        flushRequested.set(false);
+        synchronized (flushLock) {
+            boolean succeeded = true;
+            while (succeeded && !pendingStates.isEmpty()) {
+                for (Map<String, PendingState> batch : takeBatch().values()) {
+                    succeeded &= write(batch);
+                }
+            }
+        }
+    }
+
+    private Map<Integer, Map<String, PendingState>> takeBatch() {
+        final Map<Integer, Map<String, PendingState>> batchByTtl = new HashMap<>();
+        final Iterator<Map.Entry<String, PendingState>> it = pendingStates.entrySet().iterator();
+        int taken = 0;
+        while (it.hasNext() && taken < batchSize) {
+            final Map.Entry<String, PendingState> entry = it.next();
+            // Only take the entry if it was not replaced while we were iterating
+            if (pendingStates.remove(entry.getKey(), entry.getValue())) {
+                batchByTtl.computeIfAbsent(entry.getValue().ttlInSeconds, ttl -> new HashMap<>())
+                        .put(entry.getKey(), entry.getValue());
+                taken++;
+            }
+        }
+        return batchByTtl;
+    }
+
+    private boolean write(Map<String, PendingState> batch) {
+        final Map<String, byte[]> values = new HashMap<>(batch.size());
+        batch.forEach((key, pendingState) -> values.put(key, pendingState.state));
+        final Integer ttlInSeconds = batch.values().iterator().next().ttlInSeconds;
+
+        try (Timer.Context ctx = flushLatency.time()) {
+            final long timestamp = blobStore.putAll(values, context, ttlInSeconds);
+            flushSize.update(values.size());
+            values.keySet().forEach(key -> persistedCallback.accept(key, timestamp));
+            return true;
+        } catch (RuntimeException e) {
+            flushFailures.mark();
+            RATE_LIMITED_LOGGER.warn("Failed to store {} threshold states, they will be retried", values.size(), e);
+            // Put the states back unless a more recent state has been queued in the meantime
+            batch.forEach(pendingStates::putIfAbsent);
+            return false;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            RATE_LIMITED_LOGGER.warn("Failed to flush the threshold states", e);
+        }
+    }
+
+    /**
+     * Writes all of the pending states and stops the background thread.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        executor.shutdown();
+        flushQuietly();
+        reporter.close();
+    }
+
+    /**
+     * Drops all of the pending states and stops the background thread. Used once the blob store is no longer available.
+     */
+    public void discardAndClose() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        executor.shutdownNow();
+        final int numDiscarded = pendingStates.size();
+        discardAll();
+        if (numDiscarded > 0) {
+            LOG.warn("Discarded {} threshold states that were not written before the blob store went away.", numDiscarded);
+        }
+        reporter.close();
+    }
+}
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.threshd;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -36,6 +37,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.opennms.core.soa.lookup.ServiceLookup;
 import org.opennms.core.soa.lookup.ServiceLookupBuilder;
@@ -132,6 +134,26 @@ public class ThresholdingServiceImpl implements ThresholdingService, EventListen
         }, 0, TimeUnit.MILLISECONDS.convert(5, TimeUnit.MINUTES));
     }
     
+    /**
+     * Writes the threshold states that are still buffered and stops writing behind to the blob store.
+     */
+    @PreDestroy
+    public void destroy() {
+        reInitializeTimer.cancel();
+        final BlobStore blobStore = kvStore.get();
+        if (blobStore != null) {
+            AbstractThresholdEvaluatorState.closeWriteBehind(blobStore);
+        }
+    }
+
+    // OSGi entry point, the buffered states can no longer be written once the blob store is gone
+    public void unbindKvStore(BlobStore keyValueStore, Map<String, ?> properties) {
+        final BlobStore blobStore = kvStore.get();
+        if (blobStore != null) {
+            AbstractThresholdEvaluatorState.discardWriteBehind(blobStore);
+        }
+    }
+
     private void reinitializeOnTimer() {
         thresholdingSetPersister.reinitializeThresholdingSets();
     }
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.threshd;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl2.JexlEngine;
+import org.apache.commons.jexl2.MapContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opennms.netmgt.config.threshd.Expression;
+
+/**
+ * Measures the cost of evaluating typical threshold expressions with {@link ExpressionConfigWrapper} against
+ * parsing the expression and copying the datasource values on every evaluation.
+ * <p>
+ * Run the {@link #main(String[])} method to execute the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExpressionConfigWrapperBenchmark {
+
+    @Param({
+            "ifHCInOctets*8/ifHighSpeed",
+            "ifHighSpeed > 0 ? (ifHCInOctets * 8) / (ifHighSpeed * 1000000) * 100 : 0",
+            "math.max((ifInOctets*8/ifSpeed), (ifOutOctets*8/ifSpeed))",
+            "datasources['ns-dskTotal'] - datasources['ns-dskUsed']"
+    })
+    public String expression;
+
+    private final JexlEngine jexlEngine = new JexlEngine();
+    private ExpressionConfigWrapper wrapper;
+    private Map<String, Double> values;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ThresholdExpressionException {
+        final Expression exp = new Expression();
+        exp.setExpression(expression);
+        wrapper = new ExpressionConfigWrapper(exp);
+
+        values = new HashMap<>();
+        values.put("ifHCInOctets", 123456789.0);
+        values.put("ifHighSpeed", 1000.0);
+        values.put("ifInOctets", 1234567.0);
+        values.put("ifOutOctets", 7654321.0);
+        values.put("ifSpeed", 100000000.0);
+        values.put("ns-dskTotal", 100.0);
+        values.put("ns-dskUsed", 40.0);
+    }
+
+    @Benchmark
+    public double evaluate() throws ThresholdExpressionException {
+        return wrapper.evaluate(expression, values);
+    }
+
+    @Benchmark
+    public double parseAndEvaluate() {
+        final Map<String, Object> context = new HashMap<>(values);
+        context.put("datasources", new HashMap<>(values));
+        context.put("math", new ExpressionConfigWrapper.MathBinding());
+        final Object result = jexlEngine.createExpression(expression).evaluate(new MapContext(context));
+        return Double.parseDouble(result.toString());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(ExpressionConfigWrapperBenchmark.class.getSimpleName())
+                .result("expression-config-wrapper-benchmark.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -168,6 +168,24 @@ public class ExpressionConfigWrapperTest {
         Assert.assertEquals(60.0, wrapper.interpolateAndEvaluate(values, scope).value, 0.0);
     }
 
+    @Test
+    public void testCompiledExpressionPerInterpolation() throws Exception {
+        Map<String, Double> values = new HashMap<String,Double>();
+        values.put("ifInOctets", 200000.0);
+        values.put("ifSpeed", 10000000.0);
+        Assert.assertEquals(16.0, wrapper.interpolateAndEvaluate(values, scope).value, 0.0);
+
+        // A different interpolation must not reuse the expression compiled for the previous one
+        final Scope otherScope = mock(Scope.class);
+        when(otherScope.get(new ContextKey("requisition", "testMultiplier"))).thenReturn(Optional.of("10"));
+        Assert.assertEquals(1.6, wrapper.interpolateAndEvaluate(values, otherScope).value, 0.0001);
+        Assert.assertEquals(16.0, wrapper.interpolateAndEvaluate(values, scope).value, 0.0);
+
+        // The values are exposed to the expression, not copied
+        values.put("ifInOctets", 400000.0);
+        Assert.assertEquals(32.0, wrapper.interpolateAndEvaluate(values, scope).value, 0.0);
+    }
+
     @Test
     public void testFunctions() throws Exception {
         Expression exp = new Expression();
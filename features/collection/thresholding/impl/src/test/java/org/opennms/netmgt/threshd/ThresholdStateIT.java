@@ -44,6 +44,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.stubbing.Answer;
+import org.opennms.core.ipc.sink.api.MessageOwnership;
 import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
 import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
 import org.opennms.features.distributed.kvstore.api.BlobStore;
@@ -81,6 +82,7 @@ public class ThresholdStateIT {
     
     @After
     public void cleanup() {
+        AbstractThresholdEvaluatorState.discardPendingStates(blobStore);
         blobStore.truncateContext(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT);
     }
     
@@ -148,6 +150,53 @@ public class ThresholdStateIT {
         assertThat(fetchesPerformed.get(), greaterThan(1));
     }
     
+    @Test
+    public void onlyFetchesWhenOwnershipChanged() {
+        BlobStore mockBlobStore = mock(BlobStore.class);
+        AbstractThresholdEvaluatorState.clearSerdesMap();
+
+        AtomicInteger fetchesPerformed = new AtomicInteger(0);
+        when(mockBlobStore.get(anyString(), anyString())).then((Answer<byte[]>) invocationOnMock -> {
+            fetchesPerformed.incrementAndGet();
+            return new byte[0];
+        });
+        when(mockBlobStore.getIfStale(anyString(), anyString(), anyLong())).then((Answer<byte[]>) invocationOnMock -> {
+            fetchesPerformed.incrementAndGet();
+            return new byte[0];
+        });
+        when(thresholdingSession.getBlobStore()).thenReturn(mockBlobStore);
+        when(thresholdingSession.isDistributed()).thenReturn(true);
+
+        try {
+            ThresholdEvaluatorState item;
+            System.setProperty("org.opennms.netmgt.threshd.trust_owned_state", "true");
+            try {
+                item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(getWrapper(), thresholdingSession);
+            } finally {
+                System.clearProperty("org.opennms.netmgt.threshd.trust_owned_state");
+            }
+
+            // The partitions are assigned to this instance
+            MessageOwnership.ownershipChanged();
+
+            // Only the first evaluation has to fetch while we keep on owning the messages
+            item.evaluate(100.0);
+            item.evaluate(100.0);
+            item.evaluate(100.0);
+            assertThat(fetchesPerformed.get(), equalTo(1));
+
+            // The partitions were reassigned so the state may have been updated elsewhere and has to be fetched again
+            MessageOwnership.ownershipChanged();
+            item.evaluate(100.0);
+            assertThat(fetchesPerformed.get(), equalTo(2));
+            item.evaluate(100.0);
+            assertThat(fetchesPerformed.get(), equalTo(2));
+        } finally {
+            when(thresholdingSession.getBlobStore()).thenReturn(blobStore);
+            when(thresholdingSession.isDistributed()).thenReturn(false);
+        }
+    }
+
     @Test
     public void canRetriggerAfterClear() {
         ThresholdEvaluatorState item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(getWrapper(),
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.threshd;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.features.distributed.kvstore.api.BlobStore;
+import org.opennms.features.distributed.kvstore.blob.inmemory.InMemoryMapBlobStore;
+
+public class ThresholdStateWriteBehindTest {
+    private static final String CONTEXT = "thresholding";
+
+    private ThresholdStateWriteBehind writeBehind;
+
+    @After
+    public void tearDown() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+    }
+
+    @Test
+    public void canCoalesceAndFlushStates() {
+        InMemoryMapBlobStore blobStore = InMemoryMapBlobStore.withDefaultTicks();
+        Map<String, Long> persisted = new HashMap<>();
+        writeBehind = new ThresholdStateWriteBehind(blobStore, CONTEXT, 0, 100, persisted::put);
+
+        writeBehind.enqueue("a", new byte[]{1}, null);
+        writeBehind.enqueue("b", new byte[]{2}, null);
+        writeBehind.enqueue("a", new byte[]{3}, null);
+
+        // Nothing is written until we flush and only the latest state for a key is kept
+        assertThat(writeBehind.getPendingCount(), equalTo(2));
+        assertArrayEquals(new byte[]{3}, writeBehind.getPending("a"));
+        assertThat(blobStore.get("a", CONTEXT).isPresent(), equalTo(false));
+
+        writeBehind.flush();
+
+        assertThat(writeBehind.getPendingCount(), equalTo(0));
+        assertArrayEquals(new byte[]{3}, blobStore.get("a", CONTEXT).get());
+        assertArrayEquals(new byte[]{2}, blobStore.get("b", CONTEXT).get());
+        assertThat(persisted.get("a"), equalTo(blobStore.getLastUpdated("a", CONTEXT).getAsLong()));
+        assertThat(writeBehind.getMetrics().histogram("flush-size").getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void flushesPendingStatesOnClose() {
+        BlobStore blobStore = mock(BlobStore.class);
+        writeBehind = new ThresholdStateWriteBehind(blobStore, CONTEXT, 0, 10, (k, t) -> {});
+        // Fill the buffer without reaching the batch size so that no flush is triggered
+        for (int i = 0; i < 9; i++) {
+            writeBehind.enqueue("key" + i, new byte[0], 60);
+        }
+        writeBehind.close();
+
+        verify(blobStore, times(1)).putAll(anyMapOf(String.class, byte[].class), anyString(), any());
+    }
+
+    @Test
+    public void doesNotQueueStatesOnceClosed() {
+        BlobStore blobStore = mock(BlobStore.class);
+        writeBehind = new ThresholdStateWriteBehind(blobStore, CONTEXT, 0, 10, (k, t) -> {});
+        assertThat(writeBehind.enqueue("a", new byte[0], 60), equalTo(true));
+        writeBehind.close();
+
+        // The caller has to write the state itself
+        assertThat(writeBehind.enqueue("b", new byte[0], 60), equalTo(false));
+        assertThat(writeBehind.getPendingCount(), equalTo(0));
+        verify(blobStore, times(1)).putAll(anyMapOf(String.class, byte[].class), anyString(), any());
+    }
+
+    @Test
+    public void dropsPendingStatesWhenDiscardedAndClosed() {
+        BlobStore blobStore = mock(BlobStore.class);
+        writeBehind = new ThresholdStateWriteBehind(blobStore, CONTEXT, 0, 10, (k, t) -> {});
+        writeBehind.enqueue("a", new byte[0], 60);
+        writeBehind.discardAndClose();
+
+        assertThat(writeBehind.getPendingCount(), equalTo(0));
+        assertThat(writeBehind.enqueue("b", new byte[0], 60), equalTo(false));
+        verify(blobStore, times(0)).putAll(anyMapOf(String.class, byte[].class), anyString(), any());
+    }
+
+    @Test
+    public void retriesFailedStatesAndDiscards() {
+        BlobStore blobStore = mock(BlobStore.class);
+        when(blobStore.putAll(anyMapOf(String.class, byte[].class), anyString(), any()))
+                .thenThrow(new RuntimeException("unavailable"))
+                .thenReturn(1L);
+        Map<String, Long> persisted = new HashMap<>();
+        writeBehind = new ThresholdStateWriteBehind(blobStore, CONTEXT, 0, 100, persisted::put);
+
+        writeBehind.enqueue("a", new byte[]{1}, null);
+        writeBehind.enqueue("b", new byte[]{2}, null);
+        writeBehind.flush();
+
+        // The failed states are kept for the next flush
+        assertThat(writeBehind.getPendingCount(), equalTo(2));
+        assertThat(persisted.isEmpty(), equalTo(true));
+
+        writeBehind.discard("b");
+        assertThat(writeBehind.getPending("b"), nullValue());
+        writeBehind.flush();
+
+        assertThat(writeBehind.getPendingCount(), equalTo(0));
+        assertThat(persisted.keySet().size(), equalTo(1));
+        assertThat(persisted.get("a"), equalTo(1L));
+    }
+}
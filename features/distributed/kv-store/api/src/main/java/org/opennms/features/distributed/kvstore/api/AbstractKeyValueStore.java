@@ -28,8 +28,12 @@
 
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Skeleton implementation of {@link KeyValueStore} that defaults calls without ttl specified.
@@ -53,6 +57,68 @@ public abstract class AbstractKeyValueStore<T> implements KeyValueStore<T> {
         return putAsync(key, value, context, null);
     }
 
+    /**
+     * A default bulk put implementation that puts the values one at a time.
+     */
+    @Override
+    public long putAll(Map<String, T> values, String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long timestamp = 0;
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            timestamp = Math.max(timestamp, put(entry.getKey(), entry.getValue(), context, ttlInSeconds));
+        }
+        return timestamp;
+    }
+
+    /**
+     * A default bulk get implementation that gets the values one at a time.
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        Map<String, T> values = new HashMap<>();
+        for (String key : keys) {
+            get(key, context).ifPresent(value -> values.put(key, value));
+        }
+        return values;
+    }
+
+    /**
+     * A default bulk delete implementation that deletes the keys one at a time.
+     */
+    @Override
+    public void deleteAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        keys.forEach(key -> delete(key, context));
+    }
+
+    /**
+     * A default paged enumeration that enumerates the whole context and then hands it out in pages.
+     */
+    @Override
+    public void enumerateContext(String context, int pageSize, Consumer<Map<String, T>> consumer) {
+        Objects.requireNonNull(context);
+        Objects.requireNonNull(consumer);
+
+        Map<String, T> page = new HashMap<>();
+        for (Map.Entry<String, T> entry : enumerateContext(context).entrySet()) {
+            page.put(entry.getKey(), entry.getValue());
+            if (page.size() >= pageSize) {
+                consumer.accept(page);
+                page = new HashMap<>();
+            }
+        }
+        if (!page.isEmpty()) {
+            consumer.accept(page);
+        }
+    }
+
     /**
      * A default truncate implementation.
      */
@@ -28,10 +28,12 @@
 
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Abstract representation of a simple key-value store.
@@ -68,12 +70,34 @@ public interface KeyValueStore<T> {
      */
     long put(String key, T value, String context, Integer ttlInSeconds);
 
+    /**
+     * Put several values in the same context at once with a suggested time-to-live.
+     * <p>
+     * Implementations should write the values in as few round trips to the backing store as possible. The write is
+     * not atomic, if it fails some of the values may have been persisted.
+     *
+     * @param values       the values to put keyed by the record's key
+     * @param context      a context used to differentiate between keys with the same name (forms a compound key)
+     * @param ttlInSeconds the time to live in seconds for these keys or no ttl if null
+     * @return the most recent timestamp any of the values was persisted with
+     */
+    long putAll(Map<String, T> values, String context, Integer ttlInSeconds);
+
     /**
      * @param context a context used to differentiate between keys with the same name (forms a compound key)
      * @return an optional containing the value if present or empty if the key did not exist
      */
     Optional<T> get(String key, String context);
 
+    /**
+     * Get several values from the same context at once.
+     *
+     * @param keys    the keys to get
+     * @param context a context used to differentiate between keys with the same name (forms a compound key)
+     * @return a map of the values that were found keyed by the record's key, keys that did not exist are absent
+     */
+    Map<String, T> getAll(Collection<String> keys, String context);
+
     /**
      * @param context   a context used to differentiate between keys with the same name (forms a compound key)
      * @param timestamp the timestamp of the last known state such that if an record with a more recent timestamp is
@@ -97,11 +121,29 @@ public interface KeyValueStore<T> {
      */
     Map<String, T> enumerateContext(String context);
 
+    /**
+     * Enumerate a context one page at a time without holding all of its records in memory.
+     *
+     * @param context  a context used to differentiate between keys with the same name (forms a compound key)
+     * @param pageSize the maximum number of records handed to the consumer at once
+     * @param consumer called with each page of records where the map's key is the record's key and the map's value is
+     *                 the records value
+     */
+    void enumerateContext(String context, int pageSize, Consumer<Map<String, T>> consumer);
+
     /**
      * @param context a context used to differentiate between keys with the same name (forms a compound key)
      */
     void delete(String key, String context);
 
+    /**
+     * Delete several keys from the same context at once.
+     *
+     * @param keys    the keys to delete
+     * @param context a context used to differentiate between keys with the same name (forms a compound key)
+     */
+    void deleteAll(Collection<String> keys, String context);
+
     /**
      * Remove all records for a given context.
      *
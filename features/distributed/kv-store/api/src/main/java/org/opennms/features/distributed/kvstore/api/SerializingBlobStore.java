@@ -28,11 +28,14 @@
 
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public final class SerializingBlobStore<V> {
@@ -60,10 +63,20 @@ public final class SerializingBlobStore<V> {
         return blobStore.put(key, serializer.serialize(value), context, ttlInSeconds);
     }
 
+    public long putAll(Map<String, V> values, String context, Integer ttlInSeconds) {
+        Map<String, byte[]> serializedValues = new LinkedHashMap<>();
+        values.forEach((key, value) -> serializedValues.put(key, serializer.serialize(value)));
+        return blobStore.putAll(serializedValues, context, ttlInSeconds);
+    }
+
     public Optional<V> get(String key, String context) {
         return blobStore.get(key, context).map(deserializer::deserialize);
     }
 
+    public Map<String, V> getAll(Collection<String> keys, String context) {
+        return deserializeMap(blobStore.getAll(keys, context));
+    }
+
     public Optional<Optional<V>> getIfStale(String key, String context, long timestamp) {
         return blobStore.getIfStale(key, context, timestamp).map(o -> o.map(deserializer::deserialize));
     }
@@ -88,6 +101,10 @@ public final class SerializingBlobStore<V> {
         return deserializeMap(blobStore.enumerateContext(context));
     }
 
+    public void enumerateContext(String context, int pageSize, Consumer<Map<String, V>> consumer) {
+        blobStore.enumerateContext(context, pageSize, page -> consumer.accept(deserializeMap(page)));
+    }
+
     public CompletableFuture<Map<String, V>> enumerateContextAsync(String context) {
         return blobStore.enumerateContextAsync(context).thenApply(this::deserializeMap);
     }
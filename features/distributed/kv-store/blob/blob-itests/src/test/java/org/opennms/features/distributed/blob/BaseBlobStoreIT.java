@@ -37,6 +37,8 @@ import static org.junit.Assert.fail;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -170,6 +172,59 @@ public abstract class BaseBlobStoreIT {
         assertThat(currentValue.get().get(), equalTo(value));
     }
     
+    @Test
+    public void canPutAll() {
+        String context = "canPutAll";
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            values.put("key" + i, "value" + i);
+        }
+
+        long timestamp = serializingBlobStore.putAll(values, context, null);
+
+        assertThat(serializingBlobStore.enumerateContext(context), equalTo(values));
+        assertThat(blobStore.getLastUpdated("key0", context).getAsLong(), equalTo(timestamp));
+    }
+
+    @Test
+    public void canGetAllAndDeleteAll() {
+        String context = "canGetAllAndDeleteAll";
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            values.put("key" + i, "value" + i);
+        }
+        serializingBlobStore.putAll(values, context, null);
+
+        Map<String, String> found = serializingBlobStore.getAll(Arrays.asList("key1", "key2", "missing"), context);
+        assertThat(found.size(), equalTo(2));
+        assertThat(found.get("key1"), equalTo("value1"));
+        assertThat(found.get("key2"), equalTo("value2"));
+
+        blobStore.deleteAll(Arrays.asList("key1", "key2"), context);
+        assertThat(serializingBlobStore.getAll(values.keySet(), context).size(), equalTo(8));
+        assertThat(serializingBlobStore.get("key1", context), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void canEnumerateInPages() {
+        String context = "canEnumerateInPages";
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 25; i++) {
+            values.put("key" + i, "value" + i);
+        }
+        serializingBlobStore.putAll(values, context, null);
+
+        List<Integer> pageSizes = new ArrayList<>();
+        Map<String, String> enumerated = new HashMap<>();
+        serializingBlobStore.enumerateContext(context, 10, page -> {
+            pageSizes.add(page.size());
+            enumerated.putAll(page);
+        });
+
+        assertThat(pageSizes, equalTo(Arrays.asList(10, 10, 5)));
+        assertThat(enumerated, equalTo(values));
+    }
+
     @Test
     public void canEnumerate() {
         String key1 = "key1";
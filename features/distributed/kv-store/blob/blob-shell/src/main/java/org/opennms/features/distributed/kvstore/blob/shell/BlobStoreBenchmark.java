@@ -30,7 +30,9 @@ package org.opennms.features.distributed.kvstore.blob.shell;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -73,6 +75,10 @@ public class BlobStoreBenchmark implements Action {
     @Option(name = "-a", aliases = "--async", description = "Whether or not to use async")
     private boolean async = false;
 
+    @Option(name = "-b", aliases = "--bulk", description = "Write and read the records with bulk operations of the " +
+            "given size instead of one at a time")
+    private int bulkSize = 0;
+
     private static final String CONTEXT = "benchmark";
 
     private static final String KEY = "test";
@@ -96,6 +102,14 @@ public class BlobStoreBenchmark implements Action {
         System.out.println(String.format("BlobStore implementation in use: %s", blobStore.getName()));
         writePayload = new byte[payloadSize];
         StringBuilder throughputResultsBuilder = new StringBuilder();
+        if (bulkSize > 0) {
+            // Bulk operations are synchronous and only ever read the full value
+            throughputResultsBuilder.append(benchmarkBulk("bulk write", this::writeAll)).append('\n')
+                    .append(benchmarkBulk("bulk read", this::readAll));
+            reportAndPrint(throughputResultsBuilder);
+            return null;
+        }
+
         throughputResultsBuilder.append(benchmark("write", this::writeAsync, this::write));
         String readThroughput = benchmark("read", this::readAsync, this::read);
 
@@ -104,12 +118,16 @@ public class BlobStoreBenchmark implements Action {
             throughputResultsBuilder.append('\n').append(readThroughput);
         }
 
+        reportAndPrint(throughputResultsBuilder);
+        return null;
+    }
+
+    private void reportAndPrint(StringBuilder throughputResultsBuilder) {
         ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics).build();
         reporter.report();
         reporter.close();
 
         System.out.println(throughputResultsBuilder.toString());
-        return null;
     }
 
     private CompletableFuture<?> timeAsyncOperation(Histogram results, Supplier<CompletableFuture<?>> futureSupplier) {
@@ -131,6 +149,17 @@ public class BlobStoreBenchmark implements Action {
                 blobStore.getAsync(key, CONTEXT));
     }
 
+    private void writeAll(List<String> keys, Histogram results) {
+        Map<String, byte[]> values = new HashMap<>(keys.size());
+        keys.forEach(key -> values.put(key, writePayload));
+        timeOperation(results, () -> blobStore.putAll(values, CONTEXT, (int) TimeUnit.SECONDS.convert(1,
+                TimeUnit.HOURS)));
+    }
+
+    private void readAll(List<String> keys, Histogram results) {
+        timeOperation(results, () -> blobStore.getAll(keys, CONTEXT));
+    }
+
     private void timeOperation(Histogram results, Runnable operation) {
         long start = System.currentTimeMillis();
         operation.run();
@@ -195,4 +224,45 @@ public class BlobStoreBenchmark implements Action {
         double throughPut = ((payloadSize * numberOfRecords) / 1024.0) / (totalTime.get() / 1000.0);
         return String.format("%s throughput: %.2f KB/s", methodType, throughPut);
     }
+
+    private String benchmarkBulk(String methodType, BiConsumer<List<String>, Histogram> bulkFunction)
+            throws InterruptedException {
+        System.out.print(String.format("Benchmarking %s performance...", methodType));
+
+        Histogram results = metrics.histogram(String.format("%s times (%d records)", methodType, bulkSize));
+        AtomicLong totalTime = new AtomicLong(0);
+
+        // Do the benchmark on another thread so we can provide feedback while it is executing
+        CompletableFuture<Boolean> benchmarkFuture = CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            List<String> keys = new ArrayList<>(bulkSize);
+
+            for (int i = 0; i < numberOfRecords; i++) {
+                keys.add(String.format("%s-%d", KEY, i));
+                if (keys.size() >= bulkSize) {
+                    bulkFunction.accept(keys, results);
+                    keys = new ArrayList<>(bulkSize);
+                }
+            }
+            if (!keys.isEmpty()) {
+                bulkFunction.accept(keys, results);
+            }
+
+            totalTime.set(System.currentTimeMillis() - start);
+
+            return true;
+        });
+
+        // Give user feedback while the benchmark is running
+        while (!benchmarkFuture.getNow(false)) {
+            System.out.print('.');
+            Thread.sleep(1000);
+        }
+
+        System.out.println("done");
+
+        double throughPut = ((payloadSize * numberOfRecords) / 1024.0) / (totalTime.get() / 1000.0);
+        double recordsPerSecond = numberOfRecords / (totalTime.get() / 1000.0);
+        return String.format("%s throughput: %.2f KB/s (%.2f records/s)", methodType, throughPut, recordsPerSecond);
+    }
 }
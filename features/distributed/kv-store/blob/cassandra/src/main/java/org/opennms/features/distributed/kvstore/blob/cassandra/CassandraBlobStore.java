@@ -31,10 +31,13 @@ package org.opennms.features.distributed.kvstore.blob.cassandra;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -43,6 +46,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import org.opennms.features.distributed.cassandra.api.CassandraSchemaManagerFactory;
 import org.opennms.features.distributed.cassandra.api.CassandraSession;
@@ -75,11 +79,14 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
     private static final String VALUE_COLUMN = "value";
     private static final String TIMESTAMP_COLUMN = "lastUpdated";
     private static final String TABLE_NAME = "kvstore_blob";
+    // The maximum number of statements a bulk operation keeps in flight at the same time
+    private static final int MAX_IN_FLIGHT_STATEMENTS = 128;
 
     private final CassandraSession session;
     private final PreparedStatement insertStmt;
     private final PreparedStatement insertWithTtlStmt;
     private final PreparedStatement selectStmt;
+    private final PreparedStatement selectWithKeyStmt;
     private final PreparedStatement timestampStmt;
     private final PreparedStatement enumerateStatement;
     private final PreparedStatement deleteStatement;
@@ -103,6 +110,8 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
                 "TTL ?", TABLE_NAME, KEY_COLUMN, CONTEXT_COLUMN, VALUE_COLUMN, TIMESTAMP_COLUMN));
         selectStmt = session.prepare(String.format("SELECT %s FROM %s WHERE %s = ? AND %s = ?", VALUE_COLUMN,
                 TABLE_NAME, KEY_COLUMN, CONTEXT_COLUMN));
+        selectWithKeyStmt = session.prepare(String.format("SELECT %s, %s FROM %s WHERE %s = ? AND %s = ?",
+                KEY_COLUMN, VALUE_COLUMN, TABLE_NAME, KEY_COLUMN, CONTEXT_COLUMN));
         timestampStmt = session.prepare(String.format("SELECT %s FROM %s WHERE %s = ? AND %s = ?", TIMESTAMP_COLUMN,
                 TABLE_NAME, KEY_COLUMN, CONTEXT_COLUMN));
         enumerateStatement = session.prepare(String.format("SELECT %s, %s FROM %s WHERE %s = ?", KEY_COLUMN,
@@ -120,6 +129,83 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
         return timestamp;
     }
 
+    @Override
+    public long putAll(Map<String, byte[]> values, String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long timestamp = System.currentTimeMillis();
+        List<Statement> statements = new ArrayList<>(values.size());
+        values.forEach((key, value) -> statements.add(getStatementForInsert(key, context, ByteBuffer.wrap(value),
+                timestamp, ttlInSeconds)));
+        executeBounded(statements, resultSet -> {});
+        return timestamp;
+    }
+
+    @Override
+    public Map<String, byte[]> getAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        Map<String, byte[]> resultMap = new HashMap<>();
+        List<Statement> statements = new ArrayList<>(keys.size());
+        keys.forEach(key -> statements.add(selectWithKeyStmt.bind(key, context)));
+        executeBounded(statements, resultSet -> {
+            Row row = resultSet.one();
+            if (row != null) {
+                resultMap.put(row.getString(KEY_COLUMN), row.getBytes(VALUE_COLUMN).array());
+            }
+        });
+        return resultMap;
+    }
+
+    @Override
+    public void deleteAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        List<Statement> statements = new ArrayList<>(keys.size());
+        keys.forEach(key -> statements.add(deleteStatement.bind(key, context)));
+        executeBounded(statements, resultSet -> {});
+    }
+
+    @Override
+    public void enumerateContext(String context, int pageSize, Consumer<Map<String, byte[]>> consumer) {
+        Objects.requireNonNull(context);
+        Objects.requireNonNull(consumer);
+
+        // The driver fetches the following pages as we iterate over the rows
+        Statement statement = enumerateStatement.bind(context).setFetchSize(pageSize);
+        Map<String, byte[]> page = new HashMap<>();
+        for (Row row : session.execute(statement)) {
+            page.put(row.getString(KEY_COLUMN), row.getBytes(VALUE_COLUMN).array());
+            if (page.size() >= pageSize) {
+                consumer.accept(page);
+                page = new HashMap<>();
+            }
+        }
+        if (!page.isEmpty()) {
+            consumer.accept(page);
+        }
+    }
+
+    /**
+     * Every key is its own partition so rather than using batch statements, which would all go through a single
+     * coordinator, the statements are executed concurrently with a bounded number of them in flight.
+     */
+    private void executeBounded(List<Statement> statements, Consumer<ResultSet> resultConsumer) {
+        List<ResultSetFuture> inFlight = new ArrayList<>(Math.min(statements.size(), MAX_IN_FLIGHT_STATEMENTS));
+        for (Statement statement : statements) {
+            inFlight.add(session.executeAsync(statement));
+            if (inFlight.size() >= MAX_IN_FLIGHT_STATEMENTS) {
+                // Cassandra will throw a runtime exception here if any of the executions failed
+                inFlight.forEach(future -> resultConsumer.accept(future.getUninterruptibly()));
+                inFlight.clear();
+            }
+        }
+        inFlight.forEach(future -> resultConsumer.accept(future.getUninterruptibly()));
+    }
+
     @Override
     public Optional<byte[]> get(String key, String context) {
         byte[] serializedValue;
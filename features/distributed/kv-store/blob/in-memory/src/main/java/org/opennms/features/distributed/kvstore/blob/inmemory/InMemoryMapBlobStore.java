@@ -29,6 +29,7 @@
 package org.opennms.features.distributed.kvstore.blob.inmemory;
 
 import java.util.AbstractMap;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -65,6 +66,16 @@ public class InMemoryMapBlobStore extends AbstractAsyncKeyValueStore<byte[]> imp
         return timestamp;
     }
 
+    @Override
+    public long putAll(Map<String, byte[]> values, String context, Integer ttlInSeconds) {
+        long timestamp = timestampGenerator.now();
+
+        values.forEach((key, value) -> inMemoryStore.put(new AbstractMap.SimpleImmutableEntry<>(key, context),
+                new AbstractMap.SimpleImmutableEntry<>(value, timestamp)));
+
+        return timestamp;
+    }
+
     @Override
     public Optional<byte[]> get(String key, String context) {
         Map.Entry<byte[], Long> valueEntry = inMemoryStore.get(new AbstractMap.SimpleImmutableEntry<>(key, context));
@@ -76,6 +87,18 @@ public class InMemoryMapBlobStore extends AbstractAsyncKeyValueStore<byte[]> imp
         return Optional.of(valueEntry.getKey());
     }
 
+    @Override
+    public Map<String, byte[]> getAll(Collection<String> keys, String context) {
+        Map<String, byte[]> values = new HashMap<>();
+        for (String key : keys) {
+            Map.Entry<byte[], Long> valueEntry = inMemoryStore.get(new AbstractMap.SimpleImmutableEntry<>(key, context));
+            if (valueEntry != null) {
+                values.put(key, valueEntry.getKey());
+            }
+        }
+        return values;
+    }
+
     @Override
     public Optional<Optional<byte[]>> getIfStale(String key, String context, long timestamp) {
         OptionalLong lastUpdated = getLastUpdated(key, context);
@@ -119,4 +142,9 @@ public class InMemoryMapBlobStore extends AbstractAsyncKeyValueStore<byte[]> imp
     public void delete(String key, String context) {
         inMemoryStore.remove(new AbstractMap.SimpleImmutableEntry<>(key, context));
     }
+
+    @Override
+    public void deleteAll(Collection<String> keys, String context) {
+        keys.forEach(key -> inMemoryStore.remove(new AbstractMap.SimpleImmutableEntry<>(key, context)));
+    }
 }
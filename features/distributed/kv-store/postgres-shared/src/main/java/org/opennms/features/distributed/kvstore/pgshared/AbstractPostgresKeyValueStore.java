@@ -34,12 +34,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.sql.DataSource;
 
@@ -101,6 +103,16 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
                 KEY_COLUMN, VALUE_COLUMN, EXPIRES_AT_COLUMN, getTableName(), CONTEXT_COLUMN));
     }
 
+    private PreparedStatement getSelectAllStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement(String.format("SELECT %s, %s, %s FROM %s WHERE %s = ? AND %s = ANY(?)",
+                KEY_COLUMN, VALUE_COLUMN, EXPIRES_AT_COLUMN, getTableName(), CONTEXT_COLUMN, KEY_COLUMN));
+    }
+
+    private PreparedStatement getDeleteAllStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement(String.format("DELETE FROM %s WHERE %s = ? AND %s = ANY(?)",
+                getTableName(), CONTEXT_COLUMN, KEY_COLUMN));
+    }
+
     private PreparedStatement getDeleteStatement(Connection connection) throws SQLException {
         return connection.prepareStatement(String.format("DELETE FROM %s WHERE %s = ? AND %s = ?",
                 getTableName(), KEY_COLUMN, CONTEXT_COLUMN));
@@ -119,30 +131,58 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         long now = System.currentTimeMillis();
 
         withStatement(this::getUpsertStatement, upsertStatement -> {
-            // The below sets the prepared values for both the INSERT and UPDATE cases hence some values being 
-            // repeated
-            upsertStatement.setString(1, key);
-            upsertStatement.setString(2, context);
-            upsertStatement.setTimestamp(3, new java.sql.Timestamp(now));
-            upsertStatement.setTimestamp(6, new java.sql.Timestamp(now));
-
-            if (ttlInSeconds != null) {
-                long expireTime = now + TimeUnit.MILLISECONDS.convert(ttlInSeconds, TimeUnit.SECONDS);
-                upsertStatement.setTimestamp(4, new java.sql.Timestamp(expireTime));
-                upsertStatement.setTimestamp(7, new java.sql.Timestamp(expireTime));
-            } else {
-                upsertStatement.setNull(4, Types.DATE);
-                upsertStatement.setNull(7, Types.DATE);
-            }
-
-            upsertStatement.setObject(5, getSQLTypeFromValueType(value));
-            upsertStatement.setObject(8, getSQLTypeFromValueType(value));
+            bindUpsert(upsertStatement, key, value, context, now, ttlInSeconds);
             return upsertStatement.execute();
         });
 
         return now;
     }
 
+    @Override
+    public long putAll(Map<String, T> values, String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long now = System.currentTimeMillis();
+        if (values.isEmpty()) {
+            return now;
+        }
+
+        // All of the upserts are sent to the database as a single batch on the same connection
+        withStatement(this::getUpsertStatement, upsertStatement -> {
+            for (Map.Entry<String, T> entry : values.entrySet()) {
+                bindUpsert(upsertStatement, Objects.requireNonNull(entry.getKey()),
+                        Objects.requireNonNull(entry.getValue()), context, now, ttlInSeconds);
+                upsertStatement.addBatch();
+            }
+            return upsertStatement.executeBatch();
+        });
+
+        return now;
+    }
+
+    private void bindUpsert(PreparedStatement upsertStatement, String key, T value, String context, long now,
+                            Integer ttlInSeconds) throws SQLException {
+        // The below sets the prepared values for both the INSERT and UPDATE cases hence some values being 
+        // repeated
+        upsertStatement.setString(1, key);
+        upsertStatement.setString(2, context);
+        upsertStatement.setTimestamp(3, new java.sql.Timestamp(now));
+        upsertStatement.setTimestamp(6, new java.sql.Timestamp(now));
+
+        if (ttlInSeconds != null) {
+            long expireTime = now + TimeUnit.MILLISECONDS.convert(ttlInSeconds, TimeUnit.SECONDS);
+            upsertStatement.setTimestamp(4, new java.sql.Timestamp(expireTime));
+            upsertStatement.setTimestamp(7, new java.sql.Timestamp(expireTime));
+        } else {
+            upsertStatement.setNull(4, Types.DATE);
+            upsertStatement.setNull(7, Types.DATE);
+        }
+
+        upsertStatement.setObject(5, getSQLTypeFromValueType(value));
+        upsertStatement.setObject(8, getSQLTypeFromValueType(value));
+    }
+
     @Override
     public Optional<T> get(String key, String context) {
         Objects.requireNonNull(key);
@@ -167,6 +207,36 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         });
     }
 
+    @Override
+    public Map<String, T> getAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        Map<String, T> resultMap = new HashMap<>();
+        if (keys.isEmpty()) {
+            return resultMap;
+        }
+
+        // All of the keys are fetched with a single statement
+        return withStatement(this::getSelectAllStatement, selectAllStatement -> {
+            selectAllStatement.setString(1, context);
+            selectAllStatement.setArray(2, selectAllStatement.getConnection().createArrayOf("text",
+                    keys.toArray()));
+
+            try (ResultSet resultSet = selectAllStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    // Ignore results that are already expired
+                    if (!isExpired(resultSet)) {
+                        resultMap.put(resultSet.getString(KEY_COLUMN),
+                                getValueTypeFromSQLType(resultSet, VALUE_COLUMN));
+                    }
+                }
+            }
+
+            return resultMap;
+        });
+    }
+
     @Override
     public Optional<Optional<T>> getIfStale(String key, String context, long timestamp) {
         Objects.requireNonNull(key);
@@ -244,6 +314,45 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         });
     }
 
+    @Override
+    public void enumerateContext(String context, int pageSize, Consumer<Map<String, T>> consumer) {
+        Objects.requireNonNull(context);
+        Objects.requireNonNull(consumer);
+
+        try (Connection connection = dataSource.getConnection()) {
+            // The driver only streams the results with a cursor when not in auto commit mode
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement enumerateStatement = getEnumerateStatement(connection)) {
+                enumerateStatement.setFetchSize(pageSize);
+                enumerateStatement.setString(1, context);
+
+                try (ResultSet enumerateResult = enumerateStatement.executeQuery()) {
+                    Map<String, T> page = new HashMap<>();
+                    while (enumerateResult.next()) {
+                        // Ignore results that are already expired
+                        if (!isExpired(enumerateResult)) {
+                            page.put(enumerateResult.getString(KEY_COLUMN),
+                                    getValueTypeFromSQLType(enumerateResult, VALUE_COLUMN));
+                        }
+                        if (page.size() >= pageSize) {
+                            consumer.accept(page);
+                            page = new HashMap<>();
+                        }
+                    }
+                    if (!page.isEmpty()) {
+                        consumer.accept(page);
+                    }
+                }
+            } finally {
+                connection.commit();
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public void delete(String key, String context) {
         Objects.requireNonNull(key);
@@ -257,6 +366,24 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         });
     }
 
+    @Override
+    public void deleteAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        withStatement(this::getDeleteAllStatement, deleteAllStatement -> {
+            deleteAllStatement.setString(1, context);
+            deleteAllStatement.setArray(2, deleteAllStatement.getConnection().createArrayOf("text",
+                    keys.toArray()));
+
+            return deleteAllStatement.execute();
+        });
+    }
+
     @Override
     public void truncateContext(String context) {
         Objects.requireNonNull(context);
@@ -29,18 +29,24 @@
 package org.opennms.netmgt.enlinkd;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.opennms.netmgt.enlinkd.common.Discovery;
 import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTableEntry;
@@ -58,8 +64,14 @@ public class DiscoveryBridgeDomains extends Discovery {
     }
     
     private static final Logger LOG = LoggerFactory.getLogger(DiscoveryBridgeDomains.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
     private int m_maxthreads=1;
     private final BridgeTopologyService m_bridgeTopologyService;
+    // long lived pool, idle threads time out between discovery cycles
+    private ThreadPoolExecutor m_executor;
+    // calculate and store time in milliseconds of the last cycle, keyed by the domain's root (or lowest) bridge
+    private volatile Map<Integer, Long> m_domainTimings = Collections.emptyMap();
 
     public DiscoveryBridgeDomains(BridgeTopologyService bridgeTopologyService) {
         super();
@@ -165,13 +177,15 @@ public class DiscoveryBridgeDomains extends Discovery {
             }
         }
 
-        List<Callable<String>> taskList = new ArrayList<Callable<String>>();
+        // every domain is owned by exactly one task per cycle: groups of updated bridges falling
+        // into the same domain are merged so that no two tasks ever work on the same domain
+        Map<BroadcastDomain, DiscoveryBridgeTopology> domainTopologies = new IdentityHashMap<>();
         for (Integer nodeid : nodeondomainbft.keySet()) {
             LOG.debug("run: nodes are on same domain {}",nodeondomainbft.get(nodeid).keySet());
             try {
                 BroadcastDomain domain = find(nodeondomainbft.get(nodeid).keySet(),
                                               nodeMacs.get(nodeid));
-                DiscoveryBridgeTopology nodebridgetopology = new DiscoveryBridgeTopology(domain);
+                DiscoveryBridgeTopology nodebridgetopology = domainTopologies.computeIfAbsent(domain, DiscoveryBridgeTopology::new);
                 
                 synchronized (domain) {
                     for (Integer bridgeId : nodeondomainbft.get(nodeid).keySet()) {
@@ -180,34 +194,6 @@ public class DiscoveryBridgeDomains extends Discovery {
                         m_bridgeTopologyService.updateBridgeOnDomain(domain,bridgeId);
                     }
                 }
-                                
-                Callable<String> task = () -> {
-                    synchronized (domain) {
-                        
-                        Date now = new Date();
-                        LOG.debug("run: calculate start"); 
-                        nodebridgetopology.calculate();
-                        LOG.debug("run: calculate end"); 
-                    
-                        LOG.debug("run: save start");
-                        try {
-                            m_bridgeTopologyService.store(domain, now);
-                        } catch (BridgeTopologyException e) {
-                            LOG.error("run: saving topology failed: {}. {}", 
-                                      e.getMessage(),
-                                      e.printTopology());
-                        } catch (ConcurrentModificationException e) {
-                            LOG.error("run: bridge:[{}], saving topology failed: {}. {}",
-                                      nodebridgetopology,
-                                      e.getMessage(),
-                                      domain.printTopology());
-                        }
-                        LOG.debug("run: save end");
-                    }
-                    return "executed Task: " + nodebridgetopology.getInfo();
-                };
-                taskList.add(task);
-                LOG.info("run: added Task {}", nodebridgetopology.getInfo());
             } catch (BridgeTopologyException e) {
                 LOG.error("run: node: [{}], getting broadcast domain. Failed {}",
                           nodeid, e.getMessage());
@@ -215,24 +201,67 @@ public class DiscoveryBridgeDomains extends Discovery {
             }
         }
 
-        int n = taskList.size();
-        if (n > m_maxthreads) {
-            n = m_maxthreads;
+        final Map<Integer, Long> timings = new ConcurrentHashMap<>();
+        List<Callable<String>> taskList = new ArrayList<Callable<String>>();
+        for (DiscoveryBridgeTopology nodebridgetopology : domainTopologies.values()) {
+            final BroadcastDomain domain = nodebridgetopology.getDomain();
+            Callable<String> task = () -> {
+                final long start = System.nanoTime();
+                long calculated;
+                synchronized (domain) {
+                    Date now = new Date();
+                    LOG.debug("run: calculate start"); 
+                    nodebridgetopology.calculate();
+                    LOG.debug("run: calculate end"); 
+                    calculated = System.nanoTime() - start;
+                
+                    LOG.debug("run: save start");
+                    try {
+                        m_bridgeTopologyService.store(domain, now);
+                    } catch (BridgeTopologyException e) {
+                        LOG.error("run: saving topology failed: {}. {}", 
+                                  e.getMessage(),
+                                  e.printTopology());
+                    } catch (ConcurrentModificationException e) {
+                        LOG.error("run: bridge:[{}], saving topology failed: {}. {}",
+                                  nodebridgetopology,
+                                  e.getMessage(),
+                                  domain.printTopology());
+                    }
+                    LOG.debug("run: save end");
+                }
+                long total = System.nanoTime() - start;
+                Integer domainId = getDomainId(domain);
+                timings.put(domainId, TimeUnit.NANOSECONDS.toMillis(total));
+                LOG.info("run: domain:[{}], bridges:{}, calculate {} ms, store {} ms",
+                         domainId,
+                         domain.getBridgeNodesOnDomain().size(),
+                         TimeUnit.NANOSECONDS.toMillis(calculated),
+                         TimeUnit.NANOSECONDS.toMillis(total - calculated));
+                return "executed Task: " + nodebridgetopology.getInfo();
+            };
+            taskList.add(task);
+            LOG.info("run: added Task {}", nodebridgetopology.getInfo());
         }
 
-        if (n > 0) {
-            LOG.debug("run: creating executorService with {} Threads", n);
-            ExecutorService executorService = Executors.newFixedThreadPool(n);
-            LOG.debug("run: created executorService with {} Threads", n);
-
+        if (taskList.size() > 0) {
+            long start = System.nanoTime();
             try {
-                for (Future<String> future : executorService.invokeAll(taskList)) {
+                for (Future<String> future : getExecutor().invokeAll(taskList)) {
                     LOG.info("run: {}", future.get());
                 }
             } catch (InterruptedException | ExecutionException e) {
                 LOG.error("run: executing task {}", e.getMessage(), e);
             }
-            executorService.shutdown();
+            m_domainTimings = sortByDuration(timings);
+            if (!m_domainTimings.isEmpty()) {
+                Map.Entry<Integer, Long> slowest = m_domainTimings.entrySet().iterator().next();
+                LOG.info("run: {} domains calculated in {} ms, slowest domain:[{}] took {} ms",
+                         m_domainTimings.size(),
+                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                         slowest.getKey(),
+                         slowest.getValue());
+            }
         } else {
             LOG.info("run: no updates on broadcast domains");
         }
@@ -240,6 +269,46 @@ public class DiscoveryBridgeDomains extends Discovery {
 
     }
 
+    private static Integer getDomainId(BroadcastDomain domain) {
+        if (domain.getRootBridge() != null) {
+            return domain.getRootBridge().getNodeId();
+        }
+        return domain.getBridgeNodesOnDomain().stream().min(Integer::compare).orElse(-1);
+    }
+
+    private static Map<Integer, Long> sortByDuration(Map<Integer, Long> timings) {
+        Map<Integer, Long> sorted = new LinkedHashMap<>();
+        timings.entrySet().stream()
+            .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+            .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor() {
+        if (m_executor == null) {
+            int threads = Math.max(1, m_maxthreads);
+            m_executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                                new LinkedBlockingQueue<>(),
+                                                r -> {
+                                                    Thread t = new Thread(r, "DiscoveryBridgeDomains-" + THREAD_COUNT.incrementAndGet());
+                                                    t.setDaemon(true);
+                                                    return t;
+                                                });
+            m_executor.allowCoreThreadTimeOut(true);
+            LOG.debug("getExecutor: created executor with {} Threads", threads);
+        }
+        return m_executor;
+    }
+
+    /**
+     * Returns the time in milliseconds spent calculating and storing each broadcast domain
+     * during the last discovery cycle, slowest domain first. Domains are identified by the
+     * node id of their root bridge.
+     */
+    public Map<Integer, Long> getDomainTimings() {
+        return m_domainTimings;
+    }
+
     @Override
     public String getName() {
         return "DiscoveryBridgeDomain";
@@ -249,8 +318,18 @@ public class DiscoveryBridgeDomains extends Discovery {
         return m_maxthreads;
     }
 
-    public void setMaxthreads(int maxthreads) {
+    public synchronized void setMaxthreads(int maxthreads) {
         m_maxthreads = maxthreads;
+        if (m_executor != null) {
+            int threads = Math.max(1, maxthreads);
+            if (threads > m_executor.getMaximumPoolSize()) {
+                m_executor.setMaximumPoolSize(threads);
+                m_executor.setCorePoolSize(threads);
+            } else {
+                m_executor.setCorePoolSize(threads);
+                m_executor.setMaximumPoolSize(threads);
+            }
+        }
     }
 
     public BridgeTopologyService getBridgeTopologyService() {
@@ -53,4 +53,44 @@ public class EnhancedLinkd extends AbstractSpringContextJmxServiceDaemon<org.ope
         return "enhancedLinkdContext";
     }
 
+    @Override
+    public int getLldpMatchedLinks() {
+        return getDaemon().getLldpTopologyService().getMatchedLinks();
+    }
+
+    @Override
+    public int getLldpUnmatchedLinks() {
+        return getDaemon().getLldpTopologyService().getUnmatchedLinks();
+    }
+
+    @Override
+    public int getCdpMatchedLinks() {
+        return getDaemon().getCdpTopologyService().getMatchedLinks();
+    }
+
+    @Override
+    public int getCdpUnmatchedLinks() {
+        return getDaemon().getCdpTopologyService().getUnmatchedLinks();
+    }
+
+    @Override
+    public int getOspfMatchedLinks() {
+        return getDaemon().getOspfTopologyService().getMatchedLinks();
+    }
+
+    @Override
+    public int getOspfUnmatchedLinks() {
+        return getDaemon().getOspfTopologyService().getUnmatchedLinks();
+    }
+
+    @Override
+    public int getIsisMatchedLinks() {
+        return getDaemon().getIsisTopologyService().getMatchedLinks();
+    }
+
+    @Override
+    public int getIsisUnmatchedLinks() {
+        return getDaemon().getIsisTopologyService().getUnmatchedLinks();
+    }
+
 }
@@ -37,4 +37,43 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface EnhancedLinkdMBean extends BaseOnmsMBean {
+    /**
+     * @return the number of LLDP links matched with the link of the other end
+     */
+    int getLldpMatchedLinks();
+
+    /**
+     * @return the number of LLDP links without a matching link of the other end
+     */
+    int getLldpUnmatchedLinks();
+
+    /**
+     * @return the number of CDP links matched with the link of the other end
+     */
+    int getCdpMatchedLinks();
+
+    /**
+     * @return the number of CDP links without a matching link of the other end
+     */
+    int getCdpUnmatchedLinks();
+
+    /**
+     * @return the number of OSPF links matched with the link of the other end
+     */
+    int getOspfMatchedLinks();
+
+    /**
+     * @return the number of OSPF links without a matching link of the other end
+     */
+    int getOspfUnmatchedLinks();
+
+    /**
+     * @return the number of IS-IS links matched with the link of the other end
+     */
+    int getIsisMatchedLinks();
+
+    /**
+     * @return the number of IS-IS links without a matching link of the other end
+     */
+    int getIsisUnmatchedLinks();
 }
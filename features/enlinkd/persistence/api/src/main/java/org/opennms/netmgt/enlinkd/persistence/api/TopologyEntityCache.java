@@ -57,6 +57,23 @@ public interface TopologyEntityCache {
     List<LldpElementTopologyEntity> getLldpElementTopologyEntities();
     List<SnmpInterfaceTopologyEntity> getSnmpInterfaceTopologyEntities();
     List<IpInterfaceTopologyEntity> getIpInterfaceTopologyEntities();
+
+    /** Reloads all entities. */
     void refresh();
 
+    /** Reloads the node, snmp interface and ip interface entities. */
+    void refreshNodeTopologyEntities();
+
+    /** Reloads the cdp elements and links. */
+    void refreshCdpTopologyEntities();
+
+    /** Reloads the is-is elements and links. */
+    void refreshIsIsTopologyEntities();
+
+    /** Reloads the lldp elements and links. */
+    void refreshLldpTopologyEntities();
+
+    /** Reloads the ospf links. */
+    void refreshOspfTopologyEntities();
+
 }
@@ -60,25 +60,25 @@ public class TopologyEntityCacheImpl implements TopologyEntityCache {
     private final LoadingCache<String, List<NodeTopologyEntity>> nodeTopologyEntities = createCache(
             () -> topologyEntityDao.getNodeTopologyEntities());
 
-    private final LoadingCache<String, List<CdpLinkTopologyEntity>> cdpLinkTopologyEntities = createCache(
+    private final LoadingCache<String, List<CdpLinkTopologyEntity>> cdpLinkTopologyEntities = createChangeDrivenCache(
             () -> topologyEntityDao.getCdpLinkTopologyEntities());
 
-    private final LoadingCache<String, List<IsIsLinkTopologyEntity>> isIsLinkTopologyEntities = createCache(
+    private final LoadingCache<String, List<IsIsLinkTopologyEntity>> isIsLinkTopologyEntities = createChangeDrivenCache(
             ()-> topologyEntityDao.getIsIsLinkTopologyEntities());
 
-    private final LoadingCache<String, List<OspfLinkTopologyEntity>> ospfLinkTopologyEntities = createCache (
+    private final LoadingCache<String, List<OspfLinkTopologyEntity>> ospfLinkTopologyEntities = createChangeDrivenCache(
             () -> topologyEntityDao.getOspfLinkTopologyEntities());
 
-    private final LoadingCache<String, List<LldpLinkTopologyEntity>> lldpLinkTopologyEntities = createCache (
+    private final LoadingCache<String, List<LldpLinkTopologyEntity>> lldpLinkTopologyEntities = createChangeDrivenCache(
             () -> topologyEntityDao.getLldpLinkTopologyEntities());
 
-    private final LoadingCache<String, List<CdpElementTopologyEntity>> cdpElementTopologyEntities = createCache(
+    private final LoadingCache<String, List<CdpElementTopologyEntity>> cdpElementTopologyEntities = createChangeDrivenCache(
             () ->  topologyEntityDao.getCdpElementTopologyEntities());
 
-    private final LoadingCache<String, List<IsIsElementTopologyEntity>> isIsElementTopologyEntities = createCache(
+    private final LoadingCache<String, List<IsIsElementTopologyEntity>> isIsElementTopologyEntities = createChangeDrivenCache(
             () -> topologyEntityDao.getIsIsElementTopologyEntities());
 
-    private final LoadingCache<String, List<LldpElementTopologyEntity>> lldpElementTopologyEntities = createCache(
+    private final LoadingCache<String, List<LldpElementTopologyEntity>> lldpElementTopologyEntities = createChangeDrivenCache(
             () -> topologyEntityDao.getLldpElementTopologyEntities());
 
     private final LoadingCache<String, List<SnmpInterfaceTopologyEntity>> snmpInterfaceTopologyEntities = createCache(
@@ -88,16 +88,27 @@ public class TopologyEntityCacheImpl implements TopologyEntityCache {
             () ->  topologyEntityDao.getIpTopologyEntities());
 
       private <KEY, VALUE> LoadingCache<KEY, VALUE> createCache(Supplier<VALUE> entitySupplier) {
-        CacheLoader<KEY, VALUE> loader = new CacheLoader<KEY, VALUE>() {
+        return CacheBuilder
+            .newBuilder()
+            .expireAfterWrite(getCacheDuration(), TimeUnit.SECONDS)
+            .build(createLoader(entitySupplier));
+      }
+
+      // Enlinkd elements and links only change when the collectors store or delete them, which triggers a refresh,
+      // so there is no need to reload them periodically
+      private <KEY, VALUE> LoadingCache<KEY, VALUE> createChangeDrivenCache(Supplier<VALUE> entitySupplier) {
+        return CacheBuilder
+            .newBuilder()
+            .build(createLoader(entitySupplier));
+      }
+
+      private <KEY, VALUE> CacheLoader<KEY, VALUE> createLoader(Supplier<VALUE> entitySupplier) {
+        return new CacheLoader<KEY, VALUE>() {
           @Override
           public VALUE load(KEY key) {
             return entitySupplier.get();
           }
         };
-        return CacheBuilder
-            .newBuilder()
-            .expireAfterWrite(getCacheDuration(), TimeUnit.SECONDS)
-            .build(loader);
       }
 
     @Override
@@ -152,16 +163,41 @@ public class TopologyEntityCacheImpl implements TopologyEntityCache {
 
     @Override
     public void refresh(){
+        refreshNodeTopologyEntities();
+        refreshCdpTopologyEntities();
+        refreshIsIsTopologyEntities();
+        refreshLldpTopologyEntities();
+        refreshOspfTopologyEntities();
+    }
+
+    @Override
+    public void refreshNodeTopologyEntities() {
         nodeTopologyEntities.refresh(CACHE_KEY);
+        snmpInterfaceTopologyEntities.refresh(CACHE_KEY);
+        ipInterfaceTopologyEntities.refresh(CACHE_KEY);
+    }
+
+    @Override
+    public void refreshCdpTopologyEntities() {
+        cdpElementTopologyEntities.refresh(CACHE_KEY);
         cdpLinkTopologyEntities.refresh(CACHE_KEY);
+    }
+
+    @Override
+    public void refreshIsIsTopologyEntities() {
+        isIsElementTopologyEntities.refresh(CACHE_KEY);
         isIsLinkTopologyEntities.refresh(CACHE_KEY);
+    }
+
+    @Override
+    public void refreshLldpTopologyEntities() {
+        lldpElementTopologyEntities.refresh(CACHE_KEY);
         lldpLinkTopologyEntities.refresh(CACHE_KEY);
+    }
+
+    @Override
+    public void refreshOspfTopologyEntities() {
         ospfLinkTopologyEntities.refresh(CACHE_KEY);
-        cdpElementTopologyEntities.refresh(CACHE_KEY);
-        isIsElementTopologyEntities.refresh(CACHE_KEY);
-        lldpElementTopologyEntities.refresh(CACHE_KEY);
-        snmpInterfaceTopologyEntities.refresh(CACHE_KEY);
-        ipInterfaceTopologyEntities.refresh(CACHE_KEY);
     }
 
     private int getCacheDuration(){
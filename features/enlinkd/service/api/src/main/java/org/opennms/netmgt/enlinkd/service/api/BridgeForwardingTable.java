@@ -29,6 +29,7 @@
 package org.opennms.netmgt.enlinkd.service.api;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -102,9 +103,11 @@ public class BridgeForwardingTable implements Topology {
                 
             BridgePortWithMacs bpwm = bridgeFt.getBridgePortWithMacs(bridgeport);
             if (bpwm == null ) {
-                bridgeFt.getPorttomac().add(BridgePortWithMacs.create(bridgeport,new HashSet<String>()));
+                bpwm = BridgePortWithMacs.create(bridgeport,new HashSet<String>());
+                bridgeFt.getPorttomac().add(bpwm);
+                bridgeFt.m_porttomacIndex.put(bridgeport, bpwm);
             }
-            bridgeFt.getBridgePortWithMacs(bridgeport).getMacs().add(link.getMacAddress());
+            bpwm.getMacs().add(link.getMacAddress());
 
             if (bridgeFt.getMactoport().containsKey(link.getMacAddress())) {
                 bridgeFt.getDuplicated().put(link.getMacAddress(), new HashSet<BridgePort>());
@@ -153,6 +156,13 @@ public class BridgeForwardingTable implements Topology {
     private Map<String, BridgePort> m_mactoport = new HashMap<String, BridgePort>();
     private Map<String, Set<BridgePort>> m_duplicated = new HashMap<String, Set<BridgePort>>();
     private Set<BridgePortWithMacs> m_porttomac = new HashSet<BridgePortWithMacs>();
+    private final Map<BridgePort, BridgePortWithMacs> m_porttomacIndex = new HashMap<BridgePort, BridgePortWithMacs>();
+
+    // The learned macs packed into longs and sorted, along with the port they were learned on.
+    // Built on demand and used to compare forwarding tables without hashing strings.
+    private long[] m_packedMacs;
+    private BridgePort[] m_packedMacPorts;
+    private long[] m_packedIdentifiers;
 
     private BridgeForwardingTable(Bridge bridge, Set<BridgeForwardingTableEntry> entries) {
         m_bridge = bridge;
@@ -164,6 +174,10 @@ public class BridgeForwardingTable implements Topology {
     }
 
     public BridgePortWithMacs getBridgePortWithMacs(BridgePort port) {
+        BridgePortWithMacs indexed = m_porttomacIndex.get(port);
+        if (indexed != null) {
+            return indexed;
+        }
         for (BridgePortWithMacs bpmx: m_porttomac) {
             if (bpmx.getPort().equals(port)) {
                 return bpmx;
@@ -179,6 +193,45 @@ public class BridgeForwardingTable implements Topology {
 
     public void setMactoport(Map<String, BridgePort> mactoport) {
         m_mactoport = mactoport;
+        m_packedMacs = null;
+    }
+
+    long[] getPackedMacs() {
+        pack();
+        return m_packedMacs;
+    }
+
+    long[] getPackedIdentifiers() {
+        pack();
+        return m_packedIdentifiers;
+    }
+
+    BridgePort getPortForMac(long mac) {
+        pack();
+        final int index = Arrays.binarySearch(m_packedMacs, mac);
+        return index >= 0 ? m_packedMacPorts[index] : null;
+    }
+
+    private void pack() {
+        if (m_packedMacs != null) {
+            return;
+        }
+        final long[] macs = new long[m_mactoport.size()];
+        final Map<Long, BridgePort> ports = new HashMap<Long, BridgePort>(m_mactoport.size() * 4 / 3 + 1);
+        int i = 0;
+        for (Map.Entry<String, BridgePort> entry : m_mactoport.entrySet()) {
+            macs[i] = CompactBridgeForwardingTable.macToLong(entry.getKey());
+            ports.put(macs[i], entry.getValue());
+            i++;
+        }
+        Arrays.sort(macs);
+        final BridgePort[] macPorts = new BridgePort[macs.length];
+        for (i = 0; i < macs.length; i++) {
+            macPorts[i] = ports.get(macs[i]);
+        }
+        m_packedMacPorts = macPorts;
+        m_packedIdentifiers = CompactBridgeForwardingTable.toSortedArray(getIdentifiers());
+        m_packedMacs = macs;
     }
 
     public Map<String, Set<BridgePort>> getDuplicated() {
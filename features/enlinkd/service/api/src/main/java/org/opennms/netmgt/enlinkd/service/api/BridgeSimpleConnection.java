@@ -31,7 +31,6 @@ package org.opennms.netmgt.enlinkd.service.api;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -196,13 +195,14 @@ public class BridgeSimpleConnection implements Topology {
         }
         
         
-        Set<String> commonlearnedmacs = new HashSet<String>(m_xBridge.getMactoport().keySet()); 
-        commonlearnedmacs.retainAll(new HashSet<String>(m_yBridge.getMactoport().keySet()));
+        // the learned macs are compared as sorted arrays of packed mac addresses
+        long[] commonlearnedmacs = CompactBridgeForwardingTable.intersect(m_xBridge.getPackedMacs(),
+                                                                          m_yBridge.getPackedMacs());
         if (LOG.isDebugEnabled()) {
             LOG.debug("bridge: [{}] <-> [{}] common (learned mac): {}",
                   m_yBridge.getNodeId(),
                   m_xBridge.getNodeId(),
-                  commonlearnedmacs);
+                  CompactBridgeForwardingTable.toMacs(commonlearnedmacs));
         }
 
         if (m_yxPort != null && m_xyPort == null) { 
@@ -244,7 +244,7 @@ public class BridgeSimpleConnection implements Topology {
         m_yxPort= ports.get(1);
     }
 
-    private static List<BridgePort> condition3(Set<String> commonlearnedmacs,
+    private static List<BridgePort> condition3(long[] commonlearnedmacs,
                                                BridgeForwardingTable bridgexFt,
                                                BridgeForwardingTable bridgeyFt
                                                ) throws BridgeTopologyException {
@@ -260,12 +260,9 @@ public class BridgeSimpleConnection implements Topology {
     //                                                  m_3 belongs to FDB(xy,X) FDB(p3,Y)
     //
 
-        Map<String,BridgePort> xbft = bridgexFt.getMactoport();
-        Map<String,BridgePort> ybft = bridgeyFt.getMactoport();
-
         if (LOG.isDebugEnabled()) {
             LOG.debug("condition3: common (learned mac): -> {}",
-                  commonlearnedmacs);
+                  CompactBridgeForwardingTable.toMacs(commonlearnedmacs));
         }
         String mac1=null;
         String mac2=null;
@@ -274,11 +271,13 @@ public class BridgeSimpleConnection implements Topology {
         BridgePort xp1=null;
         BridgePort xp2=null;
         List<BridgePort> bbports = new ArrayList<BridgePort>(2);
-        for (String mac: commonlearnedmacs) {
+        for (long packedmac: commonlearnedmacs) {
+            BridgePort yp = bridgeyFt.getPortForMac(packedmac);
+            BridgePort xp = bridgexFt.getPortForMac(packedmac);
             if (mac1 == null) {
-                mac1=mac;
-                yp1=ybft.get(mac);
-                xp1=xbft.get(mac);
+                mac1=CompactBridgeForwardingTable.longToMac(packedmac);
+                yp1=yp;
+                xp1=xp;
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("condition3: mac:[{}] {} - {} ", mac1,
                               xp1.printTopology(),
@@ -286,14 +285,14 @@ public class BridgeSimpleConnection implements Topology {
                 }
                 continue;
             }
-            if (ybft.get(mac).getBridgePort() == yp1.getBridgePort()
-                    && xbft.get(mac).getBridgePort() == xp1.getBridgePort()) {
+            if (yp.getBridgePort() == yp1.getBridgePort()
+                    && xp.getBridgePort() == xp1.getBridgePort()) {
                 continue;
             }
             if (mac2 == null) {
-                mac2=mac;
-                yp2=ybft.get(mac);
-                xp2=xbft.get(mac);
+                mac2=CompactBridgeForwardingTable.longToMac(packedmac);
+                yp2=yp;
+                xp2=xp;
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("condition3: mac:[{}], {} - {} ", mac2,
                           xp2.printTopology(),
@@ -301,14 +300,14 @@ public class BridgeSimpleConnection implements Topology {
                 }
                 continue;
             }
-            if (ybft.get(mac).getBridgePort() == yp2.getBridgePort() 
-                    && xbft.get(mac).getBridgePort() == xp2.getBridgePort()) {
+            if (yp.getBridgePort() == yp2.getBridgePort() 
+                    && xp.getBridgePort() == xp2.getBridgePort()) {
                 continue;
             }
-            BridgePort yp3 = ybft.get(mac);
-            BridgePort xp3 = xbft.get(mac);
+            BridgePort yp3 = yp;
+            BridgePort xp3 = xp;
             if (LOG.isDebugEnabled()) {
-                LOG.debug("condition3: mac:[{}], {} - {} ", mac,
+                LOG.debug("condition3: mac:[{}], {} - {} ", CompactBridgeForwardingTable.longToMac(packedmac),
                           xp3.printTopology(),
                           yp3.printTopology());
             }
@@ -400,13 +399,13 @@ public class BridgeSimpleConnection implements Topology {
     // condition 2 yx found                         m_x belongs to FDB(yx,Y)
     // if exists m_1 and m_2, p1 and p2 on Y :      m_1 belongs to FDB(p1,Y) FDB(xy,X)
     //                                              m_2 belongs to FDB(p2,Y) FDB(xy,X)
-    private static BridgePort condition2(Set<String> commonlearnedmacs, BridgePort bridge1port, 
+    private static BridgePort condition2(long[] commonlearnedmacs, BridgePort bridge1port, 
             BridgeForwardingTable bridge1Ft, 
             BridgeForwardingTable bridge2Ft) throws BridgeTopologyException {
         
-        for (String mac: commonlearnedmacs) {
-            BridgePort bridge1port1 = bridge1Ft.getMactoport().get(mac);
-            BridgePort bridge2port1 = bridge2Ft.getMactoport().get(mac);
+        for (long mac: commonlearnedmacs) {
+            BridgePort bridge1port1 = bridge1Ft.getPortForMac(mac);
+            BridgePort bridge2port1 = bridge2Ft.getPortForMac(mac);
             if (bridge1port.getBridgePort().intValue() != bridge1port1.getBridgePort().intValue()) {
                 LOG.debug("condition2: bridge:[{}] <- {}", 
                           bridge1Ft.getNodeId(),
@@ -444,7 +443,7 @@ public class BridgeSimpleConnection implements Topology {
     
     // This is a particolar condition 
     // in which I get the port without intersection only if I have two forwarding port
-    public static BridgePort conditionB(Set<String> commonlearnedmacs, 
+    public static BridgePort conditionB(long[] commonlearnedmacs, 
             BridgeForwardingTable bridge2Ft) throws BridgeTopologyException {
                 
         if (bridge2Ft.getPorttomac().size() != 2) {
@@ -452,8 +451,8 @@ public class BridgeSimpleConnection implements Topology {
         }
 
         Set<BridgePort> ports =  new HashSet<BridgePort>();
-        for (String mac: commonlearnedmacs) {
-            ports.add(bridge2Ft.getMactoport().get(mac));
+        for (long mac: commonlearnedmacs) {
+            ports.add(bridge2Ft.getPortForMac(mac));
         }
         
         if (ports.size() != 1) {
@@ -475,11 +474,12 @@ public class BridgeSimpleConnection implements Topology {
     }
  
     private static BridgePort condition1(BridgeForwardingTable bridge1Ft, BridgeForwardingTable bridge2Ft) throws BridgeTopologyException {
-        for (String mac: bridge1Ft.getIdentifiers()) {
-            if (bridge2Ft.getMactoport().containsKey(mac)) {
-                BridgePort bp = bridge2Ft.getMactoport().get(mac);
+        for (long mac: bridge1Ft.getPackedIdentifiers()) {
+            BridgePort bp = bridge2Ft.getPortForMac(mac);
+            if (bp != null) {
                 if (LOG.isDebugEnabled()) {
-                    LOG.debug("condition1: {} -> bridge:[{}] identifier:[{}]",bp.printTopology(), bridge1Ft.getNodeId(), mac);
+                    LOG.debug("condition1: {} -> bridge:[{}] identifier:[{}]",bp.printTopology(), bridge1Ft.getNodeId(),
+                              CompactBridgeForwardingTable.longToMac(mac));
                 }
                 return bp;
             }
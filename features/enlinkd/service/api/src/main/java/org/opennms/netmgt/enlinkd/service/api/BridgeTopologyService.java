@@ -72,7 +72,7 @@ public interface BridgeTopologyService extends TopologyService {
     
     BroadcastDomain getBroadcastDomain(int nodeId);
     
-    Map<Integer, Set<BridgeForwardingTableEntry>> getUpdateBftMap();
+    Map<Integer, CompactBridgeForwardingTable> getUpdateBftMap();
     
     Set<BridgeForwardingTableEntry> useBridgeTopologyUpdateBFT(int nodeid);
     
@@ -34,6 +34,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BroadcastDomain implements Topology {
     
@@ -415,7 +416,7 @@ public class BroadcastDomain implements Topology {
         }
         
         clearTopologyForBridge(domain,bridgeId);
-        Set<Bridge> bridges = new HashSet<Bridge>();
+        Set<Bridge> bridges = ConcurrentHashMap.newKeySet();
         for (Bridge cur: domain.getBridges()) {
             if (cur.getNodeId().intValue() == bridgeId) 
                 continue;
@@ -425,7 +426,8 @@ public class BroadcastDomain implements Topology {
     }
 
     
-    private volatile Set<Bridge> m_bridges = new HashSet<Bridge>();
+    // bridge membership is read by other threads while the domain is being calculated
+    private volatile Set<Bridge> m_bridges = ConcurrentHashMap.newKeySet();
     private volatile List<SharedSegment> m_topology = new ArrayList<SharedSegment>();    
     private volatile Set<BridgePortWithMacs> m_forwarding = new HashSet<BridgePortWithMacs>();
     
@@ -37,7 +37,7 @@ import org.opennms.netmgt.enlinkd.model.CdpElementTopologyEntity;
 import org.opennms.netmgt.enlinkd.model.CdpLink;
 import org.opennms.netmgt.enlinkd.model.CdpLinkTopologyEntity;
 
-public interface CdpTopologyService extends TopologyService {
+public interface CdpTopologyService extends MatchingTopologyService {
         
     void delete(int nodeid);
     void reconcile(int nodeId, Date now);
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd.service.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTableEntry.BridgeDot1qTpFdbStatus;
+
+/**
+ * A compact, immutable representation of the forwarding table of a bridge.
+ * <p>
+ * Rather than keeping one {@link BridgeForwardingTableEntry} per entry, the entries are stored column-wise
+ * in primitive arrays sorted by mac address, with the mac addresses packed into longs. Forwarding tables
+ * are kept in this form while they are waiting for the bridge topology to be calculated.
+ * <p>
+ * The static helpers are used to compare sorted arrays of packed mac addresses during the calculation.
+ */
+public final class CompactBridgeForwardingTable {
+
+    private static final int NULL_VALUE = Integer.MIN_VALUE;
+    private static final long NULL_MAC = -1L;
+
+    // Mac addresses that are not made up of 12 lower case hex digits get an id above the 48 bit range,
+    // so that the same string always maps to the same long
+    private static final long NON_STANDARD_MAC_OFFSET = 1L << 48;
+    private static final AtomicLong s_nextNonStandardMac = new AtomicLong(NON_STANDARD_MAC_OFFSET);
+    private static final Map<String, Long> s_nonStandardMacs = new ConcurrentHashMap<>();
+    private static final Map<Long, String> s_nonStandardMacsById = new ConcurrentHashMap<>();
+
+    public static long macToLong(String mac) {
+        if (mac == null) {
+            return NULL_MAC;
+        }
+        if (mac.length() == 12) {
+            long packed = 0;
+            for (int i = 0; i < 12; i++) {
+                final char c = mac.charAt(i);
+                final int digit;
+                if (c >= '0' && c <= '9') {
+                    digit = c - '0';
+                } else if (c >= 'a' && c <= 'f') {
+                    digit = c - 'a' + 10;
+                } else {
+                    return nonStandardMacToLong(mac);
+                }
+                packed = (packed << 4) | digit;
+            }
+            return packed;
+        }
+        return nonStandardMacToLong(mac);
+    }
+
+    public static String longToMac(long mac) {
+        if (mac == NULL_MAC) {
+            return null;
+        }
+        if (mac >= NON_STANDARD_MAC_OFFSET) {
+            return s_nonStandardMacsById.get(mac);
+        }
+        final char[] chars = new char[12];
+        for (int i = 11; i >= 0; i--) {
+            chars[i] = Character.forDigit((int) (mac & 0xf), 16);
+            mac >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    private static long nonStandardMacToLong(String mac) {
+        return s_nonStandardMacs.computeIfAbsent(mac, m -> {
+            final long id = s_nextNonStandardMac.getAndIncrement();
+            s_nonStandardMacsById.put(id, m);
+            return id;
+        });
+    }
+
+    public static long[] toSortedArray(Collection<String> macs) {
+        final long[] packed = new long[macs.size()];
+        int i = 0;
+        for (String mac : macs) {
+            packed[i++] = macToLong(mac);
+        }
+        Arrays.sort(packed);
+        return packed;
+    }
+
+    public static Set<String> toMacs(long[] macs) {
+        final Set<String> unpacked = new HashSet<>();
+        for (long mac : macs) {
+            unpacked.add(longToMac(mac));
+        }
+        return unpacked;
+    }
+
+    /**
+     * Returns the mac addresses found in both of the given sorted arrays, in sorted order.
+     */
+    public static long[] intersect(long[] a, long[] b) {
+        final long[] common = new long[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                common[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return k == common.length ? common : Arrays.copyOf(common, k);
+    }
+
+    public static CompactBridgeForwardingTable create(int nodeId, Collection<BridgeForwardingTableEntry> entries) {
+        final List<BridgeForwardingTableEntry> sorted = new ArrayList<>(entries);
+        // The sort is stable, so the first of two entries with the same mac and port is the one we keep
+        sorted.sort(Comparator.comparingLong((BridgeForwardingTableEntry e) -> macToLong(e.getMacAddress()))
+                .thenComparingInt(e -> toInt(e.getBridgePort())));
+
+        final CompactBridgeForwardingTable bft = new CompactBridgeForwardingTable(nodeId, sorted.size());
+        int size = 0;
+        for (BridgeForwardingTableEntry entry : sorted) {
+            final long mac = macToLong(entry.getMacAddress());
+            final int bridgePort = toInt(entry.getBridgePort());
+            if (size > 0 && bft.m_macs[size - 1] == mac && bft.m_bridgePorts[size - 1] == bridgePort) {
+                continue;
+            }
+            bft.m_macs[size] = mac;
+            bft.m_bridgePorts[size] = bridgePort;
+            bft.m_bridgePortIfIndexes[size] = toInt(entry.getBridgePortIfIndex());
+            bft.m_vlans[size] = toInt(entry.getVlan());
+            bft.m_statuses[size] = entry.getBridgeDot1qTpFdbStatus() == null ? 0
+                    : entry.getBridgeDot1qTpFdbStatus().getValue().byteValue();
+            size++;
+        }
+        bft.m_size = size;
+        return bft;
+    }
+
+    private static int toInt(Integer value) {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    private static Integer toInteger(int value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private final int m_nodeId;
+    private final long[] m_macs;
+    private final int[] m_bridgePorts;
+    private final int[] m_bridgePortIfIndexes;
+    private final int[] m_vlans;
+    private final byte[] m_statuses;
+    private int m_size;
+
+    private CompactBridgeForwardingTable(int nodeId, int capacity) {
+        m_nodeId = nodeId;
+        m_macs = new long[capacity];
+        m_bridgePorts = new int[capacity];
+        m_bridgePortIfIndexes = new int[capacity];
+        m_vlans = new int[capacity];
+        m_statuses = new byte[capacity];
+    }
+
+    public int getNodeId() {
+        return m_nodeId;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Rebuilds the entries of the forwarding table.
+     */
+    public Set<BridgeForwardingTableEntry> getEntries() {
+        final Set<BridgeForwardingTableEntry> entries = new HashSet<>(m_size * 4 / 3 + 1);
+        for (int i = 0; i < m_size; i++) {
+            final BridgeForwardingTableEntry entry = new BridgeForwardingTableEntry();
+            entry.setNodeId(m_nodeId);
+            entry.setMacAddress(longToMac(m_macs[i]));
+            entry.setBridgePort(toInteger(m_bridgePorts[i]));
+            entry.setBridgePortIfIndex(toInteger(m_bridgePortIfIndexes[i]));
+            entry.setVlan(toInteger(m_vlans[i]));
+            if (m_statuses[i] != 0) {
+                entry.setBridgeDot1qTpFdbStatus(BridgeDot1qTpFdbStatus.get((int) m_statuses[i]));
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
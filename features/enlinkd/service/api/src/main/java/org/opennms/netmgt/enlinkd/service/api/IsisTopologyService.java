@@ -37,7 +37,7 @@ import org.opennms.netmgt.enlinkd.model.IsIsElementTopologyEntity;
 import org.opennms.netmgt.enlinkd.model.IsIsLink;
 import org.opennms.netmgt.enlinkd.model.IsIsLinkTopologyEntity;
 
-public interface IsisTopologyService extends TopologyService {
+public interface IsisTopologyService extends MatchingTopologyService {
         
     void delete(int nodeid);
     void reconcile(int nodeId, Date now);
@@ -37,7 +37,7 @@ import org.opennms.netmgt.enlinkd.model.LldpElementTopologyEntity;
 import org.opennms.netmgt.enlinkd.model.LldpLink;
 import org.opennms.netmgt.enlinkd.model.LldpLinkTopologyEntity;
 
-public interface LldpTopologyService extends TopologyService {
+public interface LldpTopologyService extends MatchingTopologyService {
         
     void delete(int nodeid);
     void reconcile(int nodeId, Date now);
@@ -36,7 +36,7 @@ import org.opennms.netmgt.enlinkd.model.OspfElement;
 import org.opennms.netmgt.enlinkd.model.OspfLink;
 import org.opennms.netmgt.enlinkd.model.OspfLinkTopologyEntity;
 
-public interface OspfTopologyService extends TopologyService {
+public interface OspfTopologyService extends MatchingTopologyService {
         
     void delete(int nodeid);
     void reconcile(int nodeId, Date now);
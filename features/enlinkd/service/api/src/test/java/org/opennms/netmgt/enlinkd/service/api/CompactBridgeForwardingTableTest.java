@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd.service.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Test;
+import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTableEntry.BridgeDot1qTpFdbStatus;
+
+public class CompactBridgeForwardingTableTest {
+
+    @Test
+    public void canPackAndUnpackMacAddresses() {
+        assertEquals(0x001122aabbccL, CompactBridgeForwardingTable.macToLong("001122aabbcc"));
+        assertEquals("001122aabbcc", CompactBridgeForwardingTable.longToMac(0x001122aabbccL));
+        assertEquals("ffffffffffff", CompactBridgeForwardingTable.longToMac(CompactBridgeForwardingTable.macToLong("ffffffffffff")));
+
+        // Anything else must still map back to the same string
+        long upper = CompactBridgeForwardingTable.macToLong("001122AABBCC");
+        assertNotEquals(0x001122aabbccL, upper);
+        assertEquals(upper, CompactBridgeForwardingTable.macToLong("001122AABBCC"));
+        assertEquals("001122AABBCC", CompactBridgeForwardingTable.longToMac(upper));
+        assertEquals("00:11:22", CompactBridgeForwardingTable.longToMac(CompactBridgeForwardingTable.macToLong("00:11:22")));
+
+        assertNull(CompactBridgeForwardingTable.longToMac(CompactBridgeForwardingTable.macToLong(null)));
+    }
+
+    @Test
+    public void canIntersectSortedMacs() {
+        assertArrayEquals(new long[]{2, 5}, CompactBridgeForwardingTable.intersect(new long[]{1, 2, 3, 5}, new long[]{2, 4, 5, 6}));
+        assertArrayEquals(new long[0], CompactBridgeForwardingTable.intersect(new long[]{1, 3}, new long[]{2, 4}));
+        assertArrayEquals(new long[0], CompactBridgeForwardingTable.intersect(new long[0], new long[]{2, 4}));
+    }
+
+    @Test
+    public void canRebuildEntries() {
+        BridgeForwardingTableEntry learned = entry(1, "000000000002", BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_LEARNED);
+        BridgeForwardingTableEntry self = entry(2, "000000000001", BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_SELF);
+        BridgeForwardingTableEntry duplicate = entry(1, "000000000002", BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_LEARNED);
+        BridgeForwardingTableEntry noStatus = entry(3, "000000000003", null);
+        noStatus.setVlan(null);
+
+        CompactBridgeForwardingTable bft = CompactBridgeForwardingTable.create(7, Arrays.asList(learned, self, duplicate, noStatus));
+        assertEquals(7, bft.getNodeId());
+        assertEquals(3, bft.size());
+
+        Set<BridgeForwardingTableEntry> entries = bft.getEntries();
+        assertEquals(3, entries.size());
+        for (BridgeForwardingTableEntry expected : Arrays.asList(learned, self, noStatus)) {
+            BridgeForwardingTableEntry actual = entries.stream()
+                    .filter(e -> e.getMacAddress().equals(expected.getMacAddress()))
+                    .findFirst().get();
+            assertEquals(Integer.valueOf(7), actual.getNodeId());
+            assertEquals(expected.getBridgePort(), actual.getBridgePort());
+            assertEquals(expected.getBridgePortIfIndex(), actual.getBridgePortIfIndex());
+            assertEquals(expected.getVlan(), actual.getVlan());
+            assertEquals(expected.getBridgeDot1qTpFdbStatus(), actual.getBridgeDot1qTpFdbStatus());
+        }
+    }
+
+    private static BridgeForwardingTableEntry entry(int bridgePort, String mac, BridgeDot1qTpFdbStatus status) {
+        BridgeForwardingTableEntry entry = new BridgeForwardingTableEntry();
+        entry.setNodeId(7);
+        entry.setBridgePort(bridgePort);
+        entry.setBridgePortIfIndex(bridgePort + 100);
+        entry.setVlan(1);
+        entry.setMacAddress(mac);
+        entry.setBridgeDot1qTpFdbStatus(status);
+        return entry;
+    }
+}
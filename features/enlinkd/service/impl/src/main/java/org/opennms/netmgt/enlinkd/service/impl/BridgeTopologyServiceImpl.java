@@ -35,6 +35,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.stream.Collectors;
 
@@ -55,6 +56,7 @@ import org.opennms.netmgt.enlinkd.service.api.BridgePort;
 import org.opennms.netmgt.enlinkd.service.api.BridgeTopologyException;
 import org.opennms.netmgt.enlinkd.service.api.BridgeTopologyService;
 import org.opennms.netmgt.enlinkd.service.api.BroadcastDomain;
+import org.opennms.netmgt.enlinkd.service.api.CompactBridgeForwardingTable;
 import org.opennms.netmgt.enlinkd.service.api.MacPort;
 import org.opennms.netmgt.enlinkd.service.api.SharedSegment;
 import org.opennms.netmgt.enlinkd.service.api.TopologyShared;
@@ -80,8 +82,13 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
     private BridgeStpLinkDao m_bridgeStpLinkDao;
     private IpNetToMediaDao m_ipNetToMediaDao;
 
-    volatile Map<Integer, Set<BridgeForwardingTableEntry>> m_nodetoBroadcastDomainMap= new HashMap<Integer, Set<BridgeForwardingTableEntry>>();
-    volatile Set<BroadcastDomain> m_domains;
+    // updated forwarding tables waiting for the bridge topology to be calculated, kept in compact form
+    volatile Map<Integer, CompactBridgeForwardingTable> m_nodetoBroadcastDomainMap= new HashMap<Integer, CompactBridgeForwardingTable>();
+    // the domain set is copy on write so that it can be iterated without a global lock, a domain's topology
+    // is owned by the discovery task calculating it and only the bridge membership is read by other threads
+    volatile Set<BroadcastDomain> m_domains = new CopyOnWriteArraySet<BroadcastDomain>();
+    // bridge node id to the domain the bridge belongs to
+    private final Map<Integer, BroadcastDomain> m_bridgeToDomainMap = new ConcurrentHashMap<>();
     private volatile Set<Integer> m_bridgecollectionsscheduled = new HashSet<>();
 
 
@@ -222,8 +229,10 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
     @Override
     public void load() {
         m_domains=getAllPersisted();
+        m_bridgeToDomainMap.clear();
         for (BroadcastDomain domain: m_domains) {
             for (Bridge bridge: domain.getBridges()) {
+                m_bridgeToDomainMap.put(bridge.getNodeId(), domain);
                 bridge.clear();
                 List<BridgeElement> elems = m_bridgeElementDao.findByNodeId(bridge.getNodeId());
                 bridge.getIdentifiers().addAll(Bridge.getIdentifier(elems));
@@ -253,14 +262,18 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
     
     @Override
     public BroadcastDomain getBroadcastDomain(int nodeId) {
-        synchronized (m_domains) {
-            for (BroadcastDomain domain : m_domains) {
-                synchronized (domain) {
-                    Bridge bridge = domain.getBridge(nodeId);
-                    if (bridge != null) {
-                        return domain;
-                    }
-                }
+        BroadcastDomain indexed = m_bridgeToDomainMap.get(nodeId);
+        if (indexed != null) {
+            if (m_domains.contains(indexed) && indexed.getBridge(nodeId) != null) {
+                return indexed;
+            }
+            m_bridgeToDomainMap.remove(nodeId, indexed);
+        }
+        // bridges can be added to a domain without going through the service, fall back to a scan
+        for (BroadcastDomain domain : m_domains) {
+            if (domain.getBridge(nodeId) != null) {
+                m_bridgeToDomainMap.put(nodeId, domain);
+                return domain;
             }
         }
         return null;
@@ -285,6 +298,7 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
         
         LOG.info("reconcileTopologyForDeleteNode: node:[{}], start: save topology for domain",nodeId);
         BroadcastDomain.removeBridge(domain,nodeId);
+        m_bridgeToDomainMap.remove(nodeId, domain);
         store(domain,now);
         LOG.info("reconcileTopologyForDeleteNode: node:[{}], end: save topology for domain",nodeId);
         
@@ -304,9 +318,8 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
     }
 
     public void cleanBroadcastDomains() {
-        synchronized (m_domains) {
-            m_domains.removeIf(BroadcastDomain::isEmpty);
-        }
+        m_domains.removeIf(BroadcastDomain::isEmpty);
+        m_bridgeToDomainMap.values().removeIf(BroadcastDomain::isEmpty);
     }
 
     @Override
@@ -317,6 +330,7 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
         synchronized (domain) {
             for (Bridge bridge: domain.getBridges()) {
                 if (bridge.getNodeId().intValue() == nodeId.intValue()) {
+                    m_bridgeToDomainMap.put(nodeId, domain);
                     bridge.clear();
                     List<BridgeElement> elems = m_bridgeElementDao.findByNodeId(nodeId);
                     bridge.getIdentifiers().addAll(Bridge.getIdentifier(elems));
@@ -420,17 +434,13 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
 
     @Override
     public void store(int nodeId, List<BridgeForwardingTableEntry> bft) {
-        Set<BridgeForwardingTableEntry> effectiveBFT=new HashSet<BridgeForwardingTableEntry>(); 
-        for (BridgeForwardingTableEntry link : bft) {
-            link.setNodeId(nodeId);
-            effectiveBFT.add(link);
-        }
+        CompactBridgeForwardingTable effectiveBFT = CompactBridgeForwardingTable.create(nodeId, bft);
         synchronized (m_nodetoBroadcastDomainMap) {
             m_nodetoBroadcastDomainMap.put(nodeId, effectiveBFT);
         }
     }
 
-    public synchronized Map<Integer,Set<BridgeForwardingTableEntry>> getUpdateBftMap() {
+    public synchronized Map<Integer,CompactBridgeForwardingTable> getUpdateBftMap() {
         return m_nodetoBroadcastDomainMap;
     }
 
@@ -444,22 +454,25 @@ public class BridgeTopologyServiceImpl extends TopologyServiceImpl implements Br
     }
 
     @Override
-    public synchronized Set<BroadcastDomain> findAll() {
+    public Set<BroadcastDomain> findAll() {
         return m_domains;
     }
     
     @Override
     public void add(BroadcastDomain domain) {
-        synchronized (m_domains) {
-            m_domains.add(domain);
+        m_domains.add(domain);
+        for (Bridge bridge : domain.getBridges()) {
+            m_bridgeToDomainMap.put(bridge.getNodeId(), domain);
         }
     }
     
     @Override
     public Set<BridgeForwardingTableEntry> useBridgeTopologyUpdateBFT(int nodeid) {
+        CompactBridgeForwardingTable bft;
         synchronized (m_nodetoBroadcastDomainMap) {
-            return m_nodetoBroadcastDomainMap.remove(nodeid);
+            bft = m_nodetoBroadcastDomainMap.remove(nodeid);
         }
+        return bft == null ? null : bft.getEntries();
     }
     
 
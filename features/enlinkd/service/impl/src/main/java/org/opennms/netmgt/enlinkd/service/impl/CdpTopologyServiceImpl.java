@@ -28,14 +28,10 @@
 
 package org.opennms.netmgt.enlinkd.service.impl;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.opennms.netmgt.dao.support.UpsertTemplate;
 import org.opennms.netmgt.enlinkd.model.CdpElement;
@@ -63,6 +59,8 @@ public class CdpTopologyServiceImpl extends TopologyServiceImpl implements CdpTo
     
     private CdpLinkDao m_cdpLinkDao;
     private CdpElementDao m_cdpElementDao;
+
+    private final TopologyLinkMatcher<CdpLinkTopologyEntity> m_matcher = new TopologyLinkMatcher<>(CdpLinkTopologyEntity::getId);
     
     public CdpTopologyServiceImpl() {
     }
@@ -155,58 +153,43 @@ public class CdpTopologyServiceImpl extends TopologyServiceImpl implements CdpTo
 
     @Override
     public List<TopologyConnection<CdpLinkTopologyEntity, CdpLinkTopologyEntity>> match() {
-
-        final Collection<CdpElementTopologyEntity> cdpElements = getTopologyEntityCache().getCdpElementTopologyEntities();
-        final List<CdpLinkTopologyEntity> allLinks = getTopologyEntityCache().getCdpLinkTopologyEntities();
-        // 1. create lookup maps:
-        Map<Integer, CdpElementTopologyEntity> cdpelementmap = new HashMap<Integer, CdpElementTopologyEntity>();
-        for (CdpElementTopologyEntity cdpelement: cdpElements) {
-            cdpelementmap.put(cdpelement.getNodeId(), cdpelement);
-        }
-        Map<CompositeKey, CdpLinkTopologyEntity> targetLinkMap = new HashMap<>();
-        for (CdpLinkTopologyEntity targetLink : allLinks) {
-            CompositeKey key = new CompositeKey(targetLink.getCdpCacheDevicePort(),
-                    targetLink.getCdpInterfaceName(),
-                    cdpelementmap.get(targetLink.getNodeId()).getCdpGlobalDeviceId(),
-                    targetLink.getCdpCacheDeviceId());
-            targetLinkMap.put(key, targetLink);
+        final List<CdpElementTopologyEntity> elements = getTopologyEntityCache().getCdpElementTopologyEntities();
+        final Map<Integer, String> globalDeviceIdByNodeId = new HashMap<>();
+        for (CdpElementTopologyEntity element : elements) {
+            globalDeviceIdByNodeId.put(element.getNodeId(), element.getCdpGlobalDeviceId());
         }
-        Set<Integer> parsed = new HashSet<Integer>();
 
-        // 2. iterate
-        List<TopologyConnection<CdpLinkTopologyEntity, CdpLinkTopologyEntity>> results = new ArrayList<>();
-        for (CdpLinkTopologyEntity sourceLink : allLinks) {
-            if (parsed.contains(sourceLink.getId())) {
-                continue;
-            }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("getCdpLinks: source: {} ", sourceLink);
-            }
-            CdpElementTopologyEntity sourceCdpElement = cdpelementmap.get(sourceLink.getNodeId());
-
-            CdpLinkTopologyEntity targetLink = targetLinkMap.get(new CompositeKey(sourceLink.getCdpInterfaceName(),
-                    sourceLink.getCdpCacheDevicePort(),
-                    sourceLink.getCdpCacheDeviceId(),
-                    sourceCdpElement.getCdpGlobalDeviceId()));
-
-            if (targetLink == null) {
-                LOG.debug("getCdpLinks: cannot found target for source: '{}'", sourceLink.getId());
-                continue;
-            }
+        return m_matcher.match(getTopologyEntityCache().getCdpLinkTopologyEntities(), elements,
+                link -> {
+                    final String globalDeviceId = globalDeviceIdByNodeId.get(link.getNodeId());
+                    if (globalDeviceId == null) {
+                        return null;
+                    }
+                    return new CompositeKey(link.getCdpCacheDevicePort(),
+                            link.getCdpInterfaceName(),
+                            globalDeviceId,
+                            link.getCdpCacheDeviceId());
+                },
+                link -> new CompositeKey(link.getCdpInterfaceName(),
+                        link.getCdpCacheDevicePort(),
+                        link.getCdpCacheDeviceId(),
+                        globalDeviceIdByNodeId.get(link.getNodeId())));
+    }
 
-            if (sourceLink.getId().equals(targetLink.getId()) || parsed.contains(targetLink.getId())) {
-                continue;
-            }
+    @Override
+    public void refresh() {
+        getTopologyEntityCache().refreshNodeTopologyEntities();
+        getTopologyEntityCache().refreshCdpTopologyEntities();
+    }
 
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("getCdpLinks: cdp: {}, target: {} ", sourceLink.getCdpCacheDevicePort(), targetLink);
-            }
+    @Override
+    public int getMatchedLinks() {
+        return m_matcher.getMatchedLinks();
+    }
 
-            parsed.add(sourceLink.getId());
-            parsed.add(targetLink.getId());
-            results.add(TopologyConnection.of(sourceLink, targetLink));
-        }
-        return results;
+    @Override
+    public int getUnmatchedLinks() {
+        return m_matcher.getUnmatchedLinks();
     }
 
 
@@ -28,13 +28,10 @@
 
 package org.opennms.netmgt.enlinkd.service.impl;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.opennms.netmgt.dao.support.UpsertTemplate;
 import org.opennms.netmgt.enlinkd.model.IsIsElement;
@@ -63,6 +60,8 @@ public class IsisTopologyServiceImpl extends TopologyServiceImpl implements Isis
     private IsIsLinkDao m_isisLinkDao;
     private IsIsElementDao m_isisElementDao;
 
+    private final TopologyLinkMatcher<IsIsLinkTopologyEntity> m_matcher = new TopologyLinkMatcher<>(IsIsLinkTopologyEntity::getId);
+
     public IsisTopologyServiceImpl() {
     }
 
@@ -177,53 +176,41 @@ public class IsisTopologyServiceImpl extends TopologyServiceImpl implements Isis
 
     @Override
     public List<TopologyConnection<IsIsLinkTopologyEntity, IsIsLinkTopologyEntity>> match() {
-        List<IsIsElementTopologyEntity> elements = getTopologyEntityCache().getIsIsElementTopologyEntities();
-        List<IsIsLinkTopologyEntity> allLinks = getTopologyEntityCache().getIsIsLinkTopologyEntities();
-        // 1.) create lookupMaps
-        Map<Integer, IsIsElementTopologyEntity> elementmap = new HashMap<Integer, IsIsElementTopologyEntity>();
-        for (IsIsElementTopologyEntity element: elements) {
-            elementmap.put(element.getNodeId(), element);
+        final List<IsIsElementTopologyEntity> elements = getTopologyEntityCache().getIsIsElementTopologyEntities();
+        final Map<Integer, String> sysIdByNodeId = new HashMap<>();
+        for (IsIsElementTopologyEntity element : elements) {
+            sysIdByNodeId.put(element.getNodeId(), element.getIsisSysID());
         }
 
-        Map<CompositeKey, IsIsLinkTopologyEntity> targetLinkMap = new HashMap<>();
-        for (IsIsLinkTopologyEntity targetLink : allLinks) {
-            IsIsElementTopologyEntity targetElement = elementmap.get(targetLink.getNodeId());
-            targetLinkMap.put(new CompositeKey(targetLink.getIsisISAdjIndex(),
-                      targetElement.getIsisSysID(),
-                      targetLink.getIsisISAdjNeighSysID()), targetLink);
-        }
+        return m_matcher.match(getTopologyEntityCache().getIsIsLinkTopologyEntities(), elements,
+                link -> {
+                    final String sysId = sysIdByNodeId.get(link.getNodeId());
+                    if (sysId == null) {
+                        return null;
+                    }
+                    return new CompositeKey(link.getIsisISAdjIndex(),
+                            sysId,
+                            link.getIsisISAdjNeighSysID());
+                },
+                link -> new CompositeKey(link.getIsisISAdjIndex(),
+                        link.getIsisISAdjNeighSysID(),
+                        sysIdByNodeId.get(link.getNodeId())));
+    }
 
-        // 2. iterate
-        Set<Integer> parsed = new HashSet<Integer>();
-        List<TopologyConnection<IsIsLinkTopologyEntity, IsIsLinkTopologyEntity>> results = new ArrayList<>();
+    @Override
+    public void refresh() {
+        getTopologyEntityCache().refreshNodeTopologyEntities();
+        getTopologyEntityCache().refreshIsIsTopologyEntities();
+    }
 
-        for (IsIsLinkTopologyEntity sourceLink : allLinks) {
-            if (parsed.contains(sourceLink.getId())) {
-                continue;
-            }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("getIsIsLinks: source: {}", sourceLink);
-            }
-            IsIsElementTopologyEntity sourceElement = elementmap.get(sourceLink.getNodeId());
-            IsIsLinkTopologyEntity targetLink = targetLinkMap.get(new CompositeKey(sourceLink.getIsisISAdjIndex(),
-                    sourceLink.getIsisISAdjNeighSysID(),
-                    sourceElement.getIsisSysID()));
-
-            if (targetLink == null) {
-                LOG.debug("getIsIsLinks: cannot found target for source: '{}'", sourceLink.getId());
-                continue;
-            }
-            if (sourceLink.getId().intValue() == targetLink.getId().intValue()|| parsed.contains(targetLink.getId())) {
-                continue;
-            }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("getIsIsLinks: target: {}", targetLink);
-            }
-            results.add(TopologyConnection.of(sourceLink, targetLink));
-            parsed.add(sourceLink.getId());
-            parsed.add(targetLink.getId());
-        }
-        return results;
+    @Override
+    public int getMatchedLinks() {
+        return m_matcher.getMatchedLinks();
+    }
+
+    @Override
+    public int getUnmatchedLinks() {
+        return m_matcher.getUnmatchedLinks();
     }
 
 }
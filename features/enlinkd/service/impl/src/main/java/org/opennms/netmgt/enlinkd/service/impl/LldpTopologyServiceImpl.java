@@ -28,14 +28,10 @@
 
 package org.opennms.netmgt.enlinkd.service.impl;
 
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.opennms.netmgt.dao.support.UpsertTemplate;
 import org.opennms.netmgt.enlinkd.model.LldpElement;
@@ -64,6 +60,8 @@ public class LldpTopologyServiceImpl extends TopologyServiceImpl implements Lldp
     private LldpLinkDao m_lldpLinkDao;
     private LldpElementDao m_lldpElementDao;
 
+    private final TopologyLinkMatcher<LldpLinkTopologyEntity> m_matcher = new TopologyLinkMatcher<>(LldpLinkTopologyEntity::getId);
+
     public LldpTopologyServiceImpl() {
     }
 
@@ -174,69 +172,55 @@ public class LldpTopologyServiceImpl extends TopologyServiceImpl implements Lldp
 
     @Override
     public List<TopologyConnection<LldpLinkTopologyEntity, LldpLinkTopologyEntity>> match() {
-        
-            List<TopologyConnection<LldpLinkTopologyEntity, LldpLinkTopologyEntity>> results = new ArrayList<>();
-
-            Map<Integer, LldpElementTopologyEntity> nodelldpelementidMap = getTopologyEntityCache().getLldpElementTopologyEntities().stream()
-                    .collect(Collectors.toMap(lldpelem -> lldpelem.getNodeId(), lldpelem -> lldpelem));
-            
-            List<LldpLinkTopologyEntity> allLinks = getTopologyEntityCache().getLldpLinkTopologyEntities();
-            // 1.) create mapping
-            Map<CompositeKey, LldpLinkTopologyEntity> targetLinkMap = new HashMap<>();
-            for(LldpLinkTopologyEntity targetLink : allLinks){
-
-                CompositeKey key = new CompositeKey(
-                        targetLink.getLldpRemChassisId(),
-                        nodelldpelementidMap.get(targetLink.getNodeId()).getLldpChassisId(),
-                        targetLink.getLldpPortId(),
-                        targetLink.getLldpPortIdSubType(),
-                        targetLink.getLldpRemPortId(),
-                        targetLink.getLldpRemPortIdSubType());
-                targetLinkMap.put(key, targetLink);
-            }
+        final List<LldpElementTopologyEntity> elements = getTopologyEntityCache().getLldpElementTopologyEntities();
+        final Map<Integer, String> chassisIdByNodeId = new HashMap<>();
+        for (LldpElementTopologyEntity element : elements) {
+            chassisIdByNodeId.put(element.getNodeId(), element.getLldpChassisId());
+        }
 
-            // 2.) iterate
-            Set<Integer> parsed = new HashSet<Integer>();
-            for (LldpLinkTopologyEntity sourceLink : allLinks) {
-                if (parsed.contains(sourceLink.getId())) {
-                    continue;
-                }
-                String sourceLldpChassisId = nodelldpelementidMap.get(sourceLink.getNodeId()).getLldpChassisId();
-                if (sourceLldpChassisId.equals(sourceLink.getLldpRemChassisId())) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("getLldpLinks: self link not adding source: {}",sourceLink);
+        return m_matcher.match(getTopologyEntityCache().getLldpLinkTopologyEntities(), elements,
+                link -> {
+                    final String chassisId = chassisIdByNodeId.get(link.getNodeId());
+                    if (chassisId == null) {
+                        return null;
                     }
-                    parsed.add(sourceLink.getId());
-                    continue;
-                }
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("getLldpLinks: source: {}",sourceLink);
-                }
-
-                CompositeKey key = new CompositeKey(
-                        nodelldpelementidMap.get(sourceLink.getNodeId()).getLldpChassisId(),
-                        sourceLink.getLldpRemChassisId(),
-                        sourceLink.getLldpRemPortId(),
-                        sourceLink.getLldpRemPortIdSubType(),
-                        sourceLink.getLldpPortId(),
-                        sourceLink.getLldpPortIdSubType());
-                LldpLinkTopologyEntity targetLink = targetLinkMap.get(key);
-
-                if (targetLink == null) {
-                    LOG.debug("getLldpLinks: cannot found target for source: '{}'", sourceLink.getId());
-                    continue;
-                }
-
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("getLldpLinks: lldp: {} target: {}", sourceLink.getLldpRemChassisId(), targetLink);
-                }
-
-                parsed.add(sourceLink.getId());
-                parsed.add(targetLink.getId());
-                results.add(TopologyConnection.of(sourceLink, targetLink));
-            }
-            return results;
-       // }
+                    return new CompositeKey(
+                            link.getLldpRemChassisId(),
+                            chassisId,
+                            link.getLldpPortId(),
+                            link.getLldpPortIdSubType(),
+                            link.getLldpRemPortId(),
+                            link.getLldpRemPortIdSubType());
+                },
+                link -> {
+                    final String chassisId = chassisIdByNodeId.get(link.getNodeId());
+                    if (chassisId.equals(link.getLldpRemChassisId())) {
+                        LOG.debug("match: self link not adding source: {}", link);
+                        return null;
+                    }
+                    return new CompositeKey(
+                            chassisId,
+                            link.getLldpRemChassisId(),
+                            link.getLldpRemPortId(),
+                            link.getLldpRemPortIdSubType(),
+                            link.getLldpPortId(),
+                            link.getLldpPortIdSubType());
+                });
+    }
 
+    @Override
+    public void refresh() {
+        getTopologyEntityCache().refreshNodeTopologyEntities();
+        getTopologyEntityCache().refreshLldpTopologyEntities();
+    }
+
+    @Override
+    public int getMatchedLinks() {
+        return m_matcher.getMatchedLinks();
+    }
+
+    @Override
+    public int getUnmatchedLinks() {
+        return m_matcher.getUnmatchedLinks();
     }
 }
@@ -28,13 +28,8 @@
 
 package org.opennms.netmgt.enlinkd.service.impl;
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import org.opennms.netmgt.dao.support.UpsertTemplate;
 import org.opennms.netmgt.enlinkd.model.OspfElement;
@@ -62,6 +57,8 @@ public class OspfTopologyServiceImpl extends TopologyServiceImpl implements Ospf
     private OspfLinkDao m_ospfLinkDao;
     private OspfElementDao m_ospfElementDao;
 
+    private final TopologyLinkMatcher<OspfLinkTopologyEntity> m_matcher = new TopologyLinkMatcher<>(OspfLinkTopologyEntity::getId);
+
     public OspfTopologyServiceImpl() {
     }
 
@@ -175,39 +172,24 @@ public class OspfTopologyServiceImpl extends TopologyServiceImpl implements Ospf
 
     @Override
     public List<TopologyConnection<OspfLinkTopologyEntity, OspfLinkTopologyEntity>> match() {
-        List<OspfLinkTopologyEntity> allLinks = getTopologyEntityCache().getOspfLinkTopologyEntities();
-        List<TopologyConnection<OspfLinkTopologyEntity, OspfLinkTopologyEntity>> results = new ArrayList<>();
-        Set<Integer> parsed = new HashSet<Integer>();
-
-        // build mapping:
-        Map<CompositeKey, OspfLinkTopologyEntity> targetLinks = new HashMap<>();
-        for(OspfLinkTopologyEntity targetLink : allLinks){
-            targetLinks.put(new CompositeKey(targetLink.getOspfIpAddr(), targetLink.getOspfRemIpAddr()) , targetLink);
-        }
-
-        for(OspfLinkTopologyEntity sourceLink : allLinks) {
-            if (parsed.contains(sourceLink.getId())) {
-                continue;
-            }
-            parsed.add(sourceLink.getId());
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("getOspfLinks: source: {}", sourceLink);
-            }
-            OspfLinkTopologyEntity targetLink = targetLinks.get(new CompositeKey(sourceLink.getOspfRemIpAddr() , sourceLink.getOspfIpAddr()));
-            if(targetLink == null) {
-                LOG.debug("getOspfLinks: cannot find target for source: '{}'", sourceLink.getId());
-                continue;
-            }
+        return m_matcher.match(getTopologyEntityCache().getOspfLinkTopologyEntities(), null,
+                link -> new CompositeKey(link.getOspfIpAddr(), link.getOspfRemIpAddr()),
+                link -> new CompositeKey(link.getOspfRemIpAddr(), link.getOspfIpAddr()));
+    }
 
-            if (sourceLink.getId().equals(targetLink.getId()) || parsed.contains(targetLink.getId())) {
-                    continue;
-            }
+    @Override
+    public void refresh() {
+        getTopologyEntityCache().refreshNodeTopologyEntities();
+        getTopologyEntityCache().refreshOspfTopologyEntities();
+    }
 
-            LOG.debug("getOspfLinks: target: {}", targetLink);
-            parsed.add(targetLink.getId());
-            results.add(TopologyConnection.of(sourceLink, targetLink));
-        }
-        return results;
+    @Override
+    public int getMatchedLinks() {
+        return m_matcher.getMatchedLinks();
+    }
 
+    @Override
+    public int getUnmatchedLinks() {
+        return m_matcher.getUnmatchedLinks();
     }
 }
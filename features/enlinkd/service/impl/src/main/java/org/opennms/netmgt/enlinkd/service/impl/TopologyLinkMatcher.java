@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.opennms.netmgt.enlinkd.service.api.CompositeKey;
+import org.opennms.netmgt.enlinkd.service.api.TopologyConnection;
+
+/**
+ * Keeps the links of a protocol matched with the links describing the same connection from the other end.
+ *
+ * Each link is indexed by its key and is matched with a link found under its lookup key. The links, keys and
+ * matches of the previous run are kept, so on each run only links which were added, removed or whose keys changed,
+ * and the links they were matched with, are matched again.
+ * If neither the links nor the elements changed since the previous run, the previous connections are returned as is.
+ *
+ * @param <L> the link type
+ */
+public class TopologyLinkMatcher<L> {
+
+    private final Function<L, Integer> idFunction;
+
+    private final Map<Integer, L> links = new HashMap<>();
+    private final Map<Integer, CompositeKey> keys = new HashMap<>();
+    private final Map<Integer, CompositeKey> lookupKeys = new HashMap<>();
+    private final Map<CompositeKey, Set<Integer>> linksByKey = new HashMap<>();
+    private final Map<Integer, Integer> matches = new HashMap<>();
+
+    private List<L> lastLinks;
+    private List<?> lastElements;
+    private List<TopologyConnection<L, L>> connections = Collections.emptyList();
+
+    public TopologyLinkMatcher(Function<L, Integer> idFunction) {
+        this.idFunction = Objects.requireNonNull(idFunction);
+    }
+
+    /**
+     * Matches the given links.
+     *
+     * @param allLinks all links of the protocol
+     * @param elements the elements the keys are derived from, only used to detect changes. May be null.
+     * @param keyFunction calculates the key of a link, null if the link can not be matched
+     * @param lookupKeyFunction calculates the key of the link on the other end, null if the link can not be matched
+     * @return the matched links, where the left link of each connection comes first in allLinks
+     */
+    public synchronized List<TopologyConnection<L, L>> match(List<L> allLinks, List<?> elements,
+                                                            Function<L, CompositeKey> keyFunction,
+                                                            Function<L, CompositeKey> lookupKeyFunction) {
+        // The entity cache hands out the same lists until it is refreshed
+        if (allLinks == lastLinks && elements == lastElements) {
+            return connections;
+        }
+
+        // 1.) apply the differences to the index
+        final Set<Integer> toMatch = new LinkedHashSet<>();
+        final Set<Integer> currentIds = new HashSet<>();
+        for (L link : allLinks) {
+            final Integer id = idFunction.apply(link);
+            currentIds.add(id);
+            final CompositeKey key = keyFunction.apply(link);
+            final CompositeKey lookupKey = key == null ? null : lookupKeyFunction.apply(link);
+            if (!links.containsKey(id)) {
+                index(id, key, lookupKey);
+                toMatch.add(id);
+            } else if (!Objects.equals(key, keys.get(id)) || !Objects.equals(lookupKey, lookupKeys.get(id))) {
+                unindex(id, toMatch);
+                index(id, key, lookupKey);
+                toMatch.add(id);
+            }
+            // always keep the latest entity, the keys are all we need to match
+            links.put(id, link);
+        }
+        for (Integer id : new ArrayList<>(links.keySet())) {
+            if (!currentIds.contains(id)) {
+                unindex(id, toMatch);
+                links.remove(id);
+                toMatch.remove(id);
+            }
+        }
+
+        // 2.) match the affected links
+        for (Integer id : toMatch) {
+            if (matches.containsKey(id) || lookupKeys.get(id) == null) {
+                continue;
+            }
+            final Set<Integer> candidates = linksByKey.get(lookupKeys.get(id));
+            if (candidates == null) {
+                continue;
+            }
+            for (Integer candidate : candidates) {
+                if (!candidate.equals(id) && !matches.containsKey(candidate)) {
+                    matches.put(id, candidate);
+                    matches.put(candidate, id);
+                    break;
+                }
+            }
+        }
+
+        // 3.) collect the connections in the order of the links
+        final List<TopologyConnection<L, L>> results = new ArrayList<>(matches.size() / 2);
+        final Set<Integer> parsed = new HashSet<>();
+        for (L link : allLinks) {
+            final Integer id = idFunction.apply(link);
+            final Integer match = matches.get(id);
+            if (match != null && parsed.add(id)) {
+                parsed.add(match);
+                results.add(TopologyConnection.of(link, links.get(match)));
+            }
+        }
+
+        lastLinks = allLinks;
+        lastElements = elements;
+        connections = results;
+        return results;
+    }
+
+    public synchronized int getMatchedLinks() {
+        return matches.size();
+    }
+
+    public synchronized int getUnmatchedLinks() {
+        return links.size() - matches.size();
+    }
+
+    private void index(Integer id, CompositeKey key, CompositeKey lookupKey) {
+        keys.put(id, key);
+        lookupKeys.put(id, lookupKey);
+        if (key != null) {
+            linksByKey.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    // Removes the link from the index and releases its match, which needs to be matched again
+    private void unindex(Integer id, Set<Integer> toMatch) {
+        final CompositeKey key = keys.remove(id);
+        lookupKeys.remove(id);
+        if (key != null) {
+            final Set<Integer> keyLinks = linksByKey.get(key);
+            keyLinks.remove(id);
+            if (keyLinks.isEmpty()) {
+                linksByKey.remove(key);
+            }
+        }
+        final Integer match = matches.remove(id);
+        if (match != null) {
+            matches.remove(match);
+            toMatch.add(match);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opennms.netmgt.enlinkd.service.api.CompositeKey;
+import org.opennms.netmgt.enlinkd.service.api.TopologyConnection;
+import org.opennms.netmgt.enlinkd.service.impl.TopologyLinkMatcher;
+
+public class TopologyLinkMatcherTest {
+
+    private static class Link {
+        private final Integer id;
+        private final String local;
+        private final String remote;
+
+        private Link(Integer id, String local, String remote) {
+            this.id = id;
+            this.local = local;
+            this.remote = remote;
+        }
+
+        private Integer getId() {
+            return id;
+        }
+    }
+
+    private final TopologyLinkMatcher<Link> matcher = new TopologyLinkMatcher<>(Link::getId);
+
+    private List<TopologyConnection<Link, Link>> match(List<Link> links) {
+        return matcher.match(links, null,
+                l -> new CompositeKey(l.local, l.remote),
+                l -> new CompositeKey(l.remote, l.local));
+    }
+
+    @Test
+    public void testMatch() {
+        final Link a = new Link(1, "A", "B");
+        final Link b = new Link(2, "B", "A");
+        final Link c = new Link(3, "C", "D");
+        final List<Link> links = Arrays.asList(a, b, c);
+
+        List<TopologyConnection<Link, Link>> connections = match(links);
+        assertEquals(1, connections.size());
+        assertSame(a, connections.get(0).getLeft());
+        assertSame(b, connections.get(0).getRight());
+        assertEquals(2, matcher.getMatchedLinks());
+        assertEquals(1, matcher.getUnmatchedLinks());
+
+        // unchanged links are not matched again
+        assertSame(connections, match(links));
+    }
+
+    @Test
+    public void testIncrementalMatch() {
+        final Link a = new Link(1, "A", "B");
+        final Link b = new Link(2, "B", "A");
+        final Link c = new Link(3, "C", "D");
+        final List<Link> links = new ArrayList<>(Arrays.asList(a, b, c));
+        assertEquals(1, match(links).size());
+
+        // the other end of c shows up
+        final Link d = new Link(4, "D", "C");
+        links.add(d);
+        List<TopologyConnection<Link, Link>> connections = match(new ArrayList<>(links));
+        assertEquals(2, connections.size());
+        assertSame(c, connections.get(1).getLeft());
+        assertSame(d, connections.get(1).getRight());
+        assertEquals(4, matcher.getMatchedLinks());
+        assertEquals(0, matcher.getUnmatchedLinks());
+
+        // b goes away and a is matched with its replacement
+        links.remove(b);
+        final Link e = new Link(5, "B", "A");
+        links.add(e);
+        connections = match(new ArrayList<>(links));
+        assertEquals(2, connections.size());
+        assertSame(a, connections.get(0).getLeft());
+        assertSame(e, connections.get(0).getRight());
+
+        // c changes its remote end and loses its match
+        links.set(links.indexOf(c), new Link(3, "C", "E"));
+        connections = match(new ArrayList<>(links));
+        assertEquals(1, connections.size());
+        assertEquals(2, matcher.getMatchedLinks());
+        assertEquals(2, matcher.getUnmatchedLinks());
+    }
+}
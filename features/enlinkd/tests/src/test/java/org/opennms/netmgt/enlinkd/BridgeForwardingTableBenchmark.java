@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.enlinkd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opennms.enlinkd.generator.util.MacAddressGenerator;
+import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTableEntry;
+import org.opennms.netmgt.enlinkd.service.api.BridgeForwardingTableEntry.BridgeDot1qTpFdbStatus;
+import org.opennms.netmgt.enlinkd.service.api.BroadcastDomain;
+import org.opennms.netmgt.enlinkd.service.api.CompactBridgeForwardingTable;
+import org.opennms.netmgt.enlinkd.service.api.DiscoveryBridgeTopology;
+
+/**
+ * Compares the bridge forwarding table structures used by the bridge topology calculation.
+ * <p>
+ * The forwarding tables are generated for a broadcast domain made of a root bridge with one leaf bridge
+ * on each of its ports, with the hosts spread over the access ports of the leaves. Mac addresses are
+ * allocated with the {@link MacAddressGenerator} of the enlinkd topology generator.
+ * <p>
+ * Run the {@link #main(String[])} method to execute the benchmark. The GC profiler is enabled so that
+ * the bytes allocated per operation can be compared along with the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class BridgeForwardingTableBenchmark {
+
+    private static final int ROOT_BRIDGE_ID = 1;
+    private static final int ACCESS_PORTS_PER_BRIDGE = 24;
+
+    @Param({"20", "200"})
+    public int numBridges;
+
+    @Param({"1000", "10000"})
+    public int numMacs;
+
+    private Map<Integer, List<BridgeForwardingTableEntry>> bftByBridge;
+    private List<Set<String>> stringMacsByBridge;
+    private List<long[]> packedMacsByBridge;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final MacAddressGenerator macGenerator = new MacAddressGenerator();
+        final int numLeaves = numBridges - 1;
+
+        // The identifiers of the bridges and the hosts behind each leaf
+        final Map<Integer, String> bridgeMacs = new HashMap<>();
+        final Map<Integer, List<String>> hostsByLeaf = new HashMap<>();
+        for (int bridgeId = ROOT_BRIDGE_ID; bridgeId <= numBridges; bridgeId++) {
+            bridgeMacs.put(bridgeId, macGenerator.next());
+            hostsByLeaf.put(bridgeId, new ArrayList<>());
+        }
+        for (int i = 0; i < numMacs; i++) {
+            hostsByLeaf.get(ROOT_BRIDGE_ID + 1 + (i % numLeaves)).add(macGenerator.next());
+        }
+
+        bftByBridge = new HashMap<>();
+        // The root learns the hosts and the identifier of each leaf on the port facing that leaf
+        final List<BridgeForwardingTableEntry> rootBft = new ArrayList<>();
+        rootBft.add(entry(ROOT_BRIDGE_ID, 0, bridgeMacs.get(ROOT_BRIDGE_ID), BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_SELF));
+        for (int leafId = ROOT_BRIDGE_ID + 1; leafId <= numBridges; leafId++) {
+            final int port = leafId - ROOT_BRIDGE_ID;
+            rootBft.add(entry(ROOT_BRIDGE_ID, port, bridgeMacs.get(leafId), BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_LEARNED));
+            for (String host : hostsByLeaf.get(leafId)) {
+                rootBft.add(entry(ROOT_BRIDGE_ID, port, host, BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_LEARNED));
+            }
+        }
+        bftByBridge.put(ROOT_BRIDGE_ID, rootBft);
+
+        // Each leaf learns its own hosts on its access ports and everything else on its uplink
+        for (int leafId = ROOT_BRIDGE_ID + 1; leafId <= numBridges; leafId++) {
+            final List<BridgeForwardingTableEntry> leafBft = new ArrayList<>();
+            leafBft.add(entry(leafId, 0, bridgeMacs.get(leafId), BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_SELF));
+            for (Map.Entry<Integer, String> bridgeMac : bridgeMacs.entrySet()) {
+                if (bridgeMac.getKey() != leafId) {
+                    leafBft.add(entry(leafId, 1, bridgeMac.getValue(), BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_LEARNED));
+                }
+            }
+            for (Map.Entry<Integer, List<String>> hosts : hostsByLeaf.entrySet()) {
+                int i = 0;
+                for (String host : hosts.getValue()) {
+                    final int port = hosts.getKey() == leafId ? 2 + (i++ % ACCESS_PORTS_PER_BRIDGE) : 1;
+                    leafBft.add(entry(leafId, port, host, BridgeDot1qTpFdbStatus.DOT1D_TP_FDB_STATUS_LEARNED));
+                }
+            }
+            bftByBridge.put(leafId, leafBft);
+        }
+
+        stringMacsByBridge = new ArrayList<>();
+        packedMacsByBridge = new ArrayList<>();
+        for (List<BridgeForwardingTableEntry> bft : bftByBridge.values()) {
+            final Set<String> macs = new HashSet<>();
+            bft.forEach(e -> macs.add(e.getMacAddress()));
+            stringMacsByBridge.add(macs);
+            packedMacsByBridge.add(CompactBridgeForwardingTable.toSortedArray(macs));
+        }
+    }
+
+    private static BridgeForwardingTableEntry entry(int bridgeId, int port, String mac, BridgeDot1qTpFdbStatus status) {
+        final BridgeForwardingTableEntry entry = new BridgeForwardingTableEntry();
+        entry.setNodeId(bridgeId);
+        entry.setBridgePort(port);
+        entry.setBridgePortIfIndex(port);
+        entry.setVlan(1);
+        entry.setMacAddress(mac);
+        entry.setBridgeDot1qTpFdbStatus(status);
+        return entry;
+    }
+
+    /**
+     * Holds the updated forwarding tables the way they used to be kept while waiting for the calculation.
+     */
+    @Benchmark
+    public void storeAsEntrySets(Blackhole bh) {
+        for (Map.Entry<Integer, List<BridgeForwardingTableEntry>> bft : bftByBridge.entrySet()) {
+            bh.consume(new HashSet<>(bft.getValue()));
+        }
+    }
+
+    @Benchmark
+    public void storeAsCompactTables(Blackhole bh) {
+        for (Map.Entry<Integer, List<BridgeForwardingTableEntry>> bft : bftByBridge.entrySet()) {
+            bh.consume(CompactBridgeForwardingTable.create(bft.getKey(), bft.getValue()));
+        }
+    }
+
+    /**
+     * Finds the common macs of every bridge with the root the way they used to be compared.
+     */
+    @Benchmark
+    public void intersectStringSets(Blackhole bh) {
+        final Set<String> root = stringMacsByBridge.get(0);
+        for (Set<String> other : stringMacsByBridge) {
+            final Set<String> common = new HashSet<>(root);
+            common.retainAll(new HashSet<>(other));
+            bh.consume(common);
+        }
+    }
+
+    @Benchmark
+    public void intersectPackedArrays(Blackhole bh) {
+        final long[] root = packedMacsByBridge.get(0);
+        for (long[] other : packedMacsByBridge) {
+            bh.consume(CompactBridgeForwardingTable.intersect(root, other));
+        }
+    }
+
+    @Benchmark
+    public BroadcastDomain calculate() {
+        final BroadcastDomain domain = new BroadcastDomain();
+        final DiscoveryBridgeTopology topology = new DiscoveryBridgeTopology(domain);
+        for (Map.Entry<Integer, List<BridgeForwardingTableEntry>> bft : bftByBridge.entrySet()) {
+            topology.addUpdatedBFT(bft.getKey(), new HashSet<>(bft.getValue()));
+        }
+        topology.calculate();
+        return domain;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(BridgeForwardingTableBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .result("bridge-forwarding-table-benchmark.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+        new Runner(options).run();
+    }
+}
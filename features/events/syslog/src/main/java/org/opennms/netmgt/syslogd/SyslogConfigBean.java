@@ -55,6 +55,8 @@ public final class SyslogConfigBean implements SyslogdConfig {
 	private int m_queueSize;
 	private int m_batchSize;
 	private int m_batchIntervalMs;
+	private int m_batchSizeBytes;
+	private Integer m_minBatchIntervalMs;
 	private TimeZone timeZone;
 	private boolean includeRawSyslogmessage;
 
@@ -197,6 +199,24 @@ public final class SyslogConfigBean implements SyslogdConfig {
         m_batchIntervalMs = batchIntervalMs;
     }
 
+    @Override
+    public int getBatchSizeBytes() {
+        return m_batchSizeBytes;
+    }
+
+    public void setBatchSizeBytes(int batchSizeBytes) {
+        m_batchSizeBytes = batchSizeBytes;
+    }
+
+    @Override
+    public int getMinBatchIntervalMs() {
+        return m_minBatchIntervalMs != null ? m_minBatchIntervalMs : m_batchIntervalMs;
+    }
+
+    public void setMinBatchIntervalMs(int minBatchIntervalMs) {
+        m_minBatchIntervalMs = minBatchIntervalMs;
+    }
+
     @Override
     public void reload() throws IOException {
       // pass
@@ -78,6 +78,21 @@ public class SyslogSinkModule extends AbstractXmlSinkModule<SyslogConnection, Sy
                 return config.getBatchIntervalMs();
             }
 
+            @Override
+            public int getCompletionSizeInBytes() {
+                return config.getBatchSizeBytes();
+            }
+
+            @Override
+            public int getMinCompletionIntervalMs() {
+                return config.getMinBatchIntervalMs();
+            }
+
+            @Override
+            public int getMessageSizeInBytes(SyslogConnection connection) {
+                return connection.getBuffer().remaining();
+            }
+
             @Override
             public Object key(SyslogConnection syslogConnection) {
                 return syslogConnection.getSource();
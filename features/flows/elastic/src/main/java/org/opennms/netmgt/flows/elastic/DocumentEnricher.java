@@ -31,15 +31,21 @@ package org.opennms.netmgt.flows.elastic;
 import java.net.InetAddress;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import org.opennms.core.cache.Cache;
 import org.opennms.core.cache.CacheBuilder;
 import org.opennms.core.cache.CacheConfig;
+import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.Fetch.FetchType;
 import org.opennms.core.rpc.utils.mate.ContextKey;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
@@ -55,14 +61,19 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Strings;
 import com.google.common.cache.CacheLoader;
+import com.google.common.collect.Iterables;
 
 public class DocumentEnricher {
     private static final Logger LOG = LoggerFactory.getLogger(DocumentEnricher.class);
 
+    // Maximum number of node ids queried at once when loading cache misses in bulk
+    private static final int BULK_LOAD_PARTITION_SIZE = 1000;
+
     private final NodeDao nodeDao;
 
     private final InterfaceToNodeCache interfaceToNodeCache;
@@ -76,6 +87,10 @@ public class DocumentEnricher {
 
     private final Timer nodeLoadTimer;
 
+    private final Timer nodeBulkLoadTimer;
+
+    private final Histogram nodeBulkLoadSize;
+
     public DocumentEnricher(MetricRegistry metricRegistry, NodeDao nodeDao, InterfaceToNodeCache interfaceToNodeCache,
                             SessionUtils sessionUtils, ClassificationEngine classificationEngine,
                             CacheConfig cacheConfig) {
@@ -89,10 +104,18 @@ public class DocumentEnricher {
                 .withCacheLoader(new CacheLoader<NodeInfoKey, Optional<NodeDocument>>() {
                     @Override
                     public Optional<NodeDocument> load(NodeInfoKey key) {
-                        return getNodeInfo(key.location, key.ipAddress, key.contextKey, key.value);
+                        // Refreshes are performed asynchronously, outside of the enrichment transaction
+                        return sessionUtils.withReadOnlyTransaction(() -> getNodeInfo(key.location, key.ipAddress, key.contextKey, key.value));
+                    }
+
+                    @Override
+                    public Map<NodeInfoKey, Optional<NodeDocument>> loadAll(Iterable<? extends NodeInfoKey> keys) {
+                        return sessionUtils.withReadOnlyTransaction(() -> getNodeInfos(keys));
                     }
                 }).build();
         this.nodeLoadTimer = metricRegistry.timer("nodeLoadTime");
+        this.nodeBulkLoadTimer = metricRegistry.timer("nodeBulkLoadTime");
+        this.nodeBulkLoadSize = metricRegistry.histogram("nodeBulkLoadSize");
     }
 
     public List<FlowDocument> enrich(final Collection<Flow> flows, final FlowSource source) {
@@ -101,48 +124,63 @@ public class DocumentEnricher {
             return Collections.emptyList();
         }
 
-        return sessionUtils.withTransaction(() -> flows.stream().map(flow -> {
-            final FlowDocument document = FlowDocument.from(flow);
-            // Metadata from message
-            document.setHost(source.getSourceAddress());
-            document.setLocation(source.getLocation());
-
-            // Node data
-            getNodeInfoFromCache(source.getLocation(), source.getSourceAddress(), source.getContextKey(), flow.getNodeIdentifier()).ifPresent(document::setNodeExporter);
-            if (document.getDstAddr() != null) {
-                getNodeInfoFromCache(source.getLocation(), document.getDstAddr(), null, null).ifPresent(document::setNodeDst);
-            }
-            if (document.getSrcAddr() != null) {
-                getNodeInfoFromCache(source.getLocation(), document.getSrcAddr(), null, null).ifPresent(document::setNodeSrc);
+        return sessionUtils.withTransaction(() -> {
+            // Resolve the node data for all distinct addresses of the batch at once
+            final Set<NodeInfoKey> keys = new LinkedHashSet<>();
+            for (final Flow flow : flows) {
+                keys.add(new NodeInfoKey(source.getLocation(), source.getSourceAddress(), source.getContextKey(), flow.getNodeIdentifier()));
+                if (flow.getDstAddr() != null) {
+                    keys.add(new NodeInfoKey(source.getLocation(), flow.getDstAddr(), null, null));
+                }
+                if (flow.getSrcAddr() != null) {
+                    keys.add(new NodeInfoKey(source.getLocation(), flow.getSrcAddr(), null, null));
+                }
             }
+            final Map<NodeInfoKey, Optional<NodeDocument>> nodeInfos = getNodeInfosFromCache(keys);
+
+            return flows.stream().map(flow -> {
+                final FlowDocument document = FlowDocument.from(flow);
+                // Metadata from message
+                document.setHost(source.getSourceAddress());
+                document.setLocation(source.getLocation());
+
+                // Node data
+                nodeInfos.get(new NodeInfoKey(source.getLocation(), source.getSourceAddress(), source.getContextKey(), flow.getNodeIdentifier())).ifPresent(document::setNodeExporter);
+                if (document.getDstAddr() != null) {
+                    nodeInfos.get(new NodeInfoKey(source.getLocation(), document.getDstAddr(), null, null)).ifPresent(document::setNodeDst);
+                }
+                if (document.getSrcAddr() != null) {
+                    nodeInfos.get(new NodeInfoKey(source.getLocation(), document.getSrcAddr(), null, null)).ifPresent(document::setNodeSrc);
+                }
 
-            // Locality
-            if (document.getSrcAddr() != null) {
-                document.setSrcLocality(isPrivateAddress(document.getSrcAddr()) ? Locality.PRIVATE : Locality.PUBLIC);
-            }
-            if (document.getDstAddr() != null) {
-                document.setDstLocality(isPrivateAddress(document.getDstAddr()) ? Locality.PRIVATE : Locality.PUBLIC);
-            }
+                // Locality
+                if (document.getSrcAddr() != null) {
+                    document.setSrcLocality(isPrivateAddress(document.getSrcAddr()) ? Locality.PRIVATE : Locality.PUBLIC);
+                }
+                if (document.getDstAddr() != null) {
+                    document.setDstLocality(isPrivateAddress(document.getDstAddr()) ? Locality.PRIVATE : Locality.PUBLIC);
+                }
 
-            if (Locality.PUBLIC.equals(document.getDstLocality()) || Locality.PUBLIC.equals(document.getSrcLocality())) {
-                document.setFlowLocality(Locality.PUBLIC);
-            } else if (Locality.PRIVATE.equals(document.getDstLocality()) || Locality.PRIVATE.equals(document.getSrcLocality())) {
-                document.setFlowLocality(Locality.PRIVATE);
-            }
+                if (Locality.PUBLIC.equals(document.getDstLocality()) || Locality.PUBLIC.equals(document.getSrcLocality())) {
+                    document.setFlowLocality(Locality.PUBLIC);
+                } else if (Locality.PRIVATE.equals(document.getDstLocality()) || Locality.PRIVATE.equals(document.getSrcLocality())) {
+                    document.setFlowLocality(Locality.PRIVATE);
+                }
 
-            final ClassificationRequest classificationRequest = createClassificationRequest(document);
+                final ClassificationRequest classificationRequest = createClassificationRequest(document);
 
-            // Check whether classification is possible
-            if (classificationRequest.isClassifiable()) {
-                // Apply Application mapping
-                document.setApplication(classificationEngine.classify(classificationRequest));
-            }
+                // Check whether classification is possible
+                if (classificationRequest.isClassifiable()) {
+                    // Apply Application mapping
+                    document.setApplication(classificationEngine.classify(classificationRequest));
+                }
 
-            // Conversation tagging
-            document.setConvoKey(ConversationKeyUtils.getConvoKeyAsJsonString(document));
+                // Conversation tagging
+                document.setConvoKey(ConversationKeyUtils.getConvoKeyAsJsonString(document));
 
-            return document;
-        }).collect(Collectors.toList()));
+                return document;
+            }).collect(Collectors.toList());
+        });
     }
 
     private static boolean isPrivateAddress(String ipAddress) {
@@ -150,16 +188,66 @@ public class DocumentEnricher {
         return inetAddress.isLoopbackAddress() || inetAddress.isLinkLocalAddress() || inetAddress.isSiteLocalAddress();
     }
 
-    private Optional<NodeDocument> getNodeInfoFromCache(final String location, final String ipAddress, final ContextKey contextKey, final String value) {
-        final NodeInfoKey key = new NodeInfoKey(location, ipAddress, contextKey, value);
+    private Map<NodeInfoKey, Optional<NodeDocument>> getNodeInfosFromCache(final Set<NodeInfoKey> keys) {
         try {
-            return nodeInfoCache.get(key);
+            return nodeInfoCache.getAll(keys);
         } catch (ExecutionException e) {
-            LOG.error("Error while retrieving NodeDocument from NodeInfoCache: {}.", e.getMessage(), e);
+            LOG.error("Error while retrieving NodeDocuments from NodeInfoCache: {}.", e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Loads the node data for all given keys using a single query for all nodes which are
+     * resolved through the interface to node cache. Only keys using meta-data based node
+     * identification are resolved individually.
+     */
+    private Map<NodeInfoKey, Optional<NodeDocument>> getNodeInfos(final Iterable<? extends NodeInfoKey> keys) {
+        final Map<NodeInfoKey, Optional<NodeDocument>> nodeInfos = new HashMap<>();
+        final Map<NodeInfoKey, Integer> nodeIdsByKey = new HashMap<>();
+
+        for (final NodeInfoKey key : keys) {
+            if (key.contextKey != null && !Strings.isNullOrEmpty(key.value)) {
+                nodeInfos.put(key, getNodeInfo(key.location, key.ipAddress, key.contextKey, key.value));
+                continue;
+            }
+
+            final Optional<Integer> nodeId = interfaceToNodeCache.getFirstNodeId(key.location, InetAddressUtils.addr(key.ipAddress));
+            if (nodeId.isPresent()) {
+                nodeIdsByKey.put(key, nodeId.get());
+            } else {
+                nodeInfos.put(key, Optional.empty());
+            }
+        }
+
+        if (!nodeIdsByKey.isEmpty()) {
+            final Set<Integer> nodeIds = new LinkedHashSet<>(nodeIdsByKey.values());
+            final Map<Integer, NodeDocument> nodeDocuments = new HashMap<>();
+            try (Timer.Context ctx = nodeBulkLoadTimer.time()) {
+                for (final List<Integer> partition : Iterables.partition(nodeIds, BULK_LOAD_PARTITION_SIZE)) {
+                    for (final OnmsNode onmsNode : nodeDao.findMatching(new CriteriaBuilder(OnmsNode.class)
+                            .fetch("categories", FetchType.EAGER)
+                            .in("id", partition)
+                            .distinct()
+                            .toCriteria())) {
+                        nodeDocuments.put(onmsNode.getId(), toNodeDocument(onmsNode));
+                    }
+                }
+            }
+            nodeBulkLoadSize.update(nodeIds.size());
+
+            nodeIdsByKey.forEach((key, nodeId) -> {
+                final NodeDocument nodeDocument = nodeDocuments.get(nodeId);
+                if (nodeDocument == null) {
+                    LOG.warn("Node with id: {} at location: {} with IP address: {} is in the interface to node cache, but wasn't found in the database.", nodeId, key.location, key.ipAddress);
+                }
+                nodeInfos.put(key, Optional.ofNullable(nodeDocument));
+            });
+        }
+
+        return nodeInfos;
+    }
+
     private Optional<NodeDocument> getNodeInfo(final String location, final String ipAddress, final ContextKey contextKey, final String value) {
         return getNodeInfo(location, InetAddressUtils.addr(ipAddress), contextKey, value);
     }
@@ -187,18 +275,21 @@ public class DocumentEnricher {
         }
 
         if (onmsNode != null) {
-            final NodeDocument nodeDocument = new NodeDocument();
-            nodeDocument.setForeignSource(onmsNode.getForeignSource());
-            nodeDocument.setForeignId(onmsNode.getForeignId());
-            nodeDocument.setNodeId(onmsNode.getId());
-            nodeDocument.setCategories(onmsNode.getCategories().stream().map(OnmsCategory::getName).collect(Collectors.toList()));
-
-            return Optional.of(nodeDocument);
+            return Optional.of(toNodeDocument(onmsNode));
         }
 
         return Optional.empty();
     }
 
+    private static NodeDocument toNodeDocument(final OnmsNode onmsNode) {
+        final NodeDocument nodeDocument = new NodeDocument();
+        nodeDocument.setForeignSource(onmsNode.getForeignSource());
+        nodeDocument.setForeignId(onmsNode.getForeignId());
+        nodeDocument.setNodeId(onmsNode.getId());
+        nodeDocument.setCategories(onmsNode.getCategories().stream().map(OnmsCategory::getName).collect(Collectors.toList()));
+        return nodeDocument;
+    }
+
     // Key class, which is used to cache NodeDocument objects
     private static class NodeInfoKey {
 
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.flows.elastic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,6 +37,8 @@ import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.opennms.core.criteria.Criteria;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
 import org.opennms.netmgt.dao.api.NodeDao;
@@ -48,13 +51,14 @@ import com.google.common.collect.Lists;
 public class DocumentEnricherTest {
 
     private DocumentEnricher enricher;
+    private NodeDao nodeDao;
     private AtomicInteger nodeDaoGetCounter;
 
     @Before
     public void setUp() {
         final MockDocumentEnricherFactory factory = new MockDocumentEnricherFactory();
         enricher = factory.getEnricher();
-        final NodeDao nodeDao = factory.getNodeDao();
+        nodeDao = factory.getNodeDao();
         final InterfaceToNodeCache interfaceToNodeCache = factory.getInterfaceToNodeCache();
         nodeDaoGetCounter = factory.getNodeDaoGetCounter();
 
@@ -74,8 +78,27 @@ public class DocumentEnricherTest {
         documents.add(createFlowDocument("10.0.0.1", "10.0.0.3"));
         enricher.enrich(documents.stream().map(TestFlow::new).collect(Collectors.toList()), new FlowSource("Default", "127.0.0.1", null));
 
-        // get is also called for each save, so we account for those as well
-        assertEquals(6, nodeDaoGetCounter.get());
+        // get is called for each save only, all nodes are loaded using a single bulk query
+        assertEquals(3, nodeDaoGetCounter.get());
+        Mockito.verify(nodeDao, Mockito.times(1)).findMatching(Mockito.any(Criteria.class));
+
+        // Enriching the same addresses again must be served from the cache
+        enricher.enrich(documents.stream().map(TestFlow::new).collect(Collectors.toList()), new FlowSource("Default", "127.0.0.1", null));
+        Mockito.verify(nodeDao, Mockito.times(1)).findMatching(Mockito.any(Criteria.class));
+    }
+
+    @Test
+    public void verifyBulkEnrichment() {
+        final List<FlowDocument> documents = Lists.newArrayList();
+        documents.add(createFlowDocument("10.0.0.1", "10.0.0.2"));
+        documents.add(createFlowDocument("10.0.0.3", "10.0.0.4"));
+        final List<FlowDocument> enriched = enricher.enrich(documents.stream().map(TestFlow::new).collect(Collectors.toList()), new FlowSource("Default", "10.0.0.3", null));
+
+        assertEquals(Integer.valueOf(3), enriched.get(0).getNodeExporter().getNodeId());
+        assertEquals(Integer.valueOf(1), enriched.get(0).getNodeSrc().getNodeId());
+        assertEquals(Integer.valueOf(2), enriched.get(0).getNodeDst().getNodeId());
+        assertEquals(Integer.valueOf(3), enriched.get(1).getNodeSrc().getNodeId());
+        assertNull(enriched.get(1).getNodeDst());
     }
 
     private static FlowDocument createFlowDocument(String sourceIp, String destIp) {
@@ -48,9 +48,11 @@ import org.opennms.netmgt.graph.api.VertexRef;
 import org.opennms.netmgt.graph.api.focus.Focus;
 import org.opennms.netmgt.graph.api.focus.FocusStrategy;
 import org.opennms.netmgt.graph.api.info.GraphInfo;
-import org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelTransformer;
+import org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelIndex;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
 
 import edu.uci.ics.jung.graph.DirectedSparseGraph;
@@ -69,6 +71,9 @@ public final class GenericGraph extends GenericElement implements ImmutableGraph
     private final Focus defaultFocus;
     private final GraphInfo<GenericVertex> graphInfo;
 
+    // Built on first use, as most graphs are never asked for a view
+    private final Supplier<SemanticZoomLevelIndex> viewIndex = Suppliers.memoize(() -> new SemanticZoomLevelIndex(this));
+
     private GenericGraph(GenericGraphBuilder builder) {
         super(builder.properties);
         this.jungGraph = builder.jungGraph;
@@ -199,7 +204,7 @@ public final class GenericGraph extends GenericElement implements ImmutableGraph
 
     @Override
     public ImmutableGraph<GenericVertex, GenericEdge> getView(Collection<GenericVertex> verticesInFocus, int szl) {
-        return new SemanticZoomLevelTransformer(verticesInFocus, szl).transform(this);
+        return viewIndex.get().getView(verticesInFocus, szl);
     }
 
     @Override
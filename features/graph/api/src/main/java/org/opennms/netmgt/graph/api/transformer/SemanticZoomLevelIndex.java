@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.graph.api.transformer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.opennms.netmgt.graph.api.VertexRef;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
+import org.opennms.netmgt.graph.api.generic.GenericGraph;
+import org.opennms.netmgt.graph.api.generic.GenericGraph.GenericGraphBuilder;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Adjacency index of a {@link GenericGraph} to calculate views for a focus and a semantic zoom level.
+ *
+ * Each vertex is addressed by its position in the index. Neighbors and outgoing edges of all vertices are stored
+ * in flat arrays (compressed sparse rows), so calculating a view only visits the vertices within the requested
+ * distance of the focus, instead of the whole graph.
+ * As a {@link GenericGraph} is immutable, the index is built once per graph.
+ * The most recently calculated views are cached as well.
+ */
+public class SemanticZoomLevelIndex {
+
+    // Upper bound of vertices and edges of all cached views
+    private static final long MAX_CACHED_VIEW_ELEMENTS = 250_000;
+
+    private final GenericGraph graph;
+    private final GenericVertex[] vertices;
+    private final Map<String, Integer> vertexIndex;
+
+    // neighbors[neighborOffsets[i]] to neighbors[neighborOffsets[i + 1] - 1] are the neighbors of vertex i
+    private final int[] neighborOffsets;
+    private final int[] neighbors;
+
+    // edges[edgeOffsets[i]] to edges[edgeOffsets[i + 1] - 1] are the outgoing edges of vertex i
+    private final int[] edgeOffsets;
+    private final GenericEdge[] edges;
+    private final int[] edgeTargets;
+
+    private final Cache<ViewKey, GenericGraph> views = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CACHED_VIEW_ELEMENTS)
+            .weigher((ViewKey key, GenericGraph view) -> view.getVertices().size() + view.getEdges().size())
+            .build();
+
+    public SemanticZoomLevelIndex(GenericGraph graph) {
+        this.graph = Objects.requireNonNull(graph);
+
+        final List<GenericVertex> graphVertices = graph.getVertices();
+        vertices = graphVertices.toArray(new GenericVertex[graphVertices.size()]);
+        vertexIndex = new HashMap<>(vertices.length * 2);
+        for (int i = 0; i < vertices.length; i++) {
+            vertexIndex.put(vertices[i].getId(), i);
+        }
+
+        // Only edges between vertices of this graph can be part of a view
+        final List<GenericEdge> graphEdges = graph.getEdges();
+        final GenericEdge[] localEdges = new GenericEdge[graphEdges.size()];
+        final int[] sources = new int[graphEdges.size()];
+        final int[] targets = new int[graphEdges.size()];
+        final int[] degrees = new int[vertices.length];
+        final int[] outDegrees = new int[vertices.length];
+        int edgeCount = 0;
+        for (GenericEdge eachEdge : graphEdges) {
+            final int source = indexOf(eachEdge.getSource());
+            final int target = indexOf(eachEdge.getTarget());
+            if (source < 0 || target < 0) {
+                continue;
+            }
+            localEdges[edgeCount] = eachEdge;
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            edgeCount++;
+            outDegrees[source]++;
+            if (source != target) {
+                degrees[source]++;
+                degrees[target]++;
+            }
+        }
+
+        neighborOffsets = toOffsets(degrees);
+        neighbors = new int[neighborOffsets[vertices.length]];
+        edgeOffsets = toOffsets(outDegrees);
+        edges = new GenericEdge[edgeCount];
+        edgeTargets = new int[edgeCount];
+
+        // Reuse the degrees as insert positions
+        System.arraycopy(neighborOffsets, 0, degrees, 0, vertices.length);
+        System.arraycopy(edgeOffsets, 0, outDegrees, 0, vertices.length);
+        for (int i = 0; i < edgeCount; i++) {
+            final int source = sources[i];
+            final int target = targets[i];
+            final int edgePosition = outDegrees[source]++;
+            edges[edgePosition] = localEdges[i];
+            edgeTargets[edgePosition] = target;
+            if (source != target) {
+                neighbors[degrees[source]++] = target;
+                neighbors[degrees[target]++] = source;
+            }
+        }
+    }
+
+    public GenericGraph getView(Collection<GenericVertex> verticesInFocus, int szl) {
+        Preconditions.checkArgument(szl >= 0, "Semantic Zoom Level must be >= 0");
+        Objects.requireNonNull(verticesInFocus);
+
+        // Determine vertices that are in focus but also actually known by the graph
+        final int[] focus = verticesInFocus.stream()
+                .mapToInt(v -> indexOf(v.getNamespace(), v.getId()))
+                .filter(i -> i >= 0)
+                .distinct()
+                .sorted()
+                .toArray();
+        final ViewKey key = new ViewKey(focus, szl);
+        GenericGraph view = views.getIfPresent(key);
+        if (view == null) {
+            view = calculateView(focus, szl);
+            views.put(key, view);
+        }
+        return view;
+    }
+
+    private GenericGraph calculateView(int[] focus, int szl) {
+        // Breadth first search, bounded by the szl.
+        // Each vertex of the view is queued exactly once, so the queue holds all vertices of the view in the end.
+        final BitSet inView = new BitSet(vertices.length);
+        int[] queue = Arrays.copyOf(focus, Math.max(focus.length, 16));
+        int head = 0;
+        int tail = focus.length;
+        for (int eachFocus : focus) {
+            inView.set(eachFocus);
+        }
+        for (int level = 0; level < szl && head < tail; level++) {
+            final int levelEnd = tail;
+            while (head < levelEnd) {
+                final int vertex = queue[head++];
+                for (int i = neighborOffsets[vertex]; i < neighborOffsets[vertex + 1]; i++) {
+                    final int neighbor = neighbors[i];
+                    if (!inView.get(neighbor)) {
+                        inView.set(neighbor);
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, queue.length * 2);
+                        }
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        final GenericGraphBuilder graphBuilder = GenericGraph.builder()
+                .graphInfo(graph)
+                .properties(graph.getProperties());
+        for (int i = 0; i < tail; i++) {
+            graphBuilder.addVertex(vertices[queue[i]]);
+        }
+        // Only add edges where both ends are part of the view
+        for (int i = 0; i < tail; i++) {
+            final int vertex = queue[i];
+            for (int e = edgeOffsets[vertex]; e < edgeOffsets[vertex + 1]; e++) {
+                if (inView.get(edgeTargets[e])) {
+                    graphBuilder.addEdge(edges[e]);
+                }
+            }
+        }
+        return graphBuilder.build();
+    }
+
+    private int indexOf(VertexRef vertexRef) {
+        return indexOf(vertexRef.getNamespace(), vertexRef.getId());
+    }
+
+    private int indexOf(String namespace, String id) {
+        if (!graph.getNamespace().equals(namespace)) {
+            return -1;
+        }
+        final Integer index = vertexIndex.get(id);
+        return index == null ? -1 : index;
+    }
+
+    private static int[] toOffsets(int[] counts) {
+        final int[] offsets = new int[counts.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            offsets[i + 1] = offsets[i] + counts[i];
+        }
+        return offsets;
+    }
+
+    private static final class ViewKey {
+        private final int[] focus;
+        private final int szl;
+
+        private ViewKey(int[] focus, int szl) {
+            this.focus = focus;
+            this.szl = szl;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final ViewKey that = (ViewKey) o;
+            return szl == that.szl && Arrays.equals(focus, that.focus);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(focus) + szl;
+        }
+    }
+}
@@ -178,6 +178,50 @@ public class GenericGraphTest {
         assertThat(view.getVertexIds(), Matchers.hasItems("v1", "v1.1", "v1.2", "v1.1.1", "v1.1.2", "v1.2.1", "v1.2.2"));
     }
 
+    @Test
+    public void shouldOnlyConsiderVerticesAndEdgesOfOwnNamespaceInView() {
+        final String namespace = "dummy";
+        final GenericVertex v1 = GenericVertex.builder().namespace(namespace).id("v1").build();
+        final GenericVertex v2 = GenericVertex.builder().namespace(namespace).id("v2").build();
+        final GenericVertex v3 = GenericVertex.builder().namespace(namespace).id("v3").build();
+        final GenericGraph graph = GenericGraph.builder()
+                .namespace(namespace)
+                .addVertices(Lists.newArrayList(v1, v2, v3))
+                .addEdge(GenericEdge.builder().namespace(namespace).source(v1.getVertexRef()).target(v2.getVertexRef()).build())
+                .addEdge(GenericEdge.builder().namespace(namespace).source(v2.getVertexRef()).target(v3.getVertexRef()).build())
+                .addEdge(GenericEdge.builder().namespace(namespace).source(v3.getVertexRef()).target(v1.getVertexRef()).build())
+                .addEdge(GenericEdge.builder().namespace(namespace).source(v1.getVertexRef()).target(new VertexRef("other", "v2")).build())
+                .build();
+
+        // Vertices of other namespaces are ignored, even if they share the id
+        final GenericVertex otherV2 = GenericVertex.builder().namespace("other").id("v2").build();
+        ImmutableGraph<GenericVertex, GenericEdge> view = graph.getView(Lists.newArrayList(v1, otherV2), 0);
+        assertThat(view.getVertexIds(), Matchers.contains("v1"));
+        assertThat(view.getEdges(), Matchers.hasSize(0));
+
+        // Cycles are followed only once and edges to other namespaces are not part of the view
+        view = graph.getView(Lists.newArrayList(v1), 5);
+        assertThat(view.getVertexIds(), Matchers.contains("v1", "v2", "v3"));
+        assertThat(view.getEdges(), Matchers.hasSize(3));
+    }
+
+    @Test
+    public void shouldReuseCachedViews() {
+        final String namespace = "dummy";
+        final GenericVertex v1 = GenericVertex.builder().namespace(namespace).id("v1").build();
+        final GenericVertex v2 = GenericVertex.builder().namespace(namespace).id("v2").build();
+        final GenericGraph graph = GenericGraph.builder()
+                .namespace(namespace)
+                .addVertices(Lists.newArrayList(v1, v2))
+                .addEdge(GenericEdge.builder().namespace(namespace).source(v1.getVertexRef()).target(v2.getVertexRef()).build())
+                .build();
+
+        final ImmutableGraph<GenericVertex, GenericEdge> view = graph.getView(Lists.newArrayList(v1, v2), 1);
+        // The order and duplicates of the focus do not matter
+        assertThat(graph.getView(Lists.newArrayList(v2, v1, v2), 1), Matchers.sameInstance(view));
+        assertThat(graph.getView(Lists.newArrayList(v1, v2), 0), Matchers.not(Matchers.sameInstance(view)));
+    }
+
     @Test
     public void shouldResolveVerticesWithNodeRef() {
         final NodeRef nodeRef = NodeRef.from("test:node1");
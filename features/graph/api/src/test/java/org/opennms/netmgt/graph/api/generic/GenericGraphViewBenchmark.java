@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.graph.api.generic;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opennms.netmgt.graph.api.ImmutableGraph;
+import org.opennms.netmgt.graph.api.transformer.SemanticZoomLevelIndex;
+
+/**
+ * Measures the calculation of views for a focus and a semantic zoom level via {@link GenericGraph#getView(java.util.Collection, int)}
+ * on a synthetic graph, where each vertex is connected to a few randomly chosen vertices.
+ * <p>
+ * Run the {@link #main(String[])} method to execute the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GenericGraphViewBenchmark {
+
+    private static final String NAMESPACE = "benchmark";
+
+    @Param({"100000"})
+    public int numVertices;
+
+    @Param({"3"})
+    public int edgesPerVertex;
+
+    @Param({"1", "3"})
+    public int szl;
+
+    private GenericGraph graph;
+    private List<GenericVertex> vertices;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        final GenericGraph.GenericGraphBuilder builder = GenericGraph.builder().namespace(NAMESPACE);
+        for (int i = 0; i < numVertices; i++) {
+            builder.addVertex(GenericVertex.builder().namespace(NAMESPACE).id("v" + i).build());
+        }
+        for (int i = 0; i < numVertices; i++) {
+            for (int j = 0; j < edgesPerVertex; j++) {
+                final int target = random.nextInt(numVertices);
+                if (target != i) {
+                    builder.addEdge(GenericEdge.builder().namespace(NAMESPACE)
+                            .source(NAMESPACE, "v" + i)
+                            .target(NAMESPACE, "v" + target)
+                            .build());
+                }
+            }
+        }
+        graph = builder.build();
+        vertices = graph.getVertices();
+        // Build the index up front, so it is not part of the measured views
+        graph.getView(Collections.emptyList(), 0);
+    }
+
+    @Benchmark
+    public SemanticZoomLevelIndex buildIndex() {
+        return new SemanticZoomLevelIndex(graph);
+    }
+
+    @Benchmark
+    public ImmutableGraph<GenericVertex, GenericEdge> viewOfRandomFocus() {
+        // A different focus for each invocation, so the view cache does not apply
+        final GenericVertex focus = vertices.get(random.nextInt(vertices.size()));
+        return graph.getView(Collections.singletonList(focus), szl);
+    }
+
+    @Benchmark
+    public ImmutableGraph<GenericVertex, GenericEdge> viewOfFixedFocus() {
+        return graph.getView(Collections.singletonList(vertices.get(0)), szl);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(GenericGraphViewBenchmark.class.getSimpleName())
+                .result("generic-graph-view-benchmark.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -28,32 +28,71 @@
 
 package org.opennms.netmgt.graph.service;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.opennms.netmgt.graph.api.Edge;
+import org.opennms.netmgt.graph.api.ImmutableGraph;
 import org.opennms.netmgt.graph.api.ImmutableGraphContainer;
+import org.opennms.netmgt.graph.api.Vertex;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
 import org.opennms.netmgt.graph.api.generic.GenericGraph;
 import org.opennms.netmgt.graph.api.generic.GenericGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericProperties;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
 import org.opennms.netmgt.graph.api.info.GraphContainerInfo;
 import org.opennms.netmgt.graph.api.info.GraphInfo;
 import org.opennms.netmgt.graph.api.service.GraphContainerCache;
 import org.opennms.netmgt.graph.api.service.GraphContainerProvider;
 import org.opennms.netmgt.graph.api.service.GraphService;
+import org.opennms.netmgt.graph.api.updates.ChangeSet;
+import org.opennms.netmgt.graph.api.updates.ContainerChangeSet;
+import org.opennms.netmgt.graph.api.updates.listener.GraphContainerChangeSetListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
-public class CachingGraphService implements GraphService, GraphContainerCache {
+/**
+ * Caches the {@link ImmutableGraphContainer}s provided by the delegate.
+ *
+ * Published {@link ContainerChangeSet}s are applied to the cached container instead of dropping it.
+ * Only the graphs affected by a change set are rebuilt, all other graphs (and all unchanged vertices and edges)
+ * are shared with the previously cached container. If a change set does not match the cached container
+ * (e.g. it removes a vertex the cached graph does not know about) the entry is invalidated and the container
+ * is rebuilt from the provider on the next access.
+ */
+public class CachingGraphService implements GraphService, GraphContainerCache, GraphContainerChangeSetListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingGraphService.class);
 
     private final GraphService delegate;
     private final LoadingCache<String, ImmutableGraphContainer> cache;
     private final Map<String, Long> expireMap = new ConcurrentHashMap<>();
 
+    private final Timer rebuildTimer;
+    private final Timer patchTimer;
+    private final Counter patchMismatches;
+
     public CachingGraphService(final GraphService delegate) {
+        this(delegate, new MetricRegistry());
+    }
+
+    public CachingGraphService(final GraphService delegate, final MetricRegistry metrics) {
         this.delegate = Objects.requireNonNull(delegate);
+        Objects.requireNonNull(metrics);
+        this.rebuildTimer = metrics.timer("rebuilds");
+        this.patchTimer = metrics.timer("patches");
+        this.patchMismatches = metrics.counter("patchMismatches");
         this.cache = Caffeine.newBuilder()
             .expireAfter(new Expiry<String, ImmutableGraphContainer>() {
                 @Override
@@ -73,7 +112,13 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
                 }
             })
             .recordStats()
-            .build(delegate::getGraphContainer);
+            .build(this::load);
+    }
+
+    private ImmutableGraphContainer load(String containerId) {
+        try (Timer.Context context = rebuildTimer.time()) {
+            return delegate.getGraphContainer(containerId);
+        }
     }
 
     @Override
@@ -128,6 +173,118 @@ public class CachingGraphService implements GraphService, GraphContainerCache {
         return cache.get(containerId);
     }
 
+    @Override
+    public void graphContainerChanged(ContainerChangeSet changeSet) {
+        Objects.requireNonNull(changeSet);
+        // Only containers which are already cached are patched, all others are loaded on demand anyways
+        cache.asMap().computeIfPresent(changeSet.getContainerId(), (containerId, cachedContainer) -> {
+            final Timer.Context context = patchTimer.time();
+            final GenericGraphContainer patchedContainer = apply(cachedContainer.asGenericGraphContainer(), changeSet);
+            if (patchedContainer == null) {
+                LOG.debug("Change set from {} does not match the cached container with id {}. Invalidating it.", changeSet.getChangeSetDate(), containerId);
+                patchMismatches.inc();
+                return null;
+            }
+            context.stop();
+            return patchedContainer;
+        });
+    }
+
+    // Returns the patched container, or null if the change set does not match the container
+    private static GenericGraphContainer apply(GenericGraphContainer container, ContainerChangeSet changeSet) {
+        final Map<String, GenericGraph> graphs = new LinkedHashMap<>();
+        container.getGraphs().forEach(graph -> graphs.put(graph.getNamespace(), graph));
+        for (ImmutableGraph<?, ?> removedGraph : changeSet.getGraphsRemoved()) {
+            if (graphs.remove(removedGraph.getNamespace()) == null) {
+                return null;
+            }
+        }
+        for (ImmutableGraph<?, ?> addedGraph : changeSet.getGraphsAdded()) {
+            if (graphs.putIfAbsent(addedGraph.getNamespace(), addedGraph.asGenericGraph()) != null) {
+                return null;
+            }
+        }
+        for (ChangeSet<?, ?, ?> graphChangeSet : changeSet.getGraphsUpdated()) {
+            final GenericGraph graph = graphs.get(graphChangeSet.getNamespace());
+            if (graph == null) {
+                return null;
+            }
+            final GenericGraph patchedGraph = apply(graph, graphChangeSet);
+            if (patchedGraph == null) {
+                return null;
+            }
+            graphs.put(patchedGraph.getNamespace(), patchedGraph);
+        }
+        // A container must never be empty
+        if (graphs.isEmpty()) {
+            return null;
+        }
+        final GenericGraphContainer.GenericGraphContainerBuilder containerBuilder = GenericGraphContainer.builder();
+        container.getProperties().forEach(containerBuilder::property);
+        graphs.values().forEach(containerBuilder::addGraph);
+        return containerBuilder.build();
+    }
+
+    // Returns the patched graph, or null if the change set does not match the graph
+    private static GenericGraph apply(GenericGraph graph, ChangeSet<?, ?, ?> changeSet) {
+        final Map<String, GenericVertex> vertices = new LinkedHashMap<>();
+        graph.getVertices().forEach(vertex -> vertices.put(vertex.getId(), vertex));
+        for (Vertex removedVertex : changeSet.getVerticesRemoved()) {
+            if (vertices.remove(removedVertex.getId()) == null) {
+                return null;
+            }
+        }
+        for (Vertex updatedVertex : changeSet.getVerticesUpdated()) {
+            if (vertices.replace(updatedVertex.getId(), updatedVertex.asGenericVertex()) == null) {
+                return null;
+            }
+        }
+        for (Vertex addedVertex : changeSet.getVerticesAdded()) {
+            if (vertices.putIfAbsent(addedVertex.getId(), addedVertex.asGenericVertex()) != null) {
+                return null;
+            }
+        }
+
+        final Map<String, GenericEdge> edges = new LinkedHashMap<>();
+        graph.getEdges().forEach(edge -> edges.put(edge.getId(), edge));
+        for (Edge removedEdge : changeSet.getEdgesRemoved()) {
+            if (edges.remove(removedEdge.getId()) == null) {
+                return null;
+            }
+        }
+        for (Edge updatedEdge : changeSet.getEdgesUpdated()) {
+            if (edges.replace(updatedEdge.getId(), updatedEdge.asGenericEdge()) == null) {
+                return null;
+            }
+        }
+        for (Edge addedEdge : changeSet.getEdgesAdded()) {
+            if (edges.putIfAbsent(addedEdge.getId(), addedEdge.asGenericEdge()) != null) {
+                return null;
+            }
+        }
+
+        final Map<String, Object> properties = new HashMap<>(graph.getProperties());
+        if (changeSet.hasGraphInfoChanged()) {
+            properties.remove(GenericProperties.DESCRIPTION);
+            properties.remove(GenericProperties.LABEL);
+        }
+        final GenericGraph.GenericGraphBuilder graphBuilder = GenericGraph.builder()
+                .properties(properties)
+                .focus(changeSet.hasFocusChanged() ? changeSet.getFocus() : graph.getDefaultFocus());
+        if (changeSet.hasGraphInfoChanged()) {
+            graphBuilder.description(changeSet.getGraphInfo().getDescription());
+            graphBuilder.label(changeSet.getGraphInfo().getLabel());
+        }
+        try {
+            graphBuilder.addVertices(vertices.values());
+            // Fails if an edge still references a removed vertex
+            graphBuilder.addEdges(edges.values());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        return graphBuilder.build();
+    }
+
     public synchronized void onUnbind(GraphContainerProvider graphContainerProvider, Map<String, String> props) {
         if (graphContainerProvider != null) {
             final String containerId = graphContainerProvider.getContainerInfo().getId();
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.graph.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.graph.api.generic.GenericEdge;
+import org.opennms.netmgt.graph.api.generic.GenericGraph;
+import org.opennms.netmgt.graph.api.generic.GenericGraphContainer;
+import org.opennms.netmgt.graph.api.generic.GenericVertex;
+import org.opennms.netmgt.graph.api.service.GraphService;
+import org.opennms.netmgt.graph.api.updates.ContainerChangeSet;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class CachingGraphServiceTest {
+
+    private static final String CONTAINER_ID = "test";
+    private static final String NAMESPACE = "dummy";
+    private static final String OTHER_NAMESPACE = "other";
+
+    private GraphService delegate;
+    private MetricRegistry metrics;
+    private CachingGraphService cachingGraphService;
+
+    @Before
+    public void setUp() {
+        delegate = mock(GraphService.class);
+        metrics = new MetricRegistry();
+        cachingGraphService = new CachingGraphService(delegate, metrics);
+    }
+
+    @Test
+    public void verifyChangeSetIsAppliedToCachedContainer() {
+        final GenericGraph otherGraph = GenericGraph.builder().namespace(OTHER_NAMESPACE)
+                .addVertex(GenericVertex.builder().namespace(OTHER_NAMESPACE).id("x").build())
+                .build();
+        final GenericGraphContainer oldContainer = createContainer(createGraph("1", "2", "3"), otherGraph);
+        when(delegate.getGraphContainer(CONTAINER_ID)).thenReturn(oldContainer);
+        assertSame(oldContainer, cachingGraphService.get(CONTAINER_ID));
+
+        // Remove vertex 1 (and its edge), label vertex 3, add vertex 4
+        final GenericGraph newGraph = GenericGraph.builder().namespace(NAMESPACE)
+                .label("Updated")
+                .addVertex(GenericVertex.builder().namespace(NAMESPACE).id("2").build())
+                .addVertex(GenericVertex.builder().namespace(NAMESPACE).id("3").label("Three").build())
+                .addVertex(GenericVertex.builder().namespace(NAMESPACE).id("4").build())
+                .addEdge(GenericEdge.builder().namespace(NAMESPACE).source(NAMESPACE, "2").target(NAMESPACE, "4").build())
+                .build();
+        final GenericGraphContainer newContainer = createContainer(newGraph, otherGraph);
+        cachingGraphService.graphContainerChanged(ContainerChangeSet.builder(oldContainer, newContainer).build());
+
+        final GenericGraphContainer patchedContainer = cachingGraphService.getGraphContainer(CONTAINER_ID);
+        assertEquals(newContainer, patchedContainer);
+        // Unchanged graphs are shared with the previously cached container
+        assertSame(otherGraph, patchedContainer.getGraph(OTHER_NAMESPACE));
+
+        // The provider was only asked once
+        verify(delegate, times(1)).getGraphContainer(CONTAINER_ID);
+        assertEquals(1, metrics.timer("rebuilds").getCount());
+        assertEquals(1, metrics.timer("patches").getCount());
+        assertEquals(0, metrics.counter("patchMismatches").getCount());
+    }
+
+    @Test
+    public void verifyMismatchingChangeSetInvalidatesCachedContainer() {
+        final GenericGraphContainer cachedContainer = createContainer(createGraph("1", "2"));
+        when(delegate.getGraphContainer(CONTAINER_ID)).thenReturn(cachedContainer);
+        cachingGraphService.get(CONTAINER_ID);
+
+        // The change set was calculated against a state the cache never saw, e.g. vertex 3 is removed
+        final GenericGraphContainer newContainer = createContainer(createGraph("1", "2", "4"));
+        final ContainerChangeSet changeSet = ContainerChangeSet.builder(createContainer(createGraph("1", "2", "3")), newContainer).build();
+        when(delegate.getGraphContainer(CONTAINER_ID)).thenReturn(newContainer);
+        cachingGraphService.graphContainerChanged(changeSet);
+
+        // The container is rebuilt from the provider
+        assertSame(newContainer, cachingGraphService.get(CONTAINER_ID));
+        verify(delegate, times(2)).getGraphContainer(CONTAINER_ID);
+        assertEquals(2, metrics.timer("rebuilds").getCount());
+        assertEquals(0, metrics.timer("patches").getCount());
+        assertEquals(1, metrics.counter("patchMismatches").getCount());
+    }
+
+    @Test
+    public void verifyChangeSetForUncachedContainerIsIgnored() {
+        final GenericGraphContainer newContainer = createContainer(createGraph("1"));
+        cachingGraphService.graphContainerChanged(ContainerChangeSet.builder(createContainer(createGraph("2")), newContainer).build());
+
+        verify(delegate, times(0)).getGraphContainer(CONTAINER_ID);
+        assertEquals(0, metrics.timer("patches").getCount());
+    }
+
+    // Creates a graph with the given vertices, where each vertex is connected to the next one
+    private static GenericGraph createGraph(String... vertexIds) {
+        final GenericGraph.GenericGraphBuilder builder = GenericGraph.builder().namespace(NAMESPACE);
+        for (int i = 0; i < vertexIds.length; i++) {
+            builder.addVertex(GenericVertex.builder().namespace(NAMESPACE).id(vertexIds[i]).build());
+            if (i > 0) {
+                builder.addEdge(GenericEdge.builder().namespace(NAMESPACE).source(NAMESPACE, vertexIds[i - 1]).target(NAMESPACE, vertexIds[i]).build());
+            }
+        }
+        return builder.build();
+    }
+
+    private static GenericGraphContainer createContainer(GenericGraph... graphs) {
+        final GenericGraphContainer.GenericGraphContainerBuilder builder = GenericGraphContainer.builder().id(CONTAINER_ID);
+        for (GenericGraph graph : graphs) {
+            builder.addGraph(graph);
+        }
+        return builder.build();
+    }
+}
@@ -28,11 +28,17 @@
 
 package org.opennms.features.kafka.producer;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.dao.api.SessionUtils;
 import org.opennms.netmgt.model.OnmsNode;
@@ -90,6 +96,47 @@ public class NodeCache {
         });
     }
 
+    /**
+     * Batched variant of {@link #triggerIfNeeded(long, Consumer)}.
+     *
+     * All of the given nodes for which no call has been made within the configured timeout
+     * are retrieved with a single query, and the consumer is called once for each of these
+     * with the node id and the corresponding OnmsNode, or null if no node exists with that id.
+     * The callbacks will be done within the context of a single read-only transaction.
+     *
+     * @param nodeIds db ids of the nodes to query
+     * @param consumer callback to issue with each node, if the timeout has not expired since the last callback
+     */
+    public void triggerIfNeeded(Collection<Long> nodeIds, BiConsumer<Long, OnmsNode> consumer) {
+        final long now = System.currentTimeMillis();
+        final List<Long> nodeIdsToUpdate = nodeIds.stream()
+                .distinct()
+                .filter(nodeId -> {
+                    final Long lastUpdated = lastUpdatedByNodeId.get(nodeId);
+                    return lastUpdated == null || now - lastUpdated > timeoutInMs;
+                })
+                .collect(Collectors.toList());
+        if (nodeIdsToUpdate.isEmpty()) {
+            // No update required
+            return;
+        }
+
+        sessionUtils.withReadOnlyTransaction(() -> {
+            // Lookup all of the nodes at once
+            final Map<Integer, OnmsNode> nodesById = nodeDao.findMatching(new CriteriaBuilder(OnmsNode.class)
+                    .in("id", nodeIdsToUpdate.stream().map(Long::intValue).collect(Collectors.toList()))
+                    .toCriteria())
+                    .stream()
+                    .collect(Collectors.toMap(OnmsNode::getId, Function.identity()));
+
+            for (Long nodeId : nodeIdsToUpdate) {
+                lastUpdatedByNodeId.put(nodeId, now);
+                consumer.accept(nodeId, nodesById.get(nodeId.intValue()));
+            }
+            return null;
+        });
+    }
+
     public void setTimeoutInMs(long timeoutInMs) {
         this.timeoutInMs = timeoutInMs;
     }
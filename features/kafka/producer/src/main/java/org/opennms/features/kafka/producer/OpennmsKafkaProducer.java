@@ -29,9 +29,12 @@
 package org.opennms.features.kafka.producer;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -44,7 +47,9 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -62,6 +67,7 @@ import org.opennms.netmgt.events.api.EventListener;
 import org.opennms.netmgt.events.api.EventSubscriptionService;
 import org.opennms.netmgt.events.api.model.IEvent;
 import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.topologies.service.api.OnmsTopologyConsumer;
 import org.opennms.netmgt.topologies.service.api.OnmsTopologyDao;
 import org.opennms.netmgt.topologies.service.api.OnmsTopologyEdge;
@@ -78,8 +84,14 @@ import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
 public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListener, AlarmFeedbackListener, OnmsTopologyConsumer {
@@ -90,8 +102,24 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
             .build();
 
     public static final String KAFKA_CLIENT_PID = "org.opennms.features.kafka.producer.client";
+    private static final String JMX_DOMAIN = "org.opennms.features.kafka.producer";
     private static final ExpressionParser SPEL_PARSER = new SpelExpressionParser();
 
+    /**
+     * What to do with a record when either the mapping queue or the send queue is full.
+     */
+    public enum QueueFullPolicy {
+        /**
+         * Drop the record immediately. Alarms that are dropped will be fixed up by the next alarm sync.
+         */
+        DROP,
+        /**
+         * Wait up to the configured timeout for space to become available before dropping the record.
+         * This applies back-pressure to the callers when Kafka is slow.
+         */
+        BLOCK
+    }
+
     private final ProtobufMapper protobufMapper;
     private final NodeCache nodeCache;
     private final ConfigurationAdmin configAdmin;
@@ -133,6 +161,22 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
     private final ExecutorService kafkaSendQueueExecutor =
             Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "KafkaSendQueueProcessor"));
 
+    // Records are mapped to protobuf off of the caller's thread. Records with the same ordering key
+    // are always assigned to the same queue, and each queue is processed by a single thread, so that
+    // updates for the same alarm or node are never reordered.
+    private int mappingThreads;
+    private int mappingQueueCapacity;
+    private int mappingBatchSize;
+    private List<BlockingQueue<MappingTask>> mappingQueues = Collections.emptyList();
+    private ExecutorService mappingExecutor;
+    private QueueFullPolicy queueFullPolicy = QueueFullPolicy.DROP;
+    private long queueFullTimeoutMs = TimeUnit.SECONDS.toMillis(1);
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Timer mappingLatency = metrics.timer("mappingLatency");
+    private final Meter droppedRecords = metrics.meter("droppedRecords");
+    private JmxReporter metricsReporter;
+
     private String encoding = "UTF8";
 
     public OpennmsKafkaProducer(ProtobufMapper protobufMapper, NodeCache nodeCache,
@@ -143,6 +187,11 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
         this.configAdmin = Objects.requireNonNull(configAdmin);
         this.eventSubscriptionService = Objects.requireNonNull(eventSubscriptionService);
         this.topologyDao=Objects.requireNonNull(topologyDao);
+
+        metrics.register("mappingQueueDepth", (Gauge<Integer>) () -> mappingQueues.stream()
+                .mapToInt(BlockingQueue::size)
+                .sum());
+        metrics.register("sendQueueDepth", (Gauge<Integer>) () -> kafkaSendQueue != null ? kafkaSendQueue.size() : 0);
     }
 
     public void init() throws IOException {
@@ -170,6 +219,41 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
         kafkaSendQueue = new LinkedBlockingQueue<>(kafkaSendQueueCapacity);
         kafkaSendQueueExecutor.execute(this::processKafkaSendQueue);
 
+        // Start mapping records that have been queued for mapping
+        if (mappingThreads <= 0) {
+            mappingThreads = 2;
+            LOG.info("Defaulted the 'mappingThreads' to 2 since no property was set");
+        }
+        if (mappingQueueCapacity <= 0) {
+            mappingQueueCapacity = 10000;
+            LOG.info("Defaulted the 'mappingQueueCapacity' to 10000 since no property was set");
+        }
+        if (mappingBatchSize <= 0) {
+            mappingBatchSize = 100;
+            LOG.info("Defaulted the 'mappingBatchSize' to 100 since no property was set");
+        }
+
+        final List<BlockingQueue<MappingTask>> queues = new ArrayList<>(mappingThreads);
+        for (int i = 0; i < mappingThreads; i++) {
+            queues.add(new LinkedBlockingQueue<>(Math.max(1, mappingQueueCapacity / mappingThreads)));
+        }
+        mappingQueues = queues;
+        mappingExecutor = Executors.newFixedThreadPool(mappingThreads, new ThreadFactoryBuilder()
+                .setNameFormat("KafkaMappingQueueProcessor-%d")
+                .build());
+        for (BlockingQueue<MappingTask> queue : mappingQueues) {
+            mappingExecutor.execute(() -> processMappingQueue(queue));
+        }
+
+        metricsReporter = JmxReporter.forRegistry(metrics)
+                .inDomain(JMX_DOMAIN)
+                .build();
+        try {
+            metricsReporter.start();
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Failed to start metrics reporter. JMX metrics may not be available or accurate for the Kafka producer.");
+        }
+
         if (forwardEvents) {
             eventSubscriptionService.addEventListener(this);
         }
@@ -178,8 +262,16 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
     }
 
     public void destroy() {
+        if (mappingExecutor != null) {
+            mappingExecutor.shutdownNow();
+        }
         kafkaSendQueueExecutor.shutdownNow();
 
+        if (metricsReporter != null) {
+            metricsReporter.close();
+            metricsReporter = null;
+        }
+
         if (producer != null) {
             producer.close();
             producer = null;
@@ -214,7 +306,7 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
     }
 
     private void forwardTopologyEdgeMessage(byte[] refid, byte[] message) {
-        sendRecord(() -> {
+        sendRecord(Arrays.hashCode(refid), null, () -> {
             return new ProducerRecord<>(topologyEdgeTopic, refid, message);
         }, recordMetadata -> {
             // We've got an ACK from the server that the event was forwarded
@@ -244,12 +336,10 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
         }
 
         // Node handling
-        if (forwardNodes && event.getNodeid() != null && event.getNodeid() != 0) {
-            maybeUpdateNode(event.getNodeid());
-        }
+        final Long nodeId = event.getNodeid() != null && event.getNodeid() != 0 ? event.getNodeid() : null;
 
-        // Forward!
-        sendRecord(() -> {
+        // Forward! The node, if any, is looked up and forwarded before the event
+        sendRecord(nodeId != null ? nodeId.hashCode() : Objects.hashCode(event.getUei()), nodeId, () -> {
             final OpennmsModelProtos.Event mappedEvent = protobufMapper.toEvent(event).build();
             LOG.debug("Sending event with UEI: {}", mappedEvent.getUei());
             return new ProducerRecord<>(eventTopic, mappedEvent.getUei().getBytes(encoding), mappedEvent.toByteArray());
@@ -298,9 +388,12 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
         if (alarm == null) {
             // The alarm has been deleted so we shouldn't track it in the map of outstanding alarms any longer
             outstandingAlarms.remove(reductionKey);
+            if (dataSync != null) {
+                dataSync.trackDeletedAlarm(reductionKey);
+            }
             
             // The alarm was deleted, push a null record to the reduction key
-            sendRecord(() -> {
+            sendRecord(reductionKey.hashCode(), null, () -> {
                 LOG.debug("Deleting alarm with reduction key: {}", reductionKey);
                 return new ProducerRecord<>(alarmTopic, reductionKey.getBytes(encoding), null);
             }, recordMetadata -> {
@@ -321,18 +414,31 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
         }
 
         // Node handling
-        if (forwardNodes && alarm.getNodeId() != null) {
-            maybeUpdateNode(alarm.getNodeId());
-        }
+        final Long nodeId = alarm.getNodeId() != null ? alarm.getNodeId().longValue() : null;
 
-        // Forward!
-        sendRecord(() -> {
+        // The alarm is mapped on the caller's thread since it may need to load relationships from the
+        // caller's session, but it is queued behind any pending updates for the same reduction key
+        final ProducerRecord<byte[], byte[]> record;
+        try {
             final OpennmsModelProtos.Alarm mappedAlarm = protobufMapper.toAlarm(alarm).build();
-            LOG.debug("Sending alarm with reduction key: {}", reductionKey);
             if (suppressIncrementalAlarms) {
                 recordIncrementalAlarm(reductionKey, alarm);
             }
-            return new ProducerRecord<>(alarmTopic, reductionKey.getBytes(encoding), mappedAlarm.toByteArray());
+            final byte[] alarmBytes = mappedAlarm.toByteArray();
+            if (dataSync != null) {
+                // Remember the version we forwarded, so that the next sync can skip comparing it
+                dataSync.trackForwardedAlarm(reductionKey, alarm, alarmBytes);
+            }
+            record = new ProducerRecord<>(alarmTopic, reductionKey.getBytes(encoding), alarmBytes);
+        } catch (IOException e) {
+            // Propagate
+            throw new RuntimeException(e);
+        }
+
+        // Forward!
+        sendRecord(reductionKey.hashCode(), nodeId, () -> {
+            LOG.debug("Sending alarm with reduction key: {}", reductionKey);
+            return record;
         }, recordMetadata -> {
             // We've got an ACK from the server that the alarm was forwarded
             // Let other threads know when we've successfully forwarded an alarm
@@ -341,7 +447,13 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
     }
 
     private void maybeUpdateNode(long nodeId) {
-        nodeCache.triggerIfNeeded(nodeId, (node) -> {
+        sendRecord(Long.hashCode(nodeId), nodeId, null, null);
+    }
+
+    private void forwardNodes(Set<Long> nodeIds) {
+        // Retrieve all of the nodes that need to be forwarded at once, the callbacks are issued within a transaction
+        // so the nodes must be mapped here in order to allow relationships to be loaded
+        nodeCache.triggerIfNeeded(nodeIds, (nodeId, node) -> {
             final String nodeCriteria;
             if (node != null && node.getForeignSource() != null && node.getForeignId() != null) {
                 nodeCriteria = String.format("%s:%s", node.getForeignSource(), node.getForeignId());
@@ -349,54 +461,122 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
                 nodeCriteria = Long.toString(nodeId);
             }
 
-            if (node == null) {
-                // The node was deleted, push a null record
-                sendRecord(() -> {
-                    LOG.debug("Deleting node with criteria: {}", nodeCriteria);
-                    return new ProducerRecord<>(nodeTopic, nodeCriteria.getBytes(encoding), null);
+            try {
+                queueForSending(mapNode(nodeCriteria, node), node == null ? null : recordMetadata -> {
+                    // We've got an ACK from the server that the node was forwarded
+                    // Let other threads know when we've successfully forwarded a node
+                    forwardedNode.countDown();
                 });
-                return;
+            } catch (IOException e) {
+                LOG.warn("Failed to map node with criteria: {}.", nodeCriteria, e);
             }
-
-            sendRecord(() -> {
-                final OpennmsModelProtos.Node mappedNode = protobufMapper.toNode(node).build();
-                LOG.debug("Sending node with criteria: {}", nodeCriteria);
-                return new ProducerRecord<>(nodeTopic, nodeCriteria.getBytes(encoding), mappedNode.toByteArray());
-            }, recordMetadata -> {
-                // We've got an ACK from the server that the node was forwarded
-                // Let other threads know when we've successfully forwarded a node
-                forwardedNode.countDown();
-            });
         });
     }
 
-    private void sendRecord(Callable<ProducerRecord<byte[],byte[]>> callable) {
-        sendRecord(callable, null);
+    private ProducerRecord<byte[], byte[]> mapNode(String nodeCriteria, OnmsNode node) throws IOException {
+        if (node == null) {
+            // The node was deleted, push a null record
+            LOG.debug("Deleting node with criteria: {}", nodeCriteria);
+            return new ProducerRecord<>(nodeTopic, nodeCriteria.getBytes(encoding), null);
+        }
+
+        final OpennmsModelProtos.Node mappedNode = protobufMapper.toNode(node).build();
+        LOG.debug("Sending node with criteria: {}", nodeCriteria);
+        return new ProducerRecord<>(nodeTopic, nodeCriteria.getBytes(encoding), mappedNode.toByteArray());
     }
 
-    private void sendRecord(Callable<ProducerRecord<byte[], byte[]>> callable, Consumer<RecordMetadata> callback) {
+    /**
+     * Queues the record for mapping and sending.
+     *
+     * @param orderingKey records with the same key are mapped and sent in the order in which they were queued
+     * @param nodeId the node to forward before the record, if node forwarding is enabled, may be null
+     * @param callable builds the record, invoked on one of the mapping threads, may be null if only the node should be forwarded
+     * @param callback invoked once the record was acknowledged by the server, may be null
+     */
+    private void sendRecord(int orderingKey, Long nodeId, Callable<ProducerRecord<byte[], byte[]>> callable, Consumer<RecordMetadata> callback) {
         if (producer == null) {
             return;
         }
+        if (callable == null && (nodeId == null || !forwardNodes)) {
+            // Nothing to do
+            return;
+        }
 
-        final ProducerRecord<byte[], byte[]> record;
-        try {
-            record = callable.call();
-        } catch (Exception e) {
-            // Propagate
-            throw new RuntimeException(e);
+        // Rather than mapping the record on the caller's thread, we hand it off to the mapping threads. Any offer
+        // that fails due to capacity overflow will be dropped and will have to wait until the next sync to be
+        // processed so this is just a best effort attempt
+        final BlockingQueue<MappingTask> queue = mappingQueues.get(Math.floorMod(orderingKey, mappingQueues.size()));
+        if (!offer(queue, new MappingTask(forwardNodes ? nodeId : null, callable, callback))) {
+            droppedRecords.mark();
+            RATE_LIMITED_LOGGER.warn("Dropped a Kafka record due to mapping queue capacity being full.");
+        }
+    }
+
+    private void processMappingQueue(BlockingQueue<MappingTask> queue) {
+        final List<MappingTask> batch = new ArrayList<>(mappingBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, mappingBatchSize - 1);
+                mapAndQueueForSending(batch);
+            } catch (InterruptedException ignore) {
+                break;
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to map a batch of {} records.", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void mapAndQueueForSending(List<MappingTask> batch) {
+        // Forward the nodes referenced by the batch first, these are retrieved with a single query
+        final Set<Long> nodeIds = batch.stream()
+                .map(MappingTask::getNodeId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!nodeIds.isEmpty()) {
+            forwardNodes(nodeIds);
+        }
+
+        for (MappingTask task : batch) {
+            if (task.getCallable() == null) {
+                continue;
+            }
+
+            final ProducerRecord<byte[], byte[]> record;
+            try {
+                record = task.getCallable().call();
+            } catch (Exception e) {
+                LOG.warn("Failed to map record.", e);
+                continue;
+            }
+            mappingLatency.update(System.nanoTime() - task.getQueuedAtNanos(), TimeUnit.NANOSECONDS);
+            queueForSending(record, task.getCallback());
         }
+    }
 
+    private void queueForSending(ProducerRecord<byte[], byte[]> record, Consumer<RecordMetadata> callback) {
         // Rather than attempt to send, we instead queue the record to avoid blocking since KafkaProducer's send()
         // method can block if Kafka is not available when metadata is attempted to be retrieved
-
-        // Any offer that fails due to capacity overflow will simply be dropped and will have to wait until the next
-        // sync to be processed so this is just a best effort attempt
-        if (!kafkaSendQueue.offer(new KafkaRecord(record, callback))) {
+        if (!offer(kafkaSendQueue, new KafkaRecord(record, callback))) {
+            droppedRecords.mark();
             RATE_LIMITED_LOGGER.warn("Dropped a Kafka record due to queue capacity being full.");
         }
     }
 
+    private <T> boolean offer(BlockingQueue<T> queue, T element) {
+        if (queueFullPolicy == QueueFullPolicy.BLOCK) {
+            try {
+                return queue.offer(element, queueFullTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return queue.offer(element);
+    }
+
     private void processKafkaSendQueue() {
         //noinspection InfiniteLoopStatement
         while (true) {
@@ -542,8 +722,7 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
             return;
         }
 
-        // NOTE: This will currently block while waiting for Kafka metadata if Kafka is not available.
-        alarmFeedback.forEach(feedback -> sendRecord(() -> {
+        alarmFeedback.forEach(feedback -> sendRecord(Objects.hashCode(feedback.getAlarmKey()), null, () -> {
             LOG.debug("Sending alarm feedback with key: {}", feedback.getAlarmKey());
 
             return new ProducerRecord<>(alarmFeedbackTopic, feedback.getAlarmKey().getBytes(encoding),
@@ -592,6 +771,63 @@ public class OpennmsKafkaProducer implements AlarmLifecycleListener, EventListen
         this.kafkaSendQueueCapacity = kafkaSendQueueCapacity;
     }
 
+    public void setMappingThreads(int mappingThreads) {
+        this.mappingThreads = mappingThreads;
+    }
+
+    public void setMappingQueueCapacity(int mappingQueueCapacity) {
+        this.mappingQueueCapacity = mappingQueueCapacity;
+    }
+
+    public void setMappingBatchSize(int mappingBatchSize) {
+        this.mappingBatchSize = mappingBatchSize;
+    }
+
+    public void setQueueFullPolicy(String queueFullPolicy) {
+        if (Strings.isNullOrEmpty(queueFullPolicy)) {
+            this.queueFullPolicy = QueueFullPolicy.DROP;
+        } else {
+            this.queueFullPolicy = QueueFullPolicy.valueOf(queueFullPolicy.trim().toUpperCase());
+        }
+    }
+
+    public void setQueueFullTimeoutMs(long queueFullTimeoutMs) {
+        this.queueFullTimeoutMs = queueFullTimeoutMs;
+    }
+
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
+    private static final class MappingTask {
+        private final Long nodeId;
+        private final Callable<ProducerRecord<byte[], byte[]>> callable;
+        private final Consumer<RecordMetadata> callback;
+        private final long queuedAtNanos = System.nanoTime();
+
+        MappingTask(Long nodeId, Callable<ProducerRecord<byte[], byte[]>> callable, Consumer<RecordMetadata> callback) {
+            this.nodeId = nodeId;
+            this.callable = callable;
+            this.callback = callback;
+        }
+
+        Long getNodeId() {
+            return nodeId;
+        }
+
+        Callable<ProducerRecord<byte[], byte[]>> getCallable() {
+            return callable;
+        }
+
+        Consumer<RecordMetadata> getCallback() {
+            return callback;
+        }
+
+        long getQueuedAtNanos() {
+            return queuedAtNanos;
+        }
+    }
+
     private static final class KafkaRecord {
         private final ProducerRecord<byte[], byte[]> producerRecord;
         private final Consumer<RecordMetadata> consumer;
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.features.kafka.producer.datasync;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsNode;
+
+/**
+ * A compact version of an alarm record in the alarm topic.
+ *
+ * It combines a fingerprint of the alarm from which the record was mapped with a hash
+ * of the record itself, so that the synchronization can tell whether an alarm and a record
+ * are still in sync without having to map the alarm, or parse the record.
+ */
+public class AlarmVersion {
+    private final long fingerprint;
+    private final int recordHash;
+
+    public AlarmVersion(long fingerprint, int recordHash) {
+        this.fingerprint = fingerprint;
+        this.recordHash = recordHash;
+    }
+
+    public static AlarmVersion of(OnmsAlarm alarm, byte[] record) {
+        return new AlarmVersion(fingerprint(alarm), hash(record));
+    }
+
+    /**
+     * Returns true if this version was recorded for the given alarm fingerprint and record hash.
+     */
+    public boolean matches(long alarmFingerprint, int recordHash) {
+        return this.fingerprint == alarmFingerprint && this.recordHash == recordHash;
+    }
+
+    public static int hash(byte[] record) {
+        return Arrays.hashCode(record);
+    }
+
+    /**
+     * Computes a fingerprint over all of the fields of the alarm that are mapped to the record,
+     * including the related alarms.
+     */
+    public static long fingerprint(OnmsAlarm alarm) {
+        long h = 1;
+        h = 31 * h + Objects.hashCode(alarm.getId());
+        h = 31 * h + Objects.hashCode(alarm.getUei());
+        h = 31 * h + Objects.hashCode(alarm.getCounter());
+        h = 31 * h + Objects.hashCode(alarm.getSeverity());
+        h = 31 * h + Objects.hashCode(alarm.getReductionKey());
+        h = 31 * h + Objects.hashCode(alarm.getLastEvent() != null ? alarm.getLastEvent().getId() : null);
+        h = 31 * h + Objects.hashCode(alarm.getLogMsg());
+        h = 31 * h + Objects.hashCode(alarm.getDescription());
+        h = 31 * h + Objects.hashCode(alarm.getIpAddr());
+        h = 31 * h + Objects.hashCode(alarm.getIfIndex());
+        h = 31 * h + Objects.hashCode(alarm.getOperInstruct());
+        h = 31 * h + Objects.hashCode(alarm.getAckUser());
+        h = 31 * h + Objects.hashCode(alarm.getClearKey());
+        h = 31 * h + Objects.hashCode(alarm.getManagedObjectInstance());
+        h = 31 * h + Objects.hashCode(alarm.getManagedObjectType());
+        h = 31 * h + Objects.hashCode(alarm.getAlarmType());
+        h = 31 * h + Objects.hashCode(alarm.getServiceType() != null ? alarm.getServiceType().getName() : null);
+        h = 31 * h + hashCode(alarm.getFirstEventTime());
+        h = 31 * h + hashCode(alarm.getLastEventTime());
+        h = 31 * h + hashCode(alarm.getAckTime());
+        if (alarm.getNodeId() != null) {
+            final OnmsNode node = alarm.getNode();
+            h = 31 * h + Objects.hashCode(alarm.getNodeId());
+            h = 31 * h + Objects.hashCode(node.getForeignSource());
+            h = 31 * h + Objects.hashCode(node.getForeignId());
+        }
+        if (alarm.getRelatedAlarms() != null) {
+            // Combine the related alarms independently of the iteration order
+            long related = 0;
+            for (OnmsAlarm relatedAlarm : alarm.getRelatedAlarms()) {
+                related += fingerprint(relatedAlarm);
+            }
+            h = 31 * h + related;
+        }
+        return h;
+    }
+
+    private static long hashCode(Date date) {
+        return date != null ? date.getTime() : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final AlarmVersion that = (AlarmVersion) o;
+        return fingerprint == that.fingerprint &&
+                recordHash == that.recordHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fingerprint, recordHash);
+    }
+
+    @Override
+    public String toString() {
+        return "AlarmVersion{" +
+                "fingerprint=" + fingerprint +
+                ", recordHash=" + recordHash +
+                '}';
+    }
+}
@@ -33,6 +33,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -40,10 +41,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.apache.kafka.common.serialization.Serdes;
@@ -71,6 +74,10 @@ import org.osgi.service.cm.ConfigurationAdmin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -81,6 +88,7 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
 
     private static final String ALARM_STORE_NAME = "alarm_store";
     public static final String KAFKA_STREAMS_PID = "org.opennms.features.kafka.producer.streams";
+    private static final String JMX_DOMAIN = "org.opennms.features.kafka.producer.datasync";
 
     private final ConfigurationAdmin configAdmin;
     private final OpennmsKafkaProducer kafkaProducer;
@@ -100,6 +108,17 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
             AlarmEqualityChecker.with(AlarmEqualityChecker.Exclusions::defaultExclusions);
     private boolean suppressIncrementalAlarms;
 
+    // Versions of the records that were forwarded to, or verified against, the topic
+    private final Map<String, AlarmVersion> versionsByReductionKey = new ConcurrentHashMap<>();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Timer syncTimer = metrics.timer("syncs");
+    private final Meter alarmsAdded = metrics.meter("alarmsAdded");
+    private final Meter alarmsDeleted = metrics.meter("alarmsDeleted");
+    private final Meter alarmsUpdated = metrics.meter("alarmsUpdated");
+    private final Meter alarmsCompared = metrics.meter("alarmsCompared");
+    private JmxReporter metricsReporter;
+
     public KafkaAlarmDataSync(ConfigurationAdmin configAdmin, OpennmsKafkaProducer kafkaProducer, ProtobufMapper protobufMapper) {
         this.configAdmin = Objects.requireNonNull(configAdmin);
         this.kafkaProducer = Objects.requireNonNull(kafkaProducer);
@@ -139,6 +158,15 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
         );
         closed.set(false);
         scheduler.execute(this);
+
+        metricsReporter = JmxReporter.forRegistry(metrics)
+                .inDomain(JMX_DOMAIN)
+                .build();
+        try {
+            metricsReporter.start();
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Failed to start metrics reporter. JMX metrics may not be available or accurate for the alarm datasync.");
+        }
     }
 
     @Override
@@ -184,6 +212,10 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
 
     public void destroy() {
         closed.set(true);
+        if (metricsReporter != null) {
+            metricsReporter.close();
+            metricsReporter = null;
+        }
         if (scheduler != null) {
             scheduler.shutdown();
         }
@@ -192,6 +224,21 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
         }
     }
 
+    /**
+     * Records the version of an alarm that is being forwarded to the topic.
+     *
+     * @param reductionKey the reduction key of the alarm
+     * @param alarm the alarm that was mapped to the record
+     * @param record the record that is being forwarded
+     */
+    public void trackForwardedAlarm(String reductionKey, OnmsAlarm alarm, byte[] record) {
+        versionsByReductionKey.put(reductionKey, AlarmVersion.of(alarm, record));
+    }
+
+    public void trackDeletedAlarm(String reductionKey) {
+        versionsByReductionKey.remove(reductionKey);
+    }
+
     @Override
     public synchronized AlarmSyncResults handleAlarmSnapshot(List<OnmsAlarm> alarms) {
         if (!isReady()) {
@@ -201,11 +248,13 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
 
         LOG.debug("Performing alarm synchronization with ktable.");
         final AlarmSyncResults results;
+        final Timer.Context ctx = syncTimer.time();
         try {
-            // Retrieve the map of alarms by reduction key from the ktable
-            final Map<String, OpennmsModelProtos.Alarm> alarmsInKtableByReductionKey = getAlarms();
+            // Retrieve the hashes of the records by reduction key from the ktable, these are
+            // compared to the versions we recorded to avoid parsing the records whenever possible
+            final Map<String, Integer> recordHashesInKtableByReductionKey = getRecordHashes();
 
-            final Set<String> reductionKeysInKtable = alarmsInKtableByReductionKey.keySet();
+            final Set<String> reductionKeysInKtable = recordHashesInKtableByReductionKey.keySet();
 
             // Use the given alarms and apply the filter (if any) to these
             // This represents the set of alarms that should be in the ktable at the given timestamp
@@ -225,7 +274,7 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
                     // Only remove it if the alarm we have dates before the snapshot
                     .filter(reductionKey -> !stateTracker.wasAlarmWithReductionKeyUpdated(reductionKey))
                     .collect(Collectors.toSet());
-            reductionKeysNotInDb.forEach(rkey -> kafkaProducer.handleDeletedAlarm((int)alarmsInKtableByReductionKey.get(rkey).getId(), rkey));
+            reductionKeysNotInDb.forEach(rkey -> kafkaProducer.handleDeletedAlarm((int)getAlarm(rkey).getId(), rkey));
 
             // Push new entries for keys that are in the database, but not in the ktable
             final Set<String> reductionKeysNotInKtable = Sets.difference(reductionKeysInDb, reductionKeysInKtable).stream()
@@ -237,6 +286,7 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
             // Handle Updates
             final Set<String> reductionKeysUpdated = new LinkedHashSet<>();
             final Set<String> commonReductionKeys = Sets.intersection(reductionKeysInKtable, reductionKeysInDb);
+            final AtomicInteger numAlarmsCompared = new AtomicInteger(0);
             commonReductionKeys.forEach(rkey -> {
                 // Don't bother updating the alarm if the one we we have is more recent than the snapshot
                 if (stateTracker.wasAlarmWithReductionKeyUpdated(rkey)) {
@@ -244,32 +294,54 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
                 }
 
                 final OnmsAlarm dbAlarm = alarmsInDbByReductionKey.get(rkey);
+                final long dbAlarmFingerprint = AlarmVersion.fingerprint(dbAlarm);
+                final int recordHash = recordHashesInKtableByReductionKey.get(rkey);
+
+                // The record in the ktable is the one we forwarded for this version of the alarm
+                final AlarmVersion version = versionsByReductionKey.get(rkey);
+                if (version != null && version.matches(dbAlarmFingerprint, recordHash)) {
+                    return;
+                }
+
+                // The versions differ, or are unknown, compare the alarms
+                numAlarmsCompared.incrementAndGet();
                 final OpennmsModelProtos.Alarm.Builder mappedDbAlarm = protobufMapper.toAlarm(dbAlarm);
-                final OpennmsModelProtos.Alarm alarmFromKtable = alarmsInKtableByReductionKey.get(rkey);
-                final OpennmsModelProtos.Alarm.Builder alarmBuilderFromKtable =
-                        alarmsInKtableByReductionKey.get(rkey).toBuilder();
+                final OpennmsModelProtos.Alarm alarmFromKtable = getAlarm(rkey);
+                final OpennmsModelProtos.Alarm.Builder alarmBuilderFromKtable = alarmFromKtable.toBuilder();
 
                 if ((suppressIncrementalAlarms && !alarmEqualityChecker.equalsExcludingOnBoth(mappedDbAlarm,
                         alarmBuilderFromKtable)) || (!suppressIncrementalAlarms && !Objects.equals(mappedDbAlarm.build(),
                         alarmFromKtable))) {
                     kafkaProducer.handleNewOrUpdatedAlarm(dbAlarm);
                     reductionKeysUpdated.add(rkey);
+                } else {
+                    // The alarms are equivalent, remember it so we don't need to compare them again
+                    versionsByReductionKey.put(rkey, new AlarmVersion(dbAlarmFingerprint, recordHash));
                 }
             });
 
-            results = new AlarmSyncResults(alarmsInKtableByReductionKey, alarmsInDb, alarmsInDbByReductionKey,
-                    reductionKeysNotInKtable, reductionKeysNotInDb, reductionKeysUpdated);
+            // Forget the versions of the alarms that are no longer in the ktable or the database
+            versionsByReductionKey.keySet().retainAll(Sets.union(reductionKeysInKtable, reductionKeysInDb));
+
+            results = new AlarmSyncResults(reductionKeysInKtable, alarmsInDb, alarmsInDbByReductionKey,
+                    reductionKeysNotInKtable, reductionKeysNotInDb, reductionKeysUpdated, numAlarmsCompared.get());
         } catch (Exception e) {
             LOG.error("An error occurred while performing alarm synchronization with the ktable. Will try again on next callback.", e);
             return null;
+        } finally {
+            ctx.stop();
         }
 
+        alarmsAdded.mark(results.getReductionKeysAdded().size());
+        alarmsDeleted.mark(results.getReductionKeysDeleted().size());
+        alarmsUpdated.mark(results.getReductionKeysUpdated().size());
+        alarmsCompared.mark(results.getNumAlarmsCompared());
+
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Done performing alarm synchronization with the ktable for {} alarms. Executed {} updates.",
+            LOG.debug("Done performing alarm synchronization with the ktable for {} alarms. Compared {} alarms and executed {} updates.",
                     results.getAlarmsInDb().size(),
-                    results.getReductionKeysAdded().size()
-                            + results.getReductionKeysDeleted().size()
-                            + results.getReductionKeysUpdated().size());
+                    results.getNumAlarmsCompared(),
+                    results.getNumUpdates());
             LOG.debug("Reduction keys added to ktable: {}", results.getReductionKeysAdded());
             LOG.debug("Reduction keys deleted from the ktable: {}", results.getReductionKeysDeleted());
             LOG.debug("Reduction keys updated in the ktable: {}", results.getReductionKeysUpdated());
@@ -351,6 +423,16 @@ public class KafkaAlarmDataSync implements AlarmDataStore, Runnable {
         return alarmsByReductionKey;
     }
 
+    private Map<String, Integer> getRecordHashes() {
+        final Map<String, Integer> recordHashesByReductionKey = new HashMap<>();
+        getAlarmTableNow().all().forEachRemaining(kv -> recordHashesByReductionKey.put(kv.key, AlarmVersion.hash(kv.value)));
+        return recordHashesByReductionKey;
+    }
+
+    public MetricRegistry getMetrics() {
+        return metrics;
+    }
+
     @Override
     public OpennmsModelProtos.Alarm getAlarm(String reductionKey) {
         final byte[] alarmBytes = getAlarmTableNow().get(reductionKey);
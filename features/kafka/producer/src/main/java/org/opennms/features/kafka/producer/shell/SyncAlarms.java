@@ -81,9 +81,10 @@ public class SyncAlarms implements Action {
             final long delay = System.currentTimeMillis() - start;
             System.out.printf("Executed %d updates in %dms.\n\n", results.getNumUpdates(), delay);
 
-            System.out.printf("Number of reduction keys in ktable: %d\n", results.getAlarmsInKtableByReductionKey().size());
+            System.out.printf("Number of reduction keys in ktable: %d\n", results.getReductionKeysInKtable().size());
             System.out.printf("Number of reduction keys in the db: %d (%d alarms total)\n",
                    results.getAlarmsInDbByReductionKey().size(), results.getAlarmsInDb().size());
+            System.out.printf("Number of alarms compared with the ktable: %d\n", results.getNumAlarmsCompared());
 
             if (results.getNumUpdates() > 0) {
                 System.out.print("Reduction keys added to the ktable:");
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.features.kafka.producer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.dao.mock.MockSessionUtils;
+import org.opennms.netmgt.model.OnmsNode;
+
+/**
+ * Tests for {@link NodeCache}.
+ */
+public class NodeCacheTest {
+
+    /**
+     * Verifies that the nodes that need to be refreshed are retrieved with a single query,
+     * and that the callback is issued for nodes that no longer exist.
+     */
+    @Test
+    public void canTriggerForBatchOfNodes() {
+        final OnmsNode node1 = new OnmsNode();
+        node1.setId(1);
+        final OnmsNode node2 = new OnmsNode();
+        node2.setId(2);
+
+        final NodeDao nodeDao = mock(NodeDao.class);
+        when(nodeDao.findMatching(any(Criteria.class))).thenReturn(Arrays.asList(node1, node2));
+        final NodeCache nodeCache = new NodeCache(nodeDao, new MockSessionUtils());
+
+        final Map<Long, OnmsNode> triggered = new LinkedHashMap<>();
+        nodeCache.triggerIfNeeded(Arrays.asList(1L, 2L, 3L, 1L), triggered::put);
+        assertThat(new ArrayList<>(triggered.keySet()), equalTo(Arrays.asList(1L, 2L, 3L)));
+        assertThat(triggered.get(1L), equalTo(node1));
+        assertThat(triggered.get(2L), equalTo(node2));
+        assertThat(triggered.get(3L), nullValue());
+        verify(nodeDao, times(1)).findMatching(any(Criteria.class));
+
+        // The nodes were just triggered, so they should not be retrieved again until the timeout expires
+        triggered.clear();
+        nodeCache.triggerIfNeeded(Arrays.asList(1L, 2L, 3L), triggered::put);
+        nodeCache.triggerIfNeeded(1L, node -> triggered.put(1L, node));
+        assertThat(triggered.isEmpty(), equalTo(true));
+        verify(nodeDao, times(1)).findMatching(any(Criteria.class));
+    }
+}
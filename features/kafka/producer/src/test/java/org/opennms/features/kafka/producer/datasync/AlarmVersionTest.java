@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.features.kafka.producer.datasync;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsSeverity;
+
+/**
+ * Tests for {@link AlarmVersion}.
+ */
+public class AlarmVersionTest {
+
+    /**
+     * Tests that the fingerprint changes whenever a field that is mapped to the record changes.
+     */
+    @Test
+    public void testFingerprintTracksMappedFields() {
+        OnmsAlarm alarm = createAlarm(1);
+        long fingerprint = AlarmVersion.fingerprint(alarm);
+
+        // An identical alarm has the same fingerprint
+        assertThat(AlarmVersion.fingerprint(createAlarm(1)), equalTo(fingerprint));
+
+        // Reductions update the counter and last event time
+        alarm.setCounter(2);
+        alarm.setLastEventTime(new Date(2000));
+        assertThat(AlarmVersion.fingerprint(alarm), is(not(equalTo(fingerprint))));
+        fingerprint = AlarmVersion.fingerprint(alarm);
+
+        // Acknowledgements update the ack user and time
+        alarm.setAlarmAckUser("admin");
+        alarm.setAlarmAckTime(new Date(3000));
+        assertThat(AlarmVersion.fingerprint(alarm), is(not(equalTo(fingerprint))));
+    }
+
+    /**
+     * Tests that the fingerprint of a situation does not depend on the order of its related alarms.
+     */
+    @Test
+    public void testFingerprintOfSituations() {
+        Set<OnmsAlarm> relatedAlarms = new LinkedHashSet<>();
+        relatedAlarms.add(createAlarm(2));
+        relatedAlarms.add(createAlarm(3));
+        OnmsAlarm situation = createAlarm(1);
+        situation.setRelatedAlarms(relatedAlarms);
+
+        Set<OnmsAlarm> reversedRelatedAlarms = new LinkedHashSet<>();
+        reversedRelatedAlarms.add(createAlarm(3));
+        reversedRelatedAlarms.add(createAlarm(2));
+        OnmsAlarm reversedSituation = createAlarm(1);
+        reversedSituation.setRelatedAlarms(reversedRelatedAlarms);
+
+        assertThat(AlarmVersion.fingerprint(reversedSituation), equalTo(AlarmVersion.fingerprint(situation)));
+
+        // Updates to the related alarms are reflected in the situation
+        long fingerprint = AlarmVersion.fingerprint(situation);
+        relatedAlarms.iterator().next().setSeverity(OnmsSeverity.CRITICAL);
+        assertThat(AlarmVersion.fingerprint(situation), is(not(equalTo(fingerprint))));
+    }
+
+    /**
+     * Tests that versions only match for the same alarm fingerprint and record.
+     */
+    @Test
+    public void testMatching() {
+        OnmsAlarm alarm = createAlarm(1);
+        byte[] record = new byte[]{1, 2, 3};
+        AlarmVersion version = AlarmVersion.of(alarm, record);
+
+        assertThat(version.matches(AlarmVersion.fingerprint(alarm), AlarmVersion.hash(new byte[]{1, 2, 3})), equalTo(true));
+        assertThat(version.matches(AlarmVersion.fingerprint(alarm), AlarmVersion.hash(new byte[]{1, 2, 4})), equalTo(false));
+        alarm.setCounter(2);
+        assertThat(version.matches(AlarmVersion.fingerprint(alarm), AlarmVersion.hash(record)), equalTo(false));
+    }
+
+    private static OnmsAlarm createAlarm(int id) {
+        OnmsAlarm alarm = new OnmsAlarm();
+        alarm.setId(id);
+        alarm.setUei("uei.opennms.org/test");
+        alarm.setReductionKey("test:" + id);
+        alarm.setCounter(1);
+        alarm.setSeverity(OnmsSeverity.MAJOR);
+        alarm.setAlarmType(OnmsAlarm.PROBLEM_TYPE);
+        alarm.setFirstEventTime(new Date(1000));
+        alarm.setLastEventTime(new Date(1000));
+        return alarm;
+    }
+}
@@ -51,7 +51,9 @@ public class TelemetrySinkModule implements SinkModule<TelemetryMessage, Telemet
     private static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors() * 2;
     private static final int DEFAULT_BATCH_SIZE = 1000;
     private static final int DEFAULT_BATCH_INTERVAL_MS = 500;
+    private static final int DEFAULT_BATCH_SIZE_IN_BYTES = 0;
     private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_DEQUEUE_BATCH_SIZE = 1;
 
     @Autowired
     private DistPollerDao distPollerDao;
@@ -118,6 +120,21 @@ public class TelemetrySinkModule implements SinkModule<TelemetryMessage, Telemet
                 return TelemetrySinkModule.this.queueConfig.getBatchIntervalMs().orElse(DEFAULT_BATCH_INTERVAL_MS);
             }
 
+            @Override
+            public int getCompletionSizeInBytes() {
+                return TelemetrySinkModule.this.queueConfig.getBatchSizeInBytes().orElse(DEFAULT_BATCH_SIZE_IN_BYTES);
+            }
+
+            @Override
+            public int getMinCompletionIntervalMs() {
+                return TelemetrySinkModule.this.queueConfig.getMinBatchIntervalMs().orElse(getCompletionIntervalMs());
+            }
+
+            @Override
+            public int getMessageSizeInBytes(TelemetryMessage message) {
+                return message.getBuffer().remaining();
+            }
+
             @Override
             public Object key(TelemetryMessage telemetryMessage) {
                 return telemetryMessage.getSource();
@@ -166,6 +183,18 @@ public class TelemetrySinkModule implements SinkModule<TelemetryMessage, Telemet
                 // Always block when full
                 return true;
             }
+
+            @Override
+            public QueueType getQueueType() {
+                return TelemetrySinkModule.this.queueConfig.getQueueType()
+                        .map(QueueType::parse)
+                        .orElse(QueueType.BLOCKING);
+            }
+
+            @Override
+            public int getDequeueBatchSize() {
+                return TelemetrySinkModule.this.queueConfig.getDequeueBatchSize().orElse(DEFAULT_DEQUEUE_BATCH_SIZE);
+            }
         };
     }
 
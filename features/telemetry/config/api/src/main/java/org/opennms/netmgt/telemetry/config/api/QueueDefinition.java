@@ -69,6 +69,24 @@ public interface QueueDefinition {
      */
     Optional<Integer> getBatchIntervalMs();
 
+    /**
+     * Messages are aggregated in batches before being dispatched.
+     * When the size of the messages in the batch reaches this number of bytes,
+     * it will be dispatched, regardless of the number of messages.
+     *
+     * @return the batch size in bytes
+     */
+    Optional<Integer> getBatchSizeInBytes();
+
+    /**
+     * Minimum interval (ms) for which batches are kept before being dispatched.
+     * When set lower than the batch interval, the interval is adapted to the load:
+     * batches are dispatched sooner when few messages are received.
+     *
+     * @return the minimum batch interval
+     */
+    Optional<Integer> getMinBatchIntervalMs();
+
     /**
      * Maximum number of messages to keep in memory while waiting
      * to be dispatched.
@@ -77,6 +95,22 @@ public interface QueueDefinition {
      */
     Optional<Integer> getQueueSize();
 
+    /**
+     * Type of the in-memory queue holding messages while waiting
+     * to be dispatched: <code>blocking</code> or <code>ring-buffer</code>.
+     *
+     * @return the queue type
+     */
+    Optional<String> getQueueType();
+
+    /**
+     * Maximum number of messages a dispatching thread takes from
+     * the queue at once.
+     *
+     * @return the dequeue batch size
+     */
+    Optional<Integer> getDequeueBatchSize();
+
     /**
      * Whether or not the routing key should be used when forwarding messages to the broker.
      *
@@ -60,9 +60,21 @@ public class QueueConfig implements QueueDefinition {
     @XmlAttribute(name="batch-interval")
     private Integer batchIntervalMs;
 
+    @XmlAttribute(name="batch-size-bytes")
+    private Integer batchSizeInBytes;
+
+    @XmlAttribute(name="min-batch-interval")
+    private Integer minBatchIntervalMs;
+
     @XmlAttribute(name="queue-size")
     private Integer queueSize;
 
+    @XmlAttribute(name="queue-type")
+    private String queueType;
+
+    @XmlAttribute(name="dequeue-batch-size")
+    private Integer dequeueBatchSize;
+
     @XmlAttribute(name="use-routing-key")
     private Boolean useRoutingKey;
 
@@ -105,6 +117,24 @@ public class QueueConfig implements QueueDefinition {
         this.batchIntervalMs = batchIntervalMs;
     }
 
+    @Override
+    public Optional<Integer> getBatchSizeInBytes() {
+        return Optional.ofNullable(this.batchSizeInBytes);
+    }
+
+    public void setBatchSizeInBytes(final Integer batchSizeInBytes) {
+        this.batchSizeInBytes = batchSizeInBytes;
+    }
+
+    @Override
+    public Optional<Integer> getMinBatchIntervalMs() {
+        return Optional.ofNullable(this.minBatchIntervalMs);
+    }
+
+    public void setMinBatchIntervalMs(final Integer minBatchIntervalMs) {
+        this.minBatchIntervalMs = minBatchIntervalMs;
+    }
+
     @Override
     public Optional<Integer> getQueueSize() {
         return Optional.ofNullable(this.queueSize);
@@ -114,6 +144,24 @@ public class QueueConfig implements QueueDefinition {
         this.queueSize = queueSize;
     }
 
+    @Override
+    public Optional<String> getQueueType() {
+        return Optional.ofNullable(this.queueType);
+    }
+
+    public void setQueueType(final String queueType) {
+        this.queueType = queueType;
+    }
+
+    @Override
+    public Optional<Integer> getDequeueBatchSize() {
+        return Optional.ofNullable(this.dequeueBatchSize);
+    }
+
+    public void setDequeueBatchSize(final Integer dequeueBatchSize) {
+        this.dequeueBatchSize = dequeueBatchSize;
+    }
+
     @Override
     public Optional<Boolean> getUseRoutingKey() {
         return Optional.ofNullable(useRoutingKey);
@@ -140,7 +188,11 @@ public class QueueConfig implements QueueDefinition {
                 Objects.equals(this.numThreads, that.numThreads) &&
                 Objects.equals(this.batchSize, that.batchSize) &&
                 Objects.equals(this.batchIntervalMs, that.batchIntervalMs) &&
+                Objects.equals(this.batchSizeInBytes, that.batchSizeInBytes) &&
+                Objects.equals(this.minBatchIntervalMs, that.minBatchIntervalMs) &&
                 Objects.equals(this.queueSize, that.queueSize) &&
+                Objects.equals(this.queueType, that.queueType) &&
+                Objects.equals(this.dequeueBatchSize, that.dequeueBatchSize) &&
                 Objects.equals(this.useRoutingKey, that.useRoutingKey) &&
                 Objects.equals(this.adapters, that.adapters);
     }
@@ -152,7 +204,11 @@ public class QueueConfig implements QueueDefinition {
                 this.numThreads,
                 this.batchSize,
                 this.batchIntervalMs,
+                this.batchSizeInBytes,
+                this.minBatchIntervalMs,
                 this.queueSize,
+                this.queueType,
+                this.dequeueBatchSize,
                 this.useRoutingKey,
                 this.adapters);
     }
@@ -164,7 +220,11 @@ public class QueueConfig implements QueueDefinition {
                 .add("num-threads", this.numThreads)
                 .add("batch-size", this.batchSize)
                 .add("batch-interval-ms", this.batchIntervalMs)
+                .add("batch-size-bytes", this.batchSizeInBytes)
+                .add("min-batch-interval-ms", this.minBatchIntervalMs)
                 .add("queue-size", this.queueSize)
+                .add("queue-type", this.queueType)
+                .add("dequeue-batch-size", this.dequeueBatchSize)
                 .add("use-routing-key", this.useRoutingKey)
                 .addValue(this.adapters)
                 .toString();
@@ -38,6 +38,10 @@ public class MapBasedQueueDef implements QueueDefinition {
     private final Optional<Integer> queueSize;
     private final Optional<Integer> batchSize;
     private final Optional<Integer> batchInterval;
+    private final Optional<Integer> batchSizeInBytes;
+    private final Optional<Integer> minBatchInterval;
+    private final Optional<String> queueType;
+    private final Optional<Integer> dequeueBatchSize;
     private final Optional<Boolean> useRoutingKey;
 
     public MapBasedQueueDef(final PropertyTree definition) {
@@ -46,6 +50,10 @@ public class MapBasedQueueDef implements QueueDefinition {
         this.queueSize = definition.getOptionalInteger("queue", "size");
         this.batchSize = definition.getOptionalInteger("batch", "size");
         this.batchInterval = definition.getOptionalInteger("batch", "interval");
+        this.batchSizeInBytes = definition.getOptionalInteger("batch", "size-bytes");
+        this.minBatchInterval = definition.getOptionalInteger("batch", "min-interval");
+        this.queueType = definition.getOptionalString("queue", "type");
+        this.dequeueBatchSize = definition.getOptionalInteger("queue", "dequeue-batch-size");
         this.useRoutingKey = definition.getOptionalBoolean("queue", "use-routing-key");
     }
 
@@ -69,11 +77,31 @@ public class MapBasedQueueDef implements QueueDefinition {
         return batchInterval;
     }
 
+    @Override
+    public Optional<Integer> getBatchSizeInBytes() {
+        return batchSizeInBytes;
+    }
+
+    @Override
+    public Optional<Integer> getMinBatchIntervalMs() {
+        return minBatchInterval;
+    }
+
     @Override
     public Optional<Integer> getQueueSize() {
         return queueSize;
     }
 
+    @Override
+    public Optional<String> getQueueType() {
+        return queueType;
+    }
+
+    @Override
+    public Optional<Integer> getDequeueBatchSize() {
+        return dequeueBatchSize;
+    }
+
     @Override
     public Optional<Boolean> getUseRoutingKey() {
         return useRoutingKey;
@@ -123,6 +123,17 @@ public class PropertyTree {
                 .orElseThrow(() -> new NoSuchElementException(String.format("%s must be set.", path)));
     }
 
+    /**
+     * Get the value at the given path.
+     *
+     * @param path the path of the node to return split into its elements
+     * @return the value of the node at the given path or {@link Optional#empty()} if one of the nodes in the path does not exist
+     */
+    public Optional<String> getOptionalString(final String... path) {
+        return this.find(path)
+                .flatMap(Node::getValue);
+    }
+
     /**
      * Get the value at the given path parsed as an {@link Integer}.
      *
@@ -29,14 +29,26 @@
 package org.opennms.netmgt.alarmd;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
@@ -58,9 +70,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.support.TransactionOperations;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Singleton to persist OnmsAlarms.
@@ -76,6 +91,10 @@ public class AlarmPersisterImpl implements AlarmPersister {
     protected static final Integer NUM_STRIPE_LOCKS = SystemProperties.getInteger("org.opennms.alarmd.stripe.locks", Alarmd.THREADS * 4);
     protected static boolean NEW_IF_CLEARED = Boolean.getBoolean("org.opennms.alarmd.newIfClearedAlarmExists");
     protected static boolean LEGACY_ALARM_STATE = Boolean.getBoolean("org.opennms.alarmd.legacyAlarmState");
+    protected static final Long REDUCTION_KEY_CACHE_SIZE = SystemProperties.getLong("org.opennms.alarmd.reductionKeyCache.size", 100000L);
+    protected static final Long COALESCE_WINDOW_MS = SystemProperties.getLong("org.opennms.alarmd.coalesce.window", 0L);
+    protected static final Integer COALESCE_MAX_EVENTS = SystemProperties.getInteger("org.opennms.alarmd.coalesce.maxEvents", 100);
+    protected static final Integer COALESCE_THREADS = SystemProperties.getInteger("org.opennms.alarmd.coalesce.threads", Alarmd.THREADS);
 
     @Autowired
     private AlarmDao m_alarmDao;
@@ -100,34 +119,283 @@ public class AlarmPersisterImpl implements AlarmPersister {
     
     private boolean m_legacyAlarmState = LEGACY_ALARM_STATE;
 
+    // Reduction keys of the alarms that were recently created or reduced, to the ids of these alarms
+    private final Cache<String, Integer> m_reductionKeyIndex = CacheBuilder.newBuilder()
+            .maximumSize(REDUCTION_KEY_CACHE_SIZE)
+            .build();
+
+    // Batches of events that are waiting to be coalesced, by reduction and clear key
+    private final Map<String, PendingReductions> m_pendingReductionsByLockKey = new HashMap<>();
+
+    // Completion of the last batch queued for every reduction and clear key, guarded by m_pendingReductionsByLockKey
+    private final Map<String, CompletableFuture<Void>> m_lastBatchByLockKey = new HashMap<>();
+
+    private long m_coalesceWindowMs = COALESCE_WINDOW_MS;
+
+    private int m_coalesceMaxEvents = COALESCE_MAX_EVENTS;
+
+    private int m_coalesceThreads = COALESCE_THREADS;
+
+    // Created on demand, when coalescing is enabled
+    private ExecutorService m_flushExecutor;
+
+    private ScheduledExecutorService m_flushTimer;
+
+    /**
+     * {@inheritDoc}
+     *
+     * When coalescing is enabled, the event is queued and persisted asynchronously,
+     * and <code>null</code> is returned.
+     */
     @Override
     public OnmsAlarm persist(Event event) {
+        if (m_coalesceWindowMs > 0) {
+            persistAsync(event).whenComplete((alarm, ex) -> {
+                if (ex != null) {
+                    LOG.error("Failed to persist the alarm for event with id: {} and reduction key: {}.",
+                            event.getDbid(), event.getAlarmData().getReductionKey(), ex);
+                }
+            });
+            return null;
+        }
+        return persistAsync(event).join();
+    }
+
+    /**
+     * Persists the alarm for the given event.
+     *
+     * When coalescing is enabled, the event is queued with the other events for the same reduction
+     * and clear keys and the returned future completes once the batch was persisted by the flush
+     * threads. Otherwise, the alarm is persisted by the calling thread.
+     *
+     * @param event the event
+     * @return the new or updated alarm, or <code>null</code> if the event does not have alarm data
+     */
+    public CompletableFuture<OnmsAlarm> persistAsync(Event event) {
         Objects.requireNonNull(event, "Cannot create alarm from null event.");
         if (!checkEventSanityAndDoWeProcess(event)) {
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("process: {}; nodeid: {}; ipaddr: {}; serviceid: {}", event.getUei(), event.getNodeid(), event.getInterface(), event.getService());
         }
 
+        if (m_coalesceWindowMs > 0) {
+            return coalesce(event);
+        }
+        return CompletableFuture.completedFuture(persist(Collections.singletonList(event)).get(0));
+    }
+
+    /**
+     * Persists the events that are waiting to be coalesced and stops the flush threads.
+     */
+    public void destroy() {
+        final Set<PendingReductions> openBatches;
+        final CompletableFuture<?>[] pendingBatches;
+        synchronized (m_pendingReductionsByLockKey) {
+            openBatches = new LinkedHashSet<>(m_pendingReductionsByLockKey.values());
+            openBatches.forEach(this::close);
+            pendingBatches = m_lastBatchByLockKey.values().toArray(new CompletableFuture<?>[0]);
+        }
+        openBatches.forEach(this::flush);
+        try {
+            CompletableFuture.allOf(pendingBatches).get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.warn("Failed to persist the coalesced events before shutting down.", e);
+        }
+
+        synchronized (this) {
+            if (m_flushTimer != null) {
+                m_flushTimer.shutdownNow();
+            }
+            if (m_flushExecutor != null) {
+                m_flushExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Adds or reduces the given events, which must all share the same reduction and clear keys,
+     * in a single transaction.
+     */
+    private List<OnmsAlarm> persist(List<Event> events) {
         // Lock both the reduction and clear keys (if set) using a fair striped lock
         // We do this to ensure that clears and triggers are processed in the same order
         // as the calls are made
-        final Iterable<Lock> locks = lockStripes.bulkGet(getLockKeys(event));
-        final OnmsAlarm alarm;
+        final Iterable<Lock> locks = lockStripes.bulkGet(getLockKeys(events.get(0)));
         try {
             locks.forEach(Lock::lock);
-            // Process the alarm inside a transaction
-            alarm = m_transactionOperations.execute((action) -> addOrReduceEventAsAlarm(event));
+            // Process the alarms inside a transaction
+            return m_transactionOperations.execute((action) -> addOrReduceEventsAsAlarms(events));
         } finally {
             locks.forEach(Lock::unlock);
         }
+    }
 
-        return alarm;
+    /**
+     * Queues the event with the other events for the same reduction and clear keys that arrive
+     * within the coalescing window. The batch is persisted in a single transaction by the flush
+     * threads once the window has elapsed or the batch is full, so the calling thread never waits.
+     *
+     * An event that shares a lock key with an open batch, but cannot join it, closes the batch. Batches
+     * which share a lock key are persisted in the order in which they were opened, so that the
+     * events that follow a batch, such as the clear of a trigger, are never applied before it.
+     */
+    private CompletableFuture<OnmsAlarm> coalesce(Event event) {
+        final Collection<String> lockKeys = getLockKeys(event);
+        final String coalesceKey = getCoalesceKey(event);
+        final List<PendingReductions> closedBatches = new ArrayList<>(lockKeys.size() + 1);
+        final CompletableFuture<OnmsAlarm> future;
+        synchronized (m_pendingReductionsByLockKey) {
+            PendingReductions batch = m_pendingReductionsByLockKey.get(lockKeys.iterator().next());
+            if (batch == null || !batch.coalesceKey.equals(coalesceKey)) {
+                // Close the batches we conflict with and open a new one
+                for (String lockKey : lockKeys) {
+                    final PendingReductions conflicting = m_pendingReductionsByLockKey.get(lockKey);
+                    if (conflicting != null && close(conflicting)) {
+                        closedBatches.add(conflicting);
+                    }
+                }
+                batch = open(coalesceKey, lockKeys);
+            }
+            future = batch.add(event);
+            if (batch.isFull() && close(batch)) {
+                closedBatches.add(batch);
+            }
+        }
+        closedBatches.forEach(this::flush);
+        return future;
+    }
+
+    /**
+     * Opens a new batch, which will be persisted after the batches that were previously
+     * opened for any of its lock keys. Must be called while holding the lock on m_pendingReductionsByLockKey.
+     */
+    private PendingReductions open(String coalesceKey, Collection<String> lockKeys) {
+        final PendingReductions batch = new PendingReductions(coalesceKey, lockKeys, m_coalesceMaxEvents);
+        for (String lockKey : lockKeys) {
+            m_pendingReductionsByLockKey.put(lockKey, batch);
+            final CompletableFuture<Void> previous = m_lastBatchByLockKey.put(lockKey, batch.done);
+            if (previous != null) {
+                batch.predecessors.add(previous);
+            }
+        }
+        batch.timeout = getFlushTimer().schedule(() -> {
+            final boolean closed;
+            synchronized (m_pendingReductionsByLockKey) {
+                closed = close(batch);
+            }
+            if (closed) {
+                flush(batch);
+            }
+        }, m_coalesceWindowMs, TimeUnit.MILLISECONDS);
+        return batch;
+    }
+
+    /**
+     * Closes the batch, so that no other events can be added to it.
+     * Must be called while holding the lock on m_pendingReductionsByLockKey.
+     *
+     * @return true if the batch was open
+     */
+    private boolean close(PendingReductions batch) {
+        if (batch.closed) {
+            return false;
+        }
+        batch.closed = true;
+        batch.lockKeys.forEach(lockKey -> m_pendingReductionsByLockKey.remove(lockKey, batch));
+        if (batch.timeout != null) {
+            batch.timeout.cancel(false);
+        }
+        return true;
+    }
+
+    /**
+     * Persists the closed batch on the flush threads, once its predecessors were persisted.
+     */
+    private void flush(PendingReductions batch) {
+        CompletableFuture.allOf(batch.predecessors.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((v, ex) -> {
+            try {
+                persist(batch);
+            } finally {
+                synchronized (m_pendingReductionsByLockKey) {
+                    batch.lockKeys.forEach(lockKey -> m_lastBatchByLockKey.remove(lockKey, batch.done));
+                }
+                batch.done.complete(null);
+            }
+        }, getFlushExecutor());
+    }
+
+    private void persist(PendingReductions batch) {
+        // The batch is closed, no other events can be added to it
+        final List<Event> events = batch.events;
+        final List<CompletableFuture<OnmsAlarm>> futures = batch.futures;
+        try {
+            final List<OnmsAlarm> alarms = persist(events);
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).complete(alarms.get(i));
+            }
+        } catch (RuntimeException e) {
+            if (events.size() == 1) {
+                futures.get(0).completeExceptionally(e);
+                return;
+            }
+            // Don't let a single event fail the whole batch, retry them one at a time
+            LOG.warn("Failed to persist {} coalesced events for reduction key: {}. Retrying them individually.", events.size(), events.get(0).getAlarmData().getReductionKey(), e);
+            for (int i = 0; i < events.size(); i++) {
+                try {
+                    futures.get(i).complete(persist(Collections.singletonList(events.get(i))).get(0));
+                } catch (RuntimeException ex) {
+                    futures.get(i).completeExceptionally(ex);
+                }
+            }
+        }
     }
 
-    private OnmsAlarm addOrReduceEventAsAlarm(Event event) throws IllegalStateException {
+    private synchronized ExecutorService getFlushExecutor() {
+        if (m_flushExecutor == null) {
+            m_flushExecutor = Executors.newFixedThreadPool(m_coalesceThreads, new ThreadFactoryBuilder()
+                    .setNameFormat("alarmd-coalesce-flush-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return m_flushExecutor;
+    }
+
+    private synchronized ScheduledExecutorService getFlushTimer() {
+        if (m_flushTimer == null) {
+            m_flushTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("alarmd-coalesce-timer-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return m_flushTimer;
+    }
+
+    /**
+     * Adds or reduces the given events, in order.
+     *
+     * Since the events share the same reduction and clear keys, every event after the first one is
+     * added or reduced to the alarm of the previous event without looking it up again. Reductions are
+     * folded into a single update, and notification, per alarm.
+     */
+    private List<OnmsAlarm> addOrReduceEventsAsAlarms(List<Event> events) throws IllegalStateException {
+        final List<OnmsAlarm> alarms = new ArrayList<>(events.size());
+        // Last event reduced to each alarm that was updated
+        final Map<OnmsAlarm, Event> reducedAlarms = new LinkedHashMap<>();
+        OnmsAlarm alarm = null;
+        for (Event event : events) {
+            alarm = addOrReduceEventAsAlarm(event, alarm, reducedAlarms);
+            alarms.add(alarm);
+        }
+        reducedAlarms.forEach(this::didReduceEvents);
+        return alarms;
+    }
+
+    private OnmsAlarm addOrReduceEventAsAlarm(Event event, OnmsAlarm previousAlarm, Map<OnmsAlarm, Event> reducedAlarms) throws IllegalStateException {
         
         final OnmsEvent persistedEvent = m_eventDao.get(event.getDbid());
         if (persistedEvent == null) {
@@ -135,22 +403,26 @@ public class AlarmPersisterImpl implements AlarmPersister {
         }
 
         final String reductionKey = event.getAlarmData().getReductionKey();
-        LOG.debug("addOrReduceEventAsAlarm: looking for existing reduction key: {}", reductionKey);
-        
-        String key = reductionKey;
-        String clearKey = event.getAlarmData().getClearKey();
-        
-        boolean didSwapReductionKeyWithClearKey = false;
-        if (!m_legacyAlarmState && clearKey != null && isResolutionEvent(event)) {
-            key = clearKey;
-            didSwapReductionKeyWithClearKey = true;
-        }
 
-        OnmsAlarm alarm = m_alarmDao.findByReductionKey(key);
+        OnmsAlarm alarm = previousAlarm;
+        if (alarm == null) {
+            LOG.debug("addOrReduceEventAsAlarm: looking for existing reduction key: {}", reductionKey);
+
+            String key = reductionKey;
+            String clearKey = event.getAlarmData().getClearKey();
+
+            boolean didSwapReductionKeyWithClearKey = false;
+            if (!m_legacyAlarmState && clearKey != null && isResolutionEvent(event)) {
+                key = clearKey;
+                didSwapReductionKeyWithClearKey = true;
+            }
 
-        if (alarm == null && didSwapReductionKeyWithClearKey) {
-            // if the clearKey returns null, still need to check the reductionKey
-            alarm = m_alarmDao.findByReductionKey(reductionKey);
+            alarm = findByReductionKey(key);
+
+            if (alarm == null && didSwapReductionKeyWithClearKey) {
+                // if the clearKey returns null, still need to check the reductionKey
+                alarm = findByReductionKey(reductionKey);
+            }
         }
 
         if (alarm == null || (m_createNewAlarmIfClearedAlarmExists && OnmsSeverity.CLEARED.equals(alarm.getSeverity()))) {
@@ -159,11 +431,19 @@ public class AlarmPersisterImpl implements AlarmPersister {
             }
 
             if (alarm != null) {
+                // Notify the pending reductions before the alarm is archived
+                final Event reducedEvent = reducedAlarms.remove(alarm);
+                if (reducedEvent != null) {
+                    didReduceEvents(alarm, reducedEvent);
+                }
+
                 LOG.debug("addOrReduceEventAsAlarm: \"archiving\" cleared Alarm for problem: {}; " +
                         "A new alarm will be instantiated to manage the problem.", reductionKey);
+                final String archivedReductionKey = alarm.getReductionKey();
                 alarm.archive();
                 m_alarmDao.save(alarm);
                 m_alarmDao.flush();
+                m_reductionKeyIndex.invalidate(archivedReductionKey);
 
                 m_alarmEntityNotifier.didArchiveAlarm(alarm, reductionKey);
             }
@@ -180,6 +460,9 @@ public class AlarmPersisterImpl implements AlarmPersister {
 
             m_alarmDao.save(alarm);
             m_eventDao.saveOrUpdate(persistedEvent);
+            if (alarm.getId() != null) {
+                m_reductionKeyIndex.put(alarm.getReductionKey(), alarm.getId());
+            }
 
             m_alarmEntityNotifier.didCreateAlarm(alarm);
         } else {
@@ -197,11 +480,38 @@ public class AlarmPersisterImpl implements AlarmPersister {
             m_alarmDao.update(alarm);
             m_eventDao.update(persistedEvent);
 
-            if (event.getAlarmData().isAutoClean()) {
-                m_eventDao.deletePreviousEventsForAlarm(alarm.getId(), persistedEvent);
+            // The cleanup and notification are deferred until all of the events have been reduced
+            reducedAlarms.put(alarm, event);
+        }
+        return alarm;
+    }
+
+    private void didReduceEvents(OnmsAlarm alarm, Event lastEvent) {
+        if (lastEvent.getAlarmData().isAutoClean()) {
+            m_eventDao.deletePreviousEventsForAlarm(alarm.getId(), alarm.getLastEvent());
+        }
+
+        m_alarmEntityNotifier.didUpdateAlarmWithReducedEvent(alarm);
+    }
+
+    /**
+     * Retrieves the alarm with the given reduction key, using the index of reduction keys to alarm ids
+     * when possible. Entries of the index are validated against the alarm that is retrieved, so that
+     * alarms that were deleted, archived or rolled back in the meantime are never returned.
+     */
+    private OnmsAlarm findByReductionKey(String reductionKey) {
+        final Integer alarmId = m_reductionKeyIndex.getIfPresent(reductionKey);
+        if (alarmId != null) {
+            final OnmsAlarm alarm = m_alarmDao.get(alarmId);
+            if (alarm != null && reductionKey.equals(alarm.getReductionKey())) {
+                return alarm;
             }
+            m_reductionKeyIndex.invalidate(reductionKey);
+        }
 
-            m_alarmEntityNotifier.didUpdateAlarmWithReducedEvent(alarm);
+        final OnmsAlarm alarm = m_alarmDao.findByReductionKey(reductionKey);
+        if (alarm != null && alarm.getId() != null) {
+            m_reductionKeyIndex.put(reductionKey, alarm.getId());
         }
         return alarm;
     }
@@ -345,7 +655,7 @@ public class AlarmPersisterImpl implements AlarmPersister {
         return alarm.getAlarmType() == OnmsAlarm.RESOLUTION_TYPE;
     }
 
-    private boolean isResolutionEvent(Event event) {
+    private static boolean isResolutionEvent(Event event) {
         return Objects.equals(event.getAlarmData().getAlarmType(), Integer.valueOf(OnmsAlarm.RESOLUTION_TYPE));
     }
 
@@ -392,7 +702,7 @@ public class AlarmPersisterImpl implements AlarmPersister {
         }
         Set<String> reductionKeys = list.stream().filter(AlarmPersisterImpl::isRelatedReductionKeyWithContent).map(p -> p.getValue().getContent()).collect(Collectors.toSet());
         // Only existing alarms are returned. Reduction Keys for non-existing alarms are dropped.
-        return reductionKeys.stream().map(reductionKey -> m_alarmDao.findByReductionKey(reductionKey)).filter(Objects::nonNull).collect(Collectors.toSet());
+        return reductionKeys.stream().map(this::findByReductionKey).filter(Objects::nonNull).collect(Collectors.toSet());
     }
 
     private static boolean isRelatedReductionKeyWithContent(Parm param) {
@@ -425,6 +735,11 @@ public class AlarmPersisterImpl implements AlarmPersister {
         return true;
     }
 
+    private static String getCoalesceKey(Event event) {
+        // Events can only be coalesced if they are looked up, and locked, using the same keys
+        return event.getAlarmData().getReductionKey() + "\u0000" + event.getAlarmData().getClearKey() + "\u0000" + isResolutionEvent(event);
+    }
+
     private static Collection<String> getLockKeys(Event event) {
         if (event.getAlarmData().getClearKey() == null) {
             return Collections.singletonList(event.getAlarmData().getReductionKey());
@@ -527,4 +842,70 @@ public class AlarmPersisterImpl implements AlarmPersister {
     public void setLegacyAlarmState(boolean legacyAlarmState) {
         m_legacyAlarmState = legacyAlarmState;
     }
+
+    public long getCoalesceWindowMs() {
+        return m_coalesceWindowMs;
+    }
+
+    /**
+     * Sets the amount of time, in milliseconds, during which events that reduce to the same alarm
+     * are queued so that they can be persisted together. Coalescing is disabled when <= 0.
+     */
+    public void setCoalesceWindowMs(long coalesceWindowMs) {
+        m_coalesceWindowMs = coalesceWindowMs;
+    }
+
+    public int getCoalesceMaxEvents() {
+        return m_coalesceMaxEvents;
+    }
+
+    public void setCoalesceMaxEvents(int coalesceMaxEvents) {
+        m_coalesceMaxEvents = coalesceMaxEvents;
+    }
+
+    public int getCoalesceThreads() {
+        return m_coalesceThreads;
+    }
+
+    /**
+     * Sets the number of threads used to persist the coalesced events.
+     * Must be set before the first event is coalesced.
+     */
+    public void setCoalesceThreads(int coalesceThreads) {
+        m_coalesceThreads = coalesceThreads;
+    }
+
+    /**
+     * Events that are coalesced together. Guarded by m_pendingReductionsByLockKey until the batch is closed.
+     */
+    private static class PendingReductions {
+        private final String coalesceKey;
+        private final Collection<String> lockKeys;
+        private final int maxEvents;
+        private final List<Event> events = new ArrayList<>();
+        private final List<CompletableFuture<OnmsAlarm>> futures = new ArrayList<>();
+        // Batches that must be persisted before this one
+        private final List<CompletableFuture<Void>> predecessors = new ArrayList<>();
+        // Completed once the batch was persisted, successfully or not
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private ScheduledFuture<?> timeout;
+        private boolean closed = false;
+
+        private PendingReductions(String coalesceKey, Collection<String> lockKeys, int maxEvents) {
+            this.coalesceKey = coalesceKey;
+            this.lockKeys = lockKeys;
+            this.maxEvents = maxEvents;
+        }
+
+        private CompletableFuture<OnmsAlarm> add(Event event) {
+            final CompletableFuture<OnmsAlarm> future = new CompletableFuture<>();
+            events.add(event);
+            futures.add(future);
+            return future;
+        }
+
+        private boolean isFull() {
+            return events.size() >= maxEvents;
+        }
+    }
 }
@@ -38,10 +38,12 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -75,6 +77,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
@@ -99,6 +102,9 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
     private static final long MAX_NUM_ACTIONS_IN_FLIGHT = SystemProperties.getLong(
             "org.opennms.netmgt.alarmd.drools.max_num_actions_in_flight", 5000);
 
+    private static final int SNAPSHOT_CHUNK_SIZE = SystemProperties.getInteger(
+            "org.opennms.netmgt.alarmd.drools.snapshot_chunk_size", 5000);
+
     @Autowired
     private AlarmService alarmService;
 
@@ -114,7 +120,12 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
     @Autowired
     private AlarmDao alarmDao;
 
-    private final AlarmCallbackStateTracker stateTracker = new AlarmCallbackStateTracker();
+    // Snapshots may overlap, so every snapshot tracks the alarm callbacks with its own state tracker,
+    // from the time it's loaded until it's fully reconciled
+    private final Set<AlarmCallbackStateTracker> stateTrackers = new CopyOnWriteArraySet<>();
+
+    // The state tracker for the snapshot being loaded by the current thread
+    private final ThreadLocal<AlarmCallbackStateTracker> snapshotStateTracker = new ThreadLocal<>();
 
     private final Map<Integer, AlarmAndFact> alarmsById = new HashMap<>();
 
@@ -161,8 +172,8 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
                 }
             }
 
-            // Reset metrics
-            atomicActionsInFlight.set(0L);
+            // Reset metrics, actions that are still in flight are carried over to the new session
+            atomicActionsInFlight.compareAndSet(-1L, 0L);
             numAlarmsFromLastSnapshot.set(-1L);
             numSituationsFromLastSnapshot.set(-1L);
         });
@@ -209,8 +220,11 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
 
     @Override
     public void preHandleAlarmSnapshot() {
-        // Start tracking alarm callbacks via the state tracker
+        // Start tracking alarm callbacks via a new state tracker
+        final AlarmCallbackStateTracker stateTracker = new AlarmCallbackStateTracker();
         stateTracker.startTrackingAlarms();
+        stateTrackers.add(stateTracker);
+        snapshotStateTracker.set(stateTracker);
     }
 
     /**
@@ -256,9 +270,12 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
                 atomicActionsInFlight.decrementAndGet();
                 return;
             }
-            getKieSession().submit(kieSession -> {
-                atomicAction.execute(kieSession);
-                atomicActionsInFlight.decrementAndGet();
+            submitBatched(kieSession -> {
+                try {
+                    atomicAction.execute(kieSession);
+                } finally {
+                    atomicActionsInFlight.decrementAndGet();
+                }
             });
             atomicActionsQueued.mark();
         }
@@ -289,77 +306,125 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
         numAlarmsFromLastSnapshot.set(alarms.size() - numSituations);
         numSituationsFromLastSnapshot.set(numSituations);
 
-        submitOrRun(kieSession -> {
-            final Set<Integer> alarmIdsInDb = alarmsInDbById.keySet();
-            final Set<Integer> alarmIdsInWorkingMem = alarmsById.keySet();
+        // Hand the state tracker off to the reconciliation, which stops tracking once it completes
+        AlarmCallbackStateTracker stateTracker = snapshotStateTracker.get();
+        if (stateTracker != null) {
+            snapshotStateTracker.remove();
+        } else {
+            // No callbacks were tracked if preHandleAlarmSnapshot() wasn't called
+            stateTracker = new AlarmCallbackStateTracker();
+        }
+
+        // Reconcile the snapshot in chunks, allowing other actions to be applied, and the rules to fire, between them.
+        // The first chunk is never dropped, so the state tracker is always released.
+        final SnapshotReconciliation reconciliation = new SnapshotReconciliation(alarmsInDbById, acksByRefId, stateTracker);
+        submitBatched(reconciliation::reconcileNextChunk);
+    }
+
+    /**
+     * Reconciles the facts in working memory with an alarm snapshot, one chunk of alarms at a time.
+     *
+     * Every chunk is reconciled in its own atomic action, and the snapshot's state tracker is consulted when
+     * the chunk is reconciled, so that alarms that were updated or deleted while the snapshot was being processed
+     * are never overwritten with stale data.
+     */
+    private class SnapshotReconciliation {
+        private final Map<Integer, OnmsAlarm> alarmsInDbById;
+        private final Map<Integer, OnmsAcknowledgment> acksByRefId;
+        private final AlarmCallbackStateTracker stateTracker;
+        private final Iterator<List<Integer>> chunks;
+        private int numAdded = 0;
+        private int numUpdated = 0;
+
+        private SnapshotReconciliation(Map<Integer, OnmsAlarm> alarmsInDbById, Map<Integer, OnmsAcknowledgment> acksByRefId,
+                                       AlarmCallbackStateTracker stateTracker) {
+            this.alarmsInDbById = alarmsInDbById;
+            this.acksByRefId = acksByRefId;
+            this.stateTracker = stateTracker;
+            this.chunks = Iterables.partition(alarmsInDbById.keySet(), SNAPSHOT_CHUNK_SIZE).iterator();
+        }
+
+        private void reconcileNextChunk(KieSession kieSession) {
+            try {
+                if (!chunks.hasNext()) {
+                    removeAlarmsNotInSnapshot(kieSession);
+                    stopTracking(stateTracker);
+                    return;
+                }
+                reconcileChunk(kieSession, chunks.next());
+            } catch (RuntimeException e) {
+                stopTracking(stateTracker);
+                throw e;
+            }
+
+            // Queue the next chunk behind any other actions that were submitted in the meantime
+            submitBatched(this::reconcileNextChunk);
+        }
 
-            final Set<Integer> alarmIdsToAdd = Sets.difference(alarmIdsInDb, alarmIdsInWorkingMem).stream()
+        private void reconcileChunk(KieSession kieSession, List<Integer> chunk) {
+            for (Integer alarmId : chunk) {
+                final AlarmAndFact alarmAndFact = alarmsById.get(alarmId);
+                final OnmsAlarm alarmInDb = alarmsInDbById.get(alarmId);
+                if (alarmAndFact == null) {
                     // The snapshot contains an alarm which we don't have in working memory.
                     // It is possible that the alarm was in fact deleted some time after the
                     // snapshot was processed. We should only add it, if we did not explicitly
                     // delete the alarm after the snapshot was taken.
-                    .filter(alarmId -> !stateTracker.wasAlarmWithIdDeleted(alarmId))
-                    .collect(Collectors.toSet());
-            final Set<Integer> alarmIdsToRemove = Sets.difference(alarmIdsInWorkingMem, alarmIdsInDb).stream()
-                    // We have an alarm in working memory that is not contained in the snapshot.
-                    // Only remove it from memory if the fact we have dates before the snapshot.
-                    .filter(alarmId -> !stateTracker.wasAlarmWithIdUpdated(alarmId))
-                    .collect(Collectors.toSet());
-            final Set<Integer> alarmIdsToUpdate = Sets.intersection(alarmIdsInWorkingMem, alarmIdsInDb).stream()
-                    // This stream contains the set of all alarms which are both in the snapshot
-                    // and in working memory
-                    .filter(alarmId -> {
-                        final AlarmAndFact alarmAndFact = alarmsById.get(alarmId);
-                        // Don't bother updating the alarm in memory if the fact we have is more recent than the snapshot
-                        if (stateTracker.wasAlarmWithIdUpdated(alarmId)) {
-                            return false;
-                        }
-                        final OnmsAlarm alarmInMem = alarmAndFact.getAlarm();
-                        final OnmsAlarm alarmInDb = alarmsInDbById.get(alarmId);
-                        // Only update the alarms if they are different
-                        return shouldUpdateAlarmForSnapshot(alarmInMem, alarmInDb);
-                    })
-                    .collect(Collectors.toSet());
-
-            // Log details that help explain what actions are being performed, if any
-            if (LOG.isDebugEnabled()) {
-                if (!alarmIdsToAdd.isEmpty() || !alarmIdsToRemove.isEmpty() || !alarmIdsToUpdate.isEmpty()) {
-                    LOG.debug("Adding {} alarms, removing {} alarms and updating {} alarms for snapshot.",
-                            alarmIdsToAdd.size(), alarmIdsToRemove.size(), alarmIdsToUpdate.size());
+                    if (stateTracker.wasAlarmWithIdDeleted(alarmId)) {
+                        continue;
+                    }
+                    numAdded++;
                 } else {
-                    LOG.debug("No actions to perform for alarm snapshot.");
-                }
-                // When TRACE is enabled, include diagnostic information to help explain why
-                // the alarms are being updated
-                if (LOG.isTraceEnabled()) {
-                    for (Integer alarmIdToUpdate : alarmIdsToUpdate) {
-                        LOG.trace("Updating alarm with id={}. Alarm from DB: {} vs Alarm from memory: {}",
-                                alarmIdToUpdate,
-                                alarmsInDbById.get(alarmIdToUpdate),
-                                alarmsById.get(alarmIdToUpdate));
+                    // Don't bother updating the alarm in memory if the fact we have is more recent than the snapshot
+                    // and only update the alarms if they are different
+                    if (stateTracker.wasAlarmWithIdUpdated(alarmId)
+                            || !shouldUpdateAlarmForSnapshot(alarmAndFact.getAlarm(), alarmInDb)) {
+                        continue;
                     }
+                    // When TRACE is enabled, include diagnostic information to help explain why
+                    // the alarms are being updated
+                    LOG.trace("Updating alarm with id={}. Alarm from DB: {} vs Alarm from memory: {}",
+                            alarmId, alarmInDb, alarmAndFact);
+                    numUpdated++;
                 }
+                handleNewOrUpdatedAlarmForAtomic(kieSession, alarmInDb, acksByRefId.get(alarmId));
             }
+        }
 
+        private void removeAlarmsNotInSnapshot(KieSession kieSession) {
+            final Set<Integer> alarmIdsToRemove = Sets.difference(alarmsById.keySet(), alarmsInDbById.keySet()).stream()
+                    // We have an alarm in working memory that is not contained in the snapshot.
+                    // Only remove it from memory if the fact we have dates before the snapshot.
+                    .filter(alarmId -> !stateTracker.wasAlarmWithIdUpdated(alarmId))
+                    .collect(Collectors.toSet());
             for (Integer alarmIdToRemove : alarmIdsToRemove) {
                 handleDeletedAlarmForAtomic(kieSession, alarmIdToRemove, alarmsById.get(alarmIdToRemove).getAlarm().getReductionKey());
             }
 
-            final Set<OnmsAlarm> alarmsToUpdate = Sets.union(alarmIdsToAdd, alarmIdsToUpdate).stream()
-                    .map(alarmsInDbById::get)
-                    .collect(Collectors.toSet());
-            for (OnmsAlarm alarm : alarmsToUpdate) {
-                handleNewOrUpdatedAlarmForAtomic(kieSession, alarm, acksByRefId.get(alarm.getId()));
+            // Log details that help explain what actions were performed, if any
+            if (numAdded > 0 || numUpdated > 0 || !alarmIdsToRemove.isEmpty()) {
+                LOG.debug("Added {} alarms, removed {} alarms and updated {} alarms for snapshot.",
+                        numAdded, alarmIdsToRemove.size(), numUpdated);
+            } else {
+                LOG.debug("No actions performed for alarm snapshot.");
             }
-
-            stateTracker.resetStateAndStopTrackingAlarms();
             LOG.debug("Done handling snapshot.");
-        });
+        }
     }
 
     @Override
     public void postHandleAlarmSnapshot() {
-        // pass
+        // Stop tracking if the snapshot wasn't handed off to a reconciliation
+        final AlarmCallbackStateTracker stateTracker = snapshotStateTracker.get();
+        if (stateTracker != null) {
+            snapshotStateTracker.remove();
+            stopTracking(stateTracker);
+        }
+    }
+
+    private void stopTracking(AlarmCallbackStateTracker stateTracker) {
+        stateTrackers.remove(stateTracker);
+        stateTracker.resetStateAndStopTrackingAlarms();
     }
 
     /**
@@ -388,7 +453,7 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
 
         executeAtomicallyWhenTransactionComplete(kieSession -> {
             handleNewOrUpdatedAlarmForAtomic(kieSession, alarm, acksByRefId.get(alarm.getId()));
-            stateTracker.trackNewOrUpdatedAlarm(alarm.getId(), alarm.getReductionKey());
+            stateTrackers.forEach(stateTracker -> stateTracker.trackNewOrUpdatedAlarm(alarm.getId(), alarm.getReductionKey()));
         });
     }
 
@@ -535,7 +600,7 @@ public class DroolsAlarmContext extends ManagedDroolsContext implements AlarmLif
 
         executeAtomicallyWhenTransactionComplete(kieSession -> {
             handleDeletedAlarmForAtomic(kieSession, alarmId, reductionKey);
-            stateTracker.trackDeletedAlarm(alarmId, reductionKey);
+            stateTrackers.forEach(stateTracker -> stateTracker.trackDeletedAlarm(alarmId, reductionKey));
         });
     }
 
@@ -36,8 +36,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -55,6 +57,9 @@ import org.kie.api.builder.model.KieBaseModel;
 import org.kie.api.builder.model.KieModuleModel;
 import org.kie.api.builder.model.KieSessionModel;
 import org.kie.api.conf.EventProcessingOption;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.conf.ClockTypeOption;
@@ -66,6 +71,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -89,6 +95,12 @@ public class ManagedDroolsContext {
     private static final long LIVENESS_CHECK_INTERVAL_MS = SystemProperties.getLong(
             "org.opennms.netmgt.alarmd.drools.liveness_check_interval_ms", TimeUnit.SECONDS.toMillis(30));
 
+    /**
+     * Maximum number of queued actions applied to the session between rule firings
+     */
+    private static final int MAX_BATCH_SIZE = SystemProperties.getInteger(
+            "org.opennms.netmgt.alarmd.drools.max_batch_size", 1000);
+
     private final MetricRegistry metrics;
     private final File rulesFolder;
     private final String kbaseName;
@@ -118,6 +130,12 @@ public class ManagedDroolsContext {
     private java.util.Timer livenessTimer;
     private Timer livenessTimerMetric;
 
+    private final Queue<KieSession.AtomicAction> pendingActions = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final AtomicLong numPendingActions = new AtomicLong(0);
+    private final Histogram batchSizeMetric;
+    private final Timer ruleFiringTimerMetric;
+
     public ManagedDroolsContext(File rulesFolder, String kbaseName, String kSessionSuffixName) {
         this.rulesFolder = Objects.requireNonNull(rulesFolder);
         this.kbaseName = Objects.requireNonNull(kbaseName);
@@ -126,7 +144,10 @@ public class ManagedDroolsContext {
 
         // Register metrics
         metrics.register("facts", (Gauge<Long>) () -> kieSession != null ? kieSession.getFactCount() : -1);
+        metrics.register("pendingActions", (Gauge<Long>) numPendingActions::get);
         livenessTimerMetric = metrics.timer("liveness");
+        batchSizeMetric = metrics.histogram("batchSize");
+        ruleFiringTimerMetric = metrics.timer("ruleFirings");
     }
 
     public synchronized void start() {
@@ -164,6 +185,24 @@ public class ManagedDroolsContext {
         // Add the clock to the session
         kieSession.insert(kieSession.getSessionClock());
 
+        // Track the time spent firing each rule
+        kieSession.addEventListener(new DefaultAgendaEventListener() {
+            private Timer.Context ctx;
+
+            @Override
+            public void beforeMatchFired(BeforeMatchFiredEvent event) {
+                ctx = ruleFiringTimerMetric.time();
+            }
+
+            @Override
+            public void afterMatchFired(AfterMatchFiredEvent event) {
+                if (ctx != null) {
+                    ctx.stop();
+                    ctx = null;
+                }
+            }
+        });
+
         // Optionally restore any facts
         factObjects.forEach(factObject -> kieSession.insert(factObject));
 
@@ -174,6 +213,12 @@ public class ManagedDroolsContext {
         // Save the releaseId
         releaseIdForContainerUsedByKieSession = releaseId;
 
+        // Any actions that were queued for the previous session are applied to this one
+        drainScheduled.set(false);
+        if (!pendingActions.isEmpty()) {
+            scheduleDrain();
+        }
+
         // We're started!
         started.set(true);
 
@@ -346,8 +391,55 @@ public class ManagedDroolsContext {
         return ks.newReleaseId(ManagedDroolsContext.class.getPackage().getName(), moduleName, "1.0.0");
     }
 
+    /**
+     * Queues the given action to be applied to the session.
+     *
+     * Queued actions are applied in batches of up to {@link #MAX_BATCH_SIZE} actions, and the rules
+     * are fired between every batch, instead of interleaving every single action with the rules.
+     *
+     * @param atomicAction action to apply
+     */
+    protected void submitBatched(KieSession.AtomicAction atomicAction) {
+        pendingActions.add(atomicAction);
+        numPendingActions.incrementAndGet();
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        final KieSession session = kieSession;
+        if (session != null && drainScheduled.compareAndSet(false, true)) {
+            session.submit(this::drainPendingActions);
+        }
+    }
+
+    private void drainPendingActions(KieSession session) {
+        int batchSize = 0;
+        try {
+            KieSession.AtomicAction atomicAction;
+            while (batchSize < MAX_BATCH_SIZE && (atomicAction = pendingActions.poll()) != null) {
+                numPendingActions.decrementAndGet();
+                batchSize++;
+                try {
+                    atomicAction.execute(session);
+                } catch (Exception e) {
+                    LOG.error("An error occurred while applying an action to session {}.", kSessionName, e);
+                }
+            }
+        } finally {
+            batchSizeMetric.update(batchSize);
+            drainScheduled.set(false);
+            // Let the rules fire before applying the next batch
+            if (!pendingActions.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
     public void tick() {
-        kieSession.fireAllRules();
+        // Keep firing until all of the queued actions were applied
+        do {
+            kieSession.fireAllRules();
+        } while (!pendingActions.isEmpty());
     }
 
     public synchronized void stop() {
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.alarmd;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.dao.api.AlarmEntityNotifier;
+import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsSeverity;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.AlarmData;
+import org.opennms.netmgt.xml.event.Event;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+public class AlarmPersisterImplTest {
+
+    private static final String REDUCTION_KEY = "uei.opennms.org/test:1";
+
+    private final AtomicInteger m_transactions = new AtomicInteger(0);
+
+    // Events in the order in which they were persisted
+    private final List<Integer> m_persistedEvents = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile Integer m_slowEvent;
+
+    private AlarmDao m_alarmDao;
+    private AlarmEntityNotifier m_alarmEntityNotifier;
+    private AlarmPersisterImpl m_alarmPersister;
+    private ExecutorService m_executor;
+
+    @Before
+    public void setUp() {
+        m_alarmDao = mock(AlarmDao.class);
+        m_alarmEntityNotifier = mock(AlarmEntityNotifier.class);
+
+        final EventDao eventDao = mock(EventDao.class);
+        when(eventDao.get(any(Integer.class))).thenAnswer(invocation -> {
+            final Integer dbid = (Integer)invocation.getArguments()[0];
+            m_persistedEvents.add(dbid);
+            if (dbid.equals(m_slowEvent)) {
+                Thread.sleep(200);
+            }
+            final OnmsEvent event = new OnmsEvent();
+            event.setId(dbid);
+            event.setEventTime(new Date());
+            event.setEventSeverity(OnmsSeverity.MAJOR.getId());
+            return event;
+        });
+
+        m_alarmPersister = new AlarmPersisterImpl();
+        m_alarmPersister.setAlarmDao(m_alarmDao);
+        m_alarmPersister.setEventDao(eventDao);
+        m_alarmPersister.setAlarmChangeListener(m_alarmEntityNotifier);
+        m_alarmPersister.setTransactionOperations(new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                m_transactions.incrementAndGet();
+                return action.doInTransaction(null);
+            }
+        });
+        // Same as the event threads in Alarmd
+        m_executor = Executors.newFixedThreadPool(Alarmd.THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        m_alarmPersister.destroy();
+        m_executor.shutdownNow();
+    }
+
+    @Test
+    public void canLookupAlarmsByIdAfterTheyAreCreated() {
+        final List<OnmsAlarm> savedAlarms = new ArrayList<>();
+        doAnswer(invocation -> {
+            final OnmsAlarm alarm = (OnmsAlarm)invocation.getArguments()[0];
+            alarm.setId(42);
+            savedAlarms.add(alarm);
+            return 42;
+        }).when(m_alarmDao).save(any(OnmsAlarm.class));
+
+        // The first event creates the alarm
+        final OnmsAlarm alarm = m_alarmPersister.persist(createEvent(1));
+        assertThat(alarm.getCounter(), equalTo(1));
+        verify(m_alarmDao, times(1)).findByReductionKey(REDUCTION_KEY);
+
+        // The second event should find it by id instead of by reduction key
+        when(m_alarmDao.get(42)).thenReturn(savedAlarms.get(0));
+        assertThat(m_alarmPersister.persist(createEvent(2)), sameInstance(alarm));
+        assertThat(alarm.getCounter(), equalTo(2));
+        verify(m_alarmDao, times(1)).findByReductionKey(REDUCTION_KEY);
+
+        // The index should not be trusted once the alarm was deleted
+        when(m_alarmDao.get(42)).thenReturn(null);
+        m_alarmPersister.persist(createEvent(3));
+        verify(m_alarmDao, times(2)).findByReductionKey(REDUCTION_KEY);
+    }
+
+    @Test
+    public void canCoalesceReductionsOfTheSameAlarm() {
+        final OnmsAlarm existingAlarm = new OnmsAlarm();
+        existingAlarm.setId(1);
+        existingAlarm.setReductionKey(REDUCTION_KEY);
+        existingAlarm.setAlarmType(1);
+        existingAlarm.setCounter(1);
+        existingAlarm.setSeverity(OnmsSeverity.MAJOR);
+        when(m_alarmDao.findByReductionKey(REDUCTION_KEY)).thenReturn(existingAlarm);
+
+        // The batch is only persisted once all of the events were added, or after a long window.
+        // Use more events than there are event threads, none of them should wait for the batch.
+        final int numEvents = Alarmd.THREADS * 2;
+        m_alarmPersister.setCoalesceWindowMs(60000);
+        m_alarmPersister.setCoalesceMaxEvents(numEvents);
+
+        final List<CompletableFuture<OnmsAlarm>> futures = new ArrayList<>();
+        for (int i = 1; i <= numEvents; i++) {
+            final Event event = createEvent(i);
+            futures.add(CompletableFuture.supplyAsync(() -> m_alarmPersister.persistAsync(event), m_executor)
+                    .thenCompose(future -> future));
+        }
+
+        for (CompletableFuture<OnmsAlarm> future : futures) {
+            assertThat(future.join(), sameInstance(existingAlarm));
+        }
+
+        // All of the events should have been reduced in a single transaction, with a single notification
+        assertThat(existingAlarm.getCounter(), equalTo(1 + numEvents));
+        assertThat(m_transactions.get(), equalTo(1));
+        verify(m_alarmDao, times(1)).findByReductionKey(REDUCTION_KEY);
+        verify(m_alarmEntityNotifier, times(1)).didUpdateAlarmWithReducedEvent(existingAlarm);
+    }
+
+    @Test
+    public void persistsCoalescedBatchesInOrder() {
+        final OnmsAlarm existingAlarm = new OnmsAlarm();
+        existingAlarm.setId(1);
+        existingAlarm.setReductionKey(REDUCTION_KEY);
+        existingAlarm.setAlarmType(1);
+        existingAlarm.setCounter(1);
+        existingAlarm.setSeverity(OnmsSeverity.MAJOR);
+        when(m_alarmDao.findByReductionKey(REDUCTION_KEY)).thenReturn(existingAlarm);
+
+        m_alarmPersister.setCoalesceWindowMs(100);
+        // Make the batch with the triggers slower than the one with the clear
+        m_slowEvent = 1;
+
+        final List<CompletableFuture<OnmsAlarm>> futures = new ArrayList<>();
+        futures.add(m_alarmPersister.persistAsync(createEvent(1)));
+        futures.add(m_alarmPersister.persistAsync(createEvent(2)));
+        // The clear can't join the batch with the triggers, and must be persisted after it
+        futures.add(m_alarmPersister.persistAsync(createEvent(3, 2, "uei.opennms.org/clear:1", REDUCTION_KEY)));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        assertThat(m_persistedEvents, equalTo(Arrays.asList(1, 2, 3)));
+        assertThat(m_transactions.get(), equalTo(2));
+    }
+
+    private static Event createEvent(int dbid) {
+        return createEvent(dbid, 1, REDUCTION_KEY, null);
+    }
+
+    private static Event createEvent(int dbid, int alarmType, String reductionKey, String clearKey) {
+        final EventBuilder builder = new EventBuilder("uei.opennms.org/test", "test");
+        builder.setTime(new Date());
+        builder.setSeverity(OnmsSeverity.MAJOR.getLabel());
+
+        final AlarmData data = new AlarmData();
+        data.setAlarmType(alarmType);
+        data.setReductionKey(reductionKey);
+        data.setClearKey(clearKey);
+        builder.setAlarmData(data);
+
+        final Event event = builder.getEvent();
+        event.setDbid(dbid);
+        return event;
+    }
+}
@@ -50,8 +50,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import org.junit.After;
 import org.junit.Before;
@@ -635,6 +637,42 @@ public class DroolsAlarmContextIT {
         assertThat(dac.getAckByAlarmId(alarm1.getId()).getAckAction(), equalTo(ack1.getAckAction()));
     }
 
+    /**
+     * Tests that an alarm created while a snapshot is being loaded is kept, even if
+     * the reconciliation of a previous snapshot completes in the meantime.
+     */
+    @Test
+    public void canReconcileOverlappingSnapshots() {
+        OnmsAlarm alarm1 = generateAlarm(1);
+        OnmsAlarm alarm2 = generateAlarm(2);
+
+        // The first snapshot is loaded, and its reconciliation is queued
+        dac.preHandleAlarmSnapshot();
+        dac.handleAlarmSnapshot(Collections.singletonList(alarm1));
+        dac.postHandleAlarmSnapshot();
+
+        // The second snapshot starts loading before the second alarm is created
+        dac.preHandleAlarmSnapshot();
+        dac.handleNewOrUpdatedAlarm(alarm2);
+
+        // Complete the reconciliation of the first snapshot
+        dac.tick();
+        assertThat(getAlarmIdsInSession(), equalTo(Sets.newHashSet(1, 2)));
+
+        // The second snapshot doesn't contain the second alarm, but it should be kept
+        dac.handleAlarmSnapshot(Collections.singletonList(alarm1));
+        dac.postHandleAlarmSnapshot();
+        dac.tick();
+        assertThat(getAlarmIdsInSession(), equalTo(Sets.newHashSet(1, 2)));
+    }
+
+    private Set<Integer> getAlarmIdsInSession() {
+        return dac.getKieSession().getObjects().stream()
+                .filter(o -> o instanceof OnmsAlarm)
+                .map(o -> ((OnmsAlarm)o).getId())
+                .collect(Collectors.toSet());
+    }
+
     public void canReloadEngine() {
         // Create a trigger alarm
         OnmsAlarm trigger = new OnmsAlarm();
@@ -45,6 +45,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.codahale.metrics.Histogram;
 import com.google.common.collect.Lists;
 
 public class ManagedDroolsContextIT {
@@ -146,6 +147,44 @@ public class ManagedDroolsContextIT {
         assertThat(notificationService.getSent(), hasSize(equalTo(1)));
     }
 
+    /**
+     * Verifies that queued actions are applied in batches, and that
+     * the batches and rule firings are tracked by the metrics.
+     */
+    @Test
+    public void canApplyQueuedActionsInBatches() throws IOException {
+        generateSimpleRuleset();
+
+        ManagedDroolsContext droolsCtx = new ManagedDroolsContext(rulesFolder, "test", "test");
+        droolsCtx.setUseManualTick(true);
+
+        NotificationService notificationService = new NotificationService();
+        droolsCtx.setOnNewKiewSessionCallback(kieSession -> {
+            kieSession.setGlobal("notificationService", notificationService);
+        });
+        droolsCtx.start();
+
+        // Queue more actions than fit in a single batch
+        final int numNotifications = 2500;
+        for (int i = 0; i < numNotifications; i++) {
+            final Notification notif = new Notification("oops");
+            droolsCtx.submitBatched(kieSession -> kieSession.insert(notif));
+        }
+
+        // A single tick should apply all of them
+        droolsCtx.tick();
+        assertThat(notificationService.getSent(), hasSize(equalTo(numNotifications)));
+
+        // The actions should have been applied in 3 batches
+        final Histogram batchSizes = droolsCtx.getMetrics().histogram("batchSize");
+        assertThat(batchSizes.getCount(), equalTo(3L));
+        assertThat(batchSizes.getSnapshot().getMax(), equalTo(1000L));
+        assertThat(droolsCtx.getMetrics().timer("ruleFirings").getCount(), equalTo((long)numNotifications));
+        assertThat((Long)droolsCtx.getMetrics().getGauges().get("pendingActions").getValue(), equalTo(0L));
+
+        droolsCtx.stop();
+    }
+
     private void generateSimpleRuleset() throws IOException {
         String rule = String.format("import %s;\n", Notification.class.getCanonicalName()) +
                 String.format("global %s notificationService;\n", NotificationService.class.getCanonicalName()) +
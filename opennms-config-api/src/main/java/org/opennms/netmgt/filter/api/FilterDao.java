@@ -63,6 +63,19 @@ public interface FilterDao {
      */
     Map<InetAddress, Set<String>> getIPAddressServiceMap(String rule) throws FilterParseException;
 
+    /**
+     * This method returns the services of all the interfaces that match the
+     * rule that is passed in, grouped by node ID and IP address.
+     *
+     * Interfaces without any services are included with an empty set.
+     *
+     * @param rule an expression rule to be parsed and executed.
+     * @return a map of node IDs to a map of IP addresses to service names
+     * @throws FilterParseException if a rule is syntactically incorrect or failed in
+     *                executing the SQL statement
+     */
+    Map<Integer, Map<InetAddress, Set<String>>> getNodeIPAddressServiceMap(String rule) throws FilterParseException;
+
     void flushActiveIpAddressListCache();
 
     /**
@@ -149,6 +149,21 @@ public class Configuration implements Serializable {
     @XmlAttribute(name = "batch-interval")
     private Integer m_batchInterval;
 
+    /**
+     * Messages are aggregated in batches before being dispatched.
+     *  When adding a message would make the batch exceed this size (bytes),
+     *  the batch is dispatched first. A value of 0 disables the limit.
+     */
+    @XmlAttribute(name = "batch-size-bytes")
+    private Integer m_batchSizeBytes;
+
+    /**
+     * When lower than the batch interval, the interval (ms) used to dispatch
+     *  batches is adapted to the load, between this value and the batch interval.
+     */
+    @XmlAttribute(name = "min-batch-interval")
+    private Integer m_minBatchInterval;
+
     @XmlAttribute(name = "timezone")
     private String timeZone;
 
@@ -251,6 +266,22 @@ public class Configuration implements Serializable {
         m_batchInterval = ConfigUtils.assertMinimumInclusive(batchInterval, 1, "batch-interval");
     }
 
+    public Integer getBatchSizeBytes() {
+        return m_batchSizeBytes != null ? m_batchSizeBytes : 0;
+    }
+
+    public void setBatchSizeBytes(final Integer batchSizeBytes) {
+        m_batchSizeBytes = ConfigUtils.assertMinimumInclusive(batchSizeBytes, 0, "batch-size-bytes");
+    }
+
+    public Optional<Integer> getMinBatchInterval() {
+        return Optional.ofNullable(m_minBatchInterval);
+    }
+
+    public void setMinBatchInterval(final Integer minBatchInterval) {
+        m_minBatchInterval = ConfigUtils.assertMinimumInclusive(minBatchInterval, 1, "min-batch-interval");
+    }
+
     public Optional<TimeZone> getTimeZone(){
         if(Strings.emptyToNull(this.timeZone) ==null){
             return Optional.empty();
@@ -289,6 +320,8 @@ public class Configuration implements Serializable {
                             m_queueSize, 
                             m_batchSize, 
                             m_batchInterval,
+                            m_batchSizeBytes,
+                            m_minBatchInterval,
                             timeZone,
                             includeRawSyslogmessage);
     }
@@ -319,6 +352,8 @@ public class Configuration implements Serializable {
                     && Objects.equals(this.m_queueSize, that.m_queueSize)
                     && Objects.equals(this.m_batchSize, that.m_batchSize)
                     && Objects.equals(this.m_batchInterval, that.m_batchInterval)
+                    && Objects.equals(this.m_batchSizeBytes, that.m_batchSizeBytes)
+                    && Objects.equals(this.m_minBatchInterval, that.m_minBatchInterval)
                     && Objects.equals(this.timeZone, that.timeZone)
                     && Objects.equals(this.includeRawSyslogmessage, that.includeRawSyslogmessage);
         }
@@ -73,6 +73,14 @@ public class ConfigTesterFilterDao implements FilterDao {
         return new HashMap<InetAddress, Set<String>>();
     }
 
+    /* (non-Javadoc)
+     * @see org.opennms.netmgt.filter.api.FilterDao#getNodeIPAddressServiceMap(java.lang.String)
+     */
+    @Override
+    public Map<Integer, Map<InetAddress, Set<String>>> getNodeIPAddressServiceMap(String rule) throws FilterParseException {
+        return new HashMap<Integer, Map<InetAddress, Set<String>>>();
+    }
+
     /* (non-Javadoc)
      * @see org.opennms.netmgt.filter.api.FilterDao#flushActiveIpAddressListCache()
      */
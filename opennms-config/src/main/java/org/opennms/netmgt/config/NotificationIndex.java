@@ -0,0 +1,418 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.config;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.notifications.Notification;
+import org.opennms.netmgt.filter.api.FilterDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A precompiled view of the notification configuration used to find the
+ * notifications that match a given event.
+ *
+ * Notifications are indexed by their exact UEI, and the regular expressions used
+ * for the UEI and the severity are compiled once. The filter rule of a
+ * notification is evaluated the first time it is needed, and the matching
+ * nodes, interfaces and services are kept in memory so that events can be
+ * matched without querying the database. These must be refreshed using
+ * {@link #refreshNode(int)} whenever a node, interface or service changes,
+ * or using {@link #refreshAll()} when any of them may have changed.
+ *
+ * Refreshes are run on the given executor. While a refresh is pending, the
+ * affected matches are reported as unknown so that the callers fall back to
+ * querying the database.
+ */
+public class NotificationIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationIndex.class);
+
+    public static final String MATCH_ANY_UEI = "MATCH-ANY-UEI";
+
+    private static final Comparator<Entry> CONFIGURATION_ORDER = Comparator.comparingInt(Entry::getOrdinal);
+
+    private final FilterDao m_filterDao;
+
+    private final Executor m_refreshExecutor;
+
+    private final Map<String, List<Entry>> m_entriesByUei = new HashMap<>();
+
+    private final List<Entry> m_regexEntries = new ArrayList<>();
+
+    private final List<Entry> m_matchAnyEntries = new ArrayList<>();
+
+    private final Map<String, RuleMatches> m_matchesByRule = new HashMap<>();
+
+    /**
+     * Nodes created after the rules were loaded have a greater id,
+     * and are refreshed the first time we see them.
+     */
+    private final AtomicInteger m_maxKnownNodeId = new AtomicInteger(0);
+
+    /**
+     * Number of pending refreshes by node id.
+     */
+    private final Map<Integer, Integer> m_pendingRefreshes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger m_pendingFullRefreshes = new AtomicInteger(0);
+
+    public NotificationIndex(final List<Notification> notifications, final FilterDao filterDao) {
+        this(notifications, filterDao, Runnable::run);
+    }
+
+    public NotificationIndex(final List<Notification> notifications, final FilterDao filterDao, final Executor refreshExecutor) {
+        m_filterDao = filterDao;
+        m_refreshExecutor = Objects.requireNonNull(refreshExecutor);
+
+        int ordinal = 0;
+        for (final Notification notification : notifications) {
+            final String uei = notification.getUei();
+            final String rule = notification.getRule() != null ? notification.getRule().getContent() : null;
+            final RuleMatches ruleMatches = rule == null ? null : m_matchesByRule.computeIfAbsent(rule, RuleMatches::new);
+            final Entry entry = new Entry(notification, ordinal++, ruleMatches);
+
+            if (MATCH_ANY_UEI.equals(uei)) {
+                m_matchAnyEntries.add(entry);
+            } else if (uei != null && uei.length() > 0 && uei.charAt(0) == '~') {
+                if (entry.m_ueiPattern != null) {
+                    m_regexEntries.add(entry);
+                }
+            } else if (uei != null) {
+                m_entriesByUei.computeIfAbsent(uei, k -> new ArrayList<>()).add(entry);
+            }
+        }
+    }
+
+    /**
+     * @return the notifications which may match the given UEI, in the order in which they are configured
+     */
+    public List<Entry> getCandidates(final String uei) {
+        final List<Entry> candidates = new ArrayList<>(m_entriesByUei.getOrDefault(uei, Collections.emptyList()));
+        candidates.addAll(m_matchAnyEntries);
+        for (final Entry entry : m_regexEntries) {
+            if (entry.matchesUei(uei)) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(CONFIGURATION_ORDER);
+        return candidates;
+    }
+
+    public boolean hasUei(final String uei) {
+        if (m_entriesByUei.containsKey(uei) || !m_matchAnyEntries.isEmpty()) {
+            return true;
+        }
+        for (final Entry entry : m_regexEntries) {
+            if (entry.matchesUei(uei)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Re-evaluates the filter rules for the given node.
+     *
+     * @param nodeId the id of the node that was added, changed or deleted
+     */
+    public void refreshNode(final int nodeId) {
+        m_maxKnownNodeId.accumulateAndGet(nodeId, Math::max);
+        m_pendingRefreshes.merge(nodeId, 1, Integer::sum);
+        m_refreshExecutor.execute(() -> {
+            try {
+                for (final RuleMatches ruleMatches : m_matchesByRule.values()) {
+                    ruleMatches.refresh(nodeId);
+                }
+            } finally {
+                m_pendingRefreshes.computeIfPresent(nodeId, (id, count) -> count > 1 ? count - 1 : null);
+            }
+        });
+    }
+
+    /**
+     * Re-evaluates the filter rules for all of the nodes.
+     */
+    public void refreshAll() {
+        m_pendingFullRefreshes.incrementAndGet();
+        m_refreshExecutor.execute(() -> {
+            try {
+                for (final RuleMatches ruleMatches : m_matchesByRule.values()) {
+                    ruleMatches.reload();
+                }
+            } finally {
+                m_pendingFullRefreshes.decrementAndGet();
+            }
+        });
+    }
+
+    private void maybeRefreshUnknownNode(final long nodeId) {
+        if (nodeId > m_maxKnownNodeId.get()) {
+            LOG.debug("Node {} was created after the notification rules were loaded. Refreshing.", nodeId);
+            refreshNode((int)nodeId);
+        }
+    }
+
+    /**
+     * @return true if the matches for the given node, or for any node if the id is 0, may be out of date
+     */
+    private boolean hasPendingRefresh(final long nodeId) {
+        if (m_pendingFullRefreshes.get() > 0) {
+            return true;
+        } else if (nodeId != 0) {
+            return m_pendingRefreshes.containsKey((int)nodeId);
+        }
+        return !m_pendingRefreshes.isEmpty();
+    }
+
+    /**
+     * A notification along with its compiled UEI and severity patterns.
+     */
+    public class Entry {
+        private final Notification m_notification;
+        private final int m_ordinal;
+        private final Pattern m_ueiPattern;
+        private final Pattern m_severityPattern;
+        private final boolean m_validSeverityPattern;
+        private final RuleMatches m_ruleMatches;
+
+        private Entry(final Notification notification, final int ordinal, final RuleMatches ruleMatches) {
+            m_notification = Objects.requireNonNull(notification);
+            m_ordinal = ordinal;
+            m_ruleMatches = ruleMatches;
+
+            final String uei = notification.getUei();
+            m_ueiPattern = uei != null && uei.length() > 0 && uei.charAt(0) == '~' ? compile(uei.substring(1), "UEI") : null;
+
+            final String severity = notification.getEventSeverity().orElse(null);
+            m_severityPattern = severity != null ? compile(severity.toLowerCase(), "event severity") : null;
+            m_validSeverityPattern = severity == null || m_severityPattern != null;
+        }
+
+        private Pattern compile(final String regex, final String what) {
+            try {
+                return Pattern.compile(regex);
+            } catch (final PatternSyntaxException e) {
+                LOG.error("Invalid {} regular expression for notification {}: {}", what, m_notification.getName(), regex, e);
+                return null;
+            }
+        }
+
+        public Notification getNotification() {
+            return m_notification;
+        }
+
+        public int getOrdinal() {
+            return m_ordinal;
+        }
+
+        public boolean matchesUei(final String uei) {
+            return m_ueiPattern != null && m_ueiPattern.matcher(uei).matches();
+        }
+
+        /**
+         * @return true if the notification has no severity pattern, or if the pattern matches the given severity
+         */
+        public boolean matchesSeverity(final String severity) {
+            if (m_severityPattern == null) {
+                return m_validSeverityPattern;
+            }
+            return severity != null && m_severityPattern.matcher(severity.toLowerCase()).matches();
+        }
+
+        /**
+         * Determines whether the filter rule of the notification matches the given node, interface and service,
+         * using the same semantics as {@link NotificationManager#nodeInterfaceServiceValid(Notification, org.opennms.netmgt.xml.event.Event)}.
+         *
+         * @return whether the rule matches, or <code>null</code> if the rule could not be evaluated in memory
+         */
+        public Boolean matchesElement(final long nodeId, final String ipAddr, final String service) {
+            if (m_ruleMatches == null) {
+                return null;
+            }
+            m_ruleMatches.ensureLoaded();
+            if (nodeId != 0) {
+                maybeRefreshUnknownNode(nodeId);
+            }
+            if (hasPendingRefresh(nodeId)) {
+                return null;
+            }
+            return m_ruleMatches.matches(nodeId, ipAddr, service);
+        }
+    }
+
+    /**
+     * The nodes, interfaces and services matched by a filter rule.
+     *
+     * Loads and refreshes are serialized using the monitor of the instance.
+     */
+    private class RuleMatches {
+        private final String m_rule;
+        private volatile boolean m_loadAttempted = false;
+        private volatile boolean m_loaded = false;
+        private final Map<Integer, Map<InetAddress, Set<String>>> m_servicesByNode = new ConcurrentHashMap<>();
+        private final Map<InetAddress, Set<Integer>> m_nodesByAddress = new ConcurrentHashMap<>();
+
+        private RuleMatches(final String rule) {
+            m_rule = rule;
+        }
+
+        private void ensureLoaded() {
+            if (!m_loadAttempted) {
+                synchronized (this) {
+                    if (!m_loadAttempted) {
+                        load();
+                    }
+                }
+            }
+        }
+
+        private synchronized void load() {
+            m_loadAttempted = true;
+            try {
+                final Map<Integer, Map<InetAddress, Set<String>>> servicesByNode = m_filterDao.getNodeIPAddressServiceMap(m_rule);
+                if (servicesByNode == null) {
+                    return;
+                }
+                for (final Map.Entry<Integer, Map<InetAddress, Set<String>>> entry : servicesByNode.entrySet()) {
+                    update(entry.getKey(), entry.getValue());
+                    m_maxKnownNodeId.accumulateAndGet(entry.getKey(), Math::max);
+                }
+                m_loaded = true;
+            } catch (final UnsupportedOperationException e) {
+                LOG.debug("The filter DAO does not support evaluating rules in bulk. Notification rule '{}' will be evaluated for every event.", m_rule);
+            } catch (final RuntimeException e) {
+                LOG.warn("Failed to evaluate notification rule '{}'. It will be evaluated for every event.", m_rule, e);
+            }
+        }
+
+        private synchronized void reload() {
+            if (!m_loadAttempted) {
+                // Not loaded yet, the first load will see the current state
+                return;
+            }
+            m_loaded = false;
+            m_servicesByNode.clear();
+            m_nodesByAddress.clear();
+            load();
+        }
+
+        private synchronized void refresh(final int nodeId) {
+            if (!m_loaded) {
+                return;
+            }
+            try {
+                final Map<Integer, Map<InetAddress, Set<String>>> servicesByNode = m_filterDao.getNodeIPAddressServiceMap("((" + m_rule + ") & (nodeId == " + nodeId + "))");
+                update(nodeId, servicesByNode != null ? servicesByNode.get(nodeId) : null);
+            } catch (final RuntimeException e) {
+                // We can no longer trust what we have in memory
+                LOG.warn("Failed to refresh notification rule '{}' for node {}. It will be evaluated for every event.", m_rule, nodeId, e);
+                m_loaded = false;
+            }
+        }
+
+        private synchronized void update(final int nodeId, final Map<InetAddress, Set<String>> servicesByAddress) {
+            final Map<InetAddress, Set<String>> previous = servicesByAddress == null || servicesByAddress.isEmpty()
+                    ? m_servicesByNode.remove(nodeId)
+                    : m_servicesByNode.put(nodeId, servicesByAddress);
+            if (previous != null) {
+                for (final InetAddress address : previous.keySet()) {
+                    m_nodesByAddress.computeIfPresent(address, (a, nodeIds) -> {
+                        nodeIds.remove(nodeId);
+                        return nodeIds.isEmpty() ? null : nodeIds;
+                    });
+                }
+            }
+            if (servicesByAddress != null) {
+                for (final InetAddress address : servicesByAddress.keySet()) {
+                    m_nodesByAddress.computeIfAbsent(address, a -> ConcurrentHashMap.newKeySet()).add(nodeId);
+                }
+            }
+        }
+
+        private Boolean matches(final long nodeId, final String ipAddr, final String service) {
+            if (!m_loaded) {
+                return null;
+            }
+
+            final boolean hasInterface = ipAddr != null && !"0.0.0.0".equals(ipAddr);
+            InetAddress address = null;
+            if (hasInterface) {
+                address = InetAddressUtils.addr(ipAddr);
+                if (address == null) {
+                    // Let the database decide
+                    return null;
+                }
+            }
+
+            if (nodeId != 0) {
+                final Map<InetAddress, Set<String>> servicesByAddress = m_servicesByNode.get((int)nodeId);
+                if (servicesByAddress == null) {
+                    return false;
+                } else if (!hasInterface) {
+                    return true;
+                }
+                final Set<String> services = servicesByAddress.get(address);
+                return services != null && (service == null || services.contains(service));
+            } else if (hasInterface) {
+                final Set<Integer> nodeIds = m_nodesByAddress.get(address);
+                if (nodeIds == null) {
+                    return false;
+                } else if (service == null) {
+                    return true;
+                }
+                for (final Integer id : nodeIds) {
+                    final Map<InetAddress, Set<String>> servicesByAddress = m_servicesByNode.get(id);
+                    if (servicesByAddress != null && servicesByAddress.getOrDefault(address, Collections.emptySet()).contains(service)) {
+                        return true;
+                    }
+                }
+                return false;
+            } else {
+                // The rule only has to match something
+                return !m_servicesByNode.isEmpty();
+            }
+        }
+    }
+}
@@ -50,6 +50,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
 
 import javax.sql.DataSource;
 
@@ -88,6 +89,16 @@ public abstract class NotificationManager {
      */
     public Notifications m_notifications;
 
+    /**
+     * Precompiled view of {@link #m_notifications}, rebuilt whenever the configuration changes
+     */
+    private volatile NotificationIndex m_index;
+
+    /**
+     * Executor used to refresh the filter matches of the index, defaults to running them on the calling thread
+     */
+    private volatile Executor m_filterRefreshExecutor = Runnable::run;
+
     /**
      * Counters for exposure via JMX
      */
@@ -190,6 +201,7 @@ public abstract class NotificationManager {
     @Deprecated
     public synchronized void parseXML(final Reader reader) {
         m_notifications = JaxbUtils.unmarshal(Notifications.class, reader, true);
+        m_index = null;
         oldHeader = m_notifications.getHeader();
     }
 
@@ -203,6 +215,7 @@ public abstract class NotificationManager {
         try (final Reader reader = new InputStreamReader(stream)) {
             m_notifications = JaxbUtils.unmarshal(Notifications.class, reader, true);
         }
+        m_index = null;
         oldHeader = m_notifications.getHeader();
     }
 
@@ -216,18 +229,60 @@ public abstract class NotificationManager {
     public boolean hasUei(final String uei) throws IOException {
         update();
 
-        for (Notification notif : m_notifications.getNotifications()) {
-            if (uei.equals(notif.getUei()) || "MATCH-ANY-UEI".equals(notif.getUei())) {
-                return true;
-            } else if (notif.getUei().charAt(0) == '~') {
-                if (uei.matches(notif.getUei().substring(1))) {
-                    return true;
-                }
+        // Only looks at the UEIs, the filter rules are not evaluated until they are used to match an event
+        return getIndex().hasUei(uei);
+    }
 
+    /**
+     * Returns the index of the current notification configuration, building it if necessary.
+     */
+    protected NotificationIndex getIndex() {
+        NotificationIndex index = m_index;
+        if (index == null) {
+            synchronized (this) {
+                index = m_index;
+                if (index == null) {
+                    index = new NotificationIndex(m_notifications.getNotifications(), FilterDaoFactory.getInstance(), m_filterRefreshExecutor);
+                    m_index = index;
+                }
             }
         }
+        return index;
+    }
+
+    /**
+     * Re-evaluates the filter rules of the notifications for the given node.
+     * This must be called whenever a node, or one of its interfaces or services is added, changed or removed.
+     *
+     * @param nodeId the id of the node
+     */
+    public void refreshFilterMatches(final int nodeId) {
+        final NotificationIndex index = m_index;
+        if (index != null) {
+            index.refreshNode(nodeId);
+        }
+    }
+
+    /**
+     * Re-evaluates the filter rules of the notifications for all of the nodes.
+     * This must be called when changes that may affect any node were made without any node specific event.
+     */
+    public void refreshAllFilterMatches() {
+        final NotificationIndex index = m_index;
+        if (index != null) {
+            index.refreshAll();
+        }
+    }
 
-        return false;
+    /**
+     * Sets the executor used to refresh the filter matches, so that the refreshes do not
+     * block the caller. Events affected by a pending refresh are matched against the database.
+     *
+     * @param executor the executor
+     */
+    public void setFilterRefreshExecutor(final Executor executor) {
+        m_filterRefreshExecutor = executor != null ? executor : Runnable::run;
+        m_index = null;
     }
 
     /**
@@ -253,27 +308,11 @@ public abstract class NotificationManager {
             return null;
         }
 
-        for (Notification curNotif : m_notifications.getNotifications()) {
-
-            LOG.trace("Checking notification {} against event {} with UEI {}", curNotif.getUei(), event.getDbid(), event.getUei());
+        // Only the notifications with a matching UEI are returned by the index, in the order in which they are configured
+        for (NotificationIndex.Entry entry : getIndex().getCandidates(event.getUei())) {
+            final Notification curNotif = entry.getNotification();
 
-            if (event.getUei().equals(curNotif.getUei()) || "MATCH-ANY-UEI".equals(curNotif.getUei())) {
-                // Match!
-            	LOG.debug("Exact match using notification UEI {} for event UEI: {}", curNotif.getUei(), event.getUei());
-            } else if (curNotif.getUei().charAt(0) == '~') {
-                if (event.getUei().matches(curNotif.getUei().substring(1))) {
-                	//Match!
-                    LOG.debug("Regex hit using notification UEI {} for event UEI: {}", curNotif.getUei(), event.getUei());
-                } else {
-
-                    LOG.trace("Notification regex {} failed to match event UEI: {}", event.getUei(), curNotif.getUei());
-                    continue;
-                }
-            } else {
-
-                LOG.debug("Notification UEI {} did not match UEI of event {}: {}", curNotif.getUei(), event.getDbid(), event.getUei());
-                continue;
-            }
+            LOG.debug("Notification UEI {} matches event {} with UEI {}", curNotif.getUei(), event.getDbid(), event.getUei());
 
             /**
              * Check if event severity matches pattern in notification
@@ -281,11 +320,7 @@ public abstract class NotificationManager {
 
             LOG.trace("Checking event severity: {} against notification severity: {}", curNotif.getEventSeverity().orElse(null), event.getSeverity());
             // parameter is optional, return true if not set
-            if (!curNotif.getEventSeverity().isPresent()) {
-                // Skip matching on severity
-            } else if (event.getSeverity().toLowerCase().matches(curNotif.getEventSeverity().get().toLowerCase())) {
-                // Severities match
-            } else {
+            if (!entry.matchesSeverity(event.getSeverity())) {
 
                 LOG.debug("Event severity: {} did not match notification severity: {}", curNotif.getEventSeverity().orElse(null), event.getSeverity());
                 continue;
@@ -298,7 +333,7 @@ public abstract class NotificationManager {
             // Then the service has to match if configured, the interface if configured, and the node if configured.
 
             if (curNotif.getStatus().equals("on")) {
-                if (nodeInterfaceServiceValid(curNotif, event)) {
+                if (nodeInterfaceServiceValid(entry, event)) {
                     boolean parmsmatched = getConfigManager().matchNotificationParameters(event, curNotif);
 
                     if (!parmsmatched) {
@@ -352,27 +387,56 @@ public abstract class NotificationManager {
         Assert.notNull(event, "event argument must not be null");
         Assert.notNull(notif.getRule(), "getRule() on notif argument must not return null");
 
-        /*
-         *  If the event doesn't have a nodeId, interface, or service,
-         *  return true since there is nothing on which to filter.
-         */
-        if (event.getNodeid() == 0 && event.getInterface() == null && event.getService() == null) {
-            if ("MATCH-ANY-UEI".equals(notif.getUei())) {
-                // TODO: Trim parentheses from the filter and trim whitespace from inside the
-                // filter statement. This comparison is very brittle as it is.
-                if ("ipaddr != '0.0.0.0'".equals(notif.getRule().getContent().toLowerCase()) || "ipaddr iplike *.*.*.*".equals(notif.getRule().getContent().toLowerCase())) {
-                    return true;
-                } else {
-                    return false;
-                }
-            }
-            // When rule is enforced to be strict and there is no nodeId, interface or service, discard the notice.
-            if(notif.getRule().getStrict() != null && notif.getRule().getStrict()) {
+        if (!hasElement(event)) {
+            return noElementValid(notif);
+        }
+        return isRuleMatchingFilter(notif, getElementRule(notif, event));
+    }
+
+    /**
+     * Same as {@link #nodeInterfaceServiceValid(Notification, Event)}, but uses the preloaded
+     * filter matches of the index when available instead of querying the database.
+     */
+    private boolean nodeInterfaceServiceValid(final NotificationIndex.Entry entry, final Event event) {
+        final Notification notif = entry.getNotification();
+        Assert.notNull(notif.getRule(), "getRule() on notif argument must not return null");
+
+        if (!hasElement(event)) {
+            return noElementValid(notif);
+        }
+        final Boolean matches = entry.matchesElement(event.getNodeid(), event.getInterface(), event.getService());
+        if (matches != null) {
+            return matches;
+        }
+        return isRuleMatchingFilter(notif, getElementRule(notif, event));
+    }
+
+    private static boolean hasElement(final Event event) {
+        return event.getNodeid() != 0 || event.getInterface() != null || event.getService() != null;
+    }
+
+    /**
+     * If the event doesn't have a nodeId, interface, or service,
+     * return true since there is nothing on which to filter.
+     */
+    private static boolean noElementValid(final Notification notif) {
+        if ("MATCH-ANY-UEI".equals(notif.getUei())) {
+            // TODO: Trim parentheses from the filter and trim whitespace from inside the
+            // filter statement. This comparison is very brittle as it is.
+            if ("ipaddr != '0.0.0.0'".equals(notif.getRule().getContent().toLowerCase()) || "ipaddr iplike *.*.*.*".equals(notif.getRule().getContent().toLowerCase())) {
+                return true;
+            } else {
                 return false;
             }
-            return true;
         }
+        // When rule is enforced to be strict and there is no nodeId, interface or service, discard the notice.
+        if(notif.getRule().getStrict() != null && notif.getRule().getStrict()) {
+            return false;
+        }
+        return true;
+    }
 
+    private static String getElementRule(final Notification notif, final Event event) {
         final StringBuilder constraints = new StringBuilder();
         if (event.getNodeid() != 0) {
             constraints.append(" & (nodeId == " + event.getNodeid() + ")");
@@ -386,9 +450,7 @@ public abstract class NotificationManager {
             }
         }
 
-        String rule = "((" + notif.getRule().getContent() + ")" + constraints + ")";
-
-        return isRuleMatchingFilter(notif, rule);
+        return "((" + notif.getRule().getContent() + ")" + constraints + ")";
     }
 
     private boolean isRuleMatchingFilter(final Notification notif, final String rule) {
@@ -1126,6 +1188,7 @@ public abstract class NotificationManager {
         // isn't lost if the XML from the marshal is hosed.
         final String xmlString = JaxbUtils.marshal(m_notifications);
         saveXML(xmlString);
+        m_index = null;
 
         update();
     }
@@ -143,6 +143,26 @@ public interface SyslogdConfig {
      */
     int getBatchIntervalMs();
 
+    /**
+     * Messages are aggregated in batches before being dispatched.
+     *
+     * When adding a message would make the batch exceed this size,
+     * the batch will be dispatched first. Values <= 0 disable the limit.
+     *
+     * @return batch size in bytes
+     */
+    int getBatchSizeBytes();
+
+    /**
+     * Minimum interval for which batches are kept before being dispatched.
+     *
+     * When lower than {@link #getBatchIntervalMs()}, the interval is adapted
+     * to the load, between this value and the batch interval.
+     *
+     * @return interval in ms
+     */
+    int getMinBatchIntervalMs();
+
     /**
      * Optional:
      * - if not null it will be used as default time zone if no time zone is given
@@ -223,6 +223,16 @@ public final class SyslogdConfigFactory implements SyslogdConfig {
         return m_config.getConfiguration().getBatchInterval();
     }
 
+    @Override
+    public int getBatchSizeBytes() {
+        return m_config.getConfiguration().getBatchSizeBytes();
+    }
+
+    @Override
+    public int getMinBatchIntervalMs() {
+        return m_config.getConfiguration().getMinBatchInterval().orElse(getBatchIntervalMs());
+    }
+
     @Override
     public TimeZone getTimeZone() {
         return m_config.getConfiguration().getTimeZone().orElse(null);
@@ -0,0 +1,557 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.filter;
+
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.opennms.core.utils.DBUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory snapshot of the nodes, interfaces, services, categories and assets
+ * that can be referenced by filter rules.
+ *
+ * The snapshot is loaded from the database on first use and is kept up to date by
+ * reloading single nodes with {@link #refreshNode(int)} as they change. It is
+ * reloaded entirely when it is invalidated or once it gets older than the configured
+ * maximum age.
+ *
+ * @see FilterRuleCompiler
+ */
+public class FilterInventory {
+    private static final Logger LOG = LoggerFactory.getLogger(FilterInventory.class);
+
+    /**
+     * The tables of the database schema which are held in memory.
+     */
+    enum Table {
+        NODE("node"),
+        ASSETS("assets"),
+        IPINTERFACE("ipInterface"),
+        SERVICE("service"),
+        CATEGORIES("categories");
+
+        private final String m_name;
+
+        Table(final String name) {
+            m_name = name;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+    }
+
+    /**
+     * A column which can be used by a filter rule evaluated in memory.
+     */
+    static final class Column {
+        private final String m_name;
+        private final Table m_table;
+        private final boolean m_numeric;
+        private final int m_index;
+
+        private Column(final String name, final Table table, final boolean numeric, final int index) {
+            m_name = name;
+            m_table = table;
+            m_numeric = numeric;
+            m_index = index;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public Table getTable() {
+            return m_table;
+        }
+
+        public boolean isNumeric() {
+            return m_numeric;
+        }
+
+        @Override
+        public String toString() {
+            return m_table.getName() + "." + m_name;
+        }
+    }
+
+    private static final String[] NODE_TEXT_COLUMNS = new String[] {
+        "location", "nodetype", "nodesysoid", "nodesysname", "nodesysdescription", "nodesyslocation", "nodesyscontact",
+        "nodelabel", "nodelabelsource", "nodenetbiosname", "nodedomainname", "operatingsystem", "foreignsource", "foreignid"
+    };
+
+    private static final String[] NODE_NUMERIC_COLUMNS = new String[] { "nodeid", "nodeparentid" };
+
+    private static final String[] ASSETS_TEXT_COLUMNS = new String[] {
+        "displaycategory", "notifycategory", "pollercategory", "thresholdcategory", "category", "manufacturer", "vendor",
+        "modelnumber", "serialnumber", "description", "circuitid", "assetnumber", "rack", "slot", "port", "region",
+        "division", "department", "address1", "address2", "city", "state", "zip", "country", "building", "floor", "room",
+        "vendorphone", "vendorfax", "vendorassetnumber", "lease", "leaseexpires", "supportphone", "maintcontract",
+        "maintcontractexpires", "comment", "managedobjectinstance", "managedobjecttype"
+    };
+
+    private static final String[] IPINTERFACE_TEXT_COLUMNS = new String[] { "ipaddr", "iphostname", "ismanaged", "issnmpprimary" };
+
+    private static final String[] IPINTERFACE_NUMERIC_COLUMNS = new String[] { "ipstatus" };
+
+    /**
+     * Columns by lower case name
+     */
+    private static final Map<String, Column> COLUMNS;
+
+    private static final List<Column> NODE_COLUMNS = new ArrayList<>();
+
+    private static final List<Column> INTERFACE_COLUMNS = new ArrayList<>();
+
+    static final Column SERVICE_NAME = new Column("servicename", Table.SERVICE, false, -1);
+
+    static final Column CATEGORY_NAME = new Column("categoryname", Table.CATEGORIES, false, -1);
+
+    private static final Column IP_ADDR;
+
+    private static final Column IS_MANAGED;
+
+    static {
+        final Map<String, Column> columns = new LinkedHashMap<>();
+        for (final String name : NODE_NUMERIC_COLUMNS) {
+            addColumn(columns, NODE_COLUMNS, new Column(name, Table.NODE, true, NODE_COLUMNS.size()));
+        }
+        for (final String name : NODE_TEXT_COLUMNS) {
+            addColumn(columns, NODE_COLUMNS, new Column(name, Table.NODE, false, NODE_COLUMNS.size()));
+        }
+        for (final String name : ASSETS_TEXT_COLUMNS) {
+            addColumn(columns, NODE_COLUMNS, new Column(name, Table.ASSETS, false, NODE_COLUMNS.size()));
+        }
+        for (final String name : IPINTERFACE_TEXT_COLUMNS) {
+            addColumn(columns, INTERFACE_COLUMNS, new Column(name, Table.IPINTERFACE, false, INTERFACE_COLUMNS.size()));
+        }
+        for (final String name : IPINTERFACE_NUMERIC_COLUMNS) {
+            addColumn(columns, INTERFACE_COLUMNS, new Column(name, Table.IPINTERFACE, true, INTERFACE_COLUMNS.size()));
+        }
+        columns.put(SERVICE_NAME.getName(), SERVICE_NAME);
+        columns.put(CATEGORY_NAME.getName(), CATEGORY_NAME);
+        COLUMNS = Collections.unmodifiableMap(columns);
+        IP_ADDR = COLUMNS.get("ipaddr");
+        IS_MANAGED = COLUMNS.get("ismanaged");
+    }
+
+    private static void addColumn(final Map<String, Column> columns, final List<Column> storage, final Column column) {
+        columns.put(column.getName(), column);
+        storage.add(column);
+    }
+
+    /**
+     * @return the column with the given name, or <code>null</code> if the column is not held in memory
+     */
+    static Column getColumn(final String name) {
+        return COLUMNS.get(name.toLowerCase());
+    }
+
+    /**
+     * A node along with its assets and categories.
+     */
+    static final class Node {
+        private final int m_id;
+        private final Object[] m_values = new Object[NODE_COLUMNS.size()];
+        private boolean m_hasAssets = false;
+        private final Set<String> m_categories = new HashSet<>();
+        private final List<Interface> m_interfaces = new ArrayList<>();
+
+        Node(final int id) {
+            m_id = id;
+            m_values[getColumn("nodeid").m_index] = (long)id;
+        }
+
+        public int getId() {
+            return m_id;
+        }
+
+        void set(final String column, final Object value) {
+            final Column c = getColumn(column);
+            if (c.getTable() == Table.ASSETS) {
+                m_hasAssets = true;
+            }
+            m_values[c.m_index] = value;
+        }
+
+        void setHasAssets(final boolean hasAssets) {
+            m_hasAssets = hasAssets;
+        }
+
+        void addCategory(final String category) {
+            m_categories.add(category);
+        }
+
+        Interface addInterface(final String ipAddr) {
+            final Interface iface = new Interface(this, ipAddr);
+            m_interfaces.add(iface);
+            return iface;
+        }
+
+        public boolean hasAssets() {
+            return m_hasAssets;
+        }
+
+        public Set<String> getCategories() {
+            return m_categories;
+        }
+
+        public List<Interface> getInterfaces() {
+            return m_interfaces;
+        }
+    }
+
+    /**
+     * An IP interface along with its services.
+     */
+    static final class Interface {
+        private final Node m_node;
+        private final String m_ipAddr;
+        private final InetAddress m_address;
+        private final Object[] m_values = new Object[INTERFACE_COLUMNS.size()];
+        private final List<String> m_services = new ArrayList<>();
+
+        private Interface(final Node node, final String ipAddr) {
+            m_node = node;
+            m_ipAddr = ipAddr;
+            m_address = ipAddr != null ? addr(ipAddr) : null;
+            m_values[IP_ADDR.m_index] = ipAddr;
+        }
+
+        void set(final String column, final Object value) {
+            m_values[getColumn(column).m_index] = value;
+        }
+
+        void addService(final String service) {
+            if (!m_services.contains(service)) {
+                m_services.add(service);
+            }
+        }
+
+        public Node getNode() {
+            return m_node;
+        }
+
+        public String getIpAddr() {
+            return m_ipAddr;
+        }
+
+        public InetAddress getAddress() {
+            return m_address;
+        }
+
+        public List<String> getServices() {
+            return m_services;
+        }
+
+        public String getIsManaged() {
+            return (String)m_values[IS_MANAGED.m_index];
+        }
+    }
+
+    /**
+     * A row of the join between the tables referenced by a rule.
+     */
+    static final class Row {
+        private Interface m_interface;
+        private String m_service;
+        private String m_category;
+
+        public Interface getInterface() {
+            return m_interface;
+        }
+
+        public Object get(final Column column) {
+            switch (column.getTable()) {
+                case NODE:
+                case ASSETS:
+                    return m_interface.m_node.m_values[column.m_index];
+                case IPINTERFACE:
+                    return m_interface.m_values[column.m_index];
+                case SERVICE:
+                    return m_service;
+                case CATEGORIES:
+                    return m_category;
+                default:
+                    throw new IllegalArgumentException("Unsupported column: " + column);
+            }
+        }
+    }
+
+    /**
+     * A filter rule compiled by the {@link FilterRuleCompiler}.
+     */
+    interface Condition {
+        /**
+         * Evaluates the condition using SQL's three-valued logic.
+         *
+         * @return the result of the condition, or <code>null</code> if it is unknown
+         */
+        Boolean test(Row row);
+    }
+
+    private final DataSource m_dataSource;
+
+    /**
+     * Nodes by id. A new map is built when the inventory is reloaded, so that readers never see a partial inventory.
+     */
+    private volatile NavigableMap<Integer, Node> m_nodes = new ConcurrentSkipListMap<>();
+
+    private volatile boolean m_loaded = false;
+
+    private volatile long m_lastLoaded = 0;
+
+    public FilterInventory(final DataSource dataSource) {
+        m_dataSource = dataSource;
+    }
+
+    public boolean isLoaded() {
+        return m_loaded;
+    }
+
+    /**
+     * Loads the inventory if it was never loaded, was invalidated, or is older than the given age.
+     *
+     * @param maxAgeMs maximum age of the inventory in milliseconds, or 0 for no limit
+     */
+    public void ensureLoaded(final long maxAgeMs) throws SQLException {
+        if (m_loaded && (maxAgeMs <= 0 || System.currentTimeMillis() - m_lastLoaded < maxAgeMs)) {
+            return;
+        }
+        synchronized (this) {
+            if (m_loaded && (maxAgeMs <= 0 || System.currentTimeMillis() - m_lastLoaded < maxAgeMs)) {
+                return;
+            }
+            final long start = System.currentTimeMillis();
+            final Map<Integer, Node> nodes = load(null);
+            replaceAll(nodes.values());
+            m_lastLoaded = System.currentTimeMillis();
+            m_loaded = true;
+            LOG.info("Loaded {} nodes into the filter inventory in {}ms.", nodes.size(), m_lastLoaded - start);
+        }
+    }
+
+    /**
+     * Forces the inventory to be reloaded on next use.
+     */
+    public void invalidate() {
+        m_loaded = false;
+    }
+
+    /**
+     * Reloads a single node from the database.
+     */
+    public void refreshNode(final int nodeId) {
+        if (!m_loaded) {
+            // The whole inventory will be reloaded on next use anyways
+            return;
+        }
+        synchronized (this) {
+            try {
+                replace(nodeId, load(nodeId).get(nodeId));
+            } catch (final SQLException e) {
+                LOG.warn("Failed to refresh node {} in the filter inventory. The inventory will be reloaded.", nodeId, e);
+                m_loaded = false;
+            }
+        }
+    }
+
+    synchronized void replaceAll(final Collection<Node> nodes) {
+        final NavigableMap<Integer, Node> nodesById = new ConcurrentSkipListMap<>();
+        for (final Node node : nodes) {
+            nodesById.put(node.getId(), node);
+        }
+        m_nodes = nodesById;
+    }
+
+    private synchronized void replace(final int nodeId, final Node node) {
+        if (node != null) {
+            m_nodes.put(nodeId, node);
+        } else {
+            m_nodes.remove(nodeId);
+        }
+    }
+
+    /**
+     * Evaluates a compiled rule against the inventory.
+     *
+     * @param rule the compiled rule
+     * @param filterDeleted whether interfaces which are marked as deleted should be skipped,
+     *          unless the rule references their managed state
+     * @param ipAddr only consider interfaces with the given address, may be <code>null</code>
+     * @param limit maximum number of addresses to return, or 0 for no limit
+     * @return the distinct addresses of the matching interfaces, ordered by node id
+     */
+    List<InetAddress> getIPAddressList(final FilterRuleCompiler.CompiledRule rule, final boolean filterDeleted, final String ipAddr, final int limit) {
+        final Map<String, InetAddress> matches = new LinkedHashMap<>();
+        final Row row = new Row();
+        final List<String> noValue = Collections.singletonList(null);
+
+        for (final Node node : m_nodes.values()) {
+            if (rule.requiresAssets() && !node.hasAssets()) {
+                continue;
+            }
+            final Collection<String> categories = rule.expandsCategories() && !node.getCategories().isEmpty() ? node.getCategories() : noValue;
+
+            for (final Interface iface : node.getInterfaces()) {
+                if (ipAddr != null && !ipAddr.equals(iface.getIpAddr())) {
+                    continue;
+                }
+                if (filterDeleted && !rule.referencesIsManaged() && "D".equals(iface.getIsManaged())) {
+                    continue;
+                }
+                if (matches.containsKey(iface.getIpAddr())) {
+                    continue;
+                }
+                final Collection<String> services = rule.expandsServices() ? iface.getServices() : noValue;
+
+                row.m_interface = iface;
+                ROWS: for (final String service : services) {
+                    row.m_service = service;
+                    for (final String category : categories) {
+                        row.m_category = category;
+                        if (Boolean.TRUE.equals(rule.getCondition().test(row))) {
+                            matches.put(iface.getIpAddr(), iface.getAddress());
+                            break ROWS;
+                        }
+                    }
+                }
+                if (limit > 0 && matches.size() >= limit) {
+                    return new ArrayList<>(matches.values());
+                }
+            }
+        }
+        return new ArrayList<>(matches.values());
+    }
+
+    /**
+     * Loads all nodes, or a single node, from the database.
+     */
+    private Map<Integer, Node> load(final Integer nodeId) throws SQLException {
+        final Map<Integer, Node> nodes = new HashMap<>();
+        final Map<Integer, Interface> interfacesById = new HashMap<>();
+
+        final DBUtils d = new DBUtils(getClass());
+        try {
+            final Connection conn = m_dataSource.getConnection();
+            d.watch(conn);
+
+            final String nodeColumns = NODE_COLUMNS.stream().map(c -> (c.getTable() == Table.ASSETS ? "assets." : "node.") + c.getName()).collect(Collectors.joining(", "));
+            ResultSet rs = query(d, conn, "SELECT " + nodeColumns + ", assets.nodeid AS assetsnodeid FROM node LEFT JOIN assets ON (node.nodeid = assets.nodeid)"
+                    + (nodeId != null ? " WHERE node.nodeid = ?" : ""), nodeId);
+            while (rs.next()) {
+                final Node node = new Node(rs.getInt("nodeid"));
+                for (final Column column : NODE_COLUMNS) {
+                    node.m_values[column.m_index] = getValue(rs, column);
+                }
+                rs.getInt("assetsnodeid");
+                node.setHasAssets(!rs.wasNull());
+                nodes.put(node.getId(), node);
+            }
+
+            rs = query(d, conn, "SELECT category_node.nodeid, categories.categoryname FROM category_node JOIN categories ON (categories.categoryid = category_node.categoryid)"
+                    + (nodeId != null ? " WHERE category_node.nodeid = ?" : ""), nodeId);
+            while (rs.next()) {
+                final Node node = nodes.get(rs.getInt(1));
+                if (node != null) {
+                    node.addCategory(rs.getString(2));
+                }
+            }
+
+            final String interfaceColumns = INTERFACE_COLUMNS.stream().map(c -> "ipinterface." + c.getName()).collect(Collectors.joining(", "));
+            rs = query(d, conn, "SELECT ipinterface.id AS ipinterfaceid, ipinterface.nodeid, " + interfaceColumns + " FROM ipinterface"
+                    + (nodeId != null ? " WHERE ipinterface.nodeid = ?" : "") + " ORDER BY ipinterface.id", nodeId);
+            while (rs.next()) {
+                final Node node = nodes.get(rs.getInt("nodeid"));
+                if (node == null) {
+                    continue;
+                }
+                final Interface iface = node.addInterface(rs.getString("ipaddr"));
+                for (final Column column : INTERFACE_COLUMNS) {
+                    iface.m_values[column.m_index] = getValue(rs, column);
+                }
+                interfacesById.put(rs.getInt("ipinterfaceid"), iface);
+            }
+
+            rs = query(d, conn, "SELECT ifservices.ipinterfaceid, service.servicename FROM ifservices JOIN service ON (service.serviceid = ifservices.serviceid)"
+                    + (nodeId != null ? " JOIN ipinterface ON (ipinterface.id = ifservices.ipinterfaceid) WHERE ipinterface.nodeid = ?" : ""), nodeId);
+            while (rs.next()) {
+                final Interface iface = interfacesById.get(rs.getInt(1));
+                if (iface != null) {
+                    iface.addService(rs.getString(2));
+                }
+            }
+        } finally {
+            d.cleanUp();
+        }
+        return nodes;
+    }
+
+    private static ResultSet query(final DBUtils d, final Connection conn, final String sql, final Integer nodeId) throws SQLException {
+        final PreparedStatement stmt = conn.prepareStatement(sql);
+        d.watch(stmt);
+        if (nodeId != null) {
+            stmt.setInt(1, nodeId);
+        }
+        final ResultSet rs = stmt.executeQuery();
+        d.watch(rs);
+        return rs;
+    }
+
+    private static Object getValue(final ResultSet rs, final Column column) throws SQLException {
+        if (column.isNumeric()) {
+            final long value = rs.getLong(column.getName());
+            return rs.wasNull() ? null : value;
+        }
+        return rs.getString(column.getName());
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.events.api.model.IParm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the {@link FilterInventory} up to date as nodes, interfaces, services,
+ * categories and assets change.
+ */
+public class FilterInventoryEventListener implements EventListener {
+    private static final Logger LOG = LoggerFactory.getLogger(FilterInventoryEventListener.class);
+
+    // Sent when the managed state of an interface or a service changes, but not defined in EventConstants
+    public static final String SERVICE_MANAGED_EVENT_UEI = "uei.opennms.org/internal/serviceManaged";
+    public static final String INTERFACE_MANAGED_EVENT_UEI = "uei.opennms.org/internal/interfaceManaged";
+    public static final String INTERFACE_UNMANAGED_EVENT_UEI = "uei.opennms.org/internal/interfaceUnmanaged";
+
+    /**
+     * Events which change a single node
+     */
+    public static final List<String> NODE_CHANGED_UEIS = Arrays.asList(
+            EventConstants.NODE_ADDED_EVENT_UEI,
+            EventConstants.NODE_DELETED_EVENT_UEI,
+            EventConstants.NODE_UPDATED_EVENT_UEI,
+            EventConstants.NODE_LOCATION_CHANGED_EVENT_UEI,
+            EventConstants.NODE_CATEGORY_MEMBERSHIP_CHANGED_EVENT_UEI,
+            EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+            EventConstants.NODE_GAINED_SERVICE_EVENT_UEI,
+            EventConstants.SERVICE_DELETED_EVENT_UEI,
+            EventConstants.INTERFACE_DELETED_EVENT_UEI,
+            EventConstants.NODE_INFO_CHANGED_EVENT_UEI,
+            EventConstants.NODE_LABEL_CHANGED_EVENT_UEI,
+            EventConstants.ASSET_INFO_CHANGED_EVENT_UEI,
+            EventConstants.PROVISION_SCAN_COMPLETE_UEI,
+            EventConstants.SERVICE_UNMANAGED_EVENT_UEI,
+            EventConstants.SUSPEND_POLLING_SERVICE_EVENT_UEI,
+            EventConstants.RESUME_POLLING_SERVICE_EVENT_UEI,
+            SERVICE_MANAGED_EVENT_UEI,
+            INTERFACE_MANAGED_EVENT_UEI,
+            INTERFACE_UNMANAGED_EVENT_UEI);
+
+    /**
+     * Sent once the managed state of interfaces and services was changed in bulk
+     */
+    public static final String RESTART_SCM_EVENT_UEI = "uei.opennms.org/internal/restartSCM";
+
+    private final FilterInventory m_inventory;
+
+    public FilterInventoryEventListener(final FilterInventory inventory) {
+        m_inventory = inventory;
+    }
+
+    /**
+     * @return all of the UEIs this listener is interested in
+     */
+    public static List<String> getUeis() {
+        final List<String> ueis = new ArrayList<>(NODE_CHANGED_UEIS);
+        ueis.add(EventConstants.INTERFACE_REPARENTED_EVENT_UEI);
+        ueis.add(RESTART_SCM_EVENT_UEI);
+        return ueis;
+    }
+
+    @Override
+    public String getName() {
+        return "FilterInventory";
+    }
+
+    @Override
+    public void onEvent(final IEvent event) {
+        if (EventConstants.INTERFACE_REPARENTED_EVENT_UEI.equals(event.getUei())) {
+            refreshNode(event.getParm(EventConstants.PARM_OLD_NODEID));
+            refreshNode(event.getParm(EventConstants.PARM_NEW_NODEID));
+        } else if (RESTART_SCM_EVENT_UEI.equals(event.getUei())) {
+            LOG.debug("Reloading the filter inventory after {}", event.getUei());
+            m_inventory.invalidate();
+        } else if (event.getNodeid() != null && event.getNodeid() > 0) {
+            LOG.debug("Refreshing node {} in the filter inventory after {}", event.getNodeid(), event.getUei());
+            m_inventory.refreshNode(event.getNodeid().intValue());
+        }
+    }
+
+    private void refreshNode(final IParm nodeIdParm) {
+        if (nodeIdParm == null || nodeIdParm.getValue() == null) {
+            return;
+        }
+        try {
+            m_inventory.refreshNode(Integer.parseInt(nodeIdParm.getValue().getContent()));
+        } catch (final NumberFormatException e) {
+            LOG.warn("Invalid node id {} in event. Reloading the filter inventory.", nodeIdParm.getValue().getContent());
+            m_inventory.invalidate();
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import org.opennms.core.utils.IPLike;
+import org.opennms.netmgt.config.api.DatabaseSchemaConfig;
+import org.opennms.netmgt.config.filter.Table;
+import org.opennms.netmgt.filter.FilterInventory.Column;
+import org.opennms.netmgt.filter.FilterInventory.Condition;
+
+/**
+ * Compiles filter rules into conditions which can be evaluated against the {@link FilterInventory}.
+ *
+ * The compiler understands the same syntax as {@link JdbcFilterDao}, including the filter specific
+ * operators and the <code>is</code> and <code>catinc</code> prefixes, and evaluates
+ * the conditions using SQL's three-valued logic. Rules which use columns that are not held in memory,
+ * or constructs whose meaning depends on the database, are rejected with an
+ * {@link UnsupportedRuleException} and must be evaluated by the database instead.
+ */
+public class FilterRuleCompiler {
+
+    private static final Pattern IPLIKE_RHS_PATTERN = Pattern.compile("^[0-9A-Fa-f.:*,-]+$");
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^-?[0-9]+$");
+
+    /**
+     * Thrown when a rule cannot be evaluated in memory.
+     */
+    public static class UnsupportedRuleException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedRuleException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A rule along with the tables that need to be joined to evaluate it.
+     */
+    public static class CompiledRule {
+        private final Condition m_condition;
+        private final boolean m_expandsServices;
+        private final boolean m_expandsCategories;
+        private final boolean m_requiresAssets;
+        private final boolean m_referencesIsManaged;
+
+        private CompiledRule(final Condition condition, final boolean expandsServices, final boolean expandsCategories, final boolean requiresAssets, final boolean referencesIsManaged) {
+            m_condition = condition;
+            m_expandsServices = expandsServices;
+            m_expandsCategories = expandsCategories;
+            m_requiresAssets = requiresAssets;
+            m_referencesIsManaged = referencesIsManaged;
+        }
+
+        Condition getCondition() {
+            return m_condition;
+        }
+
+        /**
+         * @return true if the rule references the service table, in which case there is one row per service
+         * and interfaces without services never match
+         */
+        public boolean expandsServices() {
+            return m_expandsServices;
+        }
+
+        /**
+         * @return true if the rule references the categories table, in which case there is one row per category
+         */
+        public boolean expandsCategories() {
+            return m_expandsCategories;
+        }
+
+        /**
+         * @return true if the rule references the assets table, in which case nodes without assets never match
+         */
+        public boolean requiresAssets() {
+            return m_requiresAssets;
+        }
+
+        /**
+         * @return true if the rule references the managed state of the interfaces
+         */
+        public boolean referencesIsManaged() {
+            return m_referencesIsManaged;
+        }
+    }
+
+    private enum TokenType { STRING, WORD, SYMBOL, END }
+
+    private static final class Token {
+        private final TokenType m_type;
+        private final String m_value;
+        private final int m_start;
+        private final int m_end;
+
+        private Token(final TokenType type, final String value, final int start, final int end) {
+            m_type = type;
+            m_value = value;
+            m_start = start;
+            m_end = end;
+        }
+
+        private boolean isSymbol(final String... symbols) {
+            if (m_type != TokenType.SYMBOL) {
+                return false;
+            }
+            for (final String symbol : symbols) {
+                if (symbol.equals(m_value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isKeyword(final String keyword) {
+            return m_type == TokenType.WORD && keyword.equalsIgnoreCase(m_value);
+        }
+
+        @Override
+        public String toString() {
+            return m_type == TokenType.END ? "end of rule" : "'" + m_value + "'";
+        }
+    }
+
+    private final DatabaseSchemaConfig m_databaseSchemaConfig;
+
+    public FilterRuleCompiler(final DatabaseSchemaConfig databaseSchemaConfig) {
+        m_databaseSchemaConfig = Objects.requireNonNull(databaseSchemaConfig);
+    }
+
+    /**
+     * Compiles the given rule.
+     *
+     * @param rule the filter rule
+     * @param referencesIsManaged whether the SQL statement generated for the rule references the managed state of the interfaces
+     * @return the compiled rule
+     * @throws UnsupportedRuleException if the rule cannot be evaluated in memory
+     */
+    public CompiledRule compile(final String rule, final boolean referencesIsManaged) throws UnsupportedRuleException {
+        final Parser parser = new Parser(tokenize(rule));
+        final Condition condition;
+        if (parser.peek().m_type == TokenType.END) {
+            condition = row -> Boolean.TRUE;
+        } else {
+            condition = parser.parseOr();
+            parser.expectEnd();
+        }
+        return new CompiledRule(condition, parser.m_expandsServices, parser.m_expandsCategories, parser.m_requiresAssets, referencesIsManaged);
+    }
+
+    private static List<Token> tokenize(final String rule) throws UnsupportedRuleException {
+        final List<Token> tokens = new ArrayList<>();
+        final int length = rule == null ? 0 : rule.length();
+        int i = 0;
+        while (i < length) {
+            final char c = rule.charAt(i);
+            final int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"') {
+                // Pairs of quotes within a quoted string are an escaped quote
+                final StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new UnsupportedRuleException("Unmatched " + c);
+                    }
+                    final char q = rule.charAt(i);
+                    if (q == c) {
+                        if (i + 1 < length && rule.charAt(i + 1) == c) {
+                            value.append(c);
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    value.append(q);
+                    i++;
+                }
+                tokens.add(new Token(TokenType.STRING, value.toString(), start, i));
+            } else if (isWordChar(c)) {
+                while (i < length && isWordChar(rule.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.WORD, rule.substring(start, i), start, i));
+            } else {
+                final String two = i + 1 < length ? rule.substring(i, i + 2) : null;
+                final String symbol;
+                if ("&&".equals(two) || "||".equals(two) || "==".equals(two) || "!=".equals(two) || "<>".equals(two) || "<=".equals(two) || ">=".equals(two)) {
+                    symbol = two;
+                } else if ("&|!=<>(),".indexOf(c) >= 0) {
+                    symbol = String.valueOf(c);
+                } else {
+                    throw new UnsupportedRuleException("Unsupported character '" + c + "'");
+                }
+                i += symbol.length();
+                tokens.add(new Token(TokenType.SYMBOL, symbol, start, i));
+            }
+        }
+        tokens.add(new Token(TokenType.END, "", length, length));
+        return tokens;
+    }
+
+    private static boolean isWordChar(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':' || c == '*';
+    }
+
+    private class Parser {
+        private final List<Token> m_tokens;
+        private int m_position = 0;
+        private boolean m_expandsServices = false;
+        private boolean m_expandsCategories = false;
+        private boolean m_requiresAssets = false;
+
+        private Parser(final List<Token> tokens) {
+            m_tokens = tokens;
+        }
+
+        private Token peek() {
+            return m_tokens.get(m_position);
+        }
+
+        private Token next() {
+            final Token token = m_tokens.get(m_position);
+            if (token.m_type != TokenType.END) {
+                m_position++;
+            }
+            return token;
+        }
+
+        private void expectSymbol(final String symbol) throws UnsupportedRuleException {
+            final Token token = next();
+            if (!token.isSymbol(symbol)) {
+                throw new UnsupportedRuleException("Expected '" + symbol + "' but found " + token);
+            }
+        }
+
+        private void expectEnd() throws UnsupportedRuleException {
+            if (peek().m_type != TokenType.END) {
+                throw new UnsupportedRuleException("Unexpected " + peek());
+            }
+        }
+
+        private Condition parseOr() throws UnsupportedRuleException {
+            Condition condition = parseAnd();
+            while (peek().isSymbol("|", "||") || peek().isKeyword("OR")) {
+                next();
+                condition = or(condition, parseAnd());
+            }
+            return condition;
+        }
+
+        private Condition parseAnd() throws UnsupportedRuleException {
+            Condition condition = parseNot();
+            while (peek().isSymbol("&", "&&") || peek().isKeyword("AND")) {
+                next();
+                condition = and(condition, parseNot());
+            }
+            return condition;
+        }
+
+        private Condition parseNot() throws UnsupportedRuleException {
+            if (peek().isSymbol("!") || peek().isKeyword("NOT")) {
+                next();
+                return not(parseNot());
+            }
+            return parsePrimary();
+        }
+
+        private Condition parsePrimary() throws UnsupportedRuleException {
+            final Token token = next();
+            if (token.isSymbol("(")) {
+                final Condition condition = parseOr();
+                expectSymbol(")");
+                return condition;
+            }
+            if (token.m_type != TokenType.WORD) {
+                throw new UnsupportedRuleException("Unexpected " + token);
+            }
+            if (token.isKeyword("IPLIKE") && peek().isSymbol("(")) {
+                next();
+                final Column column = resolveColumn(next());
+                expectSymbol(",");
+                final Token pattern = next();
+                if (pattern.m_type != TokenType.STRING) {
+                    throw new UnsupportedRuleException("Expected an IPLIKE expression but found " + pattern);
+                }
+                expectSymbol(")");
+                return ipLike(column, pattern.m_value);
+            }
+
+            // Prefixed values
+            final String word = token.m_value;
+            if (word.startsWith("is")) {
+                m_expandsServices = true;
+                return equalTo(FilterInventory.SERVICE_NAME, word.substring(2));
+            } else if (word.startsWith("notis")) {
+                // Relies on a sub-select against the ifServices table, let the database decide
+                throw new UnsupportedRuleException("notis is not supported");
+            } else if (word.startsWith("catinc")) {
+                final String category = word.substring(6);
+                return row -> row.getInterface().getNode().getCategories().contains(category);
+            }
+
+            final Column column = resolveColumn(token);
+            return parseComparison(column);
+        }
+
+        private Condition parseComparison(final Column column) throws UnsupportedRuleException {
+            final Token operator = next();
+            if (operator.isSymbol("=", "==")) {
+                return equalTo(column, parseValue(column));
+            } else if (operator.isSymbol("!=", "<>")) {
+                return not(equalTo(column, parseValue(column)));
+            } else if (operator.isSymbol("<", ">", "<=", ">=")) {
+                if (!column.isNumeric()) {
+                    // String ordering depends on the collation of the database
+                    throw new UnsupportedRuleException("Unsupported comparison of column " + column);
+                }
+                return compare(column, operator.m_value, (Long)parseValue(column));
+            } else if (operator.isKeyword("LIKE")) {
+                return like(column, parseString());
+            } else if (operator.isKeyword("IPLIKE")) {
+                return ipLike(column, parseIpLikePattern());
+            } else if (operator.isKeyword("IN")) {
+                return in(column, parseValues(column));
+            } else if (operator.isKeyword("NOT")) {
+                final Token keyword = next();
+                if (keyword.isKeyword("LIKE")) {
+                    return not(like(column, parseString()));
+                } else if (keyword.isKeyword("IN")) {
+                    return not(in(column, parseValues(column)));
+                }
+                throw new UnsupportedRuleException("Unexpected " + keyword);
+            } else if (operator.isKeyword("IS")) {
+                boolean negate = false;
+                if (peek().isKeyword("NOT")) {
+                    next();
+                    negate = true;
+                }
+                if (!next().isKeyword("NULL")) {
+                    throw new UnsupportedRuleException("Only IS [NOT] NULL is supported");
+                }
+                final boolean notNull = negate;
+                return row -> (row.get(column) != null) == notNull;
+            }
+            throw new UnsupportedRuleException("Unsupported operator " + operator);
+        }
+
+        private Object parseValue(final Column column) throws UnsupportedRuleException {
+            final Token token = next();
+            final String value;
+            if (token.m_type == TokenType.STRING) {
+                value = token.m_value;
+            } else if (token.m_type == TokenType.WORD && NUMBER_PATTERN.matcher(token.m_value).matches()) {
+                if (!column.isNumeric()) {
+                    // The database would refuse to compare text to a number
+                    throw new UnsupportedRuleException("Cannot compare column " + column + " to a number");
+                }
+                value = token.m_value;
+            } else {
+                throw new UnsupportedRuleException("Expected a value but found " + token);
+            }
+            if (column.isNumeric()) {
+                try {
+                    return Long.parseLong(value.trim());
+                } catch (final NumberFormatException e) {
+                    throw new UnsupportedRuleException("Invalid number for column " + column + ": " + value);
+                }
+            }
+            return value;
+        }
+
+        private List<Object> parseValues(final Column column) throws UnsupportedRuleException {
+            final List<Object> values = new ArrayList<>();
+            expectSymbol("(");
+            values.add(parseValue(column));
+            while (peek().isSymbol(",")) {
+                next();
+                values.add(parseValue(column));
+            }
+            expectSymbol(")");
+            return values;
+        }
+
+        private String parseString() throws UnsupportedRuleException {
+            final Token token = next();
+            if (token.m_type != TokenType.STRING) {
+                throw new UnsupportedRuleException("Expected a quoted string but found " + token);
+            }
+            return token.m_value;
+        }
+
+        /**
+         * Unquoted IPLIKE expressions may contain commas, so we join adjacent tokens.
+         */
+        private String parseIpLikePattern() throws UnsupportedRuleException {
+            Token token = next();
+            if (token.m_type == TokenType.STRING) {
+                return token.m_value;
+            }
+            final StringBuilder pattern = new StringBuilder();
+            while (true) {
+                if (token.m_type != TokenType.WORD && !token.isSymbol(",")) {
+                    throw new UnsupportedRuleException("Expected an IPLIKE expression but found " + token);
+                }
+                pattern.append(token.m_value);
+                final Token following = peek();
+                if (following.m_start != token.m_end || !(following.m_type == TokenType.WORD || following.isSymbol(","))) {
+                    break;
+                }
+                token = next();
+            }
+            if (!IPLIKE_RHS_PATTERN.matcher(pattern).matches()) {
+                throw new UnsupportedRuleException("Invalid IPLIKE expression: " + pattern);
+            }
+            return pattern.toString();
+        }
+
+        private Column resolveColumn(final Token token) throws UnsupportedRuleException {
+            if (token.m_type != TokenType.WORD) {
+                throw new UnsupportedRuleException("Expected a column but found " + token);
+            }
+            final Column column = FilterInventory.getColumn(token.m_value);
+            if (column == null) {
+                throw new UnsupportedRuleException("Column " + token.m_value + " is not held in memory");
+            }
+            // The database schema configuration decides which table the column belongs to
+            final Table table = m_databaseSchemaConfig.findTableByVisibleColumn(token.m_value);
+            if (table == null || !column.getTable().getName().equalsIgnoreCase(table.getName())) {
+                throw new UnsupportedRuleException("Column " + token.m_value + " does not belong to table " + column.getTable().getName());
+            }
+            switch (column.getTable()) {
+                case SERVICE:
+                    m_expandsServices = true;
+                    break;
+                case CATEGORIES:
+                    m_expandsCategories = true;
+                    break;
+                case ASSETS:
+                    m_requiresAssets = true;
+                    break;
+                default:
+                    break;
+            }
+            return column;
+        }
+    }
+
+    private static Condition and(final Condition left, final Condition right) {
+        return row -> {
+            final Boolean l = left.test(row);
+            if (Boolean.FALSE.equals(l)) {
+                return Boolean.FALSE;
+            }
+            final Boolean r = right.test(row);
+            if (Boolean.FALSE.equals(r)) {
+                return Boolean.FALSE;
+            }
+            return l == null || r == null ? null : Boolean.TRUE;
+        };
+    }
+
+    private static Condition or(final Condition left, final Condition right) {
+        return row -> {
+            final Boolean l = left.test(row);
+            if (Boolean.TRUE.equals(l)) {
+                return Boolean.TRUE;
+            }
+            final Boolean r = right.test(row);
+            if (Boolean.TRUE.equals(r)) {
+                return Boolean.TRUE;
+            }
+            return l == null || r == null ? null : Boolean.FALSE;
+        };
+    }
+
+    private static Condition not(final Condition condition) {
+        return row -> {
+            final Boolean value = condition.test(row);
+            return value == null ? null : !value;
+        };
+    }
+
+    private static Condition equalTo(final Column column, final Object expected) {
+        return row -> {
+            final Object value = row.get(column);
+            return value == null ? null : value.equals(expected);
+        };
+    }
+
+    private static Condition in(final Column column, final List<Object> expected) {
+        return row -> {
+            final Object value = row.get(column);
+            return value == null ? null : expected.contains(value);
+        };
+    }
+
+    private static Condition compare(final Column column, final String operator, final long expected) {
+        return row -> {
+            final Long value = (Long)row.get(column);
+            if (value == null) {
+                return null;
+            }
+            switch (operator) {
+                case "<":
+                    return value < expected;
+                case ">":
+                    return value > expected;
+                case "<=":
+                    return value <= expected;
+                default:
+                    return value >= expected;
+            }
+        };
+    }
+
+    private static Condition like(final Column column, final String pattern) throws UnsupportedRuleException {
+        if (column.isNumeric()) {
+            throw new UnsupportedRuleException("Cannot use LIKE on column " + column);
+        }
+        final Pattern regex = Pattern.compile(likeToRegex(pattern), Pattern.DOTALL);
+        return row -> {
+            final Object value = row.get(column);
+            return value == null ? null : regex.matcher((String)value).matches();
+        };
+    }
+
+    private static Condition ipLike(final Column column, final String pattern) throws UnsupportedRuleException {
+        if (column.isNumeric()) {
+            throw new UnsupportedRuleException("Cannot use IPLIKE on column " + column);
+        }
+        return row -> {
+            final Object value = row.get(column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return IPLike.matches((String)value, pattern);
+            } catch (final RuntimeException e) {
+                return Boolean.FALSE;
+            }
+        };
+    }
+
+    /**
+     * Converts a SQL LIKE pattern, using the default backslash escape character, to a regular expression.
+     */
+    static String likeToRegex(final String pattern) {
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                literal.append(pattern.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+}
@@ -41,10 +41,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +58,8 @@ import org.opennms.core.utils.DBUtils;
 import org.opennms.core.utils.InetAddressComparator;
 import org.opennms.netmgt.config.api.DatabaseSchemaConfig;
 import org.opennms.netmgt.config.filter.Table;
+import org.opennms.netmgt.events.api.EventIpcManagerFactory;
+import org.opennms.netmgt.events.api.EventSubscriptionService;
 import org.opennms.netmgt.filter.api.FilterDao;
 import org.opennms.netmgt.filter.api.FilterParseException;
 import org.slf4j.Logger;
@@ -67,6 +72,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
 import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 
@@ -86,16 +92,38 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
 	private static final Pattern SQL_IPLIKE_PATTERN = Pattern.compile("(\\w+)\\s+IPLIKE\\s+([0-9a-f.:*,-]+|###@\\d+@###)", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
 	private static final String SQL_IPLIKE6_RHS_REGEX = "^[0-9A-Fa-f:*,-]+$";
 
+	/**
+	 * Enables evaluating rules against an in-memory snapshot of the inventory
+	 */
+	public static final String INVENTORY_ENABLED_PROPERTY = "org.opennms.netmgt.filter.inventory.enabled";
+	/**
+	 * Maximum age of the in-memory snapshot in milliseconds before it is reloaded entirely
+	 */
+	public static final String INVENTORY_MAX_AGE_PROPERTY = "org.opennms.netmgt.filter.inventory.maxAge";
+	private static final long DEFAULT_INVENTORY_MAX_AGE = TimeUnit.MINUTES.toMillis(15);
+	private static final int MAX_COMPILED_RULES = 10000;
+
 	private DataSource m_dataSource;
     private DatabaseSchemaConfig m_databaseSchemaConfigFactory;
+    private EventSubscriptionService m_eventSubscriptionService;
+
+    private boolean m_inventoryEnabled = Boolean.getBoolean(INVENTORY_ENABLED_PROPERTY);
+    private long m_inventoryMaxAge = Long.getLong(INVENTORY_MAX_AGE_PROPERTY, DEFAULT_INVENTORY_MAX_AGE);
+    private volatile FilterInventory m_inventory;
+    private FilterInventoryEventListener m_inventoryEventListener;
+    private final Map<String, Optional<FilterRuleCompiler.CompiledRule>> m_compiledRules = new ConcurrentHashMap<>();
 
     private final static MetricRegistry metricRegistry = new MetricRegistry();
 
     private JmxReporter jmxReporter;
     private final Timer getIpListTimer;
+    private final Meter inventoryEvaluations;
+    private final Meter databaseEvaluations;
 
     public JdbcFilterDao() {
         getIpListTimer = metricRegistry.timer("getIPAddressListForFilter");
+        inventoryEvaluations = metricRegistry.meter("inventoryEvaluations");
+        databaseEvaluations = metricRegistry.meter("databaseEvaluations");
     }
 
     /**
@@ -134,6 +162,43 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
         return m_databaseSchemaConfigFactory;
     }
 
+    /**
+     * Sets the service used to keep the in-memory inventory up to date.
+     * Defaults to the event manager provided by the {@link EventIpcManagerFactory}.
+     *
+     * @param eventSubscriptionService a {@link org.opennms.netmgt.events.api.EventSubscriptionService} object.
+     */
+    public void setEventSubscriptionService(final EventSubscriptionService eventSubscriptionService) {
+        m_eventSubscriptionService = eventSubscriptionService;
+    }
+
+    /**
+     * <p>setInventoryEnabled</p>
+     *
+     * @param inventoryEnabled whether rules should be evaluated against an in-memory snapshot of the inventory when possible
+     */
+    public void setInventoryEnabled(final boolean inventoryEnabled) {
+        m_inventoryEnabled = inventoryEnabled;
+    }
+
+    /**
+     * <p>isInventoryEnabled</p>
+     *
+     * @return a boolean.
+     */
+    public boolean isInventoryEnabled() {
+        return m_inventoryEnabled;
+    }
+
+    /**
+     * <p>setInventoryMaxAge</p>
+     *
+     * @param inventoryMaxAge maximum age of the in-memory inventory in milliseconds, or 0 for no limit
+     */
+    public void setInventoryMaxAge(final long inventoryMaxAge) {
+        m_inventoryMaxAge = inventoryMaxAge;
+    }
+
     /**
      * <p>afterPropertiesSet</p>
      */
@@ -148,6 +213,10 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
     @PreDestroy
     @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void destroy() throws Exception {
+        if (m_inventoryEventListener != null && m_eventSubscriptionService != null) {
+            m_eventSubscriptionService.removeEventListener(m_inventoryEventListener);
+            m_inventoryEventListener = null;
+        }
         if (jmxReporter != null) {
             jmxReporter.stop();
             jmxReporter = null;
@@ -269,9 +338,85 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
         return ipServices;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Map<Integer, Map<InetAddress, Set<String>>> getNodeIPAddressServiceMap(final String rule) throws FilterParseException {
+        final Map<Integer, Map<InetAddress, Set<String>>> nodeIpServices = new TreeMap<>();
+
+        LOG.debug("Filter.getNodeIPAddressServiceMap({})", rule);
+
+        // get the database connection
+        Connection conn = null;
+        final DBUtils d = new DBUtils(getClass());
+        try {
+            conn = getDataSource().getConnection();
+            d.watch(conn);
+
+            // First gather all of the interfaces, including those without services
+            final String interfaceSqlString = getNodeIPAddressMappingStatement(rule);
+            LOG.debug("Filter.getNodeIPAddressServiceMap({}): SQL statement: {}", rule, interfaceSqlString);
+
+            final Statement interfaceStmt = conn.createStatement();
+            d.watch(interfaceStmt);
+            final ResultSet interfaceRset = interfaceStmt.executeQuery(interfaceSqlString);
+            d.watch(interfaceRset);
+
+            if (interfaceRset != null) {
+                while (interfaceRset.next()) {
+                    final InetAddress ipaddr = addr(interfaceRset.getString(2));
+                    if (ipaddr != null) {
+                        nodeIpServices.computeIfAbsent(interfaceRset.getInt(1), nodeId -> new TreeMap<>(new InetAddressComparator()))
+                            .computeIfAbsent(ipaddr, ip -> new TreeSet<>());
+                    }
+                }
+            }
+
+            // Now add the services
+            final String serviceSqlString = getInterfaceWithServiceStatement(rule);
+            LOG.debug("Filter.getNodeIPAddressServiceMap({}): SQL statement: {}", rule, serviceSqlString);
+
+            final Statement serviceStmt = conn.createStatement();
+            d.watch(serviceStmt);
+            final ResultSet serviceRset = serviceStmt.executeQuery(serviceSqlString);
+            d.watch(serviceRset);
+
+            if (serviceRset != null) {
+                while (serviceRset.next()) {
+                    final InetAddress ipaddr = addr(serviceRset.getString(1));
+                    if (ipaddr != null) {
+                        nodeIpServices.computeIfAbsent(serviceRset.getInt(3), nodeId -> new TreeMap<>(new InetAddressComparator()))
+                            .computeIfAbsent(ipaddr, ip -> new TreeSet<>())
+                            .add(serviceRset.getString(2));
+                    }
+                }
+            }
+        } catch (final FilterParseException e) {
+            LOG.warn("Filter Parse Exception occurred getting node IP Service map.", e);
+            throw new FilterParseException("Filter Parse Exception occurred getting node IP Service map: " + e.getLocalizedMessage(), e);
+        } catch (final SQLException e) {
+            LOG.warn("SQL Exception occurred getting node IP Service map.", e);
+            throw new FilterParseException("SQL Exception occurred getting node IP Service map: " + e.getLocalizedMessage(), e);
+        } catch (final RuntimeException e) {
+            LOG.error("Unexpected exception getting database connection.", e);
+            throw e;
+        } catch (final Error e) {
+            LOG.error("Unexpected exception getting database connection.", e);
+            throw e;
+        } finally {
+            d.cleanUp();
+        }
+
+        return nodeIpServices;
+    }
+
     @Override
     @CacheEvict(value="activeIpAddressList", allEntries=true)
-    public void flushActiveIpAddressListCache() {}
+    public void flushActiveIpAddressListCache() {
+        final FilterInventory inventory = m_inventory;
+        if (inventory != null) {
+            inventory.invalidate();
+        }
+    }
 
     /**
      * {@inheritDoc}
@@ -304,12 +449,19 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
     }
 
     private List<InetAddress> getIPAddressList(final String rule, final boolean filterDeleted, final String address) throws FilterParseException {
-    	final List<InetAddress> resultList = new ArrayList<>();
     	final boolean filterByAddress = address != null && address.length() > 0;
-        String sqlString;
 
         LOG.debug("Filter.getIPAddressList({})", rule);
 
+        final List<InetAddress> inventoryList = getIPAddressListFromInventory(rule, filterDeleted, filterByAddress ? address : null, 0);
+        if (inventoryList != null) {
+            LOG.debug("Filter.getIPAddressList({}): resultList from inventory = {}", rule, inventoryList);
+            return inventoryList;
+        }
+
+    	final List<InetAddress> resultList = new ArrayList<>();
+        String sqlString;
+
         // get the database connection
         Connection conn = null;
         final DBUtils d = new DBUtils(getClass());
@@ -390,11 +542,20 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
     /** {@inheritDoc} */
     @Override
     public boolean isRuleMatching(final String rule) throws FilterParseException {
+        LOG.debug("Filter.isRuleMatching({})", rule);
+
+        final List<InetAddress> inventoryList = getIPAddressListFromInventory(rule, false, null, 1);
+        if (inventoryList != null) {
+            LOG.debug("isRuleMatching: rule \"{}\" {} an entry in the inventory", rule, inventoryList.isEmpty() ? "does not match" : "matches");
+            return !inventoryList.isEmpty();
+        }
+        return isRuleMatchingInDatabase(rule);
+    }
+
+    private boolean isRuleMatchingInDatabase(final String rule) throws FilterParseException {
         boolean matches = false;
         String sqlString;
 
-        LOG.debug("Filter.isRuleMatching({})", rule);
-
         final DBUtils d = new DBUtils(getClass());
 
         // get the database connection
@@ -438,7 +599,103 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
     public void validateRule(final String rule) throws FilterParseException {
         // Since parseRule does not do complete syntax checking,
         // we need to call a function that will actually execute the generated SQL
-        isRuleMatching(rule);
+        isRuleMatchingInDatabase(rule);
+    }
+
+    /**
+     * Determines whether the given rule can be evaluated against the in-memory inventory,
+     * without querying the database.
+     *
+     * @param rule a {@link java.lang.String} object.
+     * @return a boolean.
+     */
+    public boolean isEvaluatedInMemory(final String rule) {
+        return m_inventoryEnabled && compile(rule).isPresent();
+    }
+
+    /**
+     * Evaluates the rule against the in-memory inventory.
+     *
+     * @return the matching addresses, or <code>null</code> if the rule must be evaluated by the database
+     */
+    private List<InetAddress> getIPAddressListFromInventory(final String rule, final boolean filterDeleted, final String address, final int limit) {
+        if (!m_inventoryEnabled) {
+            return null;
+        }
+        final Optional<FilterRuleCompiler.CompiledRule> compiledRule = compile(rule);
+        if (!compiledRule.isPresent()) {
+            databaseEvaluations.mark();
+            return null;
+        }
+        final FilterInventory inventory = getInventory();
+        if (inventory == null) {
+            databaseEvaluations.mark();
+            return null;
+        }
+        inventoryEvaluations.mark();
+        return inventory.getIPAddressList(compiledRule.get(), filterDeleted, address, limit);
+    }
+
+    private Optional<FilterRuleCompiler.CompiledRule> compile(final String rule) {
+        if (rule == null) {
+            return Optional.empty();
+        }
+        Optional<FilterRuleCompiler.CompiledRule> compiledRule = m_compiledRules.get(rule);
+        if (compiledRule != null) {
+            return compiledRule;
+        }
+        try {
+            // Parse the rule the same way the database path does, both to validate the columns
+            // and to know whether deleted interfaces need to be filtered
+            final boolean referencesIsManaged = getSQLStatement(rule).contains("isManaged");
+            compiledRule = Optional.of(new FilterRuleCompiler(m_databaseSchemaConfigFactory).compile(rule, referencesIsManaged));
+        } catch (final FilterRuleCompiler.UnsupportedRuleException e) {
+            LOG.debug("Rule \"{}\" will be evaluated by the database: {}", rule, e.getMessage());
+            compiledRule = Optional.empty();
+        } catch (final FilterParseException e) {
+            // Let the database path report the error
+            return Optional.empty();
+        }
+        if (m_compiledRules.size() >= MAX_COMPILED_RULES) {
+            // Rules built from events, i.e. with node and interface constraints, can be numerous
+            m_compiledRules.clear();
+        }
+        m_compiledRules.put(rule, compiledRule);
+        return compiledRule;
+    }
+
+    private FilterInventory getInventory() {
+        FilterInventory inventory = m_inventory;
+        if (inventory == null) {
+            synchronized (this) {
+                inventory = m_inventory;
+                if (inventory == null) {
+                    inventory = new FilterInventory(getDataSource());
+                    registerInventoryEventListener(inventory);
+                    m_inventory = inventory;
+                }
+            }
+        }
+        try {
+            inventory.ensureLoaded(m_inventoryMaxAge);
+            return inventory;
+        } catch (final SQLException e) {
+            LOG.warn("Failed to load the filter inventory. Rules will be evaluated by the database.", e);
+            return null;
+        }
+    }
+
+    private void registerInventoryEventListener(final FilterInventory inventory) {
+        if (m_eventSubscriptionService == null) {
+            try {
+                m_eventSubscriptionService = EventIpcManagerFactory.getIpcManager();
+            } catch (final IllegalStateException e) {
+                LOG.warn("No event manager is available. The filter inventory will only be refreshed every {}ms.", m_inventoryMaxAge);
+                return;
+            }
+        }
+        m_inventoryEventListener = new FilterInventoryEventListener(inventory);
+        m_eventSubscriptionService.addEventListener(m_inventoryEventListener, FilterInventoryEventListener.getUeis());
     }
 
     /**
@@ -461,6 +718,26 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
         return "SELECT DISTINCT " + columns.toString() + " " + from + " " + where;
     }
 
+    /**
+     * <p>getNodeIPAddressMappingStatement</p>
+     *
+     * @param rule a {@link java.lang.String} object.
+     * @return a {@link java.lang.String} object.
+     * @throws org.opennms.netmgt.filter.api.FilterParseException if any.
+     */
+    public String getNodeIPAddressMappingStatement(final String rule) throws FilterParseException {
+        final List<Table> tables = new ArrayList<>();
+
+        final StringBuilder columns = new StringBuilder();
+        columns.append(m_databaseSchemaConfigFactory.addColumn(tables, "nodeID"));
+        columns.append(", " + m_databaseSchemaConfigFactory.addColumn(tables, "ipAddr"));
+
+        final String where = parseRule(tables, rule);
+        final String from = m_databaseSchemaConfigFactory.constructJoinExprForTables(tables);
+
+        return "SELECT DISTINCT " + columns.toString() + " " + from + " " + where;
+    }
+
     /**
      * <p>getIPServiceMappingStatement</p>
      *
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.netmgt.config.notifications.Notification;
+import org.opennms.netmgt.config.notifications.Rule;
+import org.opennms.netmgt.filter.api.FilterDao;
+
+public class NotificationIndexTest {
+
+    private static final String RULE = "IPADDR != '0.0.0.0'";
+
+    @Test
+    public void canFindCandidatesInConfigurationOrder() {
+        final FilterDao filterDao = mock(FilterDao.class);
+        when(filterDao.getNodeIPAddressServiceMap(anyString())).thenReturn(Collections.emptyMap());
+
+        final NotificationIndex index = new NotificationIndex(Arrays.asList(
+                notification("regex", "~^uei\\.opennms\\.org/nodes/node.*$"),
+                notification("exact", "uei.opennms.org/nodes/nodeDown"),
+                notification("any", NotificationIndex.MATCH_ANY_UEI),
+                notification("other", "uei.opennms.org/nodes/nodeUp")), filterDao);
+
+        assertEquals(Arrays.asList("regex", "exact", "any"), names(index.getCandidates("uei.opennms.org/nodes/nodeDown")));
+        assertEquals(Arrays.asList("any"), names(index.getCandidates("uei.opennms.org/generic")));
+        assertTrue(index.hasUei("uei.opennms.org/generic"));
+
+        // Rules are only evaluated once they are used to match an event
+        verify(filterDao, never()).getNodeIPAddressServiceMap(anyString());
+        for (final NotificationIndex.Entry entry : index.getCandidates("uei.opennms.org/nodes/nodeDown")) {
+            assertFalse(entry.matchesElement(0, "192.168.1.1", null));
+        }
+
+        // Rules shared by multiple notifications are only evaluated once
+        verify(filterDao, times(1)).getNodeIPAddressServiceMap(RULE);
+    }
+
+    @Test
+    public void canMatchSeverity() {
+        final FilterDao filterDao = mock(FilterDao.class);
+        final Notification notification = notification("severity", "uei.opennms.org/test");
+        notification.setEventSeverity("Major|Critical");
+        final NotificationIndex.Entry entry = new NotificationIndex(Collections.singletonList(notification), filterDao)
+                .getCandidates("uei.opennms.org/test").get(0);
+
+        assertTrue(entry.matchesSeverity("Critical"));
+        assertFalse(entry.matchesSeverity("Minor"));
+        assertFalse(entry.matchesSeverity(null));
+    }
+
+    @Test
+    public void canMatchNodeInterfaceAndService() {
+        final FilterDao filterDao = mock(FilterDao.class);
+        final Map<Integer, Map<InetAddress, Set<String>>> matches = new HashMap<>();
+        matches.put(1, Collections.singletonMap(addr("192.168.1.1"), new HashSet<>(Arrays.asList("ICMP", "HTTP"))));
+        matches.put(2, Collections.singletonMap(addr("192.168.1.2"), Collections.emptySet()));
+        when(filterDao.getNodeIPAddressServiceMap(RULE)).thenReturn(matches);
+
+        final NotificationIndex.Entry entry = new NotificationIndex(Collections.singletonList(notification("test", "uei.opennms.org/test")), filterDao)
+                .getCandidates("uei.opennms.org/test").get(0);
+
+        assertTrue(entry.matchesElement(1, null, null));
+        assertTrue(entry.matchesElement(1, "0.0.0.0", "ICMP"));
+        assertTrue(entry.matchesElement(1, "192.168.1.1", "ICMP"));
+        assertFalse(entry.matchesElement(1, "192.168.1.1", "SNMP"));
+        assertFalse(entry.matchesElement(1, "192.168.1.2", null));
+        assertTrue(entry.matchesElement(2, "192.168.1.2", null));
+        assertFalse(entry.matchesElement(2, "192.168.1.2", "ICMP"));
+        assertTrue(entry.matchesElement(0, "192.168.1.1", "HTTP"));
+        assertFalse(entry.matchesElement(0, "192.168.1.3", null));
+        assertTrue(entry.matchesElement(0, null, "SNMP"));
+        assertFalse(entry.matchesElement(3, null, null));
+    }
+
+    @Test
+    public void canRefreshNodes() {
+        final FilterDao filterDao = mock(FilterDao.class);
+        when(filterDao.getNodeIPAddressServiceMap(RULE))
+                .thenReturn(Collections.singletonMap(1, Collections.singletonMap(addr("192.168.1.1"), Collections.emptySet())));
+        when(filterDao.getNodeIPAddressServiceMap("((" + RULE + ") & (nodeId == 1))"))
+                .thenReturn(Collections.emptyMap());
+        when(filterDao.getNodeIPAddressServiceMap("((" + RULE + ") & (nodeId == 2))"))
+                .thenReturn(Collections.singletonMap(2, Collections.singletonMap(addr("192.168.1.1"), Collections.emptySet())));
+
+        final NotificationIndex index = new NotificationIndex(Collections.singletonList(notification("test", "uei.opennms.org/test")), filterDao);
+        final NotificationIndex.Entry entry = index.getCandidates("uei.opennms.org/test").get(0);
+        assertTrue(entry.matchesElement(1, "192.168.1.1", null));
+
+        // The node no longer matches the rule
+        index.refreshNode(1);
+        assertFalse(entry.matchesElement(1, "192.168.1.1", null));
+        assertFalse(entry.matchesElement(0, "192.168.1.1", null));
+
+        // Nodes which were created after the index was built are refreshed on demand
+        assertTrue(entry.matchesElement(2, "192.168.1.1", null));
+        assertTrue(entry.matchesElement(0, "192.168.1.1", null));
+    }
+
+    @Test
+    public void fallsBackWhileRefreshIsPending() {
+        final FilterDao filterDao = mock(FilterDao.class);
+        when(filterDao.getNodeIPAddressServiceMap(RULE))
+                .thenReturn(Collections.singletonMap(1, Collections.singletonMap(addr("192.168.1.1"), Collections.emptySet())))
+                .thenReturn(Collections.emptyMap());
+        when(filterDao.getNodeIPAddressServiceMap("((" + RULE + ") & (nodeId == 1))"))
+                .thenReturn(Collections.emptyMap());
+
+        final List<Runnable> pendingRefreshes = new ArrayList<>();
+        final NotificationIndex index = new NotificationIndex(Collections.singletonList(notification("test", "uei.opennms.org/test")),
+                filterDao, pendingRefreshes::add);
+        final NotificationIndex.Entry entry = index.getCandidates("uei.opennms.org/test").get(0);
+        assertTrue(entry.matchesElement(1, "192.168.1.1", null));
+
+        // The refresh is not run by the caller, and the node must be matched against the database in the meantime
+        index.refreshNode(1);
+        verify(filterDao, never()).getNodeIPAddressServiceMap("((" + RULE + ") & (nodeId == 1))");
+        assertNull(entry.matchesElement(1, "192.168.1.1", null));
+        assertNull(entry.matchesElement(0, "192.168.1.1", null));
+
+        pendingRefreshes.remove(0).run();
+        assertFalse(entry.matchesElement(1, "192.168.1.1", null));
+
+        // Same for all of the nodes
+        index.refreshAll();
+        assertNull(entry.matchesElement(1, "192.168.1.1", null));
+        pendingRefreshes.remove(0).run();
+        assertFalse(entry.matchesElement(0, "192.168.1.1", null));
+        verify(filterDao, times(2)).getNodeIPAddressServiceMap(RULE);
+    }
+
+    @Test
+    public void fallsBackWhenRuleCannotBeLoaded() {
+        final FilterDao filterDao = mock(FilterDao.class);
+        when(filterDao.getNodeIPAddressServiceMap(anyString())).thenThrow(new UnsupportedOperationException());
+
+        final NotificationIndex.Entry entry = new NotificationIndex(Collections.singletonList(notification("test", "uei.opennms.org/test")), filterDao)
+                .getCandidates("uei.opennms.org/test").get(0);
+        assertNull(entry.matchesElement(1, "192.168.1.1", null));
+    }
+
+    private static Notification notification(final String name, final String uei) {
+        final Rule rule = new Rule();
+        rule.setContent(RULE);
+        final Notification notification = new Notification();
+        notification.setName(name);
+        notification.setUei(uei);
+        notification.setRule(rule);
+        notification.setStatus("on");
+        return notification;
+    }
+
+    private static List<String> names(final List<NotificationIndex.Entry> entries) {
+        return entries.stream().map(e -> e.getNotification().getName()).collect(Collectors.toList());
+    }
+}
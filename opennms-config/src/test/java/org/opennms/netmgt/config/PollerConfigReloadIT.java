@@ -159,6 +159,11 @@ public class PollerConfigReloadIT {
                 return null;
             }
 
+            @Override
+            public Map<Integer, Map<InetAddress, Set<String>>> getNodeIPAddressServiceMap(String rule) throws FilterParseException {
+                return null;
+            }
+
             @Override
             public void flushActiveIpAddressListCache() {
             }
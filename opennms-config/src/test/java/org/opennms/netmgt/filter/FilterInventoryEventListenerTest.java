@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.filter;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import org.junit.Test;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.model.ImmutableMapper;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+
+public class FilterInventoryEventListenerTest {
+
+    private final FilterInventory m_inventory = mock(FilterInventory.class);
+
+    private final FilterInventoryEventListener m_listener = new FilterInventoryEventListener(m_inventory);
+
+    @Test
+    public void refreshesNodeWhenServiceIsUnmanaged() {
+        final Event event = new EventBuilder(EventConstants.SERVICE_UNMANAGED_EVENT_UEI, "test")
+                .setNodeid(42)
+                .setService("ICMP")
+                .getEvent();
+        m_listener.onEvent(ImmutableMapper.fromMutableEvent(event));
+
+        verify(m_inventory).refreshNode(42);
+        verify(m_inventory, never()).invalidate();
+    }
+
+    @Test
+    public void reloadsInventoryWhenManagedStateChangesInBulk() {
+        final Event event = new EventBuilder(FilterInventoryEventListener.RESTART_SCM_EVENT_UEI, "web ui").getEvent();
+        m_listener.onEvent(ImmutableMapper.fromMutableEvent(event));
+
+        verify(m_inventory).invalidate();
+        verifyNoMoreInteractions(m_inventory);
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.config.DatabaseSchemaConfigFactory;
+import org.opennms.netmgt.filter.FilterInventory.Interface;
+import org.opennms.netmgt.filter.FilterInventory.Node;
+
+public class FilterRuleCompilerTest {
+
+    private FilterRuleCompiler m_compiler;
+
+    private FilterInventory m_inventory;
+
+    @Before
+    public void setUp() throws Exception {
+        try (final InputStream is = getClass().getResourceAsStream("/database-schema.xml")) {
+            m_compiler = new FilterRuleCompiler(new DatabaseSchemaConfigFactory(is));
+        }
+
+        final Node router = new Node(1);
+        router.set("nodelabel", "router");
+        router.set("location", "Default");
+        router.set("nodesysoid", ".1.3.6.1.4.1.9.1.1");
+        router.set("foreignsource", "core");
+        router.addCategory("Routers");
+        router.addCategory("Production");
+        final Interface routerPrimary = router.addInterface("192.168.1.1");
+        routerPrimary.set("ismanaged", "M");
+        routerPrimary.set("issnmpprimary", "P");
+        routerPrimary.addService("ICMP");
+        routerPrimary.addService("SNMP");
+        final Interface routerDeleted = router.addInterface("192.168.1.2");
+        routerDeleted.set("ismanaged", "D");
+        routerDeleted.addService("ICMP");
+
+        final Node server = new Node(2);
+        server.set("nodelabel", "server");
+        server.set("location", "Remote");
+        server.set("nodeparentid", 1L);
+        server.set("city", "Ottawa");
+        final Interface serverPrimary = server.addInterface("10.0.0.1");
+        serverPrimary.set("ismanaged", "M");
+        serverPrimary.set("issnmpprimary", "P");
+        serverPrimary.addService("ICMP");
+        serverPrimary.addService("HTTP");
+        final Interface serverNoServices = server.addInterface("10.0.0.2");
+        serverNoServices.set("ismanaged", "M");
+
+        m_inventory = new FilterInventory(null);
+        m_inventory.replaceAll(Arrays.asList(router, server));
+    }
+
+    @Test
+    public void canMatchColumns() throws Exception {
+        assertMatches("IPADDR != '0.0.0.0'", "192.168.1.1", "192.168.1.2", "10.0.0.1", "10.0.0.2");
+        assertMatches("nodeLabel == 'server'", "10.0.0.1", "10.0.0.2");
+        assertMatches("nodeId == 1 & IsSnmpPrimary = 'P'", "192.168.1.1");
+        assertMatches("nodeId == '2' && ipAddr == \"10.0.0.2\"", "10.0.0.2");
+        assertMatches("location == 'Default' | location == 'Remote'", "192.168.1.1", "192.168.1.2", "10.0.0.1", "10.0.0.2");
+        assertMatches("nodeSysOID LIKE '.1.3.6.1.4.1.9.%'", "192.168.1.1", "192.168.1.2");
+        assertMatches("nodeId > 1", "10.0.0.1", "10.0.0.2");
+        assertMatches("nodeLabel IN ('router', 'other') AND ipaddr NOT IN ('192.168.1.2')", "192.168.1.1");
+    }
+
+    @Test
+    public void usesThreeValuedLogic() throws Exception {
+        // The server has no foreign source, so neither the condition nor its negation are true
+        assertMatches("foreignSource == 'core'", "192.168.1.1", "192.168.1.2");
+        assertMatches("!(foreignSource == 'core')");
+        assertMatches("foreignSource IS NULL", "10.0.0.1", "10.0.0.2");
+        assertMatches("nodeParentID IS NOT NULL", "10.0.0.1", "10.0.0.2");
+        assertMatches("foreignSource == 'core' | nodeLabel == 'server'", "192.168.1.1", "192.168.1.2", "10.0.0.1", "10.0.0.2");
+    }
+
+    @Test
+    public void canMatchPrefixedValues() throws Exception {
+        assertMatches("isICMP", "192.168.1.1", "192.168.1.2", "10.0.0.1");
+        // Every service is a separate row, so an interface never has two service names
+        assertMatches("isICMP & isSNMP");
+        assertMatches("isICMP & !isSNMP", "192.168.1.1", "192.168.1.2", "10.0.0.1");
+        assertMatches("catincRouters", "192.168.1.1", "192.168.1.2");
+        assertMatches("catincRouters & catincProduction", "192.168.1.1", "192.168.1.2");
+        assertMatches("categoryName == 'Routers' & categoryName == 'Production'");
+        assertMatches("categoryName IS NULL", "10.0.0.1", "10.0.0.2");
+    }
+
+    @Test
+    public void canMatchIpLike() throws Exception {
+        assertMatches("ipaddr IPLIKE 192.168.1.*", "192.168.1.1", "192.168.1.2");
+        assertMatches("ipaddr IPLIKE 10.0.0.1,2", "10.0.0.1", "10.0.0.2");
+        assertMatches("IPLIKE(ipaddr, '*.*.*.1')", "192.168.1.1", "10.0.0.1");
+    }
+
+    @Test
+    public void onlyMatchesNodesWithAssetsWhenReferenced() throws Exception {
+        assertMatches("city == 'Ottawa'", "10.0.0.1", "10.0.0.2");
+        assertMatches("city IS NULL");
+    }
+
+    @Test
+    public void canFilterDeletedInterfaces() throws Exception {
+        assertEquals(addresses("192.168.1.1"), m_inventory.getIPAddressList(m_compiler.compile("nodeId == 1", false), true, null, 0));
+        assertEquals(addresses("192.168.1.2"), m_inventory.getIPAddressList(m_compiler.compile("IsManaged == 'D'", true), true, null, 0));
+        assertEquals(addresses("10.0.0.2"), m_inventory.getIPAddressList(m_compiler.compile("nodeId == 2", false), true, "10.0.0.2", 0));
+        assertEquals(addresses("10.0.0.1"), m_inventory.getIPAddressList(m_compiler.compile("nodeId == 2", false), false, null, 1));
+    }
+
+    @Test
+    public void rejectsUnsupportedRules() {
+        assertUnsupported("snmpIfDescr == 'eth0'");
+        assertUnsupported("nodeCreateTime > '2020-01-01'");
+        assertUnsupported("nodeLabel > 'a'");
+        assertUnsupported("nodeLabel == 1");
+        assertUnsupported("nodeLabel == server");
+        assertUnsupported("nodeLabel == 'server");
+        assertUnsupported("(nodeLabel == 'server'");
+        assertUnsupported("nodeLabel IS DISTINCT FROM 'server'");
+        assertUnsupported("notisICMP");
+    }
+
+    @Test
+    public void canConvertLikePatterns() {
+        assertEquals(".*\\Qabc\\E.", FilterRuleCompiler.likeToRegex("%abc_"));
+        assertEquals("\\Q100%\\E", FilterRuleCompiler.likeToRegex("100\\%"));
+    }
+
+    private void assertMatches(final String rule, final String... expected) throws Exception {
+        assertEquals(rule, addresses(expected), m_inventory.getIPAddressList(m_compiler.compile(rule, false), false, null, 0));
+    }
+
+    private void assertUnsupported(final String rule) {
+        try {
+            m_compiler.compile(rule, false);
+            fail("Rule should not be supported: " + rule);
+        } catch (final FilterRuleCompiler.UnsupportedRuleException e) {
+            // Expected
+        }
+    }
+
+    private static List<InetAddress> addresses(final String... addresses) {
+        if (addresses.length == 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(addresses).map(a -> addr(a)).collect(Collectors.toList());
+    }
+}
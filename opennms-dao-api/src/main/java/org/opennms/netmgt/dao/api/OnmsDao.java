@@ -30,6 +30,7 @@ package org.opennms.netmgt.dao.api;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.opennms.core.criteria.Criteria;
 
@@ -63,6 +64,25 @@ public interface OnmsDao<T, K extends Serializable> {
 
     int countMatching(final Criteria onmsCrit);
 
+    /**
+     * Counts the entities matching the given criteria but stops counting once {@code maxCount} entities were found.
+     * This is a lot cheaper than a full count when only the first pages of a large result are needed.
+     *
+     * @return the number of matching entities or {@code maxCount} if there are at least that many
+     */
+    default int countMatching(final Criteria criteria, final int maxCount) {
+        return Math.min(countMatching(criteria), maxCount);
+    }
+
+    /**
+     * Passes the entities matching the given criteria to the given consumer one at a time while they are read from the
+     * database instead of loading all of them up front. Implementations may detach the entities read so far every
+     * {@code batchSize} entities, so the consumer must not hold on to them or rely on modifying them.
+     */
+    default void streamMatching(final Criteria criteria, final int batchSize, final Consumer<T> consumer) {
+        findMatching(criteria).forEach(consumer);
+    }
+
     T get(K id);
 
     T load(K id);
@@ -294,7 +294,11 @@ final class BeanWrapperRestrictionVisitor extends BaseRestrictionVisitor {
     }
     @Override public void visitIlikeComplete(final IlikeRestriction restriction) {}
     @Override public void visitIn(final InRestriction restriction) {
-        throw new UnsupportedOperationException("Not Yet Implemented!");
+        final Object o = getProperty(restriction);
+        if (o != null && restriction.getValues().contains(o)) {
+            return;
+        }
+        fail(restriction);
     }
     @Override public void visitInComplete(final InRestriction restriction) {}
     @Override public void visitNot(final NotRestriction restriction) {
@@ -67,6 +67,11 @@ public class MockFilterDao implements FilterDao, InitializingBean {
         throw new UnsupportedOperationException("Not yet implemented!");
     }
 
+    @Override
+    public Map<Integer, Map<InetAddress, Set<String>>> getNodeIPAddressServiceMap(final String rule) throws FilterParseException {
+        throw new UnsupportedOperationException("Not yet implemented!");
+    }
+
     @Override
     public void flushActiveIpAddressListCache() {}
 
@@ -48,6 +48,11 @@ public abstract class UnimplementedFilterDao implements FilterDao {
         throw new UnsupportedOperationException("Not yet implemented!");
     }
 
+    @Override
+    public Map<Integer, Map<InetAddress, Set<String>>> getNodeIPAddressServiceMap(String rule) throws FilterParseException {
+        throw new UnsupportedOperationException("Not yet implemented!");
+    }
+
     @Override
     public void flushActiveIpAddressListCache() {
         throw new UnsupportedOperationException("Not yet implemented!");
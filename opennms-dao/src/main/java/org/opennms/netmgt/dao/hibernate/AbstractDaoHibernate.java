@@ -32,6 +32,7 @@ import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.persistence.Table;
 
@@ -40,6 +41,8 @@ import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
 import org.hibernate.LockMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
 import org.hibernate.metadata.ClassMetadata;
@@ -293,6 +296,55 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
         return retval == null ? 0 : retval.intValue();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int countMatching(final org.opennms.core.criteria.Criteria criteria, final int maxCount) throws DataAccessException {
+        final HibernateCallback<Integer> callback = new HibernateCallback<Integer>() {
+            @Override
+            public Integer doInHibernate(final Session session) throws HibernateException, SQLException {
+                // Only select the ids and let the database stop scanning once it found enough of them
+                final Criteria hibernateCriteria = m_criteriaConverter.convertForCount(criteria, session);
+                hibernateCriteria.setProjection(Projections.id());
+                hibernateCriteria.setFirstResult(0);
+                hibernateCriteria.setMaxResults(maxCount);
+                return hibernateCriteria.list().size();
+            }
+        };
+        Integer retval = getHibernateTemplate().execute(callback);
+        return retval == null ? 0 : retval.intValue();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void streamMatching(final org.opennms.core.criteria.Criteria criteria, final int batchSize, final Consumer<T> consumer) throws DataAccessException {
+        final HibernateCallback<Void> callback = new HibernateCallback<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void doInHibernate(final Session session) throws HibernateException, SQLException {
+                LOG.debug("criteria = {}", criteria);
+                final Criteria hibernateCriteria = m_criteriaConverter.convert(criteria, session);
+                // The driver only uses a cursor instead of reading the whole result when the fetch size is set
+                hibernateCriteria.setFetchSize(batchSize);
+                hibernateCriteria.setReadOnly(true);
+                final ScrollableResults results = hibernateCriteria.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    int count = 0;
+                    while (results.next()) {
+                        consumer.accept((T) results.get(0));
+                        if (++count % batchSize == 0) {
+                            // Detach the entities we are done with so they can be garbage collected
+                            session.clear();
+                        }
+                    }
+                } finally {
+                    results.close();
+                }
+                return null;
+            }
+        };
+        getHibernateTemplate().execute(callback);
+    }
+
     /** {@inheritDoc} */
     @SuppressWarnings("unchecked")
     public List<T> findMatching(final OnmsCriteria onmsCrit) throws DataAccessException {
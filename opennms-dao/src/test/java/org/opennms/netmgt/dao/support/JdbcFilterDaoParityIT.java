@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.dao.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.spring.BeanUtils;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.config.DatabaseSchemaConfigFactory;
+import org.opennms.netmgt.dao.DatabasePopulator;
+import org.opennms.netmgt.dao.api.IpInterfaceDao;
+import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.events.api.EventListener;
+import org.opennms.netmgt.events.api.EventSubscriptionService;
+import org.opennms.netmgt.events.api.model.ImmutableMapper;
+import org.opennms.netmgt.filter.JdbcFilterDao;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Verifies that rules evaluated against the in-memory inventory return the
+ * same results as the rules evaluated by the database.
+ */
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={
+        "classpath:/META-INF/opennms/applicationContext-soa.xml",
+        "classpath:/META-INF/opennms/applicationContext-dao.xml",
+        "classpath:/META-INF/opennms/applicationContext-databasePopulator.xml",
+        "classpath:/META-INF/opennms/applicationContext-commonConfigs.xml",
+        "classpath:/META-INF/opennms/applicationContext-minimal-conf.xml"
+})
+@JUnitConfigurationEnvironment
+@JUnitTemporaryDatabase
+public class JdbcFilterDaoParityIT implements InitializingBean {
+    @Autowired
+    IpInterfaceDao m_interfaceDao;
+
+    @Autowired
+    DatabasePopulator m_populator;
+
+    @Autowired
+    TransactionTemplate m_transTemplate;
+
+    @Autowired
+    DataSource m_dataSource;
+
+    private JdbcFilterDao m_databaseDao;
+
+    private JdbcFilterDao m_inventoryDao;
+
+    private final AtomicReference<EventListener> m_listener = new AtomicReference<>();
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        BeanUtils.assertAutowiring(this);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        m_populator.populateDatabase();
+
+        DatabaseSchemaConfigFactory.init();
+        m_databaseDao = new JdbcFilterDao();
+        m_databaseDao.setDataSource(m_dataSource);
+        m_databaseDao.setDatabaseSchemaConfigFactory(DatabaseSchemaConfigFactory.getInstance());
+        m_databaseDao.setInventoryEnabled(false);
+        m_databaseDao.afterPropertiesSet();
+
+        m_inventoryDao = new JdbcFilterDao();
+        m_inventoryDao.setDataSource(m_dataSource);
+        m_inventoryDao.setDatabaseSchemaConfigFactory(DatabaseSchemaConfigFactory.getInstance());
+        m_inventoryDao.setInventoryEnabled(true);
+        m_inventoryDao.setInventoryMaxAge(0);
+        m_inventoryDao.setEventSubscriptionService(new CapturingEventSubscriptionService());
+        m_inventoryDao.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        m_inventoryDao.destroy();
+        m_databaseDao.destroy();
+        m_populator.resetDatabase();
+    }
+
+    @Test
+    public void testRulesMatchTheDatabase() {
+        final int node1 = m_populator.getNode1().getId();
+        final int node2 = m_populator.getNode2().getId();
+        final List<String> rules = Arrays.asList(
+                "IPADDR != '0.0.0.0'",
+                "ipaddr == '192.168.1.1'",
+                "ipaddr == '1.1.1.1'",
+                "ipaddr IPLIKE *.*.*.*",
+                "ipaddr IPLIKE 192.168.*.1-2",
+                "ipaddr iplike *:*:*:*:*:*:*:*",
+                "IPLIKE(ipaddr, '10.1.1.*')",
+                "isICMP",
+                "isHTTP & isICMP",
+                "isSNMP | isHTTP",
+                "!isICMP",
+                "catincDEV_AC",
+                "catincIMP_mid & catincOPS_Online",
+                "categoryName == 'Routers'",
+                "categoryName != 'Routers'",
+                "categoryName IS NULL",
+                "nodeLabel == 'node1'",
+                "nodeLabel LIKE 'node%'",
+                "nodeLabel NOT LIKE 'alternate%'",
+                "(nodeLabel == 'node1' | nodeLabel == 'node2') & !(ipaddr == '192.168.1.1')",
+                "nodeId == '" + node1 + "'",
+                "nodeId IN (" + node1 + ", " + node2 + ")",
+                "nodeId > " + node1,
+                "foreignSource == 'imported:' & foreignId == '2'",
+                "foreignSource IS NULL",
+                "IsSnmpPrimary == 'P'",
+                "IsManaged == 'M' & serviceName == 'ICMP'",
+                "location == 'Default'",
+                "assetNumber == '5'",
+                "(catincIMP_mid) & (catincDEV_AC) & (catincOPS_Online) & (nodeId == '" + node1 + "') & (ipAddr == '192.168.1.1') & (serviceName == 'ICMP')");
+
+        final List<InetAddress> allAddresses = m_databaseDao.getIPAddressList("IPADDR != '0.0.0.0'");
+        for (final String rule : rules) {
+            assertTrue("Rule should be evaluated in memory: " + rule, m_inventoryDao.isEvaluatedInMemory(rule));
+            assertParity(rule, allAddresses);
+        }
+    }
+
+    @Test
+    public void testRefreshesNodesOnEvents() {
+        final String rule = "ipaddr == '192.168.1.1'";
+        assertEquals(1, m_inventoryDao.getActiveIPAddressList(rule).size());
+
+        deleteInterface("192.168.1.1");
+
+        // Let the inventory know that the node has changed
+        assertNotNull("the listener should have been registered", m_listener.get());
+        m_listener.get().onEvent(ImmutableMapper.fromMutableEvent(new EventBuilder(EventConstants.NODE_UPDATED_EVENT_UEI, "test")
+                .setNodeid(m_populator.getNode1().getId())
+                .getEvent()));
+
+        assertEquals("no nodes should be returned, since the only one has been deleted", 0, m_inventoryDao.getActiveIPAddressList(rule).size());
+        assertParity(rule, m_databaseDao.getIPAddressList("IPADDR != '0.0.0.0'"));
+    }
+
+    @Test
+    public void testReloadsWhenFlushed() {
+        final String rule = "ipaddr == '192.168.1.1'";
+        assertEquals(1, m_inventoryDao.getActiveIPAddressList(rule).size());
+
+        deleteInterface("192.168.1.1");
+        m_inventoryDao.flushActiveIpAddressListCache();
+
+        assertEquals("no nodes should be returned, since the only one has been deleted", 0, m_inventoryDao.getActiveIPAddressList(rule).size());
+    }
+
+    private void assertParity(final String rule, final Collection<InetAddress> addresses) {
+        assertEquals("getIPAddressList: " + rule, new HashSet<>(m_databaseDao.getIPAddressList(rule)), new HashSet<>(m_inventoryDao.getIPAddressList(rule)));
+        assertEquals("getActiveIPAddressList: " + rule, new HashSet<>(m_databaseDao.getActiveIPAddressList(rule)), new HashSet<>(m_inventoryDao.getActiveIPAddressList(rule)));
+        assertEquals("isRuleMatching: " + rule, m_databaseDao.isRuleMatching(rule), m_inventoryDao.isRuleMatching(rule));
+        for (final InetAddress address : addresses) {
+            final String ipAddr = InetAddressUtils.str(address);
+            assertEquals("isValid(" + ipAddr + "): " + rule, m_databaseDao.isValid(ipAddr, rule), m_inventoryDao.isValid(ipAddr, rule));
+        }
+    }
+
+    private void deleteInterface(final String ipAddr) {
+        // Commit the change, since the filter DAO uses its own connection
+        m_transTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            public void doInTransactionWithoutResult(TransactionStatus status) {
+                final List<OnmsIpInterface> ifaces = m_interfaceDao.findByIpAddress(ipAddr);
+                assertEquals("should be 1 interface", 1, ifaces.size());
+
+                final OnmsIpInterface iface = ifaces.get(0);
+                iface.setIsManaged("D");
+                m_interfaceDao.save(iface);
+                m_interfaceDao.flush();
+            }
+        });
+    }
+
+    private class CapturingEventSubscriptionService implements EventSubscriptionService {
+        @Override
+        public void addEventListener(final EventListener listener) {
+            m_listener.set(listener);
+        }
+
+        @Override
+        public void addEventListener(final EventListener listener, final Collection<String> ueis) {
+            m_listener.set(listener);
+        }
+
+        @Override
+        public void addEventListener(final EventListener listener, final String uei) {
+            m_listener.set(listener);
+        }
+
+        @Override
+        public void removeEventListener(final EventListener listener) {
+            m_listener.compareAndSet(listener, null);
+        }
+
+        @Override
+        public void removeEventListener(final EventListener listener, final Collection<String> ueis) {
+            m_listener.compareAndSet(listener, null);
+        }
+
+        @Override
+        public void removeEventListener(final EventListener listener, final String uei) {
+            m_listener.compareAndSet(listener, null);
+        }
+
+        @Override
+        public boolean hasEventListener(final String uei) {
+            return m_listener.get() != null;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
@@ -201,6 +202,13 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
     private final ThreadLocal<Map<String, OnmsServiceType>> m_typeCache = new ThreadLocal<Map<String, OnmsServiceType>>();
     private final ThreadLocal<Map<String, OnmsCategory>> m_categoryCache = new ThreadLocal<Map<String, OnmsCategory>>();
 
+    /**
+     * Used to serialize the nodes created by new suspect scans in the same foreign source,
+     * which may run concurrently: matching the address to an existing node, inserting the
+     * node and updating the requisition must not interleave.
+     */
+    private final Map<String, Object> m_newSuspectLocks = new ConcurrentHashMap<>();
+
     @Override
     public void afterPropertiesSet() throws Exception {
         BeanUtils.assertAutowiring(this);
@@ -1266,63 +1274,66 @@ public class DefaultProvisionService implements ProvisionService, InitializingBe
         final String effectiveForeignSource = foreignSource == null ? FOREIGN_SOURCE_FOR_DISCOVERED_NODES : foreignSource;
         final String effectiveLocationName = MonitoringLocationUtils.isDefaultLocationName(locationString) ? null : locationString;
 
-        final OnmsNode node = new UpsertTemplate<OnmsNode, NodeDao>(m_transactionManager, m_nodeDao) {
-
-            @Override
-            protected OnmsNode query() {
-                // Find all of the nodes in the target requisition with the given IP address
-                return m_nodeDao.findByForeignSourceAndIpAddress(effectiveForeignSource, ipAddress).stream().filter(n -> {
-                    // Now filter the nodes by location
-                    final String existingLocationName = MonitoringLocationUtils.getLocationNameOrNullIfDefault(n);
-                    return Objects.equals(existingLocationName, effectiveLocationName);
-                }).findFirst().orElse(null);
-            }
+        final OnmsNode node;
+        synchronized (m_newSuspectLocks.computeIfAbsent(effectiveForeignSource, fs -> new Object())) {
+            node = new UpsertTemplate<OnmsNode, NodeDao>(m_transactionManager, m_nodeDao) {
+
+                @Override
+                protected OnmsNode query() {
+                    // Find all of the nodes in the target requisition with the given IP address
+                    return m_nodeDao.findByForeignSourceAndIpAddress(effectiveForeignSource, ipAddress).stream().filter(n -> {
+                        // Now filter the nodes by location
+                        final String existingLocationName = MonitoringLocationUtils.getLocationNameOrNullIfDefault(n);
+                        return Objects.equals(existingLocationName, effectiveLocationName);
+                    }).findFirst().orElse(null);
+                }
 
-            @Override
-            protected OnmsNode doUpdate(OnmsNode existingNode) {
-                // we found an existing node so exit by returning null;
-                return null;
-            }
+                @Override
+                protected OnmsNode doUpdate(OnmsNode existingNode) {
+                    // we found an existing node so exit by returning null;
+                    return null;
+                }
 
-            @Override
-            protected OnmsNode doInsert() {
-                final Date now = new Date();
+                @Override
+                protected OnmsNode doInsert() {
+                    final Date now = new Date();
 
-                OnmsMonitoringLocation location = createLocationIfNecessary(locationString);
-                // Associate the location with the node
-                final OnmsNode node = new OnmsNode(location);
+                    OnmsMonitoringLocation location = createLocationIfNecessary(locationString);
+                    // Associate the location with the node
+                    final OnmsNode node = new OnmsNode(location);
 
-                final String hostname = getHostnameResolver().getHostname(addr(ipAddress), locationString);
-                if (hostname == null || ipAddress.equals(hostname)) {
-                    node.setLabel(ipAddress);
-                    node.setLabelSource(NodeLabelSource.ADDRESS);
-                } else {
-                    node.setLabel(hostname);
-                    node.setLabelSource(NodeLabelSource.HOSTNAME);
-                }
+                    final String hostname = getHostnameResolver().getHostname(addr(ipAddress), locationString);
+                    if (hostname == null || ipAddress.equals(hostname)) {
+                        node.setLabel(ipAddress);
+                        node.setLabelSource(NodeLabelSource.ADDRESS);
+                    } else {
+                        node.setLabel(hostname);
+                        node.setLabelSource(NodeLabelSource.HOSTNAME);
+                    }
 
-                node.setForeignSource(effectiveForeignSource);
-                node.setType(NodeType.ACTIVE);
-                node.setLastCapsdPoll(now);
+                    node.setForeignSource(effectiveForeignSource);
+                    node.setType(NodeType.ACTIVE);
+                    node.setLastCapsdPoll(now);
 
-                final OnmsIpInterface iface = new OnmsIpInterface(InetAddressUtils.addr(ipAddress), node);
-                iface.setIsManaged("M");
-                iface.setIpHostName(hostname);
-                iface.setIsSnmpPrimary(PrimaryType.NOT_ELIGIBLE);
-                iface.setIpLastCapsdPoll(now);
+                    final OnmsIpInterface iface = new OnmsIpInterface(InetAddressUtils.addr(ipAddress), node);
+                    iface.setIsManaged("M");
+                    iface.setIpHostName(hostname);
+                    iface.setIsSnmpPrimary(PrimaryType.NOT_ELIGIBLE);
+                    iface.setIpLastCapsdPoll(now);
 
-                m_nodeDao.save(node);
-                m_nodeDao.flush();
-                return node;
-            }
-        }.execute();
+                    m_nodeDao.save(node);
+                    m_nodeDao.flush();
+                    return node;
+                }
+            }.execute();
 
-        if (node != null) {
-            if (effectiveForeignSource != null) {
+            if (node != null && effectiveForeignSource != null) {
                 node.setForeignId(node.getNodeId());
                 createUpdateRequistion(ipAddress, node, effectiveLocationName, effectiveForeignSource);
             }
+        }
 
+        if (node != null) {
             // we do this here rather than in the doInsert method because
             // the doInsert may abort
             node.visit(new AddEventVisitor(m_eventForwarder));
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.provision.service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the new suspect scans triggered by discovery on a bounded pool of threads.
+ *
+ * Scans are queued per location and at most {@link #getMaxThreadsPerLocation()} scans
+ * run concurrently for any given location, so that a large sweep from a single location
+ * cannot starve the others (or overload the Minions at that location). Scans for an address
+ * that is already queued or being scanned at the same location are ignored, and scans
+ * submitted while {@link #getMaxQueueSize()} scans are waiting are rejected.
+ */
+public class NewSuspectScanPipeline implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NewSuspectScanPipeline.class);
+
+    public static final String NUM_THREADS_SYS_PROP = "org.opennms.provisiond.newSuspectThreads";
+    public static final String MAX_THREADS_PER_LOCATION_SYS_PROP = "org.opennms.provisiond.newSuspectThreadsPerLocation";
+    public static final String MAX_QUEUE_SIZE_SYS_PROP = "org.opennms.provisiond.newSuspectQueueSize";
+
+    public static final int DEFAULT_NUM_THREADS = 4;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 100000;
+
+    private final int numThreads;
+    private final int maxThreadsPerLocation;
+    private final int maxQueueSize;
+
+    private final ExecutorService executor;
+
+    private final Map<String, LocationQueue> queuesByLocation = new ConcurrentHashMap<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger numQueued = new AtomicInteger(0);
+    private final AtomicInteger numActive = new AtomicInteger(0);
+    private final AtomicInteger numOutstanding = new AtomicInteger(0);
+
+    private final Timer waitTimer;
+    private final Timer scanTimer;
+    private final Meter deduplicatedMeter;
+    private final Meter rejectedMeter;
+
+    public NewSuspectScanPipeline() {
+        this(new MetricRegistry());
+    }
+
+    public NewSuspectScanPipeline(MetricRegistry metrics) {
+        this(Integer.getInteger(NUM_THREADS_SYS_PROP, DEFAULT_NUM_THREADS),
+                Integer.getInteger(MAX_THREADS_PER_LOCATION_SYS_PROP, Integer.getInteger(NUM_THREADS_SYS_PROP, DEFAULT_NUM_THREADS)),
+                Integer.getInteger(MAX_QUEUE_SIZE_SYS_PROP, DEFAULT_MAX_QUEUE_SIZE),
+                metrics);
+    }
+
+    public NewSuspectScanPipeline(int numThreads, int maxThreadsPerLocation, int maxQueueSize, MetricRegistry metrics) {
+        this.numThreads = Math.max(1, numThreads);
+        this.maxThreadsPerLocation = Math.max(1, Math.min(this.numThreads, maxThreadsPerLocation));
+        this.maxQueueSize = maxQueueSize;
+        Objects.requireNonNull(metrics);
+
+        executor = Executors.newFixedThreadPool(this.numThreads, new ThreadFactoryBuilder()
+                .setNameFormat("newSuspectExecutor-%d")
+                .build());
+
+        waitTimer = metrics.timer(MetricRegistry.name("newSuspect", "wait"));
+        scanTimer = metrics.timer(MetricRegistry.name("newSuspect", "scan"));
+        deduplicatedMeter = metrics.meter(MetricRegistry.name("newSuspect", "deduplicated"));
+        rejectedMeter = metrics.meter(MetricRegistry.name("newSuspect", "rejected"));
+        metrics.register(MetricRegistry.name("newSuspect", "queued"), (Gauge<Integer>) numQueued::get);
+        metrics.register(MetricRegistry.name("newSuspect", "active"), (Gauge<Integer>) numActive::get);
+    }
+
+    /**
+     * Queues the scan of the given address.
+     *
+     * @param ipAddress the address being scanned, used to ignore duplicate requests
+     * @param location the location from which the address should be scanned
+     * @param scan the scan
+     * @return <code>true</code> if the scan was queued, <code>false</code> if it was ignored or rejected
+     */
+    public boolean submit(String ipAddress, String location, Runnable scan) {
+        final String key = location + "/" + ipAddress;
+        if (!inFlight.add(key)) {
+            LOG.debug("A new suspect scan for {} at location {} is already pending. Ignoring.", ipAddress, location);
+            deduplicatedMeter.mark();
+            return false;
+        }
+        if (numQueued.incrementAndGet() > maxQueueSize) {
+            numQueued.decrementAndGet();
+            inFlight.remove(key);
+            LOG.warn("The new suspect queue is full ({} scans are pending). Ignoring the new suspect scan for {} at location {}.",
+                    maxQueueSize, ipAddress, location);
+            rejectedMeter.mark();
+            return false;
+        }
+
+        numOutstanding.incrementAndGet();
+        final LocationQueue queue = queuesByLocation.computeIfAbsent(location, l -> new LocationQueue());
+        queue.pending.add(new Job(key, scan));
+        drain(queue);
+        return true;
+    }
+
+    /**
+     * Waits until all of the queued scans have completed.
+     *
+     * @return <code>true</code> if all of the scans completed, <code>false</code> if the timeout elapsed first
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (numOutstanding) {
+            while (numOutstanding.get() > 0) {
+                final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return false;
+                }
+                numOutstanding.wait(remainingMs);
+            }
+        }
+        return true;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public int getMaxThreadsPerLocation() {
+        return maxThreadsPerLocation;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public int getQueueSize() {
+        return numQueued.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Hands the pending jobs of the given location to the executor until
+     * the location is running as many scans as it is allowed to.
+     */
+    private void drain(LocationQueue queue) {
+        while (true) {
+            final int running = queue.running.get();
+            if (running >= maxThreadsPerLocation || queue.pending.isEmpty()) {
+                return;
+            }
+            if (!queue.running.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            final Job job = queue.pending.poll();
+            if (job == null) {
+                // Another thread took the last job
+                queue.running.decrementAndGet();
+                continue;
+            }
+            executor.execute(() -> run(queue, job));
+        }
+    }
+
+    private void run(LocationQueue queue, Job job) {
+        numQueued.decrementAndGet();
+        numActive.incrementAndGet();
+        waitTimer.update(System.nanoTime() - job.submittedAt, TimeUnit.NANOSECONDS);
+        try (Timer.Context ctx = scanTimer.time()) {
+            job.scan.run();
+        } catch (Throwable t) {
+            LOG.error("An unexpected error occurred while running the new suspect scan for {}.", job.key, t);
+        } finally {
+            numActive.decrementAndGet();
+            inFlight.remove(job.key);
+            queue.running.decrementAndGet();
+            drain(queue);
+            if (numOutstanding.decrementAndGet() == 0) {
+                synchronized (numOutstanding) {
+                    numOutstanding.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static class LocationQueue {
+        private final Queue<Job> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger running = new AtomicInteger(0);
+    }
+
+    private static class Job {
+        private final String key;
+        private final Runnable scan;
+        private final long submittedAt = System.nanoTime();
+
+        private Job(String key, Runnable scan) {
+            this.key = key;
+            this.scan = scan;
+        }
+    }
+}
@@ -40,11 +40,8 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.opennms.core.spring.BeanUtils;
@@ -81,7 +78,6 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Massively Parallel Java Provisioning <code>ServiceDaemon</code> for OpenNMS.
@@ -110,10 +106,7 @@ public class Provisioner implements SpringServiceDaemon {
     
     private volatile TimeTrackingMonitor m_stats;
 
-    private final ThreadFactory newSuspectThreadFactory = new ThreadFactoryBuilder()
-            .setNameFormat("newSuspectExecutor")
-            .build();
-    private ExecutorService m_newSuspectExecutor = Executors.newSingleThreadExecutor(newSuspectThreadFactory);
+    private NewSuspectScanPipeline m_newSuspectPipeline = new NewSuspectScanPipeline();
 
     @Autowired
     private ProvisioningAdapterManager m_manager;
@@ -240,7 +233,7 @@ public class Provisioner implements SpringServiceDaemon {
     public void destroy() throws Exception {
         m_importSchedule.stop();
         m_scheduledExecutor.shutdown();
-        m_newSuspectExecutor.shutdown();
+        m_newSuspectPipeline.close();
     }
 
     /**
@@ -654,9 +647,15 @@ public class Provisioner implements SpringServiceDaemon {
                 }
             }
         };
-        // Run new suspect events in a single thread executor so that only one node will be scanned at a given time.
-        m_newSuspectExecutor.execute(r);
-        
+        // Scans are limited per location, use the reporting system when the location is not known
+        // so that we avoid looking up the monitoring system from the event handler
+        String pipelineLocation = MonitoringLocationDao.DEFAULT_MONITORING_LOCATION_ID;
+        if (paramMap.containsKey("location")) {
+            pipelineLocation = paramMap.get("location");
+        } else if (event.getDistPoller() != null) {
+            pipelineLocation = event.getDistPoller();
+        }
+        m_newSuspectPipeline.submit(ip, pipelineLocation, r);
     }
     
     /**
@@ -943,7 +942,11 @@ public class Provisioner implements SpringServiceDaemon {
         }
     }
 
-    public ExecutorService getNewSuspectExecutor() {
-        return m_newSuspectExecutor;
+    public void setNewSuspectPipeline(NewSuspectScanPipeline newSuspectPipeline) {
+        m_newSuspectPipeline = newSuspectPipeline;
+    }
+
+    public NewSuspectScanPipeline getNewSuspectPipeline() {
+        return m_newSuspectPipeline;
     }
 }
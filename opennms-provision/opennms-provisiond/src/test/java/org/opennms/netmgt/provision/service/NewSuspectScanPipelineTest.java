@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.provision.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class NewSuspectScanPipelineTest {
+
+    private NewSuspectScanPipeline pipeline;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void canRunScansInParallel() throws InterruptedException {
+        pipeline = new NewSuspectScanPipeline(4, 4, 100, new MetricRegistry());
+
+        // All of the scans must be running at the same time for the latch to be released
+        final CountDownLatch allRunning = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(pipeline.submit("10.0.0." + i, "Default", () -> {
+                allRunning.countDown();
+                try {
+                    allRunning.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }), equalTo(true));
+        }
+
+        assertThat(allRunning.await(1, TimeUnit.MINUTES), equalTo(true));
+        assertThat(pipeline.awaitIdle(1, TimeUnit.MINUTES), equalTo(true));
+    }
+
+    @Test
+    public void limitsConcurrencyPerLocation() throws InterruptedException {
+        pipeline = new NewSuspectScanPipeline(4, 2, 100, new MetricRegistry());
+
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        for (int i = 0; i < 20; i++) {
+            pipeline.submit("10.0.0." + i, "Remote", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                running.decrementAndGet();
+            });
+        }
+
+        assertThat(pipeline.awaitIdle(1, TimeUnit.MINUTES), equalTo(true));
+        assertThat(maxRunning.get() <= 2, equalTo(true));
+    }
+
+    @Test
+    public void runsScansForTheSameForeignSourceConcurrently() throws InterruptedException {
+        pipeline = new NewSuspectScanPipeline(4, 4, 100, new MetricRegistry());
+
+        // Discovery submits all of the addresses of a range with the same foreign source and location
+        final CountDownLatch allRunning = new CountDownLatch(4);
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit("10.0.0." + i, "Default", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                allRunning.countDown();
+                try {
+                    allRunning.await(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                running.decrementAndGet();
+            });
+        }
+
+        assertThat(pipeline.awaitIdle(1, TimeUnit.MINUTES), equalTo(true));
+        assertThat(maxRunning.get(), equalTo(4));
+    }
+
+    @Test
+    public void ignoresDuplicateAndExcessScans() throws InterruptedException {
+        final MetricRegistry metrics = new MetricRegistry();
+        pipeline = new NewSuspectScanPipeline(1, 1, 2, metrics);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger numScans = new AtomicInteger(0);
+        final Runnable scan = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            numScans.incrementAndGet();
+        };
+
+        assertThat(pipeline.submit("10.0.0.1", "Default", scan), equalTo(true));
+        assertThat(started.await(1, TimeUnit.MINUTES), equalTo(true));
+        // The same address is already being scanned
+        assertThat(pipeline.submit("10.0.0.1", "Default", scan), equalTo(false));
+        // but can be scanned from another location
+        assertThat(pipeline.submit("10.0.0.1", "Remote", scan), equalTo(true));
+        assertThat(pipeline.submit("10.0.0.2", "Default", scan), equalTo(true));
+        // The queue is now full
+        assertThat(pipeline.getQueueSize(), equalTo(2));
+        assertThat(pipeline.submit("10.0.0.3", "Default", scan), equalTo(false));
+
+        release.countDown();
+        assertThat(pipeline.awaitIdle(1, TimeUnit.MINUTES), equalTo(true));
+        assertThat(numScans.get(), equalTo(3));
+        assertThat(metrics.meter("newSuspect.deduplicated").getCount(), equalTo(1L));
+        assertThat(metrics.meter("newSuspect.rejected").getCount(), equalTo(1L));
+
+        // Once completed, the address can be scanned again
+        assertThat(pipeline.submit("10.0.0.1", "Default", scan), equalTo(true));
+        assertThat(pipeline.awaitIdle(1, TimeUnit.MINUTES), equalTo(true));
+    }
+}
@@ -37,7 +37,6 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.InetAddress;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -108,9 +107,7 @@ public class ProvisionerTest {
         // Trigger the newSuspect
         provisioner.handleNewSuspectEvent(ImmutableMapper.fromMutableEvent(newSuspectEvent));
         // Wait for the runnable to complete
-        final CountDownLatch latch = new CountDownLatch(1);
-        provisioner.getNewSuspectExecutor().execute(latch::countDown);
-        latch.await(1, TimeUnit.MINUTES);
+        assertThat(provisioner.getNewSuspectPipeline().awaitIdle(1, TimeUnit.MINUTES), equalTo(true));
 
         // Make sure we tried to lookup the monitoring system from the given id
         verify(monitoringSystemDao, times(1)).get("non-existent");
@@ -79,7 +79,7 @@ public abstract class ProvisioningITCase {
     }
 
     protected void waitForEverything() throws InterruptedException {
-        final CountDownLatch latch = new CountDownLatch(5);
+        final CountDownLatch latch = new CountDownLatch(4);
         final Runnable runnable = new Runnable() {
             @Override public void run() {
                 latch.countDown();
@@ -89,12 +89,12 @@ public abstract class ProvisioningITCase {
         m_scanExecutor.execute(runnable);
         m_importExecutor.execute(runnable);
         m_writeExecutor.execute(runnable);
-        m_provisioner.getNewSuspectExecutor().execute(runnable);
+        m_provisioner.getNewSuspectPipeline().awaitIdle(5, TimeUnit.MINUTES);
         latch.await(5, TimeUnit.MINUTES);
     }
 
     protected void waitForImport() throws InterruptedException {
-        final CountDownLatch latch = new CountDownLatch(4);
+        final CountDownLatch latch = new CountDownLatch(3);
         final Runnable runnable = new Runnable() {
             @Override public void run() {
                 latch.countDown();
@@ -103,7 +103,7 @@ public abstract class ProvisioningITCase {
         m_scanExecutor.execute(runnable);
         m_importExecutor.execute(runnable);
         m_writeExecutor.execute(runnable);
-        m_provisioner.getNewSuspectExecutor().execute(runnable);
+        m_provisioner.getNewSuspectPipeline().awaitIdle(5, TimeUnit.MINUTES);
         latch.await(5, TimeUnit.MINUTES);
     }
 
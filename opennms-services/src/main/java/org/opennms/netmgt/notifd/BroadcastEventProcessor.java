@@ -32,16 +32,21 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -96,6 +101,31 @@ public final class BroadcastEventProcessor implements EventListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(BroadcastEventProcessor.class);
 
+    /**
+     * Events that may change which nodes, interfaces and services are matched by the rules of the notifications
+     */
+    private static final Set<String> NODE_CHANGED_UEIS = new HashSet<>(Arrays.asList(
+            EventConstants.NODE_ADDED_EVENT_UEI,
+            EventConstants.NODE_DELETED_EVENT_UEI,
+            EventConstants.NODE_UPDATED_EVENT_UEI,
+            EventConstants.NODE_LOCATION_CHANGED_EVENT_UEI,
+            EventConstants.NODE_CATEGORY_MEMBERSHIP_CHANGED_EVENT_UEI,
+            EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+            EventConstants.NODE_GAINED_SERVICE_EVENT_UEI,
+            EventConstants.SERVICE_DELETED_EVENT_UEI,
+            EventConstants.INTERFACE_DELETED_EVENT_UEI,
+            EventConstants.NODE_INFO_CHANGED_EVENT_UEI,
+            EventConstants.NODE_LABEL_CHANGED_EVENT_UEI,
+            EventConstants.ASSET_INFO_CHANGED_EVENT_UEI,
+            EventConstants.SERVICE_UNMANAGED_EVENT_UEI,
+            EventConstants.SUSPEND_POLLING_SERVICE_EVENT_UEI,
+            EventConstants.RESUME_POLLING_SERVICE_EVENT_UEI));
+
+    /**
+     * Sent by the web UI after managing or unmanaging interfaces, which is done without any node specific event
+     */
+    private static final String RESTART_SCM_EVENT_UEI = "uei.opennms.org/internal/restartSCM";
+
     private volatile Map<String, NoticeQueue> m_noticeQueues;
     private volatile NotificationManager m_notificationManager;
     private volatile NotifdConfigManager m_notifdConfigManager;
@@ -105,6 +135,7 @@ public final class BroadcastEventProcessor implements EventListener {
     private volatile NotificationCommandManager m_notificationCommandManager;
     private volatile EventConfDao m_eventConfDao;
     private volatile ThreadPoolExecutor m_notificationTaskExecutor;
+    private volatile ExecutorService m_filterRefreshExecutor;
 
     @Autowired
     private volatile EventIpcManager m_eventManager;
@@ -134,6 +165,12 @@ public final class BroadcastEventProcessor implements EventListener {
         // that can be executed in parallel.
         setupThreadPool();
 
+        // Refresh the filter matches of the notifications off the event thread
+        m_filterRefreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("NotificationFilterRefresh-%d")
+                .build());
+        m_notificationManager.setFilterRefreshExecutor(m_filterRefreshExecutor);
+
         // start to listen for events
         getEventManager().addEventListener(this);
     }
@@ -194,6 +231,10 @@ public final class BroadcastEventProcessor implements EventListener {
      */
     public void close() {
         getEventManager().removeEventListener(this);
+        if (m_filterRefreshExecutor != null) {
+            m_notificationManager.setFilterRefreshExecutor(null);
+            m_filterRefreshExecutor.shutdown();
+        }
     }
 
 
@@ -229,6 +270,8 @@ public final class BroadcastEventProcessor implements EventListener {
             return;
         }
 
+        refreshFilterMatches(event);
+
         if (event.getLogmsg() != null && event.getLogmsg().getDest().equalsIgnoreCase("donotpersist")) {
             LOG.debug("discarding event {}, the event has been configured as 'doNotPersist'.", event.getUei());
             return;
@@ -250,6 +293,32 @@ public final class BroadcastEventProcessor implements EventListener {
         automaticAcknowledge(mutableEvent, notifsOn);
     }
 
+    /**
+     * Keeps the filter matches of the notifications up to date as nodes, interfaces and services change.
+     */
+    private void refreshFilterMatches(IEvent event) {
+        final String uei = event.getUei();
+        if (EventConstants.INTERFACE_REPARENTED_EVENT_UEI.equals(uei)) {
+            refreshFilterMatches(event.getParm(EventConstants.PARM_OLD_NODEID));
+            refreshFilterMatches(event.getParm(EventConstants.PARM_NEW_NODEID));
+        } else if (NODE_CHANGED_UEIS.contains(uei) && event.getNodeid() != null && event.getNodeid() > 0) {
+            m_notificationManager.refreshFilterMatches(event.getNodeid().intValue());
+        } else if (RESTART_SCM_EVENT_UEI.equals(uei)) {
+            m_notificationManager.refreshAllFilterMatches();
+        }
+    }
+
+    private void refreshFilterMatches(IParm nodeIdParm) {
+        if (nodeIdParm == null || nodeIdParm.getValue() == null) {
+            return;
+        }
+        try {
+            m_notificationManager.refreshFilterMatches(Integer.parseInt(nodeIdParm.getValue().getContent()));
+        } catch (NumberFormatException e) {
+            LOG.warn("refreshFilterMatches: invalid node id {}", nodeIdParm.getValue().getContent());
+        }
+    }
+
     private boolean isReloadConfigEvent(IEvent event) {
         boolean isTarget = false;
 
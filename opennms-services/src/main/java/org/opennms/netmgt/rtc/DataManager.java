@@ -33,15 +33,17 @@ import java.net.InetAddress;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.RTCConfigFactory;
@@ -50,9 +52,11 @@ import org.opennms.netmgt.events.api.EventConstants;
 import org.opennms.netmgt.filter.api.FilterDao;
 import org.opennms.netmgt.filter.api.FilterParseException;
 import org.opennms.netmgt.rtc.datablock.RTCCategory;
+import org.opennms.netmgt.rtc.datablock.RTCCategoryAvailability;
 import org.opennms.netmgt.rtc.datablock.RTCHashMap;
 import org.opennms.netmgt.rtc.datablock.RTCNode;
 import org.opennms.netmgt.rtc.datablock.RTCNodeKey;
+import org.opennms.netmgt.rtc.datablock.RTCNodeSvcTime;
 import org.opennms.netmgt.rtc.utils.LegacyEuiLevelMapper;
 import org.opennms.netmgt.xml.rtc.EuiLevel;
 import org.slf4j.Logger;
@@ -65,6 +69,8 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import com.google.common.util.concurrent.Striped;
+
 /**
  * Contains and maintains all the data for the RTC.
  *
@@ -80,6 +86,12 @@ import org.springframework.transaction.support.TransactionTemplate;
  * 'nodeGainedService' event would result in the 'nodeGainedService()' method
  * being called by the DataUpdater(s).
  *
+ * Updates are serialized per node using striped locks, so events for
+ * different nodes are processed concurrently. The availability of each
+ * category is maintained incrementally as services and outages are added and
+ * removed by a 'RTCCategoryAvailability', which can be read without waiting
+ * for the processing of events.
+ *
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  */
@@ -87,6 +99,8 @@ public class DataManager implements AvailabilityService, InitializingBean {
     
     private static final Logger LOG = LoggerFactory.getLogger(DataManager.class);
 
+    private static final int NODE_LOCK_STRIPES = 64;
+
     @Autowired
 	private FilterDao m_filterDao;
 
@@ -185,12 +199,22 @@ public class DataManager implements AvailabilityService, InitializingBean {
      */
     private Map<String, RTCCategory> m_categories;
 
+    /**
+     * The incrementally maintained availability of the RTC categories
+     */
+    private Map<String, RTCCategoryAvailability> m_availability;
+
     /**
      * map keyed using the RTCNodeKey or node ID or node ID/IP address
      */
     private RTCHashMap m_map;
 
-	private static void addOutageToRTCNode(RTCNode rtcN, Timestamp lostTimeTS, Timestamp regainedTimeTS) {
+    /**
+     * Locks serializing updates for a node ID
+     */
+    private final Striped<Lock> m_nodeLocks = Striped.lock(NODE_LOCK_STRIPES);
+
+	private void addOutageToRTCNode(RTCNode rtcN, Timestamp lostTimeTS, Timestamp regainedTimeTS) {
 		if (lostTimeTS == null) return;
 		long lostTime = lostTimeTS.getTime();
 		long regainedTime = -1;
@@ -201,20 +225,24 @@ public class DataManager implements AvailabilityService, InitializingBean {
 
 		LOG.debug("regained time for nodeid/ip/svc: {}/{}/{}: {}/{}", rtcN.getNodeID(), rtcN.getIP(), rtcN.getSvcName(), regainedTimeTS, regainedTime);
 
-		rtcN.addSvcTime(lostTime, regainedTime);
+		RTCNodeSvcTime svcTime = rtcN.addSvcTime(lostTime, regainedTime);
+		if (svcTime != null) {
+			svcTimeUpdated(rtcN, svcTime);
+		}
 	}
 
 	private void addRTCNode(RTCNode rtcN) {
 		m_map.add(rtcN);
 	}
 
-	private static void addNodeToCategory(RTCCategory cat, RTCNode rtcN) {
+	private void addNodeToCategory(RTCCategory cat, RTCNode rtcN) {
 
 		// add the category info to the node
         rtcN.addCategory(cat.getLabel());
 
 		// Add node to category
 		cat.addNode(rtcN);
+		m_availability.get(cat.getLabel()).addService(rtcN);
 
 		LOG.debug("rtcN : {}/{}/{} added to cat: {}", rtcN.getNodeID(), rtcN.getIP(), rtcN.getSvcName(), cat.getLabel());
 	}
@@ -278,6 +306,18 @@ public class DataManager implements AvailabilityService, InitializingBean {
     	
     }
 
+	private void svcTimeUpdated(RTCNode rtcN, RTCNodeSvcTime svcTime) {
+		for (String catlabel : rtcN.getCategories()) {
+			m_availability.get(catlabel).updateSvcTime(rtcN, svcTime);
+		}
+	}
+
+	private void removeFromCategories(RTCNode rtcN) {
+		for (String catlabel : rtcN.getCategories()) {
+			m_availability.get(catlabel).removeService(rtcN);
+		}
+	}
+
 	private static Object[] createArgs(Object arg1, Object arg2, Object[] remaining) {
 		LinkedList<Object> args = new LinkedList<Object>();
 		args.add(arg1);
@@ -321,6 +361,12 @@ public class DataManager implements AvailabilityService, InitializingBean {
 
     	LOG.debug("Number of categories read: {}", m_categories.size());
 
+    	final Map<String, RTCCategoryAvailability> availability = new HashMap<>();
+    	for (String catlabel : m_categories.keySet()) {
+    		availability.put(catlabel, new RTCCategoryAvailability(catlabel, m_configFactory.getRollingWindow()));
+    	}
+    	m_availability = Collections.unmodifiableMap(availability);
+
     	// create data holder
     	m_map = new RTCHashMap(30000);
 
@@ -353,7 +399,7 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param svcName
      *            the service name
      */
-    public synchronized void nodeGainedService(int nodeid, InetAddress ip, String svcName) {
+    public void nodeGainedService(int nodeid, InetAddress ip, String svcName) {
         //
         // check the 'status' flag for the service
         //
@@ -414,18 +460,26 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param t
      *            the time at which service was lost
      */
-    public synchronized void outageCreated(int nodeid, InetAddress ip, String svcName, long t) {
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            // oops! got a lost/regained service for a node that is not known?
-            LOG.info("Received a outageCreated event for an unknown/irrelevant node: {}", key.toString());
-            return;
-        }
-
-        // inform node
-        rtcN.nodeLostService(t);
+    public void outageCreated(int nodeid, InetAddress ip, String svcName, long t) {
+        final Lock lock = m_nodeLocks.get(nodeid);
+        lock.lock();
+        try {
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                // oops! got a lost/regained service for a node that is not known?
+                LOG.info("Received a outageCreated event for an unknown/irrelevant node: {}", key.toString());
+                return;
+            }
 
+            // inform node
+            RTCNodeSvcTime svcTime = rtcN.nodeLostService(t);
+            if (svcTime != null) {
+                svcTimeUpdated(rtcN, svcTime);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -441,17 +495,26 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param t
      *            the time at which service was regained
      */
-    public synchronized void outageResolved(int nodeid, InetAddress ip, String svcName, long t) {
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            // oops! got a lost/regained service for a node that is not known?
-            LOG.info("Received a outageResolved event for an unknown/irrelevant node: {}", key.toString());
-            return;
-        }
+    public void outageResolved(int nodeid, InetAddress ip, String svcName, long t) {
+        final Lock lock = m_nodeLocks.get(nodeid);
+        lock.lock();
+        try {
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                // oops! got a lost/regained service for a node that is not known?
+                LOG.info("Received a outageResolved event for an unknown/irrelevant node: {}", key.toString());
+                return;
+            }
 
-        // inform node
-        rtcN.nodeRegainedService(t);
+            // inform node
+            RTCNodeSvcTime svcTime = rtcN.nodeRegainedService(t);
+            if (svcTime != null) {
+                svcTimeUpdated(rtcN, svcTime);
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -464,50 +527,49 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param svcName
      *            the service that was deleted
      */
-    public synchronized void serviceDeleted(int nodeid, InetAddress ip, String svcName) {
-        // create lookup key
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+    public void serviceDeleted(int nodeid, InetAddress ip, String svcName) {
+        final Lock lock = m_nodeLocks.get(nodeid);
+        lock.lock();
+        try {
+            // create lookup key
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
 
-        // lookup the node
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            LOG.warn("Received a {} event for an unknown node: {}", EventConstants.SERVICE_DELETED_EVENT_UEI, key.toString());
+            // lookup the node
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                LOG.warn("Received a {} event for an unknown node: {}", EventConstants.SERVICE_DELETED_EVENT_UEI, key.toString());
 
-            return;
-        }
+                return;
+            }
 
-        //
-        // Go through from all the categories this node belongs to
-        // and delete the service
-        //
-        List<String> categories = rtcN.getCategories();
-        ListIterator<String> catIter = categories.listIterator();
-        while (catIter.hasNext()) {
-            String catlabel = (String) catIter.next();
-
-            RTCCategory cat = (RTCCategory) m_categories.get(catlabel);
-
-            // get nodes in this category
-            List<Integer> catNodes = cat.getNodes();
-
-            // check if the category contains this node
-            int nIndex = catNodes.indexOf(rtcN.getNodeID());
-            if (nIndex != -1) {
-                // remove from the category if it is the only service left.
-                if (m_map.getServiceCount(nodeid, catlabel) == 1) {
-                    catNodes.remove(nIndex);
-                    LOG.info("Removing node from category: {}", catlabel);
+            removeFromCategories(rtcN);
+
+            //
+            // Go through from all the categories this node belongs to
+            // and delete the service
+            //
+            for (String catlabel : new ArrayList<>(rtcN.getCategories())) {
+                RTCCategory cat = m_categories.get(catlabel);
+
+                // check if the category contains this node
+                if (cat.getNodes().contains(rtcN.getNodeID())) {
+                    // remove from the category if it is the only service left.
+                    if (m_map.getServiceCount(nodeid, catlabel) == 1) {
+                        cat.deleteNode(nodeid);
+                        LOG.info("Removing node from category: {}", catlabel);
+                    }
+
+                    // let the node know that this category is out
+                    rtcN.removeCategory(catlabel);
                 }
-
-                // let the node know that this category is out
-                catIter.remove();
             }
-        }
 
-        // finally remove from map
-        
-        m_map.delete(rtcN);
+            // finally remove from map
 
+            m_map.delete(rtcN);
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -515,7 +577,7 @@ public class DataManager implements AvailabilityService, InitializingBean {
      *
      * @param nodeid a long.
      */
-    public synchronized void assetInfoChanged(int nodeid) {
+    public void assetInfoChanged(int nodeid) {
         try {
         	rtcNodeRescan(nodeid);
         } catch (FilterParseException ex) {
@@ -537,7 +599,7 @@ public class DataManager implements AvailabilityService, InitializingBean {
      *
      * @param nodeid a long.
      */
-    public synchronized void nodeCategoryMembershipChanged(int nodeid) {
+    public void nodeCategoryMembershipChanged(int nodeid) {
         try {
         	rtcNodeRescan(nodeid);
         } catch (FilterParseException ex) {
@@ -567,16 +629,23 @@ public class DataManager implements AvailabilityService, InitializingBean {
      *             if the database read or filtering the data against the
      *             category rule fails for some reason
      */
-    public synchronized void rtcNodeRescan(int nodeid) throws SQLException, FilterParseException, RTCException {
-    	
-    	for (RTCCategory cat : m_categories.values()) {
-			cat.deleteNode(nodeid);
-		}
-    	
-    	m_map.deleteNode(nodeid);
-    	
-    	populateNodesFromDB("ifsvc.nodeid = ?", new Object[] { Long.valueOf(nodeid) });
-    	
+    public void rtcNodeRescan(int nodeid) throws SQLException, FilterParseException, RTCException {
+        final Lock lock = m_nodeLocks.get(nodeid);
+        lock.lock();
+        try {
+            for (RTCCategory cat : m_categories.values()) {
+                cat.deleteNode(nodeid);
+            }
+
+            for (RTCNode rtcN : m_map.getRTCNodes(nodeid)) {
+                removeFromCategories(rtcN);
+            }
+            m_map.deleteNode(nodeid);
+
+            populateNodesFromDB("ifsvc.nodeid = ?", new Object[] { Long.valueOf(nodeid) });
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -599,27 +668,41 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @param newNodeId
      *            the node that the IP now belongs to
      */
-    public synchronized void interfaceReparented(InetAddress ip, int oldNodeId, int newNodeId) {
-        // get all RTCNodes with the IP/old node ID
-        for (RTCNode rtcN : m_map.getRTCNodes(oldNodeId, ip)) {
-
-            // remove the node with the old node id from the map
-            m_map.delete(rtcN);
-
-            // change the node ID on the RTCNode
-            rtcN.setNodeID(newNodeId);
-
-            // now add the node with the new node ID
-            m_map.add(rtcN);
+    public void interfaceReparented(InetAddress ip, int oldNodeId, int newNodeId) {
+        // lock both nodes, bulkGet() orders the locks to avoid deadlocks
+        final List<Lock> locks = new ArrayList<>();
+        for (Lock lock : m_nodeLocks.bulkGet(Arrays.asList(oldNodeId, newNodeId))) {
+            lock.lock();
+            locks.add(lock);
+        }
+        try {
+            // get all RTCNodes with the IP/old node ID
+            for (RTCNode rtcN : new ArrayList<>(m_map.getRTCNodes(oldNodeId, ip))) {
+
+                // remove the node with the old node id from the map
+                m_map.delete(rtcN);
+                removeFromCategories(rtcN);
+
+                // change the node ID on the RTCNode
+                rtcN.setNodeID(newNodeId);
+
+                // now add the node with the new node ID
+                m_map.add(rtcN);
+
+                // remove old node ID from the categories it belonged to
+                // and the new node ID
+                for (String catlabel : rtcN.getCategories()) {
+                    RTCCategory rtcCat = m_categories.get(catlabel);
+                    rtcCat.deleteNode(oldNodeId);
+                    rtcCat.addNode(newNodeId);
+                    m_availability.get(catlabel).addService(rtcN);
+                }
 
-            // remove old node ID from the categories it belonged to
-            // and the new node ID
-            for (String catlabel : rtcN.getCategories()) {
-                RTCCategory rtcCat = m_categories.get(catlabel);
-                rtcCat.deleteNode(oldNodeId);
-                rtcCat.addNode(newNodeId);
             }
-
+        } finally {
+            for (Lock lock : locks) {
+                lock.unlock();
+            }
         }
     }
 
@@ -636,8 +719,8 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the value(uptime) for the category in the last 'rollingWindow'
      *         starting at current time
      */
-    public synchronized double getValue(RTCCategory category, long curTime, long rollingWindow) {
-        return m_map.getValue(category.getLabel(), curTime, rollingWindow);
+    public double getValue(RTCCategory category, long curTime, long rollingWindow) {
+        return m_availability.get(category.getLabel()).getValue(curTime, rollingWindow);
     }
 
     /**
@@ -655,8 +738,8 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the value(uptime) for the node in the last 'rollingWindow'
      *         starting at current time in the context of the passed category
      */
-    public synchronized double getValue(int nodeid, RTCCategory category, long curTime, long rollingWindow) {
-        return m_map.getValue(nodeid, category.getLabel(), curTime, rollingWindow);
+    public double getValue(int nodeid, RTCCategory category, long curTime, long rollingWindow) {
+        return m_availability.get(category.getLabel()).getValue(nodeid, curTime, rollingWindow);
     }
 
     /**
@@ -670,8 +753,8 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the service count for the nodeid in the context of the passed
      *         category
      */
-    public synchronized int getServiceCount(int nodeid, RTCCategory category) {
-        return m_map.getServiceCount(nodeid, category.getLabel());
+    public int getServiceCount(int nodeid, RTCCategory category) {
+        return m_availability.get(category.getLabel()).getServiceCount(nodeid);
     }
 
     /**
@@ -685,8 +768,8 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the service down count for the nodeid in the context of the
      *         passed category
      */
-    public synchronized int getServiceDownCount(int nodeid, RTCCategory category) {
-        return m_map.getServiceDownCount(nodeid, category.getLabel());
+    public int getServiceDownCount(int nodeid, RTCCategory category) {
+        return m_availability.get(category.getLabel()).getServiceDownCount(nodeid);
     }
 
     /**
@@ -695,12 +778,18 @@ public class DataManager implements AvailabilityService, InitializingBean {
      * @return the categories
      */
     @Override
-    public synchronized Map<String, RTCCategory> getCategories() {
+    public Map<String, RTCCategory> getCategories() {
         return m_categories;
     }
 
+    /**
+     * Get a snapshot of the node IDs in the category
+     *
+     * @param category the category
+     * @return the node IDs in the category
+     */
     public Collection<Integer> getNodes(RTCCategory category) {
-        return category.getNodes();
+        return new ArrayList<>(category.getNodes());
     }
 
     @Override
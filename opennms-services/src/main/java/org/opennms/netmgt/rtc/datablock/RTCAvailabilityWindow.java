@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.rtc.datablock;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Running sum of the down time of a set of services over a rolling window.
+ * <p>
+ * Outages are sorted by how they contribute to the window that ends at the
+ * current time:
+ * <ul>
+ * <li>closed outages that were lost inside the window contribute their duration</li>
+ * <li>closed outages that were lost before the window contribute the time
+ * between the start of the window and the time they were regained</li>
+ * <li>open outages that were lost inside the window contribute the time since
+ * they were lost</li>
+ * <li>open outages that were lost before the window contribute the whole window</li>
+ * </ul>
+ * The sums of these contributions are maintained as outages are added and
+ * removed, and outages move between the groups when the window is advanced, so
+ * the down time can be calculated without visiting every outage. Closed outages
+ * that leave the window are dropped.
+ * <p>
+ * Updates must be serialized by the caller. Reads never modify the window and
+ * only visit the outages that crossed the start of the window since it was
+ * last advanced, so they can run concurrently with updates as long as the
+ * caller validates the result afterwards.
+ *
+ * @see RTCCategoryAvailability
+ */
+public class RTCAvailabilityWindow {
+
+    private static final Comparator<Outage> BY_LOST_TIME = Comparator.<Outage>comparingLong(o -> o.m_lostTime).thenComparingLong(o -> o.m_id);
+    private static final Comparator<Outage> BY_REGAINED_TIME = Comparator.<Outage>comparingLong(o -> o.m_regainedTime).thenComparingLong(o -> o.m_id);
+
+    private enum Phase {
+        CLOSED_INSIDE,
+        CLOSED_STRADDLING,
+        OPEN_INSIDE,
+        OPEN_SATURATED
+    }
+
+    private static final class Outage {
+        private final RTCNodeSvcTime m_svcTime;
+        private final long m_id;
+        private final long m_lostTime;
+        private final long m_regainedTime;
+        // Only accessed while updating
+        private Phase m_phase;
+
+        private Outage(RTCNodeSvcTime svcTime, long id, long lostTime, long regainedTime) {
+            m_svcTime = svcTime;
+            m_id = id;
+            m_lostTime = lostTime;
+            m_regainedTime = regainedTime;
+        }
+
+        private boolean isOpen() {
+            return m_regainedTime < 0;
+        }
+
+        private long getDownTime(long curTime, long rollingWindow) {
+            if (curTime < m_lostTime) {
+                return 0;
+            }
+            final long start = Math.max(m_lostTime, curTime - rollingWindow);
+            final long end = isOpen() || m_regainedTime >= curTime ? curTime : m_regainedTime;
+            return Math.max(0, end - start);
+        }
+
+        private static Outage probeLostTime(long lostTime) {
+            return new Outage(null, Long.MIN_VALUE, lostTime, -1);
+        }
+
+        private static Outage probeRegainedTime(long regainedTime) {
+            return new Outage(null, Long.MIN_VALUE, -1, regainedTime);
+        }
+    }
+
+    private final long m_rollingWindow;
+
+    private final NavigableSet<Outage> m_closedInside = new ConcurrentSkipListSet<>(BY_LOST_TIME);
+    private final NavigableSet<Outage> m_closedStraddling = new ConcurrentSkipListSet<>(BY_REGAINED_TIME);
+    private final NavigableSet<Outage> m_openInside = new ConcurrentSkipListSet<>(BY_LOST_TIME);
+    private final NavigableSet<Outage> m_openSaturated = new ConcurrentSkipListSet<>(BY_LOST_TIME);
+
+    // Only accessed while updating
+    private final Map<RTCNodeSvcTime, Outage> m_outages = new IdentityHashMap<>();
+    private long m_nextId = 0;
+
+    private long m_windowStart = Long.MIN_VALUE;
+    private long m_latestTime = Long.MIN_VALUE;
+    private int m_serviceCount = 0;
+
+    // Sum of (regained - lost) over the closed outages lost inside the window
+    private long m_closedInsideDownTime = 0;
+    // Sum of the regained times over the closed outages lost before the window
+    private long m_closedStraddlingRegainedTimes = 0;
+    private int m_closedStraddlingCount = 0;
+    // Sum of the lost times over the open outages lost inside the window
+    private long m_openInsideLostTimes = 0;
+    private int m_openInsideCount = 0;
+    private int m_openSaturatedCount = 0;
+
+    /**
+     * <p>Constructor for RTCAvailabilityWindow.</p>
+     *
+     * @param rollingWindow the length of the window in milliseconds
+     */
+    public RTCAvailabilityWindow(long rollingWindow) {
+        m_rollingWindow = rollingWindow;
+    }
+
+    /**
+     * Account for a service that is part of this window.
+     */
+    public void addService() {
+        m_serviceCount++;
+    }
+
+    /**
+     * Stop accounting for a service that was part of this window. The outages
+     * of the service need to be removed separately.
+     */
+    public void removeService() {
+        m_serviceCount--;
+    }
+
+    /**
+     * Add or update a lost/regained service time.
+     *
+     * @param svcTime the service time
+     */
+    public void add(RTCNodeSvcTime svcTime) {
+        remove(svcTime);
+
+        final long lostTime = svcTime.getLostTime();
+        final long regainedTime = svcTime.getRegainedTime();
+        m_latestTime = Math.max(m_latestTime, Math.max(lostTime, regainedTime));
+
+        final Outage outage = new Outage(svcTime, m_nextId++, lostTime, regainedTime);
+        if (place(outage)) {
+            m_outages.put(svcTime, outage);
+        }
+    }
+
+    /**
+     * Remove a lost/regained service time.
+     *
+     * @param svcTime the service time
+     */
+    public void remove(RTCNodeSvcTime svcTime) {
+        final Outage outage = m_outages.remove(svcTime);
+        if (outage != null) {
+            unplace(outage);
+        }
+    }
+
+    /**
+     * Check if the service time still contributes to the window.
+     *
+     * @param svcTime the service time
+     * @return false if the service time was never added, was removed, or was
+     *         dropped after leaving the window
+     */
+    public boolean contains(RTCNodeSvcTime svcTime) {
+        return m_outages.containsKey(svcTime);
+    }
+
+    /**
+     * Move the start of the window to 'rollingWindow' milliseconds before
+     * 'curTime'. Windows never move backwards.
+     *
+     * @param curTime the end of the window
+     */
+    public void advance(long curTime) {
+        final long windowStart = curTime - m_rollingWindow;
+        if (windowStart <= m_windowStart) {
+            return;
+        }
+
+        for (Outage outage = first(m_closedInside); outage != null && outage.m_lostTime < windowStart; outage = first(m_closedInside)) {
+            unplace(outage);
+            if (outage.m_regainedTime >= windowStart) {
+                addClosedStraddling(outage);
+            } else {
+                m_outages.remove(outage.m_svcTime);
+            }
+        }
+        for (Outage outage = first(m_closedStraddling); outage != null && outage.m_regainedTime < windowStart; outage = first(m_closedStraddling)) {
+            unplace(outage);
+            m_outages.remove(outage.m_svcTime);
+        }
+        for (Outage outage = first(m_openInside); outage != null && outage.m_lostTime < windowStart; outage = first(m_openInside)) {
+            unplace(outage);
+            addOpenSaturated(outage);
+        }
+
+        m_windowStart = windowStart;
+    }
+
+    /**
+     * Check if the window should be advanced before it is read at 'curTime'.
+     *
+     * @param curTime the end of the window
+     * @param interval how far the window may lag behind in milliseconds
+     * @return true if the start of the window lags behind by more than 'interval'
+     */
+    public boolean shouldAdvance(long curTime, long interval) {
+        return m_windowStart == Long.MIN_VALUE || curTime - m_rollingWindow - m_windowStart > interval;
+    }
+
+    /**
+     * Calculate the total down time of all services in the last
+     * 'rollingWindow' milliseconds starting at 'curTime'.
+     *
+     * This is only incremental when 'rollingWindow' matches the window this
+     * was created with and 'curTime' is neither before the start of the window
+     * nor before any of the service times, otherwise all outages still in the
+     * window are visited.
+     *
+     * @param curTime the end of the window
+     * @param rollingWindow the length of the window in milliseconds
+     * @return the total down time in milliseconds
+     */
+    public long getDownTime(long curTime, long rollingWindow) {
+        final long windowStart = curTime - rollingWindow;
+        if (rollingWindow != m_rollingWindow || windowStart < m_windowStart || curTime < m_latestTime) {
+            return getDownTime(m_closedInside, curTime, rollingWindow)
+                    + getDownTime(m_closedStraddling, curTime, rollingWindow)
+                    + getDownTime(m_openInside, curTime, rollingWindow)
+                    + getDownTime(m_openSaturated, curTime, rollingWindow);
+        }
+
+        long downTime = m_closedInsideDownTime
+                + (m_closedStraddlingRegainedTimes - m_closedStraddlingCount * windowStart)
+                + (m_openInsideCount * curTime - m_openInsideLostTimes)
+                + m_openSaturatedCount * rollingWindow;
+
+        // Correct the contributions of the outages that crossed the start of the window since it was advanced
+        for (Outage outage : m_closedInside.headSet(Outage.probeLostTime(windowStart))) {
+            downTime -= outage.m_regainedTime - outage.m_lostTime;
+            if (outage.m_regainedTime >= windowStart) {
+                downTime += outage.m_regainedTime - windowStart;
+            }
+        }
+        for (Outage outage : m_closedStraddling.headSet(Outage.probeRegainedTime(windowStart))) {
+            downTime -= outage.m_regainedTime - windowStart;
+        }
+        for (Outage outage : m_openInside.headSet(Outage.probeLostTime(windowStart))) {
+            downTime += rollingWindow - (curTime - outage.m_lostTime);
+        }
+        return downTime;
+    }
+
+    /**
+     * Return the number of services.
+     *
+     * @return the number of services
+     */
+    public int getServiceCount() {
+        return m_serviceCount;
+    }
+
+    /**
+     * Return the number of open outages, which is the number of services that
+     * are currently down.
+     *
+     * @return the number of open outages
+     */
+    public int getOpenOutageCount() {
+        return m_openInsideCount + m_openSaturatedCount;
+    }
+
+    private boolean place(Outage outage) {
+        if (outage.isOpen()) {
+            if (outage.m_lostTime >= m_windowStart) {
+                outage.m_phase = Phase.OPEN_INSIDE;
+                m_openInside.add(outage);
+                m_openInsideLostTimes += outage.m_lostTime;
+                m_openInsideCount++;
+            } else {
+                addOpenSaturated(outage);
+            }
+        } else if (outage.m_regainedTime < m_windowStart) {
+            // Already expired
+            return false;
+        } else if (outage.m_lostTime >= m_windowStart) {
+            outage.m_phase = Phase.CLOSED_INSIDE;
+            m_closedInside.add(outage);
+            m_closedInsideDownTime += outage.m_regainedTime - outage.m_lostTime;
+        } else {
+            addClosedStraddling(outage);
+        }
+        return true;
+    }
+
+    private void addClosedStraddling(Outage outage) {
+        outage.m_phase = Phase.CLOSED_STRADDLING;
+        m_closedStraddling.add(outage);
+        m_closedStraddlingRegainedTimes += outage.m_regainedTime;
+        m_closedStraddlingCount++;
+    }
+
+    private void addOpenSaturated(Outage outage) {
+        outage.m_phase = Phase.OPEN_SATURATED;
+        m_openSaturated.add(outage);
+        m_openSaturatedCount++;
+    }
+
+    private void unplace(Outage outage) {
+        switch (outage.m_phase) {
+        case CLOSED_INSIDE:
+            m_closedInside.remove(outage);
+            m_closedInsideDownTime -= outage.m_regainedTime - outage.m_lostTime;
+            break;
+        case CLOSED_STRADDLING:
+            m_closedStraddling.remove(outage);
+            m_closedStraddlingRegainedTimes -= outage.m_regainedTime;
+            m_closedStraddlingCount--;
+            break;
+        case OPEN_INSIDE:
+            m_openInside.remove(outage);
+            m_openInsideLostTimes -= outage.m_lostTime;
+            m_openInsideCount--;
+            break;
+        case OPEN_SATURATED:
+            m_openSaturated.remove(outage);
+            m_openSaturatedCount--;
+            break;
+        }
+    }
+
+    private static long getDownTime(NavigableSet<Outage> outages, long curTime, long rollingWindow) {
+        long downTime = 0;
+        for (Outage outage : outages) {
+            downTime += outage.getDownTime(curTime, rollingWindow);
+        }
+        return downTime;
+    }
+
+    private static Outage first(NavigableSet<Outage> outages) {
+        return outages.isEmpty() ? null : outages.first();
+    }
+}
@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.rtc.datablock;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import org.opennms.netmgt.rtc.RTCUtils;
+
+/**
+ * Incrementally maintained availability of the services in a category, and of
+ * the nodes these services belong to.
+ * <p>
+ * Each service ('RTCNode') that is added to the category contributes its
+ * lost/regained service times to a {@link RTCAvailabilityWindow} for the
+ * category and to one for its node.
+ * <p>
+ * Updates are serialized by a lock per category. Reads are optimistic and only
+ * take the lock if they keep overlapping with updates, so calculating the
+ * availability of a category neither blocks nor is blocked by the processing
+ * of events for other categories, and rarely by events for the same category.
+ *
+ * @see RTCAvailabilityWindow
+ */
+public class RTCCategoryAvailability {
+
+    private static final int MAX_OPTIMISTIC_READS = 3;
+
+    /**
+     * How far the windows may lag behind before a read advances them
+     */
+    private static final long ADVANCE_INTERVAL = 1000L;
+
+    private static class Service {
+        private final int m_nodeId;
+        // Service times that may still be in the windows
+        private final List<RTCNodeSvcTime> m_svcTimes;
+
+        private Service(int nodeId, List<RTCNodeSvcTime> svcTimes) {
+            m_nodeId = nodeId;
+            m_svcTimes = svcTimes;
+        }
+    }
+
+    private final String m_label;
+
+    private final long m_rollingWindow;
+
+    private final StampedLock m_lock = new StampedLock();
+
+    private final RTCAvailabilityWindow m_window;
+
+    private final Map<Integer, RTCAvailabilityWindow> m_nodeWindows = new ConcurrentHashMap<>();
+
+    // Only accessed while holding the write lock
+    private final Map<RTCNode, Service> m_services = new IdentityHashMap<>();
+
+    /**
+     * <p>Constructor for RTCCategoryAvailability.</p>
+     *
+     * @param label the category label
+     * @param rollingWindow the window for which availability is maintained
+     */
+    public RTCCategoryAvailability(String label, long rollingWindow) {
+        m_label = label;
+        m_rollingWindow = rollingWindow;
+        m_window = new RTCAvailabilityWindow(rollingWindow);
+    }
+
+    /**
+     * Return the category label
+     *
+     * @return the category label
+     */
+    public String getLabel() {
+        return m_label;
+    }
+
+    /**
+     * Add a service and its current service times to the category.
+     *
+     * @param rtcN the service
+     */
+    public void addService(RTCNode rtcN) {
+        final long stamp = m_lock.writeLock();
+        try {
+            if (m_services.containsKey(rtcN)) {
+                return;
+            }
+            final Service service = new Service(rtcN.getNodeID(), rtcN.getSvcTimes());
+            m_services.put(rtcN, service);
+
+            final RTCAvailabilityWindow nodeWindow = m_nodeWindows.computeIfAbsent(service.m_nodeId, nodeId -> new RTCAvailabilityWindow(m_rollingWindow));
+            m_window.addService();
+            nodeWindow.addService();
+            for (RTCNodeSvcTime svcTime : service.m_svcTimes) {
+                m_window.add(svcTime);
+                nodeWindow.add(svcTime);
+            }
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a service and its service times from the category.
+     *
+     * @param rtcN the service
+     */
+    public void removeService(RTCNode rtcN) {
+        final long stamp = m_lock.writeLock();
+        try {
+            final Service service = m_services.remove(rtcN);
+            if (service == null) {
+                return;
+            }
+
+            final RTCAvailabilityWindow nodeWindow = m_nodeWindows.get(service.m_nodeId);
+            for (RTCNodeSvcTime svcTime : service.m_svcTimes) {
+                m_window.remove(svcTime);
+                nodeWindow.remove(svcTime);
+            }
+            m_window.removeService();
+            nodeWindow.removeService();
+            if (nodeWindow.getServiceCount() == 0) {
+                m_nodeWindows.remove(service.m_nodeId);
+            }
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add or update a lost/regained service time of a service in the category.
+     *
+     * @param rtcN the service
+     * @param svcTime the new or updated service time
+     */
+    public void updateSvcTime(RTCNode rtcN, RTCNodeSvcTime svcTime) {
+        final long stamp = m_lock.writeLock();
+        try {
+            final Service service = m_services.get(rtcN);
+            if (service == null) {
+                return;
+            }
+
+            if (!service.m_svcTimes.contains(svcTime)) {
+                // Forget about the service times that have left the window
+                service.m_svcTimes.removeIf(t -> !m_window.contains(t));
+                service.m_svcTimes.add(svcTime);
+            }
+            m_window.add(svcTime);
+            m_nodeWindows.get(service.m_nodeId).add(svcTime);
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get the value (uptime) for the category in the last 'rollingWindow'
+     * starting at current time
+     *
+     * @param curTime
+     *            the current time
+     * @param rollingWindow
+     *            the window for which value is to be calculated
+     * @return the value (uptime) for the category
+     */
+    public double getValue(long curTime, long rollingWindow) {
+        return read(curTime, () -> RTCUtils.getOutagePercentage(m_window.getDownTime(curTime, rollingWindow), rollingWindow, m_window.getServiceCount()));
+    }
+
+    /**
+     * Get the value (uptime) for the node in the last 'rollingWindow' starting
+     * at current time in the context of this category
+     *
+     * @param nodeid
+     *            the node for which value is to be calculated
+     * @param curTime
+     *            the current time
+     * @param rollingWindow
+     *            the window for which value is to be calculated
+     * @return the value (uptime) for the node
+     */
+    public double getValue(int nodeid, long curTime, long rollingWindow) {
+        return read(curTime, () -> {
+            final RTCAvailabilityWindow nodeWindow = m_nodeWindows.get(nodeid);
+            if (nodeWindow == null) {
+                return RTCUtils.getOutagePercentage(0, rollingWindow, 0);
+            }
+            return RTCUtils.getOutagePercentage(nodeWindow.getDownTime(curTime, rollingWindow), rollingWindow, nodeWindow.getServiceCount());
+        });
+    }
+
+    /**
+     * Get the count of services of the node in this category
+     *
+     * @param nodeid
+     *            the node for which service count is needed
+     * @return the service count
+     */
+    public int getServiceCount(int nodeid) {
+        return read(() -> {
+            final RTCAvailabilityWindow nodeWindow = m_nodeWindows.get(nodeid);
+            return nodeWindow == null ? 0 : nodeWindow.getServiceCount();
+        });
+    }
+
+    /**
+     * Get the count of services of the node in this category that are
+     * currently down
+     *
+     * @param nodeid
+     *            the node for which service down count is needed
+     * @return the service down count
+     */
+    public int getServiceDownCount(int nodeid) {
+        return read(() -> {
+            final RTCAvailabilityWindow nodeWindow = m_nodeWindows.get(nodeid);
+            return nodeWindow == null ? 0 : nodeWindow.getOpenOutageCount();
+        });
+    }
+
+    private <T> T read(long curTime, Supplier<T> reader) {
+        if (m_window.shouldAdvance(curTime, ADVANCE_INTERVAL)) {
+            // Only advance if nobody else is updating, the read is correct either way
+            final long stamp = m_lock.tryWriteLock();
+            if (stamp != 0L) {
+                try {
+                    advance(curTime);
+                    return reader.get();
+                } finally {
+                    m_lock.unlockWrite(stamp);
+                }
+            }
+        }
+        return read(reader);
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        for (int i = 0; i < MAX_OPTIMISTIC_READS; i++) {
+            final long stamp = m_lock.tryOptimisticRead();
+            if (stamp != 0L) {
+                final T value = reader.get();
+                if (m_lock.validate(stamp)) {
+                    return value;
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+
+        // Kept overlapping with updates
+        final long stamp = m_lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    private void advance(long curTime) {
+        m_window.advance(curTime);
+        for (RTCAvailabilityWindow nodeWindow : m_nodeWindows.values()) {
+            nodeWindow.advance(curTime);
+        }
+    }
+}
@@ -127,9 +127,19 @@ public class RTCNode {
      *            time at which service was lost
      * @param regainedtime
      *            time at which service was regained
+     * @return the new service time entry, or null if it was rejected
      */
-    public void addSvcTime(long losttime, long regainedtime) {
-        m_svcTimesList.addSvcTime(losttime, regainedtime);
+    public synchronized RTCNodeSvcTime addSvcTime(long losttime, long regainedtime) {
+        return m_svcTimesList.addSvcTime(losttime, regainedtime);
+    }
+
+    /**
+     * Return a copy of the lost/regained service times of this node.
+     *
+     * @return the service times of this node
+     */
+    public synchronized List<RTCNodeSvcTime> getSvcTimes() {
+        return new ArrayList<>(m_svcTimesList);
     }
 
     /**
@@ -165,8 +175,10 @@ public class RTCNode {
      *
      * @param t
      *            the time at which service was lost
+     * @return the new service time entry, or null if the service was already
+     *         down
      */
-    public synchronized void nodeLostService(long t) {
+    public synchronized RTCNodeSvcTime nodeLostService(long t) {
         // check if the last element in the times list is 'open'
         // i.e. is waiting for a regained service - if yes,
         // don't add anything
@@ -178,13 +190,14 @@ public class RTCNode {
             if (stime.getRegainedTime() == -1) {
                 // last event was a 'lostService'
                 // ignore this event
-                return;
+                return null;
             }
         }
 
         // create a new entry
         RTCNodeSvcTime newStime = new RTCNodeSvcTime(t);
         m_svcTimesList.add(newStime);
+        return newStime;
     }
 
     /**
@@ -194,8 +207,10 @@ public class RTCNode {
      *
      * @param t
      *            the time at which node regained service
+     * @return the updated service time entry, or null if the service was
+     *         not down
      */
-    public synchronized void nodeRegainedService(long t) {
+    public synchronized RTCNodeSvcTime nodeRegainedService(long t) {
         int listsize = m_svcTimesList.size();
         if (listsize > 0) {
             RTCNodeSvcTime stime = (RTCNodeSvcTime) m_svcTimesList.get(listsize - 1);
@@ -203,11 +218,13 @@ public class RTCNode {
             if (stime.getRegainedTime() != -1) {
                 // last event was a 'regainedService'
                 // ignore this event
-                return;
+                return null;
             }
 
             stime.setRegainedTime(t);
+            return stime;
         }
+        return null;
     }
 
     /**
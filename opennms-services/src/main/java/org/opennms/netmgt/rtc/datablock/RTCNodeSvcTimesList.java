@@ -111,18 +111,21 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
      *            time at which service was lost
      * @param regainedtime
      *            time at which service was regained
+     * @return the new service time entry, or null if it was rejected
      */
-    public void addSvcTime(long losttime, long regainedtime) {
+    public RTCNodeSvcTime addSvcTime(long losttime, long regainedtime) {
         // remove expired outages
         removeExpiredOutages();
 
         if (regainedtime > 0 && regainedtime < losttime) {
             LOG.warn("RTCNodeSvcTimesList: Rejecting service time pair since regained time in milliseconds: {} less than lost time -> losttime in milliseconds: {}", regainedtime, losttime);
 
-            return;
+            return null;
         }
 
-        addLast(new RTCNodeSvcTime(losttime, regainedtime));
+        final RTCNodeSvcTime svcTime = new RTCNodeSvcTime(losttime, regainedtime);
+        addLast(svcTime);
+        return svcTime;
     }
 
     /**
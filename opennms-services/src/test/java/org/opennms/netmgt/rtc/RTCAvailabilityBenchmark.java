@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.rtc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.rtc.datablock.RTCCategoryAvailability;
+import org.opennms.netmgt.rtc.datablock.RTCHashMap;
+import org.opennms.netmgt.rtc.datablock.RTCNode;
+import org.opennms.netmgt.rtc.datablock.RTCNodeSvcTime;
+
+/**
+ * Replays a storm of outages while the availability of the category is
+ * queried concurrently, comparing the legacy {@link RTCHashMap} guarded by a
+ * single monitor (as the {@link DataManager} used to) with the incrementally
+ * maintained {@link RTCCategoryAvailability}.
+ * <p>
+ * Run the {@link #main(String[])} method to execute the benchmark.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RTCAvailabilityBenchmark {
+
+    private static final String CATEGORY = "Servers";
+
+    private static final long ROLLING_WINDOW = TimeUnit.DAYS.toMillis(1);
+
+    private static final String[] SERVICES = new String[] { "ICMP", "SNMP", "HTTP", "SSH" };
+
+    public enum Implementation {
+        LEGACY,
+        INCREMENTAL
+    }
+
+    @Param({"LEGACY", "INCREMENTAL"})
+    public Implementation implementation;
+
+    @Param({"1000", "10000"})
+    public int numNodes;
+
+    private final List<RTCNode> services = new ArrayList<>();
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    private RTCHashMap map;
+
+    private RTCCategoryAvailability availability;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = new RTCHashMap(numNodes * SERVICES.length);
+        availability = new RTCCategoryAvailability(CATEGORY, ROLLING_WINDOW);
+        for (int nodeId = 1; nodeId <= numNodes; nodeId++) {
+            for (String svcName : SERVICES) {
+                final RTCNode rtcN = new RTCNode(nodeId, InetAddressUtils.addr(String.format("10.%d.%d.%d", (nodeId >> 16) & 0xff, (nodeId >> 8) & 0xff, nodeId & 0xff)), svcName, ROLLING_WINDOW);
+                rtcN.addCategory(CATEGORY);
+                services.add(rtcN);
+                map.add(rtcN);
+                availability.addService(rtcN);
+            }
+        }
+
+        // Fill the window with some history
+        for (int i = 0; i < services.size(); i++) {
+            outage();
+        }
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(2)
+    public void outage() {
+        final RTCNode rtcN = services.get(ThreadLocalRandom.current().nextInt(services.size()));
+        final long t = clock.addAndGet(ThreadLocalRandom.current().nextInt(1000));
+        final boolean lost = ThreadLocalRandom.current().nextBoolean();
+
+        if (implementation == Implementation.LEGACY) {
+            synchronized (this) {
+                if (lost) {
+                    rtcN.nodeLostService(t);
+                } else {
+                    rtcN.nodeRegainedService(t);
+                }
+            }
+        } else {
+            final RTCNodeSvcTime svcTime = lost ? rtcN.nodeLostService(t) : rtcN.nodeRegainedService(t);
+            if (svcTime != null) {
+                availability.updateSvcTime(rtcN, svcTime);
+            }
+        }
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(4)
+    public double query() {
+        final long curTime = clock.get();
+        if (implementation == Implementation.LEGACY) {
+            synchronized (this) {
+                return map.getValue(CATEGORY, curTime, ROLLING_WINDOW);
+            }
+        } else {
+            return availability.getValue(curTime, ROLLING_WINDOW);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(RTCAvailabilityBenchmark.class.getSimpleName())
+                .result("rtc-availability-benchmark.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.rtc.datablock;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.rtc.NodeNotInCategoryException;
+import org.opennms.netmgt.rtc.RTCUtils;
+
+public class RTCCategoryAvailabilityTest {
+
+    private static final String CATEGORY = "Servers";
+
+    private static final long HOUR = 60L * 60L * 1000L;
+
+    private static final long WINDOW = 24L * HOUR;
+
+    private static final long START = 1_600_000_000_000L;
+
+    @Test
+    public void canCalculateAvailabilityOfCategory() throws NodeNotInCategoryException {
+        final RTCCategoryAvailability availability = new RTCCategoryAvailability(CATEGORY, WINDOW);
+        assertEquals(100.0, availability.getValue(START, WINDOW), 0.0001);
+
+        final RTCNode icmp = createService(1, "ICMP");
+        final RTCNode http = createService(1, "HTTP");
+        final RTCNode snmp = createService(2, "SNMP");
+
+        // A closed outage that is added before the service is part of the category
+        icmp.addSvcTime(START - HOUR, START - HOUR / 2);
+        availability.addService(icmp);
+        availability.addService(http);
+        availability.addService(snmp);
+
+        assertEquals(RTCUtils.getOutagePercentage(HOUR / 2, WINDOW, 3), availability.getValue(START, WINDOW), 0.0001);
+        assertEquals(RTCUtils.getOutagePercentage(HOUR / 2, WINDOW, 2), availability.getValue(1, START, WINDOW), 0.0001);
+        assertEquals(100.0, availability.getValue(2, START, WINDOW), 0.0001);
+        assertEquals(2, availability.getServiceCount(1));
+        assertEquals(1, availability.getServiceCount(2));
+        assertEquals(0, availability.getServiceDownCount(1));
+
+        // HTTP goes down
+        availability.updateSvcTime(http, http.nodeLostService(START));
+        assertEquals(1, availability.getServiceDownCount(1));
+        assertEquals(RTCUtils.getOutagePercentage(HOUR / 2 + HOUR, WINDOW, 3), availability.getValue(START + HOUR, WINDOW), 0.0001);
+
+        // HTTP comes back up
+        availability.updateSvcTime(http, http.nodeRegainedService(START + 2 * HOUR));
+        assertEquals(0, availability.getServiceDownCount(1));
+        assertEquals(RTCUtils.getOutagePercentage(HOUR / 2 + 2 * HOUR, WINDOW, 3), availability.getValue(START + 3 * HOUR, WINDOW), 0.0001);
+
+        // The ICMP outage partially leaves the window
+        assertEquals(RTCUtils.getOutagePercentage(HOUR / 4 + 2 * HOUR, WINDOW, 3), availability.getValue(START + WINDOW - 3 * HOUR / 4, WINDOW), 0.0001);
+
+        // Removing the service removes its outages
+        availability.removeService(http);
+        assertEquals(1, availability.getServiceCount(1));
+        assertEquals(RTCUtils.getOutagePercentage(HOUR / 4, WINDOW, 2), availability.getValue(START + WINDOW - 3 * HOUR / 4, WINDOW), 0.0001);
+
+        // All outages have left the window
+        assertEquals(100.0, availability.getValue(START + 2 * WINDOW, WINDOW), 0.0001);
+        assertEquals(100.0, availability.getValue(1, START + 2 * WINDOW, WINDOW), 0.0001);
+    }
+
+    @Test
+    public void canCalculateAvailabilityOfOpenOutages() {
+        final RTCCategoryAvailability availability = new RTCCategoryAvailability(CATEGORY, WINDOW);
+        final RTCNode icmp = createService(1, "ICMP");
+        availability.addService(icmp);
+        availability.updateSvcTime(icmp, icmp.nodeLostService(START));
+
+        assertEquals(RTCUtils.getOutagePercentage(HOUR, WINDOW, 1), availability.getValue(START + HOUR, WINDOW), 0.0001);
+        assertEquals(0.0, availability.getValue(START + WINDOW, WINDOW), 0.0001);
+        assertEquals(0.0, availability.getValue(START + 3 * WINDOW, WINDOW), 0.0001);
+        assertEquals(1, availability.getServiceDownCount(1));
+
+        // Values for other windows or for times before the latest outage are still calculated
+        assertEquals(RTCUtils.getOutagePercentage(HOUR, 2 * HOUR, 1), availability.getValue(START + HOUR, 2 * HOUR), 0.0001);
+        assertEquals(100.0, availability.getValue(START - HOUR, WINDOW), 0.0001);
+    }
+
+    /**
+     * Replays random outages and verifies that the incremental values match
+     * the down times calculated by the individual services.
+     */
+    @Test
+    public void matchesDownTimeOfServices() throws NodeNotInCategoryException {
+        final Random random = new Random(42);
+        final RTCCategoryAvailability availability = new RTCCategoryAvailability(CATEGORY, WINDOW);
+
+        final List<RTCNode> services = new ArrayList<>();
+        for (int nodeId = 1; nodeId <= 10; nodeId++) {
+            for (String svcName : new String[] { "ICMP", "HTTP", "SNMP" }) {
+                final RTCNode rtcN = createService(nodeId, svcName);
+                services.add(rtcN);
+                availability.addService(rtcN);
+            }
+        }
+
+        long curTime = START;
+        for (int i = 0; i < 5000; i++) {
+            curTime += random.nextInt((int) (HOUR / 4));
+            final RTCNode rtcN = services.get(random.nextInt(services.size()));
+            final RTCNodeSvcTime svcTime = random.nextBoolean() ? rtcN.nodeLostService(curTime) : rtcN.nodeRegainedService(curTime);
+            if (svcTime != null) {
+                availability.updateSvcTime(rtcN, svcTime);
+            }
+
+            if (i % 50 == 0) {
+                final long queryTime = curTime + random.nextInt((int) HOUR);
+                long downTime = 0;
+                for (RTCNode service : services) {
+                    downTime += service.getDownTime(CATEGORY, queryTime, WINDOW);
+                }
+                assertEquals(RTCUtils.getOutagePercentage(downTime, WINDOW, services.size()), availability.getValue(queryTime, WINDOW), 0.0001);
+
+                for (int nodeId = 1; nodeId <= 10; nodeId++) {
+                    long nodeDownTime = 0;
+                    int downCount = 0;
+                    for (RTCNode service : services) {
+                        if (service.getNodeID() == nodeId) {
+                            nodeDownTime += service.getDownTime(CATEGORY, queryTime, WINDOW);
+                            downCount += service.isServiceCurrentlyDown() ? 1 : 0;
+                        }
+                    }
+                    assertEquals(RTCUtils.getOutagePercentage(nodeDownTime, WINDOW, 3), availability.getValue(nodeId, queryTime, WINDOW), 0.0001);
+                    assertEquals(downCount, availability.getServiceDownCount(nodeId));
+                }
+            }
+        }
+    }
+
+    private static RTCNode createService(int nodeId, String svcName) {
+        final InetAddress ip = InetAddressUtils.addr("192.168.1." + nodeId);
+        final RTCNode rtcN = new RTCNode(nodeId, ip, svcName, WINDOW);
+        rtcN.addCategory(CATEGORY);
+        return rtcN;
+    }
+}
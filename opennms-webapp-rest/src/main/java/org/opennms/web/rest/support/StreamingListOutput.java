@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.web.rest.support;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.opennms.core.config.api.JaxbListWrapper;
+
+/**
+ * Writes a list of objects in the same format as the given {@link JaxbListWrapper} type would be serialized, but one
+ * object at a time as the objects are produced instead of building the whole list in memory first.
+ * <p>
+ * Since the size of the list is only known once all of the objects were written, the XML representation does not
+ * carry the {@code count} attribute and the JSON representation has it at the end. Neither carries the
+ * {@code totalCount}, which would only be the number of streamed objects.
+ *
+ * @param <T> the type of the objects in the list
+ */
+public class StreamingListOutput<T> implements StreamingOutput {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final MediaType mediaType;
+    private final Providers providers;
+    private final String listElementName;
+    private final String elementName;
+    private final int offset;
+    private final Consumer<Consumer<T>> producer;
+
+    /**
+     * @param listType the type of list whose format is used
+     * @param mediaType either {@link MediaType#APPLICATION_JSON_TYPE} or {@link MediaType#APPLICATION_XML_TYPE}
+     * @param providers used to look up the JSON writers of the objects
+     * @param offset the offset of the first object
+     * @param producer called once to pass all of the objects to the given consumer in order
+     */
+    @SuppressWarnings("rawtypes")
+    public StreamingListOutput(final Class<? extends JaxbListWrapper> listType, final MediaType mediaType,
+                               final Providers providers, final int offset, final Consumer<Consumer<T>> producer) {
+        this.mediaType = Objects.requireNonNull(mediaType);
+        this.providers = Objects.requireNonNull(providers);
+        this.offset = offset;
+        this.producer = Objects.requireNonNull(producer);
+
+        final XmlRootElement rootElement = listType.getAnnotation(XmlRootElement.class);
+        listElementName = rootElement != null ? rootElement.name() : "list";
+        String name = "objects";
+        try {
+            final Method getObjects = listType.getMethod("getObjects");
+            final XmlElement element = getObjects.getAnnotation(XmlElement.class);
+            if (element != null) {
+                name = element.name();
+            }
+        } catch (NoSuchMethodException e) {
+            // Use the default name
+        }
+        elementName = name;
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException, WebApplicationException {
+        // Don't let the writers of the single objects close the response
+        final OutputStream out = new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+
+        final ObjectWriter<T> writer = MediaType.APPLICATION_XML_TYPE.isCompatible(mediaType)
+                ? new XmlObjectWriter(out) : new JsonObjectWriter(out);
+        final int[] count = new int[]{0};
+        writer.begin();
+        try {
+            producer.accept(object -> {
+                try {
+                    writer.write(object, count[0]++);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.end(count[0]);
+        out.flush();
+    }
+
+    private interface ObjectWriter<T> {
+        void begin() throws IOException;
+
+        void write(T object, int index) throws IOException;
+
+        void end(int count) throws IOException;
+    }
+
+    private class JsonObjectWriter implements ObjectWriter<T> {
+        private final OutputStream out;
+        private Class<?> lastType;
+        private MessageBodyWriter<Object> lastWriter;
+
+        private JsonObjectWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            write("{\"" + elementName + "\":[");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(T object, int index) throws IOException {
+            if (index > 0) {
+                write(",");
+            }
+            final Class<?> type = object.getClass();
+            if (type != lastType) {
+                lastWriter = (MessageBodyWriter<Object>) providers.getMessageBodyWriter(type, type, NO_ANNOTATIONS, mediaType);
+                if (lastWriter == null) {
+                    throw new IOException("No JSON writer for " + type);
+                }
+                lastType = type;
+            }
+            lastWriter.writeTo(object, type, type, NO_ANNOTATIONS, mediaType, new MultivaluedHashMap<>(), out);
+        }
+
+        @Override
+        public void end(int count) throws IOException {
+            write(String.format("],\"count\":%d,\"offset\":%d}", count, offset));
+        }
+
+        private void write(String s) throws IOException {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private class XmlObjectWriter implements ObjectWriter<T> {
+        private final OutputStream out;
+        private final Map<Class<?>, Marshaller> marshallers = new HashMap<>();
+
+        private XmlObjectWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><" + listElementName + " offset=\"" + offset + "\">");
+        }
+
+        @Override
+        public void write(T object, int index) throws IOException {
+            try {
+                Marshaller marshaller = marshallers.get(object.getClass());
+                if (marshaller == null) {
+                    marshaller = JAXBContext.newInstance(object.getClass()).createMarshaller();
+                    marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+                    marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+                    marshallers.put(object.getClass(), marshaller);
+                }
+                marshaller.marshal(object, out);
+            } catch (JAXBException e) {
+                throw new IOException("Failed to marshal " + object, e);
+            }
+        }
+
+        @Override
+        public void end(int count) throws IOException {
+            write("</" + listElementName + ">");
+        }
+
+        private void write(String s) throws IOException {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -30,8 +30,10 @@ package org.opennms.web.rest.v2;
 
 import java.io.Serializable;
 import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -41,6 +43,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.Consumes;
@@ -54,12 +57,15 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Providers;
 
 import org.apache.cxf.jaxrs.ext.search.SearchBean;
 import org.apache.cxf.jaxrs.ext.search.SearchCondition;
@@ -90,6 +96,7 @@ import org.opennms.web.rest.support.LongCollection;
 import org.opennms.web.rest.support.MultivaluedMapImpl;
 import org.opennms.web.rest.support.SearchProperty;
 import org.opennms.web.rest.support.SearchPropertyCollection;
+import org.opennms.web.rest.support.StreamingListOutput;
 import org.opennms.web.rest.support.StringCollection;
 import org.opennms.web.utils.CriteriaBuilderUtils;
 import org.opennms.web.utils.QueryParameters;
@@ -101,7 +108,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.common.base.Strings;
 import com.googlecode.concurentlocks.ReadWriteUpdateLock;
@@ -135,11 +144,43 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
     @Autowired
     private SessionFactory m_sessionFactory;
 
+    @Autowired
+    private PlatformTransactionManager m_transactionManager;
+
     private final ReadWriteUpdateLock m_globalLock = new ReentrantReadWriteUpdateLock();
     private final Lock m_writeLock = m_globalLock.writeLock();
 
     protected static final int DEFAULT_LIMIT = 10;
 
+    /**
+     * Query parameter holding the cursor of the previous page. When given, the results are ordered by the
+     * {@link #CURSOR_PROPERTY cursor property} and start right after the last item of the previous page instead of
+     * at an offset, which keeps the cost of fetching a page constant no matter how deep we page.
+     */
+    protected static final String CURSOR_PARAM = "after";
+
+    /**
+     * The unique, numeric property used to page with a cursor.
+     */
+    protected static final String CURSOR_PROPERTY = "id";
+
+    /**
+     * Response header holding the cursor to pass in the {@link #CURSOR_PARAM} to fetch the next page. It is only set
+     * when the page is full and the results are ordered by the {@link #CURSOR_PROPERTY cursor property}.
+     */
+    protected static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Query parameter controlling how the total count of a list is calculated: {@code exact} (the default), {@code none}
+     * to skip counting or a positive number to stop counting once that many items were found.
+     */
+    protected static final String TOTAL_COUNT_PARAM = "totalCount";
+
+    /**
+     * Number of entities after which the entities read so far are detached from the session when streaming.
+     */
+    private static final int STREAM_BATCH_SIZE = 1000;
+
     protected abstract OnmsDao<T,K> getDao();
     protected abstract Class<T> getDaoClass();
     protected abstract Class<Q> getQueryBeanClass();
@@ -217,7 +258,21 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
         return null;
     }
 
+    /**
+     * <p>Get the value of the {@link #CURSOR_PROPERTY cursor property} of an entity, used to page with a cursor
+     * (see {@link #CURSOR_PARAM}), or {@code null} if this endpoint does not support cursors.</p>
+     *
+     * @return
+     */
+    protected Function<T,Integer> getCursorValue() {
+        return null;
+    }
+
     protected Criteria getCriteria(UriInfo uriInfo, SearchContext searchContext) {
+        return getCriteria(uriInfo, searchContext, DEFAULT_LIMIT);
+    }
+
+    private Criteria getCriteria(UriInfo uriInfo, SearchContext searchContext, Integer defaultLimit) {
         final CriteriaBuilder builder = getCriteriaBuilder(uriInfo);
         if (searchContext != null && !Strings.isNullOrEmpty(searchContext.getSearchExpression())) {
             try {
@@ -234,7 +289,8 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
 
         // Apply limit, offset, orderBy, order parameters
         final MultivaluedMap<String, String> params = uriInfo.getQueryParameters();
-        applyLimitOffsetOrderBy(params, builder);
+        applyLimitOffsetOrderBy(params, builder, defaultLimit);
+        applyCursor(params, builder);
         Criteria crit = builder.toCriteria();
 
         /*
@@ -254,33 +310,84 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
     @GET
     @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.APPLICATION_ATOM_XML})
     public Response get(@Context final UriInfo uriInfo, @Context final SearchContext searchContext) {
+        final Integer maxCount = getMaxCount(uriInfo.getQueryParameters());
         Criteria crit = getCriteria(uriInfo, searchContext);
         final List<T> coll = getDao().findMatching(crit);
         if (coll == null || coll.size() < 1) {
             return Response.status(Status.NO_CONTENT).build();
         } else {
             Integer offset = crit.getOffset();
+            final Integer limit = crit.getLimit();
+            final Optional<Boolean> cursorOrder = getCursorOrder(crit);
 
             // Remove limit, offset and ordering when fetching count
             crit.setLimit(null);
             crit.setOffset(null);
             crit.setOrders(new ArrayList<Order>());
-            int totalCount = getDao().countMatching(crit);
+            final Integer totalCount;
+            if (maxCount == null) {
+                totalCount = getDao().countMatching(crit);
+            } else if (maxCount > 0) {
+                totalCount = getDao().countMatching(crit, maxCount);
+            } else {
+                totalCount = null;
+            }
 
             // Map the entities to the corresponding DTOs
             final List<D> collOfDtos = coll.stream()
                     .map(this::mapEntityToDTO)
                     .collect(Collectors.toList());
             final JaxbListWrapper<D> list = createListWrapper(collOfDtos);
-            list.setTotalCount(totalCount);
+            // The complete length is unknown if we did not count or stopped counting
+            final boolean isCounted = totalCount != null && (maxCount == null || totalCount < maxCount);
+            if (isCounted) {
+                list.setTotalCount(totalCount);
+            } else {
+                list.setTotalCountUnknown();
+            }
             list.setOffset(offset);
 
             // Make sure that offset is set to a numeric value when setting the Content-Range header
             offset = (offset == null ? 0 : offset);
-            return Response.ok(list).header("Content-Range", String.format("items %d-%d/%d", offset, offset + coll.size() - 1, totalCount)).build();
+            final String completeLength = isCounted ? String.valueOf(totalCount) : "*";
+            final Response.ResponseBuilder response = Response.ok(list).header("Content-Range", String.format("items %d-%d/%s", offset, offset + coll.size() - 1, completeLength));
+            if (cursorOrder.isPresent() && limit != null && limit > 0 && coll.size() >= limit) {
+                final Integer lastValue = getCursorValue().apply(coll.get(coll.size() - 1));
+                response.header(NEXT_CURSOR_HEADER, encodeCursor(lastValue, cursorOrder.get()));
+            }
+            return response.build();
         }
     }
 
+    /**
+     * <p>Same as {@link #get(UriInfo, SearchContext)} but the results are not limited by default and
+     * are written to the response while they are read from the database, so the memory used does
+     * not depend on the number of results.</p>
+     */
+    @GET
+    @Path("stream")
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    public Response stream(@Context final UriInfo uriInfo, @Context final SearchContext searchContext, @Context final HttpHeaders headers, @Context final Providers providers) {
+        // A limit of 0 means no limit
+        final Criteria crit = getCriteria(uriInfo, searchContext, 0);
+        final MediaType mediaType = headers.getAcceptableMediaTypes().stream()
+                .filter(m -> !m.isWildcardType() && (m.isCompatible(MediaType.APPLICATION_XML_TYPE) || m.isCompatible(MediaType.APPLICATION_JSON_TYPE)))
+                .findFirst()
+                .map(m -> m.isCompatible(MediaType.APPLICATION_XML_TYPE) ? MediaType.APPLICATION_XML_TYPE : MediaType.APPLICATION_JSON_TYPE)
+                .orElse(MediaType.APPLICATION_JSON_TYPE);
+
+        // The output is written after this method returned, so it has to run in a transaction of its own
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(m_transactionManager);
+        transactionTemplate.setReadOnly(true);
+        final StreamingOutput output = new StreamingListOutput<D>(createListWrapper(Collections.emptyList()).getClass(),
+                mediaType, providers, crit.getOffset() == null ? 0 : crit.getOffset(),
+                consumer -> transactionTemplate.execute(status -> {
+                    getDao().streamMatching(crit, STREAM_BATCH_SIZE, entity -> consumer.accept(mapEntityToDTO(entity)));
+                    return null;
+                }));
+        return Response.ok(output, mediaType).build();
+    }
+
     @GET
     @Path("count")
     @Produces({MediaType.TEXT_PLAIN})
@@ -549,13 +656,85 @@ public abstract class AbstractDaoRestServiceWithDTO<T,D,Q,K extends Serializable
         }
     }
 
+    /**
+     * Seek right after the item identified by the cursor, if any, rather than skipping over an offset.
+     */
+    private void applyCursor(final MultivaluedMap<String,String> params, final CriteriaBuilder builder) {
+        final String cursor = params.getFirst(CURSOR_PARAM);
+        if (Strings.isNullOrEmpty(cursor)) {
+            return;
+        }
+        if (getCursorValue() == null) {
+            throw getException(Status.BAD_REQUEST, "Paging with a cursor is not supported by this endpoint");
+        }
+
+        final String decoded;
+        final int value;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            value = Integer.parseInt(decoded.startsWith("-") ? decoded.substring(1) : decoded);
+        } catch (IllegalArgumentException e) {
+            throw getException(Status.BAD_REQUEST, "Invalid cursor: {}", cursor);
+        }
+        final boolean ascending = !decoded.startsWith("-");
+
+        builder.offset(0);
+        builder.clearOrder();
+        builder.orderBy(CURSOR_PROPERTY, ascending);
+        if (ascending) {
+            builder.gt(CURSOR_PROPERTY, value);
+        } else {
+            builder.lt(CURSOR_PROPERTY, value);
+        }
+    }
+
+    /**
+     * The cursor holds the value of the last item of the page, prefixed by a minus sign when paging in descending order.
+     */
+    private static String encodeCursor(final Integer value, final boolean ascending) {
+        final String cursor = (ascending ? "" : "-") + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the direction of the ordering if the given criteria are ordered by the cursor property and nothing else.
+     */
+    private Optional<Boolean> getCursorOrder(final Criteria crit) {
+        if (getCursorValue() == null || crit.getOrders().size() != 1) {
+            return Optional.empty();
+        }
+        final Order order = crit.getOrders().iterator().next();
+        return CURSOR_PROPERTY.equals(order.getAttribute()) ? Optional.of(order.asc()) : Optional.empty();
+    }
+
+    /**
+     * Returns {@code null} for an exact count, 0 to skip counting or the number of items after which to stop counting.
+     */
+    private Integer getMaxCount(final MultivaluedMap<String,String> params) {
+        final String totalCount = params.getFirst(TOTAL_COUNT_PARAM);
+        if (Strings.isNullOrEmpty(totalCount) || "exact".equalsIgnoreCase(totalCount)) {
+            return null;
+        } else if ("none".equalsIgnoreCase(totalCount)) {
+            return 0;
+        }
+        try {
+            final int maxCount = Integer.parseInt(totalCount);
+            if (maxCount > 0) {
+                return maxCount;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        throw getException(Status.BAD_REQUEST, "Invalid {}: {}. Must be 'exact', 'none' or a positive number.", TOTAL_COUNT_PARAM, totalCount);
+    }
+
     public static void applyLimitOffsetOrderBy(final MultivaluedMap<String,String> p, final CriteriaBuilder builder) {
         applyLimitOffsetOrderBy(p, builder, DEFAULT_LIMIT);
     }
 
     private static void applyLimitOffsetOrderBy(final MultivaluedMap<String,String> p, final CriteriaBuilder builder, final Integer defaultLimit) {
         final QueryParameters queryParameters = QueryParametersBuilder.buildFrom(p);
-        if (queryParameters.getLimit() == null) {
+        if (Strings.isNullOrEmpty(p.getFirst("limit"))) {
             queryParameters.setLimit(defaultLimit);
         }
         CriteriaBuilderUtils.applyQueryParameters(builder, queryParameters);
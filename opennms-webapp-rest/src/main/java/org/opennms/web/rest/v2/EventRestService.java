@@ -33,6 +33,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -169,6 +170,11 @@ public class EventRestService extends AbstractDaoRestServiceWithDTO<OnmsEvent,Ev
         return getDao().get(id);
     }
 
+    @Override
+    protected Function<OnmsEvent,Integer> getCursorValue() {
+        return OnmsEvent::getId;
+    }
+
     /**
      * NOTE: This method defines an unused parameter of 0 length in the @Path annotation
      * in order to get CXF to prioritize this method definition instead of the create method
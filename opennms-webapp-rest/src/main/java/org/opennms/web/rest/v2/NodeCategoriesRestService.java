@@ -35,11 +35,13 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Providers;
 
 import org.apache.cxf.jaxrs.ext.search.SearchContext;
 import org.opennms.core.config.api.JaxbListWrapper;
@@ -113,6 +115,15 @@ public class NodeCategoriesRestService extends AbstractNodeDependentRestService<
         return Response.ok(new OnmsCategoryCollection(node.getCategories())).build();
     }
 
+    /**
+     * Categories are identified by their name, so this returns the category named "stream" of the node
+     * instead of streaming every category. The categories of a node are listed by {@link #get(UriInfo, SearchContext)}.
+     */
+    @Override
+    public Response stream(final UriInfo uriInfo, final SearchContext searchContext, final HttpHeaders headers, final Providers providers) {
+        return get(uriInfo, "stream");
+    }
+
     @GET
     @Path("count")
     @Produces({MediaType.TEXT_PLAIN})
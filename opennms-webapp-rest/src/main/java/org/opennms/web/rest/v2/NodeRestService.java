@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.DELETE;
@@ -250,6 +251,11 @@ public class NodeRestService extends AbstractDaoRestService<OnmsNode,SearchBean,
         return getDao().get(id);
     }
 
+    @Override
+    protected Function<OnmsNode,Integer> getCursorValue() {
+        return OnmsNode::getId;
+    }
+
     @Path("{nodeCriteria}/ipinterfaces")
     public NodeIpInterfacesRestService getIpInterfaceResource(@Context final ResourceContext context) {
         return context.getResource(NodeIpInterfacesRestService.class);
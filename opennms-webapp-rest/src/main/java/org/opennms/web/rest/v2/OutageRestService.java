@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import javax.ws.rs.Path;
 import javax.ws.rs.core.UriInfo;
@@ -156,4 +157,9 @@ public class OutageRestService extends AbstractDaoRestService<OnmsOutage,SearchB
         return getDao().get(id);
     }
 
+    @Override
+    protected Function<OnmsOutage,Integer> getCursorValue() {
+        return OnmsOutage::getId;
+    }
+
 }
@@ -29,6 +29,9 @@
 package org.opennms.web.rest.v2;
 
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.json.JSONObject;
 import org.junit.Assert;
@@ -47,6 +50,8 @@ import org.opennms.netmgt.model.OnmsNode.NodeType;
 import org.opennms.netmgt.model.OnmsServiceType;
 import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.test.JUnitConfigurationEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.web.WebAppConfiguration;
@@ -124,6 +129,82 @@ public class EventRestServiceIT extends AbstractSpringJerseyRestTestCase {
         Assert.assertEquals(1, object.getInt("totalCount"));
     }
 
+    @Test
+    @JUnitTemporaryDatabase
+    public void testCursorPaging() throws Exception {
+        // Page through all of the events, newest first
+        MockHttpServletResponse response = getEvents(parseParamData("orderBy=id&order=desc&limit=4&totalCount=none"));
+        JSONObject object = new JSONObject(response.getContentAsString());
+        Assert.assertEquals(4, object.getJSONArray("event").length());
+        Assert.assertEquals("items 0-3/*", response.getHeader("Content-Range"));
+        Assert.assertFalse(object.has("totalCount"));
+
+        final Set<Integer> ids = new HashSet<>();
+        int lastId = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            final int id = object.getJSONArray("event").getJSONObject(i).getInt("id");
+            Assert.assertTrue(id < lastId);
+            ids.add(id);
+            lastId = id;
+        }
+
+        // The second page starts right after the last event of the first one
+        final String cursor = (String) response.getHeader("X-Next-Cursor");
+        Assert.assertNotNull(cursor);
+        response = getEvents(parseParamData("limit=4&after=" + cursor));
+        object = new JSONObject(response.getContentAsString());
+        Assert.assertEquals(2, object.getJSONArray("event").length());
+        Assert.assertEquals(2, object.getInt("totalCount"));
+        for (int i = 0; i < 2; i++) {
+            final int id = object.getJSONArray("event").getJSONObject(i).getInt("id");
+            Assert.assertTrue(id < lastId);
+            ids.add(id);
+            lastId = id;
+        }
+        Assert.assertEquals(6, ids.size());
+
+        // This was the last page
+        Assert.assertNull(response.getHeader("X-Next-Cursor"));
+
+        // Counting can be capped
+        response = getEvents(parseParamData("limit=2&totalCount=3"));
+        Assert.assertFalse(new JSONObject(response.getContentAsString()).has("totalCount"));
+        Assert.assertEquals("items 0-1/*", response.getHeader("Content-Range"));
+        response = getEvents(parseParamData("limit=2&totalCount=10"));
+        Assert.assertEquals(6, new JSONObject(response.getContentAsString()).getInt("totalCount"));
+        Assert.assertEquals("items 0-1/6", response.getHeader("Content-Range"));
+
+        sendRequest(GET, "/events", parseParamData("after=not-a-cursor"), 400);
+        sendRequest(GET, "/events", parseParamData("totalCount=-1"), 400);
+    }
+
+    @Test
+    @JUnitTemporaryDatabase
+    public void testStreaming() throws Exception {
+        // All of the events are streamed since there is no default limit
+        MockHttpServletResponse response = getEvents("/events/stream", parseParamData("orderBy=id"), "application/json");
+        JSONObject object = new JSONObject(response.getContentAsString());
+        Assert.assertEquals(6, object.getJSONArray("event").length());
+        Assert.assertEquals(6, object.getInt("count"));
+        Assert.assertFalse(object.has("totalCount"));
+        int lastId = Integer.MIN_VALUE;
+        for (int i = 0; i < 6; i++) {
+            final int id = object.getJSONArray("event").getJSONObject(i).getInt("id");
+            Assert.assertTrue(id > lastId);
+            lastId = id;
+        }
+
+        // Searching and paging work the same as for a regular list
+        response = getEvents("/events/stream", parseParamData("_s=node.label==server01&limit=2"), "application/json");
+        object = new JSONObject(response.getContentAsString());
+        Assert.assertEquals(2, object.getJSONArray("event").length());
+
+        response = getEvents("/events/stream", parseParamData("_s=node.label==server02"), "application/xml");
+        final String xml = response.getContentAsString();
+        Assert.assertTrue(xml, xml.contains("<events offset=\"0\">"));
+        Assert.assertEquals(xml, 3, xml.split("<event ").length - 1);
+    }
+
     @Test
     @JUnitTemporaryDatabase
     public void testAddEvent() throws Exception {
@@ -132,6 +213,21 @@ public class EventRestServiceIT extends AbstractSpringJerseyRestTestCase {
         sendPost(url, event, 204);
     }
 
+    private MockHttpServletResponse getEvents(final Map<String, String> parameters) throws Exception {
+        return getEvents("/events", parameters, "application/json");
+    }
+
+    private MockHttpServletResponse getEvents(final String url, final Map<String, String> parameters, final String accept) throws Exception {
+        final MockHttpServletRequest request = createRequest(GET, url);
+        request.addHeader("Accept", accept);
+        request.setParameters(parameters);
+        request.setQueryString(getQueryString(parameters));
+        final MockHttpServletResponse response = createResponse();
+        dispatch(request, response);
+        Assert.assertEquals(200, response.getStatus());
+        return response;
+    }
+
     private OnmsNode createNode(final NetworkBuilder builder, final String label, final String ipAddress, final OnmsCategory category) {
         builder.addNode(label).setForeignSource("JUnit").setForeignId(label).setType(NodeType.ACTIVE);
         builder.addCategory(category);
@@ -167,6 +167,12 @@ public class NodeRestServiceIT extends AbstractSpringJerseyRestTestCase {
         sendPost("/nodes/1/categories", category, 201);
         LOG.warn(sendRequest(GET, "/nodes/1/categories", 200));
 
+        // Categories are looked up by name, so this is not the stream of all of the categories
+        sendRequest(GET, "/nodes/1/categories/stream", 404);
+        sendPost("/nodes/1/categories", "<category name=\"stream\"/>", 201);
+        xml = sendRequest(GET, "/nodes/1/categories/stream", 200);
+        assertTrue(xml, xml.contains("stream") && !xml.contains("Production"));
+
         // UPDATE
 
         LOG.warn(sendRequest(PUT, "/nodes/1", parseParamData("sysLocation=USA"), 204));
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two runs of the benchmarks.
+ * <p>
+ * Both runs must have been written by JMH in JSON format, i.e. with <code>-rf json -rff &lt;file&gt;</code>. For
+ * every benchmark and parameter combination the report shows the score of both runs and the change in percent, where
+ * a positive change is always an improvement: a higher throughput or a lower time. A change is flagged as a
+ * regression if it is worse than the threshold and larger than the combined error of both scores.
+ * <p>
+ * Usage: <code>java -cp benchmarks.jar org.opennms.benchmarks.BenchmarkReport &lt;baseline.json&gt; &lt;candidate.json&gt; [threshold-percent]</code>
+ * <p>
+ * The exit code is 1 if any benchmark regressed, so the report can be used to gate a release.
+ */
+public class BenchmarkReport {
+
+    public static final double DEFAULT_THRESHOLD = 10.0;
+
+    private static final String PACKAGE_PREFIX = BenchmarkReport.class.getPackage().getName() + ".";
+
+    public static class Result {
+        private final String benchmark;
+        private final String mode;
+        private final SortedMap<String, String> params;
+        private final double score;
+        private final double error;
+        private final String unit;
+
+        public Result(String benchmark, String mode, Map<String, String> params, double score, double error, String unit) {
+            this.benchmark = Objects.requireNonNull(benchmark);
+            this.mode = Objects.requireNonNull(mode);
+            this.params = new TreeMap<>(params);
+            this.score = score;
+            this.error = Double.isFinite(error) ? error : 0d;
+            this.unit = unit;
+        }
+
+        /**
+         * @return the benchmark name without the package and its parameters, identifying the result within a run
+         */
+        public String getName() {
+            final String name = benchmark.startsWith(PACKAGE_PREFIX) ? benchmark.substring(PACKAGE_PREFIX.length()) : benchmark;
+            if (params.isEmpty()) {
+                return name;
+            }
+            return name + params.entrySet().stream()
+                    .map(e -> e.getKey() + "=" + e.getValue())
+                    .collect(Collectors.joining(",", ":", ""));
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public double getError() {
+            return error;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        public boolean isHigherBetter() {
+            return "thrpt".equals(mode);
+        }
+
+        private String getKey() {
+            return getName() + " " + mode;
+        }
+    }
+
+    public static class Comparison {
+        private final Result baseline;
+        private final Result candidate;
+        private final double threshold;
+
+        public Comparison(Result baseline, Result candidate, double threshold) {
+            this.baseline = baseline;
+            this.candidate = candidate;
+            this.threshold = threshold;
+        }
+
+        public Result getBaseline() {
+            return baseline;
+        }
+
+        public Result getCandidate() {
+            return candidate;
+        }
+
+        /**
+         * @return the change of the score in percent, positive if the candidate is better, NaN if the benchmark
+         * is missing in one of the runs
+         */
+        public double getChange() {
+            if (baseline == null || candidate == null || baseline.getScore() == 0d) {
+                return Double.NaN;
+            }
+            final double change = (candidate.getScore() - baseline.getScore()) / baseline.getScore() * 100d;
+            return baseline.isHigherBetter() ? change : -change;
+        }
+
+        public boolean isRegression() {
+            final double change = getChange();
+            return !Double.isNaN(change)
+                    && change < -threshold
+                    && Math.abs(candidate.getScore() - baseline.getScore()) > baseline.getError() + candidate.getError();
+        }
+
+        public String getVerdict() {
+            if (baseline == null) {
+                return "added";
+            } else if (candidate == null) {
+                return "removed";
+            } else if (isRegression()) {
+                return "REGRESSION";
+            } else if (getChange() > threshold) {
+                return "improved";
+            }
+            return "";
+        }
+    }
+
+    public static List<Result> read(final InputStream in) throws IOException {
+        final List<Result> results = new ArrayList<>();
+        for (final JsonNode node : new ObjectMapper().readTree(in)) {
+            final Map<String, String> params = new LinkedHashMap<>();
+            final JsonNode paramsNode = node.get("params");
+            if (paramsNode != null) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = paramsNode.fields(); it.hasNext(); ) {
+                    final Map.Entry<String, JsonNode> param = it.next();
+                    params.put(param.getKey(), param.getValue().asText());
+                }
+            }
+            final JsonNode metric = node.get("primaryMetric");
+            results.add(new Result(node.get("benchmark").asText(),
+                    node.get("mode").asText(),
+                    params,
+                    metric.get("score").asDouble(),
+                    metric.get("scoreError").asDouble(),
+                    metric.get("scoreUnit").asText()));
+        }
+        return results;
+    }
+
+    /**
+     * Pairs the results of both runs, in the order of the baseline followed by the benchmarks added by the candidate.
+     */
+    public static List<Comparison> compare(final List<Result> baseline, final List<Result> candidate, final double threshold) {
+        final Map<String, Result> candidateByKey = new LinkedHashMap<>();
+        candidate.forEach(result -> candidateByKey.put(result.getKey(), result));
+
+        final List<Comparison> comparisons = new ArrayList<>();
+        for (final Result result : baseline) {
+            comparisons.add(new Comparison(result, candidateByKey.remove(result.getKey()), threshold));
+        }
+        for (final Result result : candidateByKey.values()) {
+            comparisons.add(new Comparison(null, result, threshold));
+        }
+        return comparisons;
+    }
+
+    public static void print(final List<Comparison> comparisons, final PrintStream out) {
+        final List<String[]> rows = new ArrayList<>();
+        rows.add(new String[]{"Benchmark", "Mode", "Units", "Baseline", "Candidate", "Change", ""});
+        for (final Comparison comparison : comparisons) {
+            final Result any = comparison.getBaseline() != null ? comparison.getBaseline() : comparison.getCandidate();
+            final double change = comparison.getChange();
+            rows.add(new String[]{
+                    any.getName(),
+                    any.getMode(),
+                    any.getUnit(),
+                    format(comparison.getBaseline()),
+                    format(comparison.getCandidate()),
+                    Double.isNaN(change) ? "" : String.format(Locale.ROOT, "%+.1f%%", change),
+                    comparison.getVerdict()});
+        }
+
+        final int[] widths = new int[rows.get(0).length];
+        for (final String[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                widths[i] = Math.max(widths[i], row[i].length());
+            }
+        }
+        for (final String[] row : rows) {
+            final StringBuilder line = new StringBuilder();
+            for (int i = 0; i < row.length; i++) {
+                // Left align the names, right align the numbers
+                final String format = i < 3 || i == row.length - 1 ? "%-" + widths[i] + "s" : "%" + widths[i] + "s";
+                line.append(String.format(format, row[i])).append("  ");
+            }
+            out.println(line.toString().trim());
+        }
+    }
+
+    private static String format(final Result result) {
+        return result == null ? "-" : String.format(Locale.ROOT, "%.3f \u00b1 %.3f", result.getScore(), result.getError());
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: BenchmarkReport <baseline.json> <candidate.json> [threshold-percent]");
+            System.exit(2);
+        }
+        final double threshold = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+
+        final List<Result> baseline;
+        try (InputStream in = new FileInputStream(args[0])) {
+            baseline = read(in);
+        }
+        final List<Result> candidate;
+        try (InputStream in = new FileInputStream(args[1])) {
+            candidate = read(in);
+        }
+
+        final List<Comparison> comparisons = compare(baseline, candidate, threshold);
+        print(comparisons, System.out);
+        if (comparisons.stream().anyMatch(Comparison::isRegression)) {
+            System.exit(1);
+        }
+    }
+}
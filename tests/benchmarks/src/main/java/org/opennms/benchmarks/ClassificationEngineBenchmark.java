@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.ClassificationRequestBuilder;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.exception.InvalidRuleException;
+import org.opennms.netmgt.flows.classification.internal.DefaultClassificationEngine;
+import org.opennms.netmgt.flows.classification.internal.validation.RuleValidator;
+import org.opennms.netmgt.flows.classification.persistence.api.Group;
+import org.opennms.netmgt.flows.classification.persistence.api.GroupBuilder;
+import org.opennms.netmgt.flows.classification.persistence.api.Groups;
+import org.opennms.netmgt.flows.classification.persistence.api.Protocols;
+import org.opennms.netmgt.flows.classification.persistence.api.Rule;
+import org.opennms.netmgt.flows.classification.persistence.api.RuleBuilder;
+
+/**
+ * Measures classifying flows with the {@link DefaultClassificationEngine} using the pre-defined rules shipped with
+ * OpenNMS, which are read from the Liquibase changelog which inserts them into the database.
+ * <p>
+ * The flows are generated from a fixed seed. Most of them go to a port covered by one of the rules, the others to a
+ * random port. One operation classifies all generated flows once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClassificationEngineBenchmark {
+
+    private static final int NUM_REQUESTS = 1000;
+
+    /**
+     * Matches the insert of a pre-defined rule, capturing its name, destination address, destination port and protocol.
+     */
+    private static final Pattern RULE_INSERT = Pattern.compile(
+            "INSERT INTO classification_rules \\(id, name, dst_address, dst_port, protocol, position, groupid\\) "
+            + "VALUES \\(\\d+, '([^']*)', (?:null|'([^']*)'), (?:null|'([^']*)'), (?:null|'([^']*)'), \\d+, 1\\);");
+
+    @Param({"0.8"})
+    public double hitRatio;
+
+    private DefaultClassificationEngine engine;
+    private List<ClassificationRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InvalidRuleException {
+        final Group group = new GroupBuilder().withName(Groups.SYSTEM_DEFINED).withPosition(0).build();
+        final RuleValidator validator = new RuleValidator(FilterService.NOOP);
+        final List<Rule> rules = new ArrayList<>();
+        final List<Integer> ports = new ArrayList<>();
+        for (final String line : Corpus.lines("classification/changelog-insert-rules.xml")) {
+            final Matcher matcher = RULE_INSERT.matcher(line);
+            if (!matcher.find()) {
+                continue;
+            }
+            final Rule rule = new RuleBuilder()
+                    .withName(matcher.group(1))
+                    .withDstAddress(matcher.group(2))
+                    .withDstPort(matcher.group(3))
+                    .withProtocol(matcher.group(4))
+                    .withPosition(rules.size())
+                    .withGroup(group)
+                    .build();
+            validator.validate(rule);
+            rules.add(rule);
+            if (rule.getDstPort() != null) {
+                ports.add(Integer.parseInt(rule.getDstPort().split("[,-]")[0]));
+            }
+        }
+        if (rules.isEmpty()) {
+            throw new IllegalStateException("No classification rules found in corpus");
+        }
+        engine = new DefaultClassificationEngine(() -> rules, FilterService.NOOP);
+
+        final Random random = new Random(42);
+        requests = new ArrayList<>(NUM_REQUESTS);
+        for (int i = 0; i < NUM_REQUESTS; i++) {
+            final int dstPort = random.nextDouble() < hitRatio
+                    ? ports.get(random.nextInt(ports.size()))
+                    : random.nextInt(65536);
+            requests.add(new ClassificationRequestBuilder()
+                    .withLocation("Default")
+                    .withExporterAddress("10.0.0.1")
+                    .withSrcAddress("10.1." + random.nextInt(256) + "." + random.nextInt(256))
+                    .withSrcPort(49152 + random.nextInt(16384))
+                    .withDstAddress("192.168." + random.nextInt(256) + "." + random.nextInt(256))
+                    .withDstPort(dstPort)
+                    .withProtocol(Protocols.getProtocol(random.nextBoolean() ? "tcp" : "udp"))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public void classify(final Blackhole blackhole) {
+        for (final ClassificationRequest request : requests) {
+            blackhole.consume(engine.classify(request));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
+
+/**
+ * Loads the corpora used by the benchmarks.
+ * <p>
+ * All corpora live in the <code>corpus</code> folder on the class path. The event configuration, the pre-defined
+ * classification rules and the flow captures are copied from the modules which maintain them during the build, so the
+ * benchmarks always run against the data shipped and tested with OpenNMS.
+ */
+public final class Corpus {
+
+    private Corpus() {
+    }
+
+    public static URL resource(final String name) {
+        final URL url = Corpus.class.getResource("/corpus/" + name);
+        return Objects.requireNonNull(url, "No such corpus: " + name);
+    }
+
+    public static byte[] bytes(final String name) {
+        try (InputStream in = resource(name).openStream()) {
+            return ByteStreams.toByteArray(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the lines of the corpus, without blank lines and lines starting with '#'
+     */
+    public static List<String> lines(final String name) {
+        try {
+            return Resources.readLines(resource(name), StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.trim().isEmpty() && !line.trim().startsWith("#"))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Properties properties(final String name) {
+        final Properties properties = new Properties();
+        try (InputStream in = resource(name).openStream()) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.config.DefaultEventConfDao;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.springframework.core.io.UrlResource;
+
+/**
+ * Measures matching the events of <code>corpus/events.txt</code> against the event configuration shipped with
+ * OpenNMS using {@link Events#findFirstMatchingEvent(Event)}.
+ * <p>
+ * One operation matches every event of the corpus once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EventConfMatchingBenchmark {
+
+    private static final String SOURCE = "benchmark";
+
+    private Events events;
+    private List<Event> corpus;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        events = loadEventConfDao().getRootEvents();
+        corpus = loadEvents().stream()
+                .map(Supplier::get)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void findFirstMatchingEvent(final Blackhole blackhole) {
+        for (final Event event : corpus) {
+            blackhole.consume(events.findFirstMatchingEvent(event));
+        }
+    }
+
+    static DefaultEventConfDao loadEventConfDao() throws IOException {
+        final DefaultEventConfDao eventConfDao = new DefaultEventConfDao();
+        eventConfDao.setConfigResource(new UrlResource(Corpus.resource("eventconf/eventconf.xml")));
+        eventConfDao.afterPropertiesSet();
+        return eventConfDao;
+    }
+
+    /**
+     * @return a supplier for each event of the corpus, creating a new event on each call
+     */
+    static List<Supplier<Event>> loadEvents() {
+        final InetAddress address = InetAddress.getLoopbackAddress();
+        return Corpus.lines("events.txt").stream().map(line -> {
+            final String[] fields = line.trim().split("\\s+");
+            if (fields.length == 2 && "uei".equals(fields[0])) {
+                return (Supplier<Event>) () -> new EventBuilder(fields[1], SOURCE)
+                        .setInterface(address)
+                        .getEvent();
+            } else if (fields.length == 4 && "trap".equals(fields[0])) {
+                final int generic = Integer.parseInt(fields[2]);
+                final int specific = Integer.parseInt(fields[3]);
+                return (Supplier<Event>) () -> new EventBuilder(null, SOURCE)
+                        .setInterface(address)
+                        .setSnmpVersion("v1")
+                        .setCommunity("public")
+                        .setEnterpriseId(fields[1])
+                        .setGeneric(generic)
+                        .setSpecific(specific)
+                        .getEvent();
+            }
+            throw new IllegalArgumentException("Invalid event in corpus: " + line);
+        }).collect(Collectors.toList());
+    }
+}
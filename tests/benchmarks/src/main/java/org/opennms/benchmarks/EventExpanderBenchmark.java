@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opennms.netmgt.eventd.AbstractEventUtil;
+import org.opennms.netmgt.eventd.EventExpander;
+import org.opennms.netmgt.eventd.EventUtilDaoImpl;
+import org.opennms.netmgt.xml.event.Event;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.ReflectionUtils;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Measures the expansion of the events of <code>corpus/events.txt</code> by the {@link EventExpander} against the
+ * event configuration shipped with OpenNMS.
+ * <p>
+ * The expander modifies the events, so each operation creates the events of the corpus before expanding them.
+ * {@link #createEvents(Blackhole)} measures the creation alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EventExpanderBenchmark {
+
+    private EventExpander eventExpander;
+    private List<Supplier<Event>> corpus;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final EventUtilDaoImpl eventUtil = new EventUtilDaoImpl();
+        // Injected by Spring in OpenNMS. None of the events has a node, so no DAO is ever used.
+        final Field field = ReflectionUtils.findField(AbstractEventUtil.class, "transactionOperations");
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, eventUtil, new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(null);
+            }
+        });
+
+        eventExpander = new EventExpander(new MetricRegistry());
+        eventExpander.setEventConfDao(EventConfMatchingBenchmark.loadEventConfDao());
+        eventExpander.setEventUtil(eventUtil);
+        eventExpander.afterPropertiesSet();
+
+        corpus = EventConfMatchingBenchmark.loadEvents();
+    }
+
+    @Benchmark
+    public void createEvents(final Blackhole blackhole) {
+        for (final Supplier<Event> event : corpus) {
+            blackhole.consume(event.get());
+        }
+    }
+
+    @Benchmark
+    public void expandEvents(final Blackhole blackhole) {
+        for (final Supplier<Event> supplier : corpus) {
+            final Event event = supplier.get();
+            eventExpander.expandEvent(event);
+            blackhole.consume(event);
+        }
+    }
+}
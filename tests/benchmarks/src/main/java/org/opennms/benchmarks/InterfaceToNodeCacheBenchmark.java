@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.netmgt.dao.api.IpInterfaceDao;
+import org.opennms.netmgt.dao.hibernate.InterfaceToNodeCacheDaoImpl;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.PrimaryType;
+
+/**
+ * Measures looking up the node of an interface in the {@link InterfaceToNodeCacheDaoImpl}, as done for every
+ * received trap, syslog message and flow.
+ * <p>
+ * The cache is filled with generated interfaces through {@link InterfaceToNodeCacheDaoImpl#setNodeId(String, InetAddress, int)}
+ * using a stub {@link IpInterfaceDao}, so no database is needed. The first interface of each node is its SNMP primary
+ * interface.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InterfaceToNodeCacheBenchmark {
+
+    private static final String LOCATION = "Default";
+
+    @Param({"10000"})
+    public int numNodes;
+
+    @Param({"4"})
+    public int interfacesPerNode;
+
+    private InterfaceToNodeCacheDaoImpl cache;
+
+    @State(Scope.Thread)
+    public static class Lookups {
+        private final Random random = new Random(42);
+
+        private InetAddress knownAddress(final InterfaceToNodeCacheBenchmark benchmark) {
+            return address(10, random.nextInt(benchmark.numNodes * benchmark.interfacesPerNode));
+        }
+
+        private InetAddress unknownAddress(final InterfaceToNodeCacheBenchmark benchmark) {
+            return address(172, random.nextInt(benchmark.numNodes * benchmark.interfacesPerNode));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final IpInterfaceDao ipInterfaceDao = (IpInterfaceDao) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{IpInterfaceDao.class}, (proxy, method, args) -> {
+                    if (!"findByNodeIdAndIpAddress".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    final int nodeId = (Integer) args[0];
+                    final String primaryAddress = address(10, (nodeId - 1) * interfacesPerNode).getHostAddress();
+                    final OnmsIpInterface iface = new OnmsIpInterface((String) args[1], null);
+                    iface.setIsSnmpPrimary(primaryAddress.equals(args[1]) ? PrimaryType.PRIMARY : PrimaryType.SECONDARY);
+                    return iface;
+                });
+
+        cache = new InterfaceToNodeCacheDaoImpl();
+        cache.setIpInterfaceDao(ipInterfaceDao);
+        for (int i = 0; i < numNodes * interfacesPerNode; i++) {
+            cache.setNodeId(LOCATION, address(10, i), i / interfacesPerNode + 1);
+        }
+    }
+
+    @Benchmark
+    public Optional<Integer> getFirstNodeIdOfKnownAddress(final Lookups lookups) {
+        return cache.getFirstNodeId(LOCATION, lookups.knownAddress(this));
+    }
+
+    @Benchmark
+    public Optional<Integer> getFirstNodeIdOfUnknownAddress(final Lookups lookups) {
+        return cache.getFirstNodeId(LOCATION, lookups.unknownAddress(this));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Integer> getFirstNodeIdConcurrently(final Lookups lookups) {
+        return cache.getFirstNodeId(LOCATION, lookups.knownAddress(this));
+    }
+
+    private static InetAddress address(final int network, final int index) {
+        try {
+            return InetAddress.getByAddress(new byte[]{(byte) network, (byte) (index >> 16), (byte) (index >> 8), (byte) index});
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
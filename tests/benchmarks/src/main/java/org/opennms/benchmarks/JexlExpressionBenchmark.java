@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.netmgt.measurements.api.ExpressionEngine;
+import org.opennms.netmgt.measurements.api.FetchResults;
+import org.opennms.netmgt.measurements.api.exceptions.ExpressionException;
+import org.opennms.netmgt.measurements.impl.JEXLExpressionEngine;
+import org.opennms.netmgt.measurements.model.Expression;
+import org.opennms.netmgt.measurements.model.QueryRequest;
+import org.opennms.netmgt.measurements.model.Source;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Measures applying the expressions of <code>corpus/jexl-expressions.properties</code> to fetched measurements with
+ * the {@link JEXLExpressionEngine}.
+ * <p>
+ * One operation applies the expression to all rows of a fetch result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JexlExpressionBenchmark {
+
+    private static final long STEP = 300_000L;
+
+    @Param({"bits", "total", "utilization", "limit", "math"})
+    public String expression;
+
+    @Param({"1000"})
+    public int rows;
+
+    private final ExpressionEngine expressionEngine = new JEXLExpressionEngine();
+
+    private QueryRequest request;
+    private long[] timestamps;
+    private Map<String, double[]> columns;
+    private Map<String, Object> constants;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final String jexl = Corpus.properties("jexl-expressions.properties").getProperty(expression);
+        if (jexl == null) {
+            throw new IllegalArgumentException("No such expression in corpus: " + expression);
+        }
+
+        request = new QueryRequest();
+        request.setSources(Lists.newArrayList(new Source("octetsIn", "node[1].interfaceSnmp[eth0]", "ifHCInOctets", null, false),
+                new Source("octetsOut", "node[1].interfaceSnmp[eth0]", "ifHCOutOctets", null, false)));
+        request.setExpressions(Lists.newArrayList(new Expression("result", jexl, false)));
+
+        final Random random = new Random(42);
+        timestamps = new long[rows];
+        final double[] octetsIn = new double[rows];
+        final double[] octetsOut = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = i * STEP;
+            octetsIn[i] = random.nextDouble() * 125_000_000d;
+            octetsOut[i] = random.nextDouble() * 125_000_000d;
+        }
+        columns = new HashMap<>();
+        columns.put("octetsIn", octetsIn);
+        columns.put("octetsOut", octetsOut);
+        constants = Collections.singletonMap("ifSpeed", 1_000_000_000d);
+    }
+
+    @Benchmark
+    public FetchResults applyExpressions() throws ExpressionException {
+        // The engine adds the results to the columns, so every operation needs its own
+        final FetchResults results = new FetchResults(timestamps, new HashMap<>(columns), STEP, constants, null);
+        expressionEngine.applyExpressions(request, results);
+        return results;
+    }
+}
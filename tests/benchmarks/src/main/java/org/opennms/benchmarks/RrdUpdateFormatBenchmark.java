@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.netmgt.collection.persistence.rrd.RrdPersistOperationBuilder;
+
+/**
+ * Measures formatting the update of an RRD file the way {@link RrdPersistOperationBuilder#commit()} does, which
+ * formats every value with {@link RrdPersistOperationBuilder#mapValue(Number)}.
+ * <p>
+ * The values are generated from a fixed seed and mix counters, gauges and unknown values like a typical collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RrdUpdateFormatBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int numValues;
+
+    private Number[] values;
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(42);
+        values = new Number[numValues];
+        for (int i = 0; i < numValues; i++) {
+            switch (i % 4) {
+                case 0:
+                case 1:
+                    values[i] = random.nextLong() & Long.MAX_VALUE;
+                    break;
+                case 2:
+                    values[i] = random.nextDouble() * 100;
+                    break;
+                default:
+                    values[i] = i % 8 == 3 ? Double.NaN : (Number) random.nextInt(1000);
+            }
+        }
+        timestamp = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public String mapValue() {
+        return RrdPersistOperationBuilder.mapValue(values[0]);
+    }
+
+    @Benchmark
+    public String formatUpdate() {
+        final StringBuilder update = new StringBuilder();
+        update.append((timestamp + 500L) / 1000L);
+        for (final Number value : values) {
+            update.append(':').append(RrdPersistOperationBuilder.mapValue(value));
+        }
+        return update.toString();
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2020 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2020 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.benchmarks;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BenchmarkReportTest {
+
+    private static final String BASELINE = "["
+            + result("EventConfMatchingBenchmark.findFirstMatchingEvent", "avgt", "{}", "100.0", "1.0")
+            + "," + result("SyslogParserBenchmark.parse", "thrpt", "{}", "50.0", "\"NaN\"")
+            + "," + result("JexlExpressionBenchmark.applyExpressions", "avgt", "{\"expression\":\"bits\",\"rows\":\"1000\"}", "10.0", "5.0")
+            + "," + result("RrdUpdateFormatBenchmark.mapValue", "avgt", "{}", "1.0", "0.01")
+            + "]";
+
+    private static final String CANDIDATE = "["
+            + result("EventConfMatchingBenchmark.findFirstMatchingEvent", "avgt", "{}", "80.0", "1.0")
+            + "," + result("SyslogParserBenchmark.parse", "thrpt", "{}", "40.0", "1.0")
+            + "," + result("JexlExpressionBenchmark.applyExpressions", "avgt", "{\"rows\":\"1000\",\"expression\":\"bits\"}", "12.0", "5.0")
+            + "," + result("ClassificationEngineBenchmark.classify", "avgt", "{}", "3.0", "0.1")
+            + "]";
+
+    @Test
+    public void canCompareRuns() throws IOException {
+        final List<BenchmarkReport.Comparison> comparisons = compare();
+        assertThat(comparisons.size(), equalTo(5));
+
+        // Lower is better for the average time
+        final BenchmarkReport.Comparison matching = comparisons.get(0);
+        assertThat(matching.getBaseline().getName(), equalTo("EventConfMatchingBenchmark.findFirstMatchingEvent"));
+        assertEquals(20.0, matching.getChange(), 0.001);
+        assertThat(matching.isRegression(), equalTo(false));
+        assertThat(matching.getVerdict(), equalTo("improved"));
+
+        // Higher is better for the throughput, a missing error counts as none
+        final BenchmarkReport.Comparison syslog = comparisons.get(1);
+        assertEquals(-20.0, syslog.getChange(), 0.001);
+        assertThat(syslog.isRegression(), equalTo(true));
+        assertThat(syslog.getVerdict(), equalTo("REGRESSION"));
+
+        // The parameters are matched regardless of their order and the change is within the error
+        final BenchmarkReport.Comparison jexl = comparisons.get(2);
+        assertThat(jexl.getCandidate().getName(), equalTo("JexlExpressionBenchmark.applyExpressions:expression=bits,rows=1000"));
+        assertEquals(-20.0, jexl.getChange(), 0.001);
+        assertThat(jexl.isRegression(), equalTo(false));
+
+        assertThat(comparisons.get(3).getVerdict(), equalTo("removed"));
+        assertThat(comparisons.get(4).getVerdict(), equalTo("added"));
+        assertThat(Double.isNaN(comparisons.get(4).getChange()), equalTo(true));
+    }
+
+    @Test
+    public void canPrintReport() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BenchmarkReport.print(compare(), new PrintStream(out, true, StandardCharsets.UTF_8.name()));
+
+        final String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertThat(lines.length, equalTo(6));
+        assertThat(lines[0], containsString("Baseline"));
+        assertThat(lines[1], containsString("100.000 \u00b1 1.000"));
+        assertThat(lines[1], containsString("+20.0%"));
+        assertThat(lines[2], containsString("-20.0%"));
+        assertThat(lines[2], containsString("REGRESSION"));
+    }
+
+    private static List<BenchmarkReport.Comparison> compare() throws IOException {
+        return BenchmarkReport.compare(read(BASELINE), read(CANDIDATE), BenchmarkReport.DEFAULT_THRESHOLD);
+    }
+
+    private static List<BenchmarkReport.Result> read(final String json) throws IOException {
+        return BenchmarkReport.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String result(String benchmark, String mode, String params, String score, String error) {
+        return "{\"benchmark\":\"org.opennms.benchmarks." + benchmark + "\",\"mode\":\"" + mode + "\",\"params\":" + params
+                + ",\"primaryMetric\":{\"score\":" + score + ",\"scoreError\":" + error + ",\"scoreUnit\":\"us/op\"}}";
+    }
+}